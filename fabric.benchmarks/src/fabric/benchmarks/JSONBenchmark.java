@@ -0,0 +1,139 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import fabric.core.json.JSON;
+
+/**
+ * Measures the cost of building, serializing and parsing <code>fabric.core.json.JSON</code> objects in the form of a
+ * Registry update notification.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JSONBenchmark {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /** The number of entries in the array embedded in the test object */
+    @Param({"1", "32"})
+    public int entries;
+
+    /** The serialized test object */
+    private String serialized = null;
+
+    /** Counter used to vary the objects built */
+    private int sequence = 0;
+
+    /**
+     * Builds the test object.
+     */
+    @Setup
+    public void setup() {
+
+        serialized = build(0).toString();
+
+    }
+
+    /**
+     * Builds a test object.
+     *
+     * @return the object.
+     */
+    @Benchmark
+    public JSON build() {
+
+        return build(++sequence);
+
+    }
+
+    /**
+     * Serializes a test object.
+     *
+     * @return the serialized object.
+     */
+    @Benchmark
+    public String buildAndSerialize() {
+
+        return build(++sequence).toString();
+
+    }
+
+    /**
+     * Parses the serialized test object, reading one of its values.
+     *
+     * @return the value.
+     *
+     * @throws Exception
+     */
+    @Benchmark
+    public String parse() throws Exception {
+
+        return new JSON(serialized).getString("table");
+
+    }
+
+    /**
+     * Parses the serialized test object and serializes it again.
+     *
+     * @return the serialized object.
+     *
+     * @throws Exception
+     */
+    @Benchmark
+    public String roundTrip() throws Exception {
+
+        return new JSON(serialized).toString();
+
+    }
+
+    /**
+     * Builds a test object.
+     *
+     * @param id
+     *            a value used to vary the object.
+     *
+     * @return the object.
+     */
+    private JSON build(int id) {
+
+        List<JSON> changes = new ArrayList<JSON>(entries);
+
+        for (int e = 0; e < entries; e++) {
+
+            JSON change = new JSON();
+            change.putString("id", "node" + e);
+            change.putString("action", "UPDATE");
+            change.putString("availability", "AVAILABLE");
+            change.putDouble("sequence", (double) id);
+            changes.add(change);
+
+        }
+
+        JSON notification = new JSON();
+        notification.putString("table", "AVAILABILITY");
+        notification.putString("node", "node0");
+        notification.putArray("changes", changes);
+
+        return notification;
+    }
+}
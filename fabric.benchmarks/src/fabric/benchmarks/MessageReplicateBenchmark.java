@@ -0,0 +1,126 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import fabric.Fabric;
+import fabric.bus.messages.FabricMessageFactory;
+import fabric.bus.messages.IReplicate;
+import fabric.bus.messages.WireFormat;
+import fabric.bus.messages.impl.FeedMessage;
+import fabric.bus.messages.impl.ServiceMessage;
+import fabric.bus.routing.impl.StaticRouting;
+
+/**
+ * Measures the cost of replicating Fabric messages, as done for each task and actor when a feed message is fanned out
+ * by the subscription manager.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MessageReplicateBenchmark {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /** The topic used for decoded messages */
+    private static final String TOPIC = "$fabric/bus/feeds/task1/platform1/system1/feed1";
+
+    /** The size of the binary feed message payload (bytes) */
+    @Param({"64", "4096"})
+    public int payloadSize;
+
+    /** The feed message to replicate */
+    private FeedMessage feedMessage = null;
+
+    /** The feed message to replicate, as decoded from the wire */
+    private FeedMessage decodedFeedMessage = null;
+
+    /** The service message to replicate */
+    private ServiceMessage serviceMessage = null;
+
+    /**
+     * Builds the test messages.
+     *
+     * @throws Exception
+     */
+    @Setup
+    public void setup() throws Exception {
+
+        new Fabric().initFabricConfig();
+
+        byte[] payload = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(payload);
+
+        feedMessage = new FeedMessage();
+        feedMessage.setOrdinal(1);
+        feedMessage.setRouting(new StaticRouting(new String[] {"node1", "node2", "node3"}));
+        feedMessage.getPayload().setPayloadBytes(payload);
+        feedMessage.getSubscriptions().addActor("task1", "actor1");
+        feedMessage.getSubscriptions().addActor("task1", "actor2");
+
+        decodedFeedMessage = (FeedMessage) FabricMessageFactory.create(TOPIC, feedMessage
+                .toWireBytes(WireFormat.BINARY));
+
+        serviceMessage = new ServiceMessage();
+        serviceMessage.setServiceName("fabric.bus.feeds.impl.SubscriptionManager");
+        serviceMessage.setServiceFamilyName(Fabric.FABRIC_PLUGIN_FAMILY);
+        serviceMessage.setCorrelationID(FabricMessageFactory.generateUID());
+        serviceMessage.setNotification(true);
+        serviceMessage.setProperty("action", "subscribe");
+        serviceMessage.setRouting(new StaticRouting(new String[] {"node1", "node2"}));
+
+    }
+
+    /**
+     * Replicates a locally built feed message.
+     *
+     * @return the replica.
+     */
+    @Benchmark
+    public IReplicate replicateFeedMessage() {
+
+        return feedMessage.replicate();
+
+    }
+
+    /**
+     * Replicates a feed message decoded from the wire.
+     *
+     * @return the replica.
+     */
+    @Benchmark
+    public IReplicate replicateDecodedFeedMessage() {
+
+        return decodedFeedMessage.replicate();
+
+    }
+
+    /**
+     * Replicates a service message.
+     *
+     * @return the replica.
+     */
+    @Benchmark
+    public IReplicate replicateServiceMessage() {
+
+        return serviceMessage.replicate();
+
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import fabric.core.io.mqtt.TopicTrie;
+
+/**
+ * Measures how the cost of matching an incoming MQTT topic to the subscribed channels of an end point scales with the
+ * number of subscriptions.
+ * <p>
+ * <code>MqttEndPoint.matchTopicToSubscriptions()</code> is private and delegates to the end point's
+ * <code>TopicTrie</code>, so the trie is exercised directly (without the need for a broker connection). One in ten of
+ * the subscriptions uses wildcards.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TopicMatchBenchmark {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /** The number of subscribed topic filters */
+    @Param({"10", "1000", "10000"})
+    public int topicCount;
+
+    /** The subscribed topic filters */
+    private TopicTrie<String> topicTrie = null;
+
+    /** Topics each matching one or more subscriptions */
+    private String[] matchingTopics = null;
+
+    /** A topic matching no subscriptions */
+    private String unmatchedTopic = null;
+
+    /** Counter used to select the next matching topic */
+    private int sequence = 0;
+
+    /**
+     * Builds the set of subscriptions.
+     */
+    @Setup
+    public void setup() {
+
+        topicTrie = new TopicTrie<String>();
+        matchingTopics = new String[topicCount];
+
+        for (int t = 0; t < topicCount; t++) {
+
+            String filter = null;
+
+            if (t % 10 == 0) {
+                filter = "$fabric/node1/$feeds/task" + t + "/+/system" + t + "/#";
+            } else {
+                filter = "$fabric/node1/$feeds/task" + t + "/platform" + t + "/system" + t + "/feed" + t;
+            }
+
+            topicTrie.put(filter, filter);
+            matchingTopics[t] = "$fabric/node1/$feeds/task" + t + "/platform" + t + "/system" + t + "/feed" + t;
+
+        }
+
+        unmatchedTopic = "$fabric/node1/$feeds/task" + topicCount + "/platform0/system0/feed0";
+
+    }
+
+    /**
+     * Matches a topic that has subscriptions.
+     *
+     * @return the matching subscriptions.
+     */
+    @Benchmark
+    public List<String> matchSubscribed() {
+
+        if (++sequence == topicCount) {
+            sequence = 0;
+        }
+
+        return topicTrie.match(matchingTopics[sequence]);
+
+    }
+
+    /**
+     * Matches a topic that has no subscriptions.
+     *
+     * @return the matching subscriptions (none).
+     */
+    @Benchmark
+    public List<String> matchUnsubscribed() {
+
+        return topicTrie.match(unmatchedTopic);
+
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import fabric.Fabric;
+import fabric.bus.messages.FabricMessageFactory;
+import fabric.bus.messages.IFabricMessage;
+import fabric.bus.messages.WireFormat;
+import fabric.bus.messages.impl.FeedMessage;
+import fabric.bus.messages.impl.ServiceMessage;
+import fabric.bus.routing.impl.StaticRouting;
+
+/**
+ * Compares the cost of encoding and decoding Fabric messages in the XML and binary wire formats.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WireFormatBenchmark {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /** The topic used for decoded messages */
+    private static final String TOPIC = "$fabric/bus/feeds/task1/platform1/system1/feed1";
+
+    /** The size of the binary feed message payload (bytes) */
+    @Param({"64", "4096"})
+    public int payloadSize;
+
+    /** The wire format under test */
+    @Param({"XML", "BINARY"})
+    public String format;
+
+    /** The feed message to encode */
+    private FeedMessage feedMessage = null;
+
+    /** The service message to encode */
+    private ServiceMessage serviceMessage = null;
+
+    /** The wire format under test */
+    private WireFormat wireFormat = null;
+
+    /** The encoded feed message */
+    private byte[] feedWireBytes = null;
+
+    /** The encoded service message */
+    private byte[] serviceWireBytes = null;
+
+    /** Counter used to modify the messages between encodings */
+    private int sequence = 0;
+
+    /**
+     * Builds the test messages.
+     *
+     * @throws Exception
+     */
+    @Setup
+    public void setup() throws Exception {
+
+        new Fabric().initFabricConfig();
+
+        wireFormat = WireFormat.valueOf(format);
+
+        byte[] payload = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(payload);
+
+        feedMessage = new FeedMessage();
+        feedMessage.setOrdinal(1);
+        feedMessage.setRouting(new StaticRouting(new String[] {"node1", "node2", "node3"}));
+        feedMessage.getPayload().setPayloadBytes(payload);
+        feedMessage.getSubscriptions().addActor("task1", "actor1");
+        feedMessage.getSubscriptions().addActor("task1", "actor2");
+
+        serviceMessage = new ServiceMessage();
+        serviceMessage.setServiceName("fabric.bus.feeds.impl.SubscriptionManager");
+        serviceMessage.setServiceFamilyName(Fabric.FABRIC_PLUGIN_FAMILY);
+        serviceMessage.setCorrelationID(FabricMessageFactory.generateUID());
+        serviceMessage.setNotification(true);
+        serviceMessage.setProperty("action", "subscribe");
+        serviceMessage.setRouting(new StaticRouting(new String[] {"node1", "node2"}));
+
+        feedWireBytes = feedMessage.toWireBytes(wireFormat);
+        serviceWireBytes = serviceMessage.toWireBytes(wireFormat);
+
+    }
+
+    /**
+     * Encodes a feed message (invalidating the cached wire form first, as a forwarding node would after updating the
+     * message).
+     *
+     * @return the wire bytes.
+     *
+     * @throws Exception
+     */
+    @Benchmark
+    public byte[] encodeFeedMessage() throws Exception {
+
+        feedMessage.setOrdinal(++sequence);
+        return feedMessage.toWireBytes(wireFormat);
+
+    }
+
+    /**
+     * Decodes a feed message.
+     *
+     * @return the message.
+     *
+     * @throws Exception
+     */
+    @Benchmark
+    public IFabricMessage decodeFeedMessage() throws Exception {
+
+        return FabricMessageFactory.create(TOPIC, feedWireBytes);
+
+    }
+
+    /**
+     * Encodes a service message (again invalidating the cached wire form first).
+     *
+     * @return the wire bytes.
+     *
+     * @throws Exception
+     */
+    @Benchmark
+    public byte[] encodeServiceMessage() throws Exception {
+
+        serviceMessage.setNotificationTimeout(++sequence);
+        return serviceMessage.toWireBytes(wireFormat);
+
+    }
+
+    /**
+     * Decodes a service message.
+     *
+     * @return the message.
+     *
+     * @throws Exception
+     */
+    @Benchmark
+    public IFabricMessage decodeServiceMessage() throws Exception {
+
+        return FabricMessageFactory.create(null, serviceWireBytes);
+
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import fabric.Fabric;
+import fabric.bus.messages.WireFormat;
+import fabric.bus.messages.impl.FeedMessage;
+import fabric.bus.routing.impl.StaticRouting;
+import fabric.core.xml.XML;
+
+/**
+ * Measures the cost of the basic <code>fabric.core.xml.XML</code> operations on a document in the form of an XML
+ * encoded feed message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class XMLBenchmark {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /** The path of an attribute in the document */
+    private static final String ATTRIBUTE_PATH = "/fab/subs/s@tsk";
+
+    /** The path of an element in the document */
+    private static final String ELEMENT_PATH = "/fab/rt/nodes/n[1]";
+
+    /** The path of the element updated in the document */
+    private static final String UPDATE_PATH = "/fab/prop/p[1]";
+
+    /** The size of the (binary) message payload (bytes) */
+    @Param({"64", "4096"})
+    public int payloadSize;
+
+    /** The encoded document */
+    private byte[] documentBytes = null;
+
+    /** The parsed document */
+    private XML document = null;
+
+    /** Counter used to modify the document between operations */
+    private int sequence = 0;
+
+    /**
+     * Builds the test document.
+     *
+     * @throws Exception
+     */
+    @Setup
+    public void setup() throws Exception {
+
+        new Fabric().initFabricConfig();
+
+        byte[] payload = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(payload);
+
+        FeedMessage message = new FeedMessage();
+        message.setOrdinal(1);
+        message.setProperty("sequence", "0");
+        message.setRouting(new StaticRouting(new String[] {"node1", "node2", "node3"}));
+        message.getPayload().setPayloadBytes(payload);
+        message.getSubscriptions().addActor("task1", "actor1");
+        message.getSubscriptions().addActor("task1", "actor2");
+
+        documentBytes = message.toWireBytes(WireFormat.XML);
+        document = new XML(documentBytes);
+
+    }
+
+    /**
+     * Parses the document.
+     *
+     * @return the document.
+     *
+     * @throws Exception
+     */
+    @Benchmark
+    public XML parse() throws Exception {
+
+        return new XML(documentBytes);
+
+    }
+
+    /**
+     * Gets the value of an attribute.
+     *
+     * @return the value.
+     */
+    @Benchmark
+    public String getAttribute() {
+
+        return document.get(ATTRIBUTE_PATH);
+
+    }
+
+    /**
+     * Gets the value of an element.
+     *
+     * @return the value.
+     */
+    @Benchmark
+    public String getElement() {
+
+        return document.get(ELEMENT_PATH);
+
+    }
+
+    /**
+     * Sets the value of an existing element.
+     *
+     * @return the document.
+     */
+    @Benchmark
+    public XML set() {
+
+        document.set(UPDATE_PATH, Integer.toString(++sequence));
+        return document;
+
+    }
+
+    /**
+     * Serializes the document (modifying it first, so that no cached form can be used).
+     *
+     * @return the serialized document.
+     */
+    @Benchmark
+    public byte[] toBytes() {
+
+        document.set(UPDATE_PATH, Integer.toString(++sequence));
+        return document.toBytes();
+
+    }
+}
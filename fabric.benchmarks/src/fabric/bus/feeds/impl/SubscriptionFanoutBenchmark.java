@@ -0,0 +1,196 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.bus.feeds.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import fabric.Fabric;
+import fabric.TaskServiceDescriptor;
+import fabric.bus.IBusServices;
+import fabric.bus.messages.impl.FeedMessage;
+import fabric.bus.plugins.impl.FeedPluginDispatcher;
+import fabric.bus.routing.impl.StaticRouting;
+import fabric.core.io.MessageQoS;
+import fabric.registry.NodePlugin;
+import fabric.registry.TaskPlugin;
+import fabric.services.messageforwarding.MessageForwardingService;
+import fabric.services.messageforwarding.OutboundMessage;
+
+/**
+ * Measures the cost of fanning a feed message out to the tasks and actors subscribed to its feed in
+ * <code>SubscriptionManager.handleFeed()</code>.
+ * <p>
+ * The subscriptions are recorded directly (this class is in the same package for that reason), without plug-ins, so
+ * no Registry or broker is required. Outbound messages are counted and discarded rather than being sent.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SubscriptionFanoutBenchmark {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /** The neighbour via which remote subscribers are connected */
+    private static final String NEIGHBOUR = "neighbour1";
+
+    /** The number of tasks with subscriptions to the feed */
+    @Param({"1", "8"})
+    public int tasks;
+
+    /** The number of actors subscribed to the feed via each task */
+    @Param({"1", "16"})
+    public int actorsPerTask;
+
+    /** Where the subscribers are connected: <code>LOCAL</code> (this node) or <code>REMOTE</code> (a neighbour) */
+    @Param({"LOCAL", "REMOTE"})
+    public String delivery;
+
+    /** The size of the feed message payload (bytes) */
+    @Param({"64"})
+    public int payloadSize;
+
+    /** The subscription manager */
+    private SubscriptionManager subscriptionManager = null;
+
+    /** The forwarding service receiving the outbound messages */
+    private CountingForwarder forwarder = null;
+
+    /** The feed message to handle */
+    private FeedMessage feedMessage = null;
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * Forwarding service that counts and discards outbound messages.
+     */
+    private static final class CountingForwarder extends MessageForwardingService {
+
+        /** The number of messages added */
+        long count = 0;
+
+        /**
+         * @see fabric.services.messageforwarding.MessageForwardingService#add(OutboundMessage)
+         */
+        @Override
+        public void add(OutboundMessage message) {
+
+            count++;
+
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Records the subscriptions and builds the test message.
+     *
+     * @throws Exception
+     */
+    @Setup
+    public void setup() throws Exception {
+
+        Fabric fabric = new Fabric();
+        fabric.initFabricConfig();
+        final String homeNode = fabric.homeNode();
+
+        forwarder = new CountingForwarder();
+
+        /* Fabric management services, of which only message forwarding is used when handling feed messages */
+        IBusServices busServices = (IBusServices) Proxy.newProxyInstance(IBusServices.class.getClassLoader(),
+                new Class<?>[] {IBusServices.class}, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+
+                        switch (method.getName()) {
+
+                            case "forwardingManager":
+                                return forwarder;
+
+                            case "nodeName":
+                                return homeNode;
+
+                            default:
+                                return null;
+                        }
+                    }
+                });
+
+        subscriptionManager = new SubscriptionManager(busServices, FeedPluginDispatcher.nodePluginFactory(homeNode,
+                new NodePlugin[0], busServices), FeedPluginDispatcher.nodePluginFactory(homeNode, new NodePlugin[0],
+                busServices));
+
+        String[] route = (delivery.equals("LOCAL")) ? new String[] {homeNode} : new String[] {homeNode, NEIGHBOUR};
+
+        for (int t = 0; t < tasks; t++) {
+
+            TaskServiceDescriptor taskFeed = new TaskServiceDescriptor("task" + t, "platform1", "system1", "feed1");
+            FeedPluginDispatcher inboundTaskDispatcher = FeedPluginDispatcher.taskPluginFactory(homeNode,
+                    new TaskPlugin[0], busServices, taskFeed);
+            FeedPluginDispatcher outboundTaskDispatcher = FeedPluginDispatcher.taskPluginFactory(homeNode,
+                    new TaskPlugin[0], busServices, taskFeed);
+
+            for (int a = 0; a < actorsPerTask; a++) {
+
+                String actor = "actor" + a;
+                SubscriptionRecord subscription = new SubscriptionRecord(actor, "platform1", taskFeed,
+                        new StaticRouting(route), MessageQoS.DEFAULT, FeedPluginDispatcher.actorPluginFactory(
+                                homeNode, new TaskPlugin[0], busServices, taskFeed, actor), FeedPluginDispatcher
+                                .actorPluginFactory(homeNode, new TaskPlugin[0], busServices, taskFeed, actor),
+                        new ArrayList<String>());
+                subscriptionManager.recordSubscription(actor + '/' + taskFeed, subscription, inboundTaskDispatcher,
+                        outboundTaskDispatcher);
+
+            }
+        }
+
+        byte[] payload = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(payload);
+
+        feedMessage = new FeedMessage();
+        feedMessage.metaSetTopic("$fabric/" + homeNode + "/$feeds/platform1/system1/feed1");
+        feedMessage.setOrdinal(1);
+        feedMessage.getPayload().setPayloadBytes(payload);
+
+    }
+
+    /**
+     * Handles the feed message.
+     *
+     * @return the total number of outbound messages so far.
+     *
+     * @throws Exception
+     */
+    @Benchmark
+    public long handleFeed() throws Exception {
+
+        subscriptionManager.handleFeed(feedMessage);
+        return forwarder.count;
+
+    }
+}
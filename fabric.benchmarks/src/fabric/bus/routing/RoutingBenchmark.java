@@ -0,0 +1,182 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.bus.routing;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import fabric.Fabric;
+
+/**
+ * Measures the cost of determining routes with <code>DynamicRoutingFactory</code> across synthetic topologies.
+ * <p>
+ * The topology is installed directly into <code>TopologyGraph</code> (this class is in the same package for that
+ * reason), so no Registry is required. Routes are determined both through the factory, which answers cached routes
+ * after the first request, and by computing them from scratch.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RoutingBenchmark {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /** The number of route end points used */
+    private static final int END_POINTS = 64;
+
+    /**
+     * The shape of the topology: <code>GRID</code> (each node connected to its neighbours in a square grid) or
+     * <code>RANDOM</code> (each node connected to four random nodes, in addition to the next node so that the topology
+     * is connected)
+     */
+    @Param({"GRID", "RANDOM"})
+    public String shape;
+
+    /** The number of nodes in the topology */
+    @Param({"16", "256", "4096"})
+    public int nodeCount;
+
+    /** The routing factory */
+    private IRoutingFactory routingFactory = null;
+
+    /** The topology */
+    private TopologyGraph topology = null;
+
+    /** The start and end nodes of the routes */
+    private String[] endPoints = null;
+
+    /** Counter used to select the next route */
+    private int sequence = 0;
+
+    /**
+     * Builds the topology.
+     */
+    @Setup
+    public void setup() {
+
+        new Fabric().initFabricConfig();
+
+        HashMap<String, Set<String>> neighbours = new HashMap<String, Set<String>>();
+        Random random = new Random(nodeCount);
+        int width = (int) Math.ceil(Math.sqrt(nodeCount));
+
+        for (int n = 0; n < nodeCount; n++) {
+
+            Set<String> nodeNeighbours = new HashSet<String>();
+
+            if (shape.equals("GRID")) {
+
+                if (n % width > 0) {
+                    nodeNeighbours.add(node(n - 1));
+                }
+                if (n % width < width - 1 && n + 1 < nodeCount) {
+                    nodeNeighbours.add(node(n + 1));
+                }
+                if (n >= width) {
+                    nodeNeighbours.add(node(n - width));
+                }
+                if (n + width < nodeCount) {
+                    nodeNeighbours.add(node(n + width));
+                }
+
+            } else {
+
+                nodeNeighbours.add(node((n + 1) % nodeCount));
+
+                for (int e = 0; e < 4; e++) {
+                    nodeNeighbours.add(node(random.nextInt(nodeCount)));
+                }
+
+            }
+
+            neighbours.put(node(n), nodeNeighbours);
+        }
+
+        topology = new TopologyGraph(neighbours);
+        TopologyGraph.setInstance(topology);
+        routingFactory = new DynamicRoutingFactory();
+
+        endPoints = new String[END_POINTS];
+
+        for (int e = 0; e < END_POINTS; e++) {
+            endPoints[e] = node(random.nextInt(nodeCount));
+        }
+
+    }
+
+    /**
+     * Removes the synthetic topology.
+     */
+    @TearDown
+    public void tearDown() {
+
+        TopologyGraph.setInstance(null);
+
+    }
+
+    /**
+     * Determines a route through the routing factory (answered from the route cache after the first request for each
+     * pair of nodes).
+     *
+     * @return the route.
+     */
+    @Benchmark
+    public String[] factoryRoute() {
+
+        sequence++;
+        return routingFactory.getRouteNodes(endPoints[sequence % END_POINTS], endPoints[(sequence / END_POINTS)
+                % END_POINTS]);
+
+    }
+
+    /**
+     * Computes a route from scratch.
+     *
+     * @return the route.
+     */
+    @Benchmark
+    public String[] computeRoute() {
+
+        sequence++;
+
+        synchronized (topology) {
+            return topology.shortestRoute(endPoints[sequence % END_POINTS], endPoints[(sequence / END_POINTS)
+                    % END_POINTS]);
+        }
+
+    }
+
+    /**
+     * Answers the ID of a node.
+     *
+     * @param n
+     *            the node number.
+     *
+     * @return the ID.
+     */
+    private static String node(int n) {
+
+        return "node" + n;
+
+    }
+}
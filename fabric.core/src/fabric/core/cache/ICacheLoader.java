@@ -0,0 +1,32 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ * 
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.cache;
+
+/**
+ * Computes the value for a cache key that is not present in the cache.
+ */
+
+public interface ICacheLoader {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	/**
+	 * Answers the value to be cached for a key.
+	 * 
+	 * @param key
+	 *            the key.
+	 * 
+	 * @return the value, or <code>null</code> if there is no value for the key (in which case nothing is cached).
+	 * 
+	 * @throws Exception
+	 *             thrown if the value cannot be loaded.
+	 */
+	public Object load(Object key) throws Exception;
+
+}
@@ -11,7 +11,7 @@ import java.util.Collection;
 import java.util.Map;
 
 /**
- *
+ * A bounded cache of objects, with optional per-entry time-to-live.
  */
 
 public interface IObjectCache {
@@ -34,6 +34,12 @@ public interface IObjectCache {
 	 */
 	public Object get(Object key);
 
+	/**
+	 * Get an entry from the cache, using the loader to compute (and cache) the value if it is not present. Concurrent
+	 * requests for the same missing key share a single load.
+	 */
+	public Object get(Object key, ICacheLoader loader) throws Exception;
+
 	/**
 	 * Get the entire cache as a Map
 	 */
@@ -69,4 +75,9 @@ public interface IObjectCache {
 	 */
 	public void clear();
 
+	/**
+	 * Returns a snapshot of the cache statistics
+	 */
+	public ObjectCacheStatistics statistics();
+
 }
@@ -0,0 +1,33 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ * 
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.cache;
+
+/**
+ * Computes the weight of a cache entry, used to bound the total weight (rather than just the number) of cached
+ * entries.
+ */
+
+public interface IWeigher {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	/**
+	 * Answers the weight of a cache entry.
+	 * 
+	 * @param key
+	 *            the key of the entry.
+	 * 
+	 * @param value
+	 *            the value of the entry.
+	 * 
+	 * @return the weight (a non-negative value).
+	 */
+	public int weigh(Object key, Object value);
+
+}
@@ -0,0 +1,180 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.cache;
+
+/**
+ * The settings of an object cache.
+ * <p>
+ * By default a cache holds up to <code>DEFAULT_MAX_ENTRIES</code> entries with no weight bound, entries do not expire
+ * unless a time-to-live is specified when they are added, and values are strongly referenced.
+ * </p>
+ */
+
+public class ObjectCacheConfig {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	/*
+	 * Class constants
+	 */
+
+	/** The default maximum number of entries */
+	public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	/** The default resolution of the expiry wheel (milliseconds) */
+	public static final long DEFAULT_EXPIRY_TICK = 1000;
+
+	/*
+	 * Class fields
+	 */
+
+	/** The maximum number of entries (zero for no limit) */
+	private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+	/** The maximum total weight of the entries (zero for no limit) */
+	private long maxWeight = 0;
+
+	/** The weigher used to compute entry weights (<code>null</code> if every entry weighs one) */
+	private IWeigher weigher = null;
+
+	/** The time-to-live of entries added without one (milliseconds, or <code>null</code> for no expiry) */
+	private Long defaultTTL = null;
+
+	/** The resolution of the expiry wheel (milliseconds) */
+	private long expiryTick = DEFAULT_EXPIRY_TICK;
+
+	/** Flag indicating if values are softly referenced */
+	private boolean softValues = false;
+
+	/*
+	 * Class methods
+	 */
+
+	/**
+	 * Constructs a new instance with the default settings.
+	 */
+	public ObjectCacheConfig() {
+
+	}
+
+	/**
+	 * Constructs a new instance with a maximum number of entries.
+	 *
+	 * @param maxEntries
+	 *            the maximum number of entries (zero for no limit).
+	 */
+	public ObjectCacheConfig(int maxEntries) {
+
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * @return the maximum number of entries (zero for no limit).
+	 */
+	public int getMaxEntries() {
+
+		return maxEntries;
+	}
+
+	/**
+	 * @param maxEntries
+	 *            the maximum number of entries (zero for no limit).
+	 */
+	public void setMaxEntries(int maxEntries) {
+
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * @return the maximum total weight of the entries (zero for no limit).
+	 */
+	public long getMaxWeight() {
+
+		return maxWeight;
+	}
+
+	/**
+	 * @param maxWeight
+	 *            the maximum total weight of the entries (zero for no limit).
+	 */
+	public void setMaxWeight(long maxWeight) {
+
+		this.maxWeight = maxWeight;
+	}
+
+	/**
+	 * @return the weigher used to compute entry weights (<code>null</code> if every entry weighs one).
+	 */
+	public IWeigher getWeigher() {
+
+		return weigher;
+	}
+
+	/**
+	 * @param weigher
+	 *            the weigher used to compute entry weights (<code>null</code> if every entry weighs one).
+	 */
+	public void setWeigher(IWeigher weigher) {
+
+		this.weigher = weigher;
+	}
+
+	/**
+	 * @return the time-to-live of entries added without one (milliseconds, or <code>null</code> for no expiry).
+	 */
+	public Long getDefaultTTL() {
+
+		return defaultTTL;
+	}
+
+	/**
+	 * @param defaultTTL
+	 *            the time-to-live of entries added without one (milliseconds, or <code>null</code> for no expiry).
+	 */
+	public void setDefaultTTL(Long defaultTTL) {
+
+		this.defaultTTL = defaultTTL;
+	}
+
+	/**
+	 * @return the resolution of the expiry wheel (milliseconds).
+	 */
+	public long getExpiryTick() {
+
+		return expiryTick;
+	}
+
+	/**
+	 * @param expiryTick
+	 *            the resolution of the expiry wheel (milliseconds).
+	 */
+	public void setExpiryTick(long expiryTick) {
+
+		this.expiryTick = expiryTick;
+	}
+
+	/**
+	 * @return <code>true</code> if values are softly referenced (and so may be reclaimed by the garbage collector),
+	 *         <code>false</code> otherwise.
+	 */
+	public boolean isSoftValues() {
+
+		return softValues;
+	}
+
+	/**
+	 * @param softValues
+	 *            <code>true</code> if values are to be softly referenced, <code>false</code> otherwise.
+	 */
+	public void setSoftValues(boolean softValues) {
+
+		this.softValues = softValues;
+	}
+
+}
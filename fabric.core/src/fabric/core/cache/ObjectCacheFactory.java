@@ -1,6 +1,6 @@
 /*
- * (C) Copyright IBM Corp. 2011
- * 
+ * (C) Copyright IBM Corp. 2011, 2014
+ *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
  */
@@ -12,26 +12,67 @@ import java.util.concurrent.ConcurrentHashMap;
 import fabric.core.cache.impl.ObjectCache;
 
 /**
- *
+ * Factory for named object caches.
  */
 
 public class ObjectCacheFactory {
 
 	/** Copyright notice. */
-	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2011";
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2011, 2014";
 
-	private static ConcurrentHashMap<Object, Object> objectCacheInstances = new ConcurrentHashMap();
+	private static ConcurrentHashMap<Object, IObjectCache> objectCacheInstances = new ConcurrentHashMap<Object, IObjectCache>();
 
+	/**
+	 * Answers the named cache, creating it with the default settings if it does not exist.
+	 *
+	 * @param cacheName
+	 *            the name of the cache.
+	 *
+	 * @return the cache.
+	 */
 	public static IObjectCache getInstance(Object cacheName) {
 
-		IObjectCache cache = null;
+		return getInstance(cacheName, new ObjectCacheConfig());
+	}
+
+	/**
+	 * Answers the named cache, creating it with the specified settings if it does not exist.
+	 *
+	 * @param cacheName
+	 *            the name of the cache.
+	 *
+	 * @param config
+	 *            the settings used if the cache is created.
+	 *
+	 * @return the cache.
+	 */
+	public static IObjectCache getInstance(Object cacheName, ObjectCacheConfig config) {
 
-		if (objectCacheInstances.get(cacheName) == null) {
-			objectCacheInstances.putIfAbsent(cacheName, new ObjectCache());
-		}
+		IObjectCache cache = objectCacheInstances.get(cacheName);
 
-		cache = (IObjectCache) objectCacheInstances.get(cacheName);
+		if (cache == null) {
+			IObjectCache newCache = new ObjectCache(config);
+			cache = objectCacheInstances.putIfAbsent(cacheName, newCache);
+			cache = (cache != null) ? cache : newCache;
+		}
 
 		return cache;
 	}
+
+	/**
+	 * Discards the named cache.
+	 *
+	 * @param cacheName
+	 *            the name of the cache.
+	 */
+	public static void removeInstance(Object cacheName) {
+
+		IObjectCache cache = objectCacheInstances.remove(cacheName);
+
+		if (cache instanceof ObjectCache) {
+			((ObjectCache) cache).dispose();
+		} else if (cache != null) {
+			cache.clear();
+		}
+	}
 }
@@ -0,0 +1,206 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.cache;
+
+/**
+ * A snapshot of the counters of an object cache.
+ */
+
+public class ObjectCacheStatistics {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	/*
+	 * Class fields
+	 */
+
+	/** The number of entries in the cache */
+	private final int size;
+
+	/** The total weight of the entries in the cache */
+	private final long weight;
+
+	/** The number of lookups that found a value */
+	private final long hits;
+
+	/** The number of lookups that did not find a value */
+	private final long misses;
+
+	/** The number of values loaded by a cache loader */
+	private final long loads;
+
+	/** The number of cache loader failures */
+	private final long loadFailures;
+
+	/** The total time spent loading values (nanoseconds) */
+	private final long totalLoadTime;
+
+	/** The number of entries evicted to keep the cache within its bounds */
+	private final long evictions;
+
+	/** The number of entries removed because their time-to-live expired */
+	private final long expirations;
+
+	/** The number of entries removed because their (soft) values were reclaimed by the garbage collector */
+	private final long collections;
+
+	/*
+	 * Class methods
+	 */
+
+	/**
+	 * Constructs a new instance.
+	 *
+	 * @param size
+	 *            the number of entries in the cache.
+	 *
+	 * @param weight
+	 *            the total weight of the entries in the cache.
+	 *
+	 * @param hits
+	 *            the number of lookups that found a value.
+	 *
+	 * @param misses
+	 *            the number of lookups that did not find a value.
+	 *
+	 * @param loads
+	 *            the number of values loaded by a cache loader.
+	 *
+	 * @param loadFailures
+	 *            the number of cache loader failures.
+	 *
+	 * @param totalLoadTime
+	 *            the total time spent loading values (nanoseconds).
+	 *
+	 * @param evictions
+	 *            the number of entries evicted to keep the cache within its bounds.
+	 *
+	 * @param expirations
+	 *            the number of entries removed because their time-to-live expired.
+	 *
+	 * @param collections
+	 *            the number of entries removed because their values were reclaimed by the garbage collector.
+	 */
+	public ObjectCacheStatistics(int size, long weight, long hits, long misses, long loads, long loadFailures,
+			long totalLoadTime, long evictions, long expirations, long collections) {
+
+		this.size = size;
+		this.weight = weight;
+		this.hits = hits;
+		this.misses = misses;
+		this.loads = loads;
+		this.loadFailures = loadFailures;
+		this.totalLoadTime = totalLoadTime;
+		this.evictions = evictions;
+		this.expirations = expirations;
+		this.collections = collections;
+	}
+
+	/**
+	 * @return the number of entries in the cache.
+	 */
+	public int getSize() {
+
+		return size;
+	}
+
+	/**
+	 * @return the total weight of the entries in the cache.
+	 */
+	public long getWeight() {
+
+		return weight;
+	}
+
+	/**
+	 * @return the number of lookups that found a value.
+	 */
+	public long getHits() {
+
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups that did not find a value.
+	 */
+	public long getMisses() {
+
+		return misses;
+	}
+
+	/**
+	 * @return the proportion of lookups that found a value (one if there have been no lookups).
+	 */
+	public double getHitRate() {
+
+		long lookups = hits + misses;
+		return (lookups == 0) ? 1.0 : (double) hits / lookups;
+	}
+
+	/**
+	 * @return the number of values loaded by a cache loader.
+	 */
+	public long getLoads() {
+
+		return loads;
+	}
+
+	/**
+	 * @return the number of cache loader failures.
+	 */
+	public long getLoadFailures() {
+
+		return loadFailures;
+	}
+
+	/**
+	 * @return the total time spent loading values (nanoseconds).
+	 */
+	public long getTotalLoadTime() {
+
+		return totalLoadTime;
+	}
+
+	/**
+	 * @return the number of entries evicted to keep the cache within its bounds.
+	 */
+	public long getEvictions() {
+
+		return evictions;
+	}
+
+	/**
+	 * @return the number of entries removed because their time-to-live expired.
+	 */
+	public long getExpirations() {
+
+		return expirations;
+	}
+
+	/**
+	 * @return the number of entries removed because their values were reclaimed by the garbage collector.
+	 */
+	public long getCollections() {
+
+		return collections;
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+
+		return String.format(
+				"size=%d weight=%d hits=%d misses=%d hitRate=%.3f loads=%d loadFailures=%d totalLoadTime=%dns "
+						+ "evictions=%d expirations=%d collections=%d", size, weight, hits, misses, getHitRate(), loads,
+				loadFailures, totalLoadTime, evictions, expirations, collections);
+	}
+
+}
@@ -1,122 +1,762 @@
 /*
- * (C) Copyright IBM Corp. 2011
- * 
- * LICENSE: Eclipse Public License v1.0
+ * (C) Copyright IBM Corp. 2011, 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
  */
 
 package fabric.core.cache.impl;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
+import fabric.core.cache.ICacheLoader;
 import fabric.core.cache.IObjectCache;
+import fabric.core.cache.IWeigher;
+import fabric.core.cache.ObjectCacheConfig;
+import fabric.core.cache.ObjectCacheStatistics;
 
 /**
- *
+ * A bounded object cache.
+ * <p>
+ * Entries are held in least-recently-used order and the least recently used entries are evicted when the cache
+ * exceeds its maximum number of entries or maximum total weight. Entries with a time-to-live are placed on a hashed
+ * timing wheel that is swept by a shared background thread, so expired entries are removed whether or not they are
+ * looked up again. Values may optionally be softly referenced, allowing the garbage collector to reclaim them under
+ * memory pressure.
+ * </p>
  */
 
-public class ObjectCache implements IObjectCache{
+public class ObjectCache implements IObjectCache {
 
 	/** Copyright notice. */
-	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2011";
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2011, 2014";
+
+	/*
+	 * Class constants
+	 */
+
+	/** The number of slots in the expiry wheel */
+	private static final int WHEEL_SLOTS = 512;
+
+	/** The name of the expiry thread */
+	private static final String EXPIRY_THREAD_NAME = "Fabric-Cache-Expiry";
+
+	/*
+	 * Class static fields
+	 */
+
+	/** The timer shared by all caches to sweep their expiry wheels */
+	private static ScheduledExecutorService expiryTimer = null;
+
+	/*
+	 * Class fields
+	 */
+
+	/** The maximum number of entries (zero for no limit) */
+	private final int maxEntries;
+
+	/** The maximum total weight of the entries (zero for no limit) */
+	private final long maxWeight;
+
+	/** The weigher used to compute entry weights (<code>null</code> if every entry weighs one) */
+	private final IWeigher weigher;
+
+	/** The time-to-live of entries added without one (milliseconds, or <code>null</code> for no expiry) */
+	private final Long defaultTTL;
+
+	/** The resolution of the expiry wheel (milliseconds) */
+	private final long tick;
+
+	/** Flag indicating if values are softly referenced */
+	private final boolean softValues;
+
+	/** The cache entries, in access order; also the lock for all cache state */
+	private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+
+	/** The expiry wheel; each slot holds the entries expiring during the corresponding tick (modulo the wheel size) */
+	private final List<List<Entry>> wheel = new ArrayList<List<Entry>>(WHEEL_SLOTS);
+
+	/** The last tick swept from the expiry wheel */
+	private long sweptTick = -1;
+
+	/** The task sweeping the expiry wheel, started when the first entry with a time-to-live is added */
+	private ExpiryTask expiryTask = null;
+
+	/** The queue to which soft values are added when they are reclaimed by the garbage collector */
+	private final ReferenceQueue<Object> collectedValues = new ReferenceQueue<Object>();
+
+	/** The loads in progress, keyed by cache key */
+	private final ConcurrentHashMap<Object, FutureTask<Object>> loading = new ConcurrentHashMap<Object, FutureTask<Object>>();
+
+	/** The total weight of the entries */
+	private long weight = 0;
+
+	/*
+	 * Statistics
+	 */
+
+	private long hits = 0;
+
+	private long misses = 0;
+
+	private long loads = 0;
+
+	private long loadFailures = 0;
+
+	private long totalLoadTime = 0;
+
+	private long evictions = 0;
+
+	private long expirations = 0;
+
+	private long collections = 0;
+
+	/*
+	 * Inner classes
+	 */
+
+	/**
+	 * A cache entry.
+	 */
+	private static final class Entry {
+
+		/** The key of the entry */
+		final Object key;
+
+		/** The value of the entry, or its <code>SoftValue</code> */
+		final Object value;
+
+		/** The weight of the entry */
+		final int weight;
+
+		/** The expiry time of the entry (milliseconds since the epoch, or -1 if the entry does not expire) */
+		final long expires;
+
+		/** Flag indicating if the entry has been removed from the cache */
+		boolean removed = false;
+
+		/** The index of the expiry wheel slot holding the entry, or -1 if it is not on the wheel */
+		int slot = -1;
+
+		Entry(Object key, Object value, int weight, long expires) {
+
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+			this.expires = expires;
+		}
+
+		/**
+		 * Answers the value of the entry.
+		 *
+		 * @return the value, or <code>null</code> if it was softly referenced and has been reclaimed.
+		 */
+		Object value() {
+
+			return (value instanceof SoftValue) ? ((SoftValue) value).get() : value;
+		}
+
+		/**
+		 * Answers whether the entry has expired.
+		 *
+		 * @param now
+		 *            the current time.
+		 *
+		 * @return <code>true</code> if the entry has expired, <code>false</code> otherwise.
+		 */
+		boolean isExpired(long now) {
+
+			return expires >= 0 && expires <= now;
+		}
+	}
+
+	/**
+	 * A softly referenced value, which records the entry holding it so that the entry can be removed when the value
+	 * is reclaimed.
+	 */
+	private static final class SoftValue extends SoftReference<Object> {
+
+		/** The entry holding this value; set once the entry has been created */
+		Entry entry = null;
+
+		SoftValue(Object value, ReferenceQueue<Object> queue) {
+
+			super(value, queue);
+		}
+	}
+
+	/**
+	 * Periodic task sweeping the expiry wheel of a cache. The cache is weakly referenced so that a cache that is no
+	 * longer in use can be garbage collected, at which point the task cancels itself.
+	 */
+	private static final class ExpiryTask implements Runnable {
+
+		/** The cache */
+		private final WeakReference<ObjectCache> cache;
+
+		/** The scheduled execution of this task */
+		volatile ScheduledFuture<?> future = null;
+
+		ExpiryTask(ObjectCache cache) {
+
+			this.cache = new WeakReference<ObjectCache>(cache);
+		}
+
+		/**
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+
+			ObjectCache objectCache = cache.get();
+
+			if (objectCache != null) {
+				objectCache.sweep(System.currentTimeMillis());
+			} else if (future != null) {
+				future.cancel(false);
+			}
+		}
+	}
+
+	/*
+	 * Class methods
+	 */
 
-	
-	private ConcurrentHashMap<Object, Object[]> objectCache = null;
-	
 	/** Default constructor */
 	public ObjectCache() {
-		objectCache = new ConcurrentHashMap<Object, Object[]>();
+
+		this(new ObjectCacheConfig());
 	}
-	
+
 	/**
-	 * Constructor which sets the cache to an initial size.
-	 * 
-	 * @param cacheSize - the initial size of the cache.
+	 * Constructor which sets the maximum size of the cache.
+	 *
+	 * @param cacheSize
+	 *            - the maximum number of entries in the cache (zero for no limit).
 	 */
 	public ObjectCache(int cacheSize) {
-		objectCache = new ConcurrentHashMap<Object, Object[]>(cacheSize);
+
+		this(new ObjectCacheConfig(cacheSize));
 	}
-	
-    public void put(Object key, Object val) {
-        this.put(key, val, null);
-    }
-    
-    @Override
-    public void put(Object key, Object value, Long time_to_live) {
-   	if(key == null) throw new RuntimeException("Invaild Key");
-    	time_to_live = time_to_live != null ? (time_to_live + System.currentTimeMillis()) : -1;
 
-     	objectCache.put(key, new Object[]{time_to_live, value});
+	/**
+	 * Constructor which configures the cache.
+	 *
+	 * @param config
+	 *            - the cache settings.
+	 */
+	public ObjectCache(ObjectCacheConfig config) {
+
+		maxEntries = config.getMaxEntries();
+		maxWeight = config.getMaxWeight();
+		weigher = config.getWeigher();
+		defaultTTL = config.getDefaultTTL();
+		tick = Math.max(1, config.getExpiryTick());
+		softValues = config.isSoftValues();
+
+		for (int s = 0; s < WHEEL_SLOTS; s++) {
+			wheel.add(new ArrayList<Entry>());
+		}
+	}
+
+	/**
+	 * @see fabric.core.cache.IObjectCache#put(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public void put(Object key, Object val) {
+
+		this.put(key, val, null);
+	}
+
+	/**
+	 * @see fabric.core.cache.IObjectCache#put(java.lang.Object, java.lang.Object, java.lang.Long)
+	 */
+	@Override
+	public void put(Object key, Object value, Long time_to_live) {
+
+		if (key == null) {
+			throw new RuntimeException("Invalid Key");
+		}
+
+		if (value == null) {
+			remove(key);
+			return;
+		}
+
+		time_to_live = (time_to_live != null) ? time_to_live : defaultTTL;
+		long expires = (time_to_live != null) ? System.currentTimeMillis() + time_to_live : -1;
+		int entryWeight = (weigher != null) ? weigher.weigh(key, value) : 1;
+
+		Entry entry = null;
+
+		if (softValues) {
+			SoftValue softValue = new SoftValue(value, collectedValues);
+			entry = new Entry(key, softValue, entryWeight, expires);
+			softValue.entry = entry;
+		} else {
+			entry = new Entry(key, value, entryWeight, expires);
+		}
+
+		synchronized (entries) {
+
+			purgeCollected();
+
+			Entry oldEntry = entries.put(key, entry);
+
+			if (oldEntry != null) {
+				discard(oldEntry);
+			}
+
+			weight += entryWeight;
 
-    }
+			if (expires >= 0) {
+				schedule(entry);
+			}
 
+			evict();
+		}
+	}
+
+	/**
+	 * @see fabric.core.cache.IObjectCache#clear()
+	 */
 	@Override
 	public void clear() {
-		objectCache.clear();
-		
+
+		synchronized (entries) {
+
+			for (Entry entry : entries.values()) {
+				entry.removed = true;
+			}
+
+			entries.clear();
+			weight = 0;
+
+			for (List<Entry> slot : wheel) {
+				slot.clear();
+			}
+		}
 	}
 
+	/**
+	 * @see fabric.core.cache.IObjectCache#get(java.lang.Object)
+	 */
 	@Override
 	public Object get(Object key) {
-		Object[] cacheEntry = null;
-		
-		if ( (cacheEntry = objectCache.get(key)) != null ) {
-			if ( (Long) cacheEntry[0] >=0 && ((Long) cacheEntry[0] - System.currentTimeMillis()) <= 0 ){
-				remove(key);
-				cacheEntry[1] = null;
+
+		Object value = null;
+
+		synchronized (entries) {
+
+			purgeCollected();
+
+			Entry entry = entries.get(key);
+
+			if (entry != null) {
+
+				if (entry.isExpired(System.currentTimeMillis())) {
+
+					removeEntry(entry);
+					expirations++;
+
+				} else if ((value = entry.value()) == null) {
+
+					removeEntry(entry);
+					collections++;
+
+				}
+			}
+
+			if (value != null) {
+				hits++;
+			} else {
+				misses++;
+			}
+		}
+
+		return value;
+	}
+
+	/**
+	 * @see fabric.core.cache.IObjectCache#get(java.lang.Object, fabric.core.cache.ICacheLoader)
+	 */
+	@Override
+	public Object get(final Object key, final ICacheLoader loader) throws Exception {
+
+		Object value = get(key);
+
+		if (value != null) {
+			return value;
+		}
+
+		FutureTask<Object> load = new FutureTask<Object>(new Callable<Object>() {
+
+			@Override
+			public Object call() throws Exception {
+
+				return loader.load(key);
+			}
+		});
+
+		FutureTask<Object> pendingLoad = loading.putIfAbsent(key, load);
+
+		try {
+
+			/* If no other thread is loading this key, load it now */
+			if (pendingLoad == null) {
+
+				long start = System.nanoTime();
+				load.run();
+				boolean loaded = false;
+
+				try {
+
+					value = load.get();
+					loaded = true;
+
+					if (value != null) {
+						put(key, value);
+					}
+
+				} finally {
+
+					synchronized (entries) {
+						totalLoadTime += System.nanoTime() - start;
+						if (loaded) {
+							loads++;
+						} else {
+							loadFailures++;
+						}
+					}
+
+					loading.remove(key, load);
+
+				}
+
+			} else {
+
+				value = pendingLoad.get();
+
+			}
+
+		} catch (ExecutionException e) {
+
+			Throwable cause = e.getCause();
+
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else {
+				throw e;
 			}
+
 		}
-		return (cacheEntry != null ? cacheEntry[1]:null);
+
+		return value;
 	}
 
+	/**
+	 * @see fabric.core.cache.IObjectCache#getAll()
+	 */
 	@SuppressWarnings("rawtypes")
 	@Override
 	public Map getAll() {
-		return this.getAll(objectCache.keySet());
+
+		List<Object> keys = null;
+
+		synchronized (entries) {
+			keys = new ArrayList<Object>(entries.keySet());
+		}
+
+		return this.getAll(keys);
 	}
 
-	@SuppressWarnings({ "rawtypes", "unchecked" })
+	/**
+	 * @see fabric.core.cache.IObjectCache#getAll(java.util.Collection)
+	 */
+	@SuppressWarnings({"rawtypes", "unchecked"})
 	@Override
 	public Map getAll(Collection keyCollection) {
-       Map allCacheEntriest = new HashMap();
-        for (Object key : keyCollection) {
-			allCacheEntriest.put(key, this.get(key));
-        }
-        return allCacheEntriest;
+
+		Map allCacheEntries = new HashMap();
+
+		for (Object key : keyCollection) {
+			allCacheEntries.put(key, this.get(key));
+		}
+
+		return allCacheEntries;
 	}
 
+	/**
+	 * @see fabric.core.cache.IObjectCache#getAndRemove(java.lang.Object)
+	 */
 	@Override
 	public Object getAndRemove(Object key) {
-		Object value;
-		if ((value = this.get(key)) != null){
-			objectCache.remove(key);
+
+		synchronized (entries) {
+
+			Object value = this.get(key);
+
+			if (value != null) {
+				remove(key);
+			}
+
+			return value;
 		}
-		return value;
 	}
 
+	/**
+	 * @see fabric.core.cache.IObjectCache#remove(java.lang.Object)
+	 */
 	@Override
 	public boolean remove(Object key) {
-		return (objectCache.remove(key) != null);
+
+		synchronized (entries) {
+
+			Entry entry = entries.remove(key);
+
+			if (entry != null) {
+				discard(entry);
+			}
+
+			return entry != null;
+		}
 	}
 
-	@SuppressWarnings({ "rawtypes", "unchecked" })
+	/**
+	 * @see fabric.core.cache.IObjectCache#remove(java.util.Collection)
+	 */
+	@SuppressWarnings({"rawtypes", "unchecked"})
 	@Override
 	public Map remove(Collection keyCollection) {
-		Map allCacheEntriest = new HashMap();
-        for (Object key : keyCollection) {
-        	allCacheEntriest.put(key, (objectCache.remove(key) != null ? true : false) );
-        }
-		return allCacheEntriest;
+
+		Map allCacheEntries = new HashMap();
+
+		for (Object key : keyCollection) {
+			allCacheEntries.put(key, remove(key));
+		}
+
+		return allCacheEntries;
 	}
 
+	/**
+	 * @see fabric.core.cache.IObjectCache#size()
+	 */
 	@Override
 	public int size() {
-		return objectCache.size();
+
+		synchronized (entries) {
+			purgeCollected();
+			return entries.size();
+		}
 	}
 
+	/**
+	 * @see fabric.core.cache.IObjectCache#statistics()
+	 */
+	@Override
+	public ObjectCacheStatistics statistics() {
 
+		synchronized (entries) {
+			purgeCollected();
+			return new ObjectCacheStatistics(entries.size(), weight, hits, misses, loads, loadFailures, totalLoadTime,
+					evictions, expirations, collections);
+		}
+	}
+
+	/**
+	 * Stops sweeping the expiry wheel and empties the cache. Expired entries are still removed when they are looked up
+	 * if the cache continues to be used.
+	 */
+	public void dispose() {
+
+		synchronized (entries) {
+
+			if (expiryTask != null && expiryTask.future != null) {
+				expiryTask.future.cancel(false);
+			}
+
+			expiryTask = null;
+			clear();
+		}
+	}
+
+	/**
+	 * Removes an entry from the cache. Must be called while holding the cache lock.
+	 *
+	 * @param entry
+	 *            the entry.
+	 */
+	private void removeEntry(Entry entry) {
+
+		if (!entry.removed) {
+			entries.remove(entry.key);
+			discard(entry);
+		}
+	}
+
+	/**
+	 * Marks an entry that has been removed from the entry table as removed, and unlinks it from the expiry wheel so that
+	 * its value is no longer reachable from the cache. Must be called while holding the cache lock.
+	 *
+	 * @param entry
+	 *            the entry.
+	 */
+	private void discard(Entry entry) {
+
+		entry.removed = true;
+		weight -= entry.weight;
+
+		if (entry.slot >= 0) {
+			wheel.get(entry.slot).remove(entry);
+			entry.slot = -1;
+		}
+	}
+
+	/**
+	 * Evicts the least recently used entries until the cache is within its bounds. Must be called while holding the
+	 * cache lock.
+	 */
+	private void evict() {
+
+		Iterator<Entry> eldest = entries.values().iterator();
+
+		while (((maxEntries > 0 && entries.size() > maxEntries) || (maxWeight > 0 && weight > maxWeight))
+				&& eldest.hasNext()) {
+
+			Entry entry = eldest.next();
+			eldest.remove();
+			discard(entry);
+			evictions++;
+		}
+	}
+
+	/**
+	 * Removes the entries whose soft values have been reclaimed by the garbage collector. Must be called while holding
+	 * the cache lock.
+	 */
+	private void purgeCollected() {
+
+		SoftValue collected = null;
+
+		while ((collected = (SoftValue) collectedValues.poll()) != null) {
+
+			if (collected.entry != null && !collected.entry.removed) {
+				removeEntry(collected.entry);
+				collections++;
+			}
+		}
+	}
+
+	/**
+	 * Places an entry on the expiry wheel, starting the sweep task if necessary. Must be called while holding the cache
+	 * lock.
+	 *
+	 * @param entry
+	 *            the entry.
+	 */
+	private void schedule(Entry entry) {
+
+		if (expiryTask == null) {
+
+			sweptTick = System.currentTimeMillis() / tick - 1;
+			expiryTask = new ExpiryTask(this);
+			expiryTask.future = expiryTimer().scheduleAtFixedRate(expiryTask, tick, tick, TimeUnit.MILLISECONDS);
+
+		}
+
+		/* Never place an entry in a slot that has already been swept for this revolution of the wheel */
+		long expiryTick = Math.max(entry.expires / tick, sweptTick + 1);
+		entry.slot = (int) (expiryTick % WHEEL_SLOTS);
+		wheel.get(entry.slot).add(entry);
+	}
+
+	/**
+	 * Sweeps the slots of the expiry wheel for the ticks that have elapsed since the last sweep, removing expired
+	 * entries.
+	 *
+	 * @param now
+	 *            the current time.
+	 */
+	private void sweep(long now) {
+
+		synchronized (entries) {
+
+			purgeCollected();
+
+			long currentTick = now / tick;
+			long firstTick = Math.max(sweptTick + 1, currentTick - WHEEL_SLOTS + 1);
+
+			for (long t = firstTick; t <= currentTick; t++) {
+
+				for (Iterator<Entry> slot = wheel.get((int) (t % WHEEL_SLOTS)).iterator(); slot.hasNext();) {
+
+					Entry entry = slot.next();
+
+					if (entry.removed) {
+
+						slot.remove();
+
+					} else if (entry.isExpired(now)) {
+
+						slot.remove();
+						entry.slot = -1;
+						removeEntry(entry);
+						expirations++;
+
+					}
+					/* Else the entry expires on a later revolution of the wheel */
+				}
+			}
+
+			sweptTick = Math.max(sweptTick, currentTick);
+		}
+	}
+
+	/**
+	 * Answers the timer shared by all caches to sweep their expiry wheels, creating it if necessary.
+	 *
+	 * @return the timer.
+	 */
+	private static synchronized ScheduledExecutorService expiryTimer() {
+
+		if (expiryTimer == null) {
+
+			ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable r) {
+
+					Thread thread = new Thread(r, EXPIRY_THREAD_NAME);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+			timer.setRemoveOnCancelPolicy(true);
+			expiryTimer = timer;
+		}
+
+		return expiryTimer;
+	}
 
 }
@@ -0,0 +1,528 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.io.mqtt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fabric.core.io.Message;
+import fabric.core.metrics.PipelineMetrics;
+import fabric.core.metrics.StageMetrics;
+
+/**
+ * A bounded queue of the inbound messages waiting to be delivered to the callbacks of a channel.
+ * <p>
+ * When the queue is full, arriving messages are handled according to the queue's overflow policy. For the
+ * <code>SPILL</code> policy, messages are appended to a temporary file and read back, in arrival order, as space
+ * becomes available in memory; the file is removed once it has been drained, or when the queue is closed. Each spill
+ * file is locked while in use, so that files left behind by a process that ended without closing its queues can be
+ * told apart from those of other running processes, and removed when the first queue using the directory is created.
+ * </p>
+ * <p>
+ * The queue is also used outside of this package wherever inbound messages wait for delivery (for example by the
+ * client's subscription multiplexer), so that the same overflow policies apply.
+ * </p>
+ */
+public final class ChannelQueue {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The prefix of spill file names */
+    private static final String SPILL_PREFIX = "fabric-channel-";
+
+    /** The suffix of spill file names */
+    private static final String SPILL_SUFFIX = ".spill";
+
+    /*
+     * Class static fields
+     */
+
+    /** The spill directories from which stale spill files have been removed by this process */
+    private static final Set<File> clearedDirectories = new HashSet<File>();
+
+    /*
+     * Class fields
+     */
+
+    /** The channel's inbound topic (used for logging and statistics) */
+    private final String topic;
+
+    /** The maximum number of messages held in memory */
+    private final int capacity;
+
+    /** The action taken when the queue is full */
+    private final OverflowPolicy policy;
+
+    /** The directory in which spill files are created */
+    private final File spillDirectory;
+
+    /** The logger */
+    private final Logger logger;
+
+    /** The pipeline metrics for the time that messages spend in this queue */
+    private final StageMetrics queueMetrics;
+
+    /** The messages held in memory */
+    private final ArrayDeque<Entry> queue;
+
+    /** The spill file, or <code>null</code> if no messages are currently spilled */
+    private File spillFile = null;
+
+    /** The stream used to append messages to the spill file */
+    private DataOutputStream spillOut = null;
+
+    /** The stream used to read messages back from the spill file */
+    private DataInputStream spillIn = null;
+
+    /** The number of messages in the spill file that have not yet been read back */
+    private int spillDepth = 0;
+
+    /** Flag indicating if the queue has been closed */
+    private boolean closed = false;
+
+    /** The number of messages accepted */
+    private long enqueued = 0;
+
+    /** The number of messages removed for delivery */
+    private long delivered = 0;
+
+    /** The number of messages discarded */
+    private long dropped = 0;
+
+    /** The number of messages written to the spill file */
+    private long spilled = 0;
+
+    /** The highest number of messages held in memory */
+    private int maxDepth = 0;
+
+    /** The total time that delivered messages spent queued (nanoseconds) */
+    private long totalLatency = 0;
+
+    /** The longest time that a delivered message spent queued (nanoseconds) */
+    private long maxLatency = 0;
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * A queued message and the time at which it was queued.
+     */
+    private static final class Entry {
+
+        /** The message */
+        final Message message;
+
+        /** The time at which the message was queued (from <code>System.nanoTime()</code>) */
+        final long queued;
+
+        /**
+         * Constructs a new instance.
+         *
+         * @param message
+         *            the message.
+         *
+         * @param queued
+         *            the time at which the message was queued.
+         */
+        Entry(Message message, long queued) {
+
+            this.message = message;
+            this.queued = queued;
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param topic
+     *            the channel's inbound topic.
+     *
+     * @param capacity
+     *            the maximum number of messages held in memory (values less than one are treated as one).
+     *
+     * @param policy
+     *            the action taken when the queue is full.
+     *
+     * @param spillDirectory
+     *            the directory in which spill files are created (only used by the <code>SPILL</code> policy).
+     *
+     * @param logger
+     *            the logger.
+     */
+    public ChannelQueue(String topic, int capacity, OverflowPolicy policy, String spillDirectory, Logger logger) {
+
+        this.topic = topic;
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy;
+        this.spillDirectory = (spillDirectory != null) ? new File(spillDirectory) : null;
+        this.logger = logger;
+        this.queueMetrics = PipelineMetrics.acquire(PipelineMetrics.STAGE_CHANNEL_QUEUE, PipelineMetrics.SCOPE_TOPIC,
+                topic);
+        this.queue = new ArrayDeque<Entry>(Math.min(this.capacity, 1024));
+
+        if (policy == OverflowPolicy.SPILL) {
+            clearSpillDirectory(this.spillDirectory, logger);
+        }
+    }
+
+    /**
+     * Removes the spill files left in a directory by processes that have ended, the first time that the directory is
+     * used by this process.
+     * <p>
+     * Spill files in use (by this or another process) are locked, and are left alone.
+     * </p>
+     *
+     * @param spillDirectory
+     *            the directory, or <code>null</code> for the default temporary file directory.
+     *
+     * @param logger
+     *            the logger.
+     */
+    private static synchronized void clearSpillDirectory(File spillDirectory, Logger logger) {
+
+        File directory = (spillDirectory != null) ? spillDirectory : new File(System.getProperty("java.io.tmpdir"));
+
+        if (!clearedDirectories.add(directory.getAbsoluteFile())) {
+            return;
+        }
+
+        File[] files = directory.listFiles();
+
+        for (int f = 0; files != null && f < files.length; f++) {
+
+            String name = files[f].getName();
+
+            if (name.startsWith(SPILL_PREFIX) && name.endsWith(SPILL_SUFFIX) && files[f].isFile()
+                    && isStaleSpillFile(files[f], logger) && files[f].delete()) {
+
+                logger.log(Level.FINE, "Removed stale spill file [{0}]", files[f]);
+            }
+        }
+    }
+
+    /**
+     * Answers <code>true</code> if a spill file is not locked by the queue that created it.
+     *
+     * @param file
+     *            the spill file.
+     *
+     * @param logger
+     *            the logger.
+     *
+     * @return <code>true</code> if the file is no longer in use, <code>false</code> otherwise.
+     */
+    private static boolean isStaleSpillFile(File file, Logger logger) {
+
+        boolean stale = false;
+        RandomAccessFile spill = null;
+
+        try {
+
+            spill = new RandomAccessFile(file, "rw");
+            FileLock lock = spill.getChannel().tryLock();
+
+            if (lock != null) {
+                stale = true;
+                lock.release();
+            }
+
+        } catch (OverlappingFileLockException e) {
+
+            /* Locked by this process, so still in use */
+
+        } catch (IOException e) {
+
+            logger.log(Level.FINE, "Cannot check spill file [{0}]: {1}", new Object[] {file, e.getMessage()});
+
+        } finally {
+
+            try {
+                if (spill != null) {
+                    spill.close();
+                }
+            } catch (IOException e) {
+                /* Since we're cleaning up, ignore and carry on */
+            }
+        }
+
+        return stale;
+    }
+
+    /**
+     * Adds a message to the queue, applying the overflow policy if the queue is full.
+     * <p>
+     * This method never waits for space in the queue, since it is called on the MQTT client's callback thread.
+     * </p>
+     *
+     * @param message
+     *            the message.
+     *
+     * @return <code>true</code> if the message was accepted, <code>false</code> if it was discarded.
+     */
+    public synchronized boolean offer(Message message) {
+
+        boolean accepted = true;
+        Entry entry = new Entry(message, System.nanoTime());
+
+        if (closed) {
+
+            accepted = false;
+
+        } else if (spillDepth > 0 || queue.size() >= capacity) {
+
+            switch (policy) {
+
+                case DROP_OLDEST:
+
+                    queue.poll();
+                    dropped++;
+                    queue.add(entry);
+                    break;
+
+                case SPILL:
+
+                    accepted = spill(entry);
+                    break;
+
+                default:
+
+                    /* DROP_NEWEST */
+                    accepted = false;
+                    break;
+            }
+
+            if (!accepted) {
+                dropped++;
+            }
+
+        } else {
+
+            queue.add(entry);
+
+        }
+
+        if (accepted) {
+            enqueued++;
+            maxDepth = Math.max(maxDepth, queue.size());
+        }
+
+        return accepted;
+    }
+
+    /**
+     * Removes the message at the head of the queue.
+     *
+     * @return the message, or <code>null</code> if the queue is empty.
+     */
+    public synchronized Message poll() {
+
+        Message message = null;
+        Entry entry = queue.poll();
+
+        if (entry != null) {
+
+            message = entry.message;
+
+            long latency = System.nanoTime() - entry.queued;
+            totalLatency += latency;
+            maxLatency = Math.max(maxLatency, latency);
+            queueMetrics.record(latency);
+            delivered++;
+
+            /* Refill from the spill file (if required) to keep messages in arrival order */
+            if (spillDepth > 0) {
+                unspill();
+            }
+        }
+
+        return message;
+    }
+
+    /**
+     * Answers <code>true</code> if there are no messages waiting in the queue.
+     *
+     * @return <code>true</code> if the queue is empty, <code>false</code> otherwise.
+     */
+    public synchronized boolean isEmpty() {
+
+        return queue.isEmpty();
+    }
+
+    /**
+     * Closes the queue, discarding any waiting messages and its metrics.
+     */
+    public synchronized void close() {
+
+        if (!closed) {
+
+            /* Queues are created for each channel and subscription, so their metrics must not outlive them */
+            PipelineMetrics.remove(PipelineMetrics.STAGE_CHANNEL_QUEUE, PipelineMetrics.SCOPE_TOPIC, topic);
+        }
+
+        closed = true;
+        queue.clear();
+        removeSpill();
+    }
+
+    /**
+     * Answers a snapshot of the queue's counters.
+     *
+     * @return the statistics.
+     */
+    synchronized ChannelQueueStatistics statistics() {
+
+        return new ChannelQueueStatistics(topic, policy, capacity, queue.size() + spillDepth, maxDepth, enqueued,
+                delivered, dropped, spilled, totalLatency, maxLatency);
+    }
+
+    /**
+     * Appends a message to the spill file, creating the file if required.
+     *
+     * @param entry
+     *            the queue entry.
+     *
+     * @return <code>true</code> if the message was written, <code>false</code> otherwise.
+     */
+    private boolean spill(Entry entry) {
+
+        boolean written = false;
+
+        try {
+
+            if (spillOut == null) {
+
+                spillFile = File.createTempFile(SPILL_PREFIX, SPILL_SUFFIX, spillDirectory);
+                FileOutputStream spillStream = new FileOutputStream(spillFile);
+                spillOut = new DataOutputStream(new BufferedOutputStream(spillStream));
+
+                /* Held until the stream is closed, marking the file as in use */
+                spillStream.getChannel().tryLock();
+                logger.log(Level.FINE, "Channel queue for topic [{0}] full, spilling messages to [{1}]",
+                        new Object[] {topic, spillFile});
+            }
+
+            Object messageTopic = entry.message.topic;
+            byte[] data = entry.message.data;
+
+            spillOut.writeLong(entry.queued);
+            spillOut.writeBoolean(messageTopic != null);
+            if (messageTopic != null) {
+                spillOut.writeUTF(messageTopic.toString());
+            }
+            spillOut.writeInt((data != null) ? data.length : -1);
+            if (data != null) {
+                spillOut.write(data);
+            }
+
+            spillDepth++;
+            spilled++;
+            written = true;
+
+        } catch (IOException e) {
+
+            logger.log(Level.WARNING, "Cannot spill message for topic [{0}] to disk, discarding: {1}", new Object[] {
+                    topic, e.getMessage()});
+            logger.log(Level.FINEST, "Full exception: ", e);
+
+        }
+
+        return written;
+    }
+
+    /**
+     * Moves the next message from the spill file into memory, removing the file once it has been drained.
+     */
+    private void unspill() {
+
+        try {
+
+            spillOut.flush();
+
+            if (spillIn == null) {
+                spillIn = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile)));
+            }
+
+            long queued = spillIn.readLong();
+            Message message = new Message();
+            if (spillIn.readBoolean()) {
+                message.topic = spillIn.readUTF();
+            }
+            int length = spillIn.readInt();
+            if (length >= 0) {
+                message.data = new byte[length];
+                spillIn.readFully(message.data);
+            }
+
+            queue.add(new Entry(message, queued));
+            spillDepth--;
+
+        } catch (IOException e) {
+
+            logger.log(Level.WARNING, "Cannot read spilled messages for topic [{0}], discarding {1} message(s): {2}",
+                    new Object[] {topic, spillDepth, e.getMessage()});
+            logger.log(Level.FINEST, "Full exception: ", e);
+            dropped += spillDepth;
+            spillDepth = 0;
+
+        }
+
+        if (spillDepth == 0) {
+            removeSpill();
+        }
+    }
+
+    /**
+     * Closes and deletes the spill file (if any).
+     */
+    private void removeSpill() {
+
+        try {
+            if (spillOut != null) {
+                spillOut.close();
+            }
+            if (spillIn != null) {
+                spillIn.close();
+            }
+        } catch (IOException e) {
+            /* Since we're cleaning up, ignore and carry on */
+        }
+
+        if (spillFile != null && !spillFile.delete()) {
+            logger.log(Level.FINE, "Cannot delete spill file [{0}]", spillFile);
+        }
+
+        spillOut = null;
+        spillIn = null;
+        spillFile = null;
+        spillDepth = 0;
+    }
+}
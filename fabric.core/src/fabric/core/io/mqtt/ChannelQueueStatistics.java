@@ -0,0 +1,232 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.io.mqtt;
+
+/**
+ * A snapshot of the counters for the inbound message queue of a channel.
+ */
+public class ChannelQueueStatistics {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class fields
+     */
+
+    /** The channel's inbound topic */
+    private final String topic;
+
+    /** The overflow policy of the queue */
+    private final OverflowPolicy policy;
+
+    /** The capacity of the in-memory queue */
+    private final int capacity;
+
+    /** The number of messages currently queued (in memory and on disk) */
+    private final int depth;
+
+    /** The highest number of messages queued in memory */
+    private final int maxDepth;
+
+    /** The number of messages accepted */
+    private final long enqueued;
+
+    /** The number of messages passed to the channel's callbacks */
+    private final long delivered;
+
+    /** The number of messages discarded because the queue was full */
+    private final long dropped;
+
+    /** The number of messages written to disk because the queue was full */
+    private final long spilled;
+
+    /** The total time that delivered messages spent queued (nanoseconds) */
+    private final long totalLatency;
+
+    /** The longest time that a delivered message spent queued (nanoseconds) */
+    private final long maxLatency;
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param topic
+     *            the channel's inbound topic.
+     *
+     * @param policy
+     *            the overflow policy of the queue.
+     *
+     * @param capacity
+     *            the capacity of the in-memory queue.
+     *
+     * @param depth
+     *            the number of messages currently queued.
+     *
+     * @param maxDepth
+     *            the highest number of messages queued in memory.
+     *
+     * @param enqueued
+     *            the number of messages accepted.
+     *
+     * @param delivered
+     *            the number of messages delivered.
+     *
+     * @param dropped
+     *            the number of messages discarded.
+     *
+     * @param spilled
+     *            the number of messages written to disk.
+     *
+     * @param totalLatency
+     *            the total time that delivered messages spent queued (nanoseconds).
+     *
+     * @param maxLatency
+     *            the longest time that a delivered message spent queued (nanoseconds).
+     */
+    public ChannelQueueStatistics(String topic, OverflowPolicy policy, int capacity, int depth, int maxDepth,
+            long enqueued, long delivered, long dropped, long spilled, long totalLatency, long maxLatency) {
+
+        this.topic = topic;
+        this.policy = policy;
+        this.capacity = capacity;
+        this.depth = depth;
+        this.maxDepth = maxDepth;
+        this.enqueued = enqueued;
+        this.delivered = delivered;
+        this.dropped = dropped;
+        this.spilled = spilled;
+        this.totalLatency = totalLatency;
+        this.maxLatency = maxLatency;
+    }
+
+    /**
+     * Answers the channel's inbound topic.
+     *
+     * @return the topic.
+     */
+    public String getTopic() {
+
+        return topic;
+    }
+
+    /**
+     * Answers the overflow policy of the queue.
+     *
+     * @return the policy.
+     */
+    public OverflowPolicy getPolicy() {
+
+        return policy;
+    }
+
+    /**
+     * Answers the capacity of the in-memory queue.
+     *
+     * @return the capacity.
+     */
+    public int getCapacity() {
+
+        return capacity;
+    }
+
+    /**
+     * Answers the number of messages currently queued (in memory and on disk).
+     *
+     * @return the queue depth.
+     */
+    public int getDepth() {
+
+        return depth;
+    }
+
+    /**
+     * Answers the highest number of messages queued in memory.
+     *
+     * @return the maximum queue depth.
+     */
+    public int getMaxDepth() {
+
+        return maxDepth;
+    }
+
+    /**
+     * Answers the number of messages accepted.
+     *
+     * @return the count.
+     */
+    public long getEnqueued() {
+
+        return enqueued;
+    }
+
+    /**
+     * Answers the number of messages passed to the channel's callbacks.
+     *
+     * @return the count.
+     */
+    public long getDelivered() {
+
+        return delivered;
+    }
+
+    /**
+     * Answers the number of messages discarded because the queue was full.
+     *
+     * @return the count.
+     */
+    public long getDropped() {
+
+        return dropped;
+    }
+
+    /**
+     * Answers the number of messages written to disk because the queue was full.
+     *
+     * @return the count.
+     */
+    public long getSpilled() {
+
+        return spilled;
+    }
+
+    /**
+     * Answers the mean time that delivered messages spent queued.
+     *
+     * @return the mean latency (microseconds).
+     */
+    public long getMeanLatencyMicros() {
+
+        return (delivered > 0) ? totalLatency / delivered / 1000 : 0;
+    }
+
+    /**
+     * Answers the longest time that a delivered message spent queued.
+     *
+     * @return the maximum latency (microseconds).
+     */
+    public long getMaxLatencyMicros() {
+
+        return maxLatency / 1000;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        return String.format(
+                "topic [%s], policy [%s], depth [%d/%d], max depth [%d], enqueued [%d], delivered [%d], dropped [%d], "
+                        + "spilled [%d], mean latency [%dus], max latency [%dus]", topic, policy, depth, capacity,
+                maxDepth, enqueued, delivered, dropped, spilled, getMeanLatencyMicros(), getMaxLatencyMicros());
+    }
+}
@@ -11,9 +11,15 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
 import fabric.core.io.Channel;
@@ -46,6 +52,12 @@ public class MqttChannel extends Channel {
     /** The prefix for worker thread names */
     private static final String prefix = "Fabric-Worker-";
 
+    /** The maximum number of messages delivered by a worker thread before yielding to other channels */
+    private static final int DISPATCH_BATCH = 64;
+
+    /** The time for which an idle worker thread waits before terminating (seconds) */
+    private static final long WORKER_KEEP_ALIVE = 60;
+
     /*
      * Class static fields
      */
@@ -56,6 +68,9 @@ public class MqttChannel extends Channel {
     /** Default thread factory used to create worker threads, customized by this classes thread factory */
     private static final ThreadFactory threadFactory = Executors.defaultThreadFactory();
 
+    /** The worker pool shared by all channels, created when the first channel is opened */
+    private static ExecutorService workerPool = null;
+
     /*
      * Class fields
      */
@@ -88,13 +103,16 @@ public class MqttChannel extends Channel {
     private InputTopic inputTopic = null;
 
     /** The callback to handle incoming messages (used for asynchronous I/O) */
-    private ArrayList<ICallback> callbacks = new ArrayList<ICallback>();
+    private final CopyOnWriteArrayList<ICallback> callbacks = new CopyOnWriteArrayList<ICallback>();
 
-    /** To manage worker threads */
-    private ExecutorService executor = null;
+    /** The queue of messages waiting to be delivered to the callbacks */
+    private ChannelQueue queue = null;
 
-    /** Thread factory for worker threads */
-    private ChannelThreadFactory ctf = new ChannelThreadFactory();
+    /** Delivers queued messages to the callbacks on a thread from the worker pool */
+    private final Dispatcher dispatcher = new Dispatcher();
+
+    /** Flag indicating if the dispatcher is scheduled (or running) on the worker pool */
+    private final AtomicBoolean dispatcherScheduled = new AtomicBoolean(false);
 
     /*
      * Inner classes
@@ -103,7 +121,7 @@ public class MqttChannel extends Channel {
     /**
      * Thread factory for worker threads.
      */
-    class ChannelThreadFactory implements ThreadFactory {
+    static class ChannelThreadFactory implements ThreadFactory {
 
         /**
          * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
@@ -117,6 +135,7 @@ public class MqttChannel extends Channel {
                 newThread.setName(prefix + threadCount++);
             }
 
+            newThread.setDaemon(true);
             return newThread;
         }
 
@@ -124,28 +143,13 @@ public class MqttChannel extends Channel {
 
     /**
      * Runnable class used to invoke asynchronous I/O callbacks.
+     * <p>
+     * At most one instance of the dispatcher for a channel is scheduled at any time, so messages are delivered in
+     * arrival order. Each run delivers a bounded batch of messages before rescheduling itself, allowing the worker pool
+     * to be shared fairly between channels.
+     * </p>
      */
-    private class CallbackInvoker implements Runnable {
-
-        private ICallback callback = null;
-
-        private Message message = null;
-
-        /**
-         * Constructs a new instance.
-         *
-         * @param callback
-         *            the callback to invoke.
-         *
-         * @param message
-         *            the callback argument.
-         */
-        public CallbackInvoker(ICallback callback, Message message) {
-
-            this.callback = callback;
-            this.message = message;
-
-        }
+    private class Dispatcher implements Runnable {
 
         /*
          * (non-Javadoc)
@@ -156,14 +160,43 @@ public class MqttChannel extends Channel {
 
             try {
 
-                /* Invoke the callback with the new message */
-                logger.log(Level.FINEST, "Sending message to callback [{0}]", callback.getClass().getName());
-                callback.handleMessage(message);
+                ChannelQueue activeQueue = queue;
 
-            } catch (Exception e) {
+                for (int m = 0; activeQueue != null && m < DISPATCH_BATCH; m++) {
 
-                logger.log(Level.WARNING, "Exception in callback: ", e);
+                    Message message = activeQueue.poll();
+
+                    if (message == null) {
+                        break;
+                    }
+
+                    for (ICallback callback : callbacks) {
+
+                        try {
 
+                            /* Invoke the callback with the new message */
+                            logger.log(Level.FINEST, "Sending message to callback [{0}]", callback.getClass()
+                                    .getName());
+                            callback.handleMessage(message);
+
+                        } catch (Exception e) {
+
+                            logger.log(Level.WARNING, "Exception in callback: ", e);
+
+                        }
+                    }
+                }
+
+            } finally {
+
+                dispatcherScheduled.set(false);
+
+                /* If more messages arrived (or the batch limit was reached) go round again */
+                ChannelQueue activeQueue = queue;
+
+                if (activeQueue != null && !activeQueue.isEmpty()) {
+                    scheduleDispatcher();
+                }
             }
         }
     }
@@ -224,12 +257,87 @@ public class MqttChannel extends Channel {
     @Override
     public void open() throws IOException, UnsupportedOperationException {
 
+        MqttConfig config = (MqttConfig) endPoint.getConfig();
+
+        /* Create the queue used to deliver messages to callbacks */
+        queue = new ChannelQueue((inputTopic != null) ? inputTopic.name() : null, config.getChannelQueueCapacity(),
+                config.getOverflowPolicy(), config.getSpillDirectory(), logger);
+
+        /* Make sure that the callback thread pool is running */
+        workerPool(config.getWorkerThreads(), config.getWorkerQueueCapacity());
+
         /* Subscribe to the inbound topic */
         subscribe();
 
-        /* Create the callback thread pool */
-        executor = Executors.newSingleThreadExecutor(ctf);
+    }
 
+    /**
+     * Answers the worker pool shared by all channels, creating it if required.
+     * <p>
+     * The pool starts a new thread for each dispatcher scheduled, up to its maximum size; idle threads stop after
+     * {@link #WORKER_KEEP_ALIVE} seconds. Once the maximum is reached, dispatchers wait in a bounded queue for a thread
+     * to become free. Since at most one dispatcher per channel is scheduled at any time, the queue holds at most one
+     * entry per channel. If the queue is also full the dispatcher is rejected, and the channel's messages remain queued
+     * until the next message arrives for it.
+     * </p>
+     * <p>
+     * Note that a callback that waits for a reply on another channel can starve the delivery of that reply if all of
+     * the threads are busy, so the maximum size should allow for the number of callbacks expected to wait at once.
+     * </p>
+     *
+     * @param threads
+     *            the maximum number of threads in the pool (only used when the pool is created).
+     *
+     * @param queueCapacity
+     *            the maximum number of dispatchers waiting for a thread (only used when the pool is created).
+     *
+     * @return the worker pool.
+     */
+    private static synchronized ExecutorService workerPool(int threads, int queueCapacity) {
+
+        if (workerPool == null) {
+            /* All threads are core threads, so that a new one is started in preference to queueing the dispatcher */
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads),
+                    WORKER_KEEP_ALIVE, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(Math.max(1, queueCapacity)),
+                    new ChannelThreadFactory());
+            pool.allowCoreThreadTimeOut(true);
+            workerPool = pool;
+        }
+
+        return workerPool;
+    }
+
+    /**
+     * Schedules the dispatcher on the worker pool, unless it is already scheduled.
+     */
+    private void scheduleDispatcher() {
+
+        if (dispatcherScheduled.compareAndSet(false, true)) {
+
+            try {
+
+                workerPool(0, 0).execute(dispatcher);
+
+            } catch (RejectedExecutionException e) {
+
+                dispatcherScheduled.set(false);
+                logger.log(Level.WARNING, "Cannot schedule delivery of messages for topic [{0}]: {1}", new Object[] {
+                        inputTopic, e.getMessage()});
+                logger.log(Level.FINEST, "Full exception: ", e);
+
+            }
+        }
+    }
+
+    /**
+     * Answers a snapshot of the counters for this channel's inbound message queue.
+     *
+     * @return the statistics, or <code>null</code> if the channel is not open.
+     */
+    public ChannelQueueStatistics queueStatistics() {
+
+        ChannelQueue activeQueue = queue;
+        return (activeQueue != null) ? activeQueue.statistics() : null;
     }
 
     /**
@@ -251,8 +359,10 @@ public class MqttChannel extends Channel {
             /* Since we're cleaning up, ignore and carry on */
         }
 
-        /* Finished with the thread pool */
-        executor.shutdown();
+        /* Discard any undelivered messages (the callbacks have been cancelled) */
+        if (queue != null) {
+            queue.close();
+        }
 
         /* Tell the end point that we're done */
         endPoint.dispose(this);
@@ -574,6 +684,11 @@ public class MqttChannel extends Channel {
      * This method can reject a new message (if, for example, the message buffer is full). The calling code can
      * optionally retry later.
      * </p>
+     * <p>
+     * If there are callbacks registered the message is added to this channel's bounded queue, subject to the configured
+     * overflow policy. Since this method is called on the MQTT client's callback thread it never waits for space in the
+     * queue.
+     * </p>
      *
      * @param message
      *            the new message.
@@ -583,21 +698,22 @@ public class MqttChannel extends Channel {
     protected boolean messageArrived(Message message) {
 
         boolean messageAccepted = true;
+        ChannelQueue activeQueue = queue;
 
-        synchronized (buffer) {
+        /* If there is a callback... */
+        if (callbacks.size() > 0 && activeQueue != null) {
 
-            /* If there is a callback... */
-            if (callbacks.size() > 0) {
+            /* Queue the message and make sure that it will be delivered on a thread from the pool */
+            messageAccepted = activeQueue.offer(message);
+            scheduleDispatcher();
 
-                for (ICallback callback : callbacks) {
-
-                    /* Invoke the callback on a thread from the pool */
-                    CallbackInvoker invoker = new CallbackInvoker(callback, message);
-                    executor.execute(invoker);
+            if (!messageAccepted) {
+                logger.log(Level.FINER, "Channel queue for topic [{0}] full, message discarded", inputTopic);
+            }
 
-                }
+        } else {
 
-            } else {
+            synchronized (buffer) {
 
                 if (bufferLimit != 0 && buffer.size() == bufferLimit) {
 
@@ -739,14 +855,8 @@ public class MqttChannel extends Channel {
     @Override
     public void cancelCallbacks() {
 
-        synchronized (buffer) {
-
-            ArrayList<ICallback> callbacksCopy = (ArrayList<ICallback>) callbacks.clone();
-
-            for (ICallback callback : callbacksCopy) {
-                cancelCallback(callback);
-            }
-
+        for (ICallback callback : callbacks) {
+            cancelCallback(callback);
         }
     }
 }
@@ -82,6 +82,22 @@ public class MqttConfig extends Config {
      */
     private int maxMqttsPayload = 500;
 
+    /** The maximum number of inbound messages queued in memory for each channel. */
+    private int channelQueueCapacity = Integer.parseInt(ConfigProperties.MQTT_CHANNEL_QUEUE_CAPACITY_DEFAULT);
+
+    /** The action taken when a channel's inbound queue is full. */
+    private OverflowPolicy overflowPolicy = OverflowPolicy
+            .fromName(ConfigProperties.MQTT_CHANNEL_OVERFLOW_POLICY_DEFAULT);
+
+    /** The directory in which channels spill inbound messages to disk. */
+    private String spillDirectory = System.getProperty("java.io.tmpdir");
+
+    /** The maximum number of threads in the worker pool shared by all channels. */
+    private int workerThreads = Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+
+    /** The maximum number of channels waiting for a thread from the worker pool. */
+    private int workerQueueCapacity = Integer.parseInt(ConfigProperties.MQTT_WORKER_QUEUE_CAPACITY_DEFAULT);
+
     /*
      * Class methods
      */
@@ -112,6 +128,13 @@ public class MqttConfig extends Config {
         this.mqttsEnabled = source.mqttsEnabled;
         this.maxMqttsPayload = source.maxMqttsPayload;
 
+        /* Channel settings */
+        this.channelQueueCapacity = source.channelQueueCapacity;
+        this.overflowPolicy = source.overflowPolicy;
+        this.spillDirectory = source.spillDirectory;
+        this.workerThreads = source.workerThreads;
+        this.workerQueueCapacity = source.workerQueueCapacity;
+
     }
 
     /**
@@ -145,6 +168,17 @@ public class MqttConfig extends Config {
         maxMqttsPayload = Integer.parseInt(config.getProperty("mqtts.maxPayload", "500"));
         mqttsEnabled = Boolean.parseBoolean(config.getProperty("mqtts.enabled", "false"));
 
+        /* Channel settings */
+        channelQueueCapacity = Integer.parseInt(config.getProperty(ConfigProperties.MQTT_CHANNEL_QUEUE_CAPACITY,
+                ConfigProperties.MQTT_CHANNEL_QUEUE_CAPACITY_DEFAULT));
+        overflowPolicy = OverflowPolicy.fromName(config.getProperty(ConfigProperties.MQTT_CHANNEL_OVERFLOW_POLICY,
+                ConfigProperties.MQTT_CHANNEL_OVERFLOW_POLICY_DEFAULT));
+        spillDirectory = config.getProperty(ConfigProperties.MQTT_CHANNEL_SPILL_DIRECTORY, spillDirectory);
+        workerThreads = Integer.parseInt(config.getProperty(ConfigProperties.MQTT_WORKER_THREADS, Integer
+                .toString(workerThreads)));
+        workerQueueCapacity = Integer.parseInt(config.getProperty(ConfigProperties.MQTT_WORKER_QUEUE_CAPACITY,
+                ConfigProperties.MQTT_WORKER_QUEUE_CAPACITY_DEFAULT));
+
     }
 
     /**
@@ -238,6 +272,56 @@ public class MqttConfig extends Config {
         return maxMqttsPayload;
     }
 
+    /**
+     * Gets the maximum number of inbound messages queued in memory for each channel.
+     *
+     * @return the queue capacity.
+     */
+    public int getChannelQueueCapacity() {
+
+        return channelQueueCapacity;
+    }
+
+    /**
+     * Gets the action taken when a channel's inbound queue is full.
+     *
+     * @return the overflow policy.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+
+        return overflowPolicy;
+    }
+
+    /**
+     * Gets the directory in which channels spill inbound messages to disk.
+     *
+     * @return the directory name.
+     */
+    public String getSpillDirectory() {
+
+        return spillDirectory;
+    }
+
+    /**
+     * Gets the maximum number of threads in the worker pool shared by all channels.
+     *
+     * @return the thread count.
+     */
+    public int getWorkerThreads() {
+
+        return workerThreads;
+    }
+
+    /**
+     * Gets the maximum number of channels waiting for a thread from the worker pool.
+     *
+     * @return the queue capacity.
+     */
+    public int getWorkerQueueCapacity() {
+
+        return workerQueueCapacity;
+    }
+
     /**
      * Gets the "clean start" flag (defaults to <code>true</code>).
      *
@@ -11,10 +11,8 @@ import java.io.IOException;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,8 +29,9 @@ import fabric.core.io.EndPoint;
 import fabric.core.io.InputTopic;
 import fabric.core.io.Message;
 import fabric.core.io.OutputTopic;
+import fabric.core.metrics.PipelineMetrics;
+import fabric.core.metrics.StageMetrics;
 import fabric.core.properties.Properties;
-import fabric.core.util.Split;
 
 /**
  * Class representing an I/O end point, i.e. a logical connection to a remote node, implemented using MQTT or MQTT-S as
@@ -47,6 +46,9 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
      * Class constants
      */
 
+    /** The metrics for the handling of arriving messages. */
+    private static final StageMetrics arrivalMetrics = PipelineMetrics.stage(PipelineMetrics.STAGE_MQTT_ARRIVAL);
+
     /*
      * Class fields
      */
@@ -61,10 +63,10 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
     private InetAddress datagramAddress = null;
 
     /** The set of channels open against this end point. */
-    private final HashMap<String, MqttChannel> channels = new HashMap<String, MqttChannel>();
+    private final ConcurrentHashMap<String, MqttChannel> channels = new ConcurrentHashMap<String, MqttChannel>();
 
-    /** The set of subscribed topics (one per channel). */
-    private final ArrayList<String> topics = new ArrayList<String>();
+    /** The subscribed topics (one per channel), indexed for matching against inbound message topics. */
+    private final TopicTrie<MqttChannel> topicTrie = new TopicTrie<MqttChannel>();
 
     /** The configuration settings for this end point. */
     private MqttConfig config = null;
@@ -232,18 +234,10 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
 
         MqttChannel mqttChannel = new MqttChannel(this, inputTopic, outputTopic);
 
-        /* Make a note of the new channel (if there is one) */
-        synchronized (channels) {
-            if (inputTopic != null) {
-                channels.put(inputTopic.name(), mqttChannel);
-            }
-        }
-
-        /* Make a note of the new topic */
-        synchronized (topics) {
-            if (inputTopic != null) {
-                topics.add(inputTopic.name());
-            }
+        /* Make a note of the new channel and its topic (if there is one) */
+        if (inputTopic != null) {
+            channels.put(inputTopic.name(), mqttChannel);
+            topicTrie.put(inputTopic.name(), mqttChannel);
         }
 
         /* Now we can listen for incoming messages */
@@ -318,12 +312,15 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
     @Override
     public void messageArrived(String topic, MqttMessage msg) throws Exception {
 
+        long arrivalStart = PipelineMetrics.start();
         byte[] messageBytes = msg.getPayload();
         int qos = msg.getQos();
         boolean retain = msg.isRetained();
-        String messageStr = new String(messageBytes);
 
-        logger.log(Level.FINEST, "Message received on topic [{0}]:\n{1}", new Object[] {topic, messageStr});
+        if (logger.isLoggable(Level.FINEST)) {
+            logger.log(Level.FINEST, "Message received on topic [{0}]:\n{1}", new Object[] {topic,
+                    new String(messageBytes)});
+        }
 
         boolean messageHandled = true;
 
@@ -336,35 +333,31 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
 
         /* Pass the message to the channel */
 
-        synchronized (channels) {
-
-            /* Get the channel for this topic */
-            String[] subscribedTopics = matchTopicToSubscriptions(topic);
+        /* Get the channels for this topic */
+        List<MqttChannel> subscribedChannels = matchTopicToSubscriptions(topic);
 
-            /* If there is one... */
-            if (subscribedTopics.length > 0) {
+        /* If there are any... */
+        if (subscribedChannels.size() > 0) {
 
-                /* For each topic... */
-                for (int t = 0; t < subscribedTopics.length; t++) {
+            /* For each channel... */
+            for (int c = 0; c < subscribedChannels.size(); c++) {
 
-                    MqttChannel channel = channels.get(subscribedTopics[t]);
+                /* Pass the message */
+                messageHandled = subscribedChannels.get(c).messageArrived(message);
 
-                    /* Pass the message */
-                    messageHandled = channel.messageArrived(message);
-
-                }
+            }
 
-            } else {
+        } else {
 
-                /* We can't handle the message, so drop it */
-                logger.log(Level.WARNING, "No channel open for topic [{0}], dropping message:\n{1}", new Object[] {
-                        topic, message.toString()});
-                messageHandled = false;
+            /* We can't handle the message, so drop it */
+            logger.log(Level.WARNING, "No channel open for topic [{0}], dropping message:\n{1}", new Object[] {topic,
+                    message.toString()});
+            messageHandled = false;
 
-            }
         }
 
         logger.log(Level.FINEST, "Message handled (status [{0}])", Boolean.toString(messageHandled));
+        arrivalMetrics.recordSince(arrivalStart);
 
     }
 
@@ -382,15 +375,9 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
         /* Get the name of the inbound topic */
         String inboundTopic = channel.inputTopic().name();
 
-        /* Clean up references this topic */
-        synchronized (topics) {
-            topics.remove(inboundTopic);
-        }
-
-        /* Clean up references to the channel */
-        synchronized (channels) {
-            channels.remove(inboundTopic);
-        }
+        /* Clean up references to the channel and its topic (unless they have been reused by a newer channel) */
+        topicTrie.remove(inboundTopic, channel);
+        channels.remove(inboundTopic, channel);
     }
 
     /**
@@ -581,88 +568,17 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
     }
 
     /**
-     * Checks the specified topic for a match in the list subscribed to by the channels of this end point, taking
-     * account of wildcards used in the channel topic names.
+     * Answers the channels whose topics match the specified topic, taking account of wildcards used in the channel
+     * topic names.
      *
      * @param topic
      *            the topic to check.
      *
-     * @return the list of names of the matching channel topics.
+     * @return the list of matching channels.
      */
-    private String[] matchTopicToSubscriptions(String topic) {
-
-        ArrayList<String> matchingTopics = new ArrayList<String>();
-
-        synchronized (topics) {
-
-            /* Get the list of active topics */
-            Iterator<String> topicIterator = topics.iterator();
-
-            String[] topicParts = Split.divide(topic, "/");
-            int t = 0;
-
-            /* For each registered topic... */
-            for (t = 0; topicIterator.hasNext(); t++) {
-
-                boolean isMatch = false;
-                boolean complete = false;
-                int p = 0;
-
-                String nextTopic = topicIterator.next();
-                String[] nextTopicParts = Split.divide(nextTopic, "/");
-
-                for (p = 0; p < nextTopicParts.length && !complete; p++) {
-
-                    if (nextTopicParts[p].equals("#")) {
-
-                        /* Match found */
-                        complete = true;
-                        isMatch = true;
-
-                    } else if (nextTopicParts[p].equals("+")) {
+    private List<MqttChannel> matchTopicToSubscriptions(String topic) {
 
-                        /* Still matches, skip this level */
-                        isMatch = true;
-
-                    } else if (p >= topicParts.length) {
-
-                        /* No match */
-                        complete = true;
-                        isMatch = false;
-
-                    } else if (nextTopicParts[p].equals(topicParts[p])) {
-
-                        /* Still matches */
-                        isMatch = true;
-
-                    } else {
-
-                        /* No match */
-                        complete = true;
-                        isMatch = false;
-                    }
-                }
-
-                /* If we ran out of "next topic" parts without completing the match... */
-                if (p < topicParts.length && !complete) {
-                    isMatch = false;
-                }
-
-                /* If a match was found... */
-                if (isMatch) {
-
-                    /* Save it */
-                    matchingTopics.add(nextTopic);
-
-                }
-            }
-        }
-
-        /* Convert the list of matching topics to an array */
-        String[] matchingTopicNames = new String[matchingTopics.size()];
-        matchingTopicNames = matchingTopics.toArray(matchingTopicNames);
-
-        return matchingTopicNames;
+        return topicTrie.match(topic);
     }
 
     /**
@@ -672,21 +588,28 @@ public class MqttEndPoint extends EndPoint implements MqttCallback {
      */
     private MqttChannel[] channelList() {
 
-        MqttChannel[] channelList = null;
+        return channels.values().toArray(new MqttChannel[0]);
+    }
 
-        synchronized (channels) {
+    /**
+     * Answers a snapshot of the inbound queue counters of each open channel on this end point.
+     *
+     * @return the statistics.
+     */
+    public List<ChannelQueueStatistics> channelStatistics() {
 
-            Set<Entry<String, MqttChannel>> entrySet = channels.entrySet();
-            Iterator<Entry<String, MqttChannel>> channelIterator = entrySet.iterator();
-            channelList = new MqttChannel[entrySet.size()];
+        List<ChannelQueueStatistics> statistics = new ArrayList<ChannelQueueStatistics>();
 
-            for (int c = 0; channelIterator.hasNext(); c++) {
-                channelList[c] = channelIterator.next().getValue();
-            }
+        for (MqttChannel channel : channelList()) {
+
+            ChannelQueueStatistics next = channel.queueStatistics();
 
+            if (next != null) {
+                statistics.add(next);
+            }
         }
 
-        return channelList;
+        return statistics;
     }
 
     /**
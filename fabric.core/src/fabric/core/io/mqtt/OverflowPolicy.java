@@ -0,0 +1,47 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.io.mqtt;
+
+/**
+ * The actions that can be taken when a message arrives on a channel whose inbound queue is full.
+ */
+public enum OverflowPolicy {
+
+    /** Discard the oldest queued message to make space for the new message. */
+    DROP_OLDEST,
+
+    /** Discard the new message. */
+    DROP_NEWEST,
+
+    /** Write the new message to a file, from which it is read back (in order) as the queue drains. */
+    SPILL;
+
+    /**
+     * Answers the policy corresponding to the specified name, defaulting to <code>SPILL</code> if the name is not
+     * recognized.
+     *
+     * @param name
+     *            the name of the policy (case insensitive).
+     *
+     * @return the policy.
+     */
+    public static OverflowPolicy fromName(String name) {
+
+        OverflowPolicy policy = SPILL;
+
+        if (name != null) {
+            for (OverflowPolicy next : values()) {
+                if (next.name().equalsIgnoreCase(name.trim())) {
+                    policy = next;
+                }
+            }
+        }
+
+        return policy;
+    }
+}
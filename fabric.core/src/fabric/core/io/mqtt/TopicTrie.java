@@ -0,0 +1,309 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.io.mqtt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A concurrent trie of MQTT topic filters, used to find the filters (and their associated values) matching the topic
+ * of an inbound message.
+ * <p>
+ * Filters may contain the MQTT wildcards <code>+</code> (matching exactly one topic level) and <code>#</code>
+ * (matching the parent level and any number of child levels, and only valid as the last level). Lookups are lock-free
+ * and their cost depends upon the depth of the topic, not upon the number of filters. Updates are serialized.
+ * </p>
+ *
+ * @param <V>
+ *            the type of the value associated with each filter.
+ */
+public class TopicTrie<V> {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The topic level separator */
+    private static final String SEPARATOR = "/";
+
+    /** The single-level wildcard */
+    private static final String SINGLE_LEVEL = "+";
+
+    /** The multi-level wildcard */
+    private static final String MULTI_LEVEL = "#";
+
+    /*
+     * Class fields
+     */
+
+    /** The root of the trie */
+    private final Node<V> root = new Node<V>(null);
+
+    /** Lock serializing updates to the trie */
+    private final Object updateLock = new Object();
+
+    /** The number of filters in the trie */
+    private volatile int size = 0;
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * A node in the trie, corresponding to one level of a topic filter.
+     */
+    private static final class Node<V> {
+
+        /** The parent of this node (<code>null</code> for the root) */
+        final Node<V> parent;
+
+        /** The child nodes, keyed by topic level */
+        final ConcurrentHashMap<String, Node<V>> children = new ConcurrentHashMap<String, Node<V>>();
+
+        /** The value of the filter ending at this node, or <code>null</code> if there is none */
+        volatile V value = null;
+
+        /**
+         * Constructs a new instance.
+         *
+         * @param parent
+         *            the parent node.
+         */
+        Node(Node<V> parent) {
+
+            this.parent = parent;
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Adds a topic filter to the trie, replacing any existing value for the same filter.
+     *
+     * @param filter
+     *            the topic filter.
+     *
+     * @param value
+     *            the value associated with the filter.
+     *
+     * @return the value previously associated with the filter, or <code>null</code> if there was none.
+     */
+    public V put(String filter, V value) {
+
+        if (value == null) {
+            throw new IllegalArgumentException("Null value for topic filter [" + filter + "]");
+        }
+
+        V oldValue = null;
+
+        synchronized (updateLock) {
+
+            Node<V> node = root;
+
+            /* Find (or create) the node for each level of the filter */
+            for (String level : levels(filter)) {
+
+                Node<V> child = node.children.get(level);
+
+                if (child == null) {
+                    child = new Node<V>(node);
+                    node.children.put(level, child);
+                }
+
+                node = child;
+            }
+
+            oldValue = node.value;
+            node.value = value;
+
+            if (oldValue == null) {
+                size++;
+            }
+        }
+
+        return oldValue;
+    }
+
+    /**
+     * Removes a topic filter from the trie if it is currently associated with the specified value.
+     *
+     * @param filter
+     *            the topic filter.
+     *
+     * @param value
+     *            the value expected to be associated with the filter, or <code>null</code> to remove the filter
+     *            whatever its value.
+     *
+     * @return <code>true</code> if the filter was removed, <code>false</code> otherwise.
+     */
+    public boolean remove(String filter, V value) {
+
+        boolean removed = false;
+
+        synchronized (updateLock) {
+
+            String[] levels = levels(filter);
+            Node<V> node = find(levels);
+
+            if (node != null && node.value != null && (value == null || node.value == value)) {
+
+                node.value = null;
+                size--;
+                removed = true;
+
+                /* Prune any branch that no longer leads to a filter */
+                for (int l = levels.length - 1; l >= 0 && node.value == null && node.children.isEmpty(); l--) {
+                    node.parent.children.remove(levels[l], node);
+                    node = node.parent;
+                }
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Answers the value associated with a topic filter (no wildcard matching is performed).
+     *
+     * @param filter
+     *            the topic filter.
+     *
+     * @return the value, or <code>null</code> if the filter is not in the trie.
+     */
+    public V get(String filter) {
+
+        Node<V> node = find(levels(filter));
+        return (node != null) ? node.value : null;
+    }
+
+    /**
+     * Answers the values of all of the filters matching a topic.
+     *
+     * @param topic
+     *            the topic (which should not contain wildcards).
+     *
+     * @return the matching values (empty if there are none).
+     */
+    public List<V> match(String topic) {
+
+        List<V> matches = new ArrayList<V>(2);
+        match(root, levels(topic), 0, matches);
+        return matches;
+    }
+
+    /**
+     * Answers the number of filters in the trie.
+     *
+     * @return the filter count.
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * Recursively collects the values of the filters matching the remaining levels of a topic.
+     *
+     * @param node
+     *            the node corresponding to the levels matched so far.
+     *
+     * @param levels
+     *            the levels of the topic.
+     *
+     * @param level
+     *            the index of the next level to match.
+     *
+     * @param matches
+     *            the list to which matching values are added.
+     */
+    private void match(Node<V> node, String[] levels, int level, List<V> matches) {
+
+        /* A multi-level wildcard matches this level and everything below it */
+        Node<V> multiLevel = node.children.get(MULTI_LEVEL);
+        addValue(multiLevel, matches);
+
+        /* If all of the levels of the topic have been matched... */
+        if (level == levels.length) {
+
+            addValue(node, matches);
+
+        } else {
+
+            Node<V> singleLevel = node.children.get(SINGLE_LEVEL);
+
+            if (singleLevel != null) {
+                match(singleLevel, levels, level + 1, matches);
+            }
+
+            Node<V> exact = node.children.get(levels[level]);
+
+            if (exact != null) {
+                match(exact, levels, level + 1, matches);
+            }
+        }
+    }
+
+    /**
+     * Adds the value of a node (if there is one) to a list.
+     *
+     * @param node
+     *            the node, or <code>null</code>.
+     *
+     * @param matches
+     *            the list.
+     */
+    private void addValue(Node<V> node, List<V> matches) {
+
+        if (node != null) {
+
+            V value = node.value;
+
+            if (value != null) {
+                matches.add(value);
+            }
+        }
+    }
+
+    /**
+     * Answers the node for a topic filter.
+     *
+     * @param levels
+     *            the levels of the filter.
+     *
+     * @return the node, or <code>null</code> if there is no node for the filter.
+     */
+    private Node<V> find(String[] levels) {
+
+        Node<V> node = root;
+
+        for (int l = 0; node != null && l < levels.length; l++) {
+            node = node.children.get(levels[l]);
+        }
+
+        return node;
+    }
+
+    /**
+     * Splits a topic or topic filter into its levels.
+     *
+     * @param topic
+     *            the topic.
+     *
+     * @return the levels (empty levels are retained).
+     */
+    private static String[] levels(String topic) {
+
+        return topic.split(SEPARATOR, -1);
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies (in nanoseconds) with a bounded relative error.
+ * <p>
+ * Values below 64 are counted exactly. Larger values are counted in log-linear buckets: each power of two is divided
+ * into 32 equal sub-buckets, so a value is reported with an error of at most 1/32 (about 3%), in the style of an HDR
+ * histogram. Values above about 68 seconds are counted in the highest bucket. Recording a value is a single atomic
+ * increment of its bucket, plus the updates of the total count, sum and maximum.
+ * </p>
+ */
+public class LatencyHistogram {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The number of bits used to select the sub-bucket within a power of two */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /** The number of sub-buckets per power of two */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Values below this limit are counted exactly */
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+
+    /** The largest value counted in its own bucket (about 68 seconds) */
+    private static final long MAX_TRACKABLE = (1L << 36) - 1;
+
+    /** The number of buckets */
+    private static final int BUCKETS = bucket(MAX_TRACKABLE) + 1;
+
+    /*
+     * Class fields
+     */
+
+    /** The bucket counts */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /** The number of values recorded */
+    private final AtomicLong count = new AtomicLong();
+
+    /** The sum of the values recorded */
+    private final AtomicLong sum = new AtomicLong();
+
+    /** The largest value recorded */
+    private final AtomicLong max = new AtomicLong();
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Records a value.
+     *
+     * @param value
+     *            the value (negative values are recorded as zero).
+     */
+    public void record(long value) {
+
+        long clamped = Math.max(0, value);
+
+        counts.incrementAndGet(bucket(Math.min(clamped, MAX_TRACKABLE)));
+        count.incrementAndGet();
+        sum.addAndGet(clamped);
+
+        long current = max.get();
+
+        while (clamped > current && !max.compareAndSet(current, clamped)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Answers the number of values recorded.
+     *
+     * @return the count.
+     */
+    public long count() {
+
+        return count.get();
+    }
+
+    /**
+     * Answers the mean of the values recorded.
+     *
+     * @return the mean, or 0 if no values have been recorded.
+     */
+    public double mean() {
+
+        long n = count.get();
+        return (n == 0) ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Answers the largest value recorded.
+     *
+     * @return the maximum, or 0 if no values have been recorded.
+     */
+    public long max() {
+
+        return max.get();
+    }
+
+    /**
+     * Answers the value at a percentile of the recorded values.
+     * <p>
+     * The answer is the highest value that is counted in the same bucket as the value at the percentile (or the
+     * maximum recorded value, if that is lower).
+     * </p>
+     *
+     * @param percentile
+     *            the percentile (0 to 100).
+     *
+     * @return the value, or 0 if no values have been recorded.
+     */
+    public long percentile(double percentile) {
+
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+
+        for (int b = 0; b < BUCKETS; b++) {
+            snapshot[b] = counts.get(b);
+            total += snapshot[b];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long cumulative = 0;
+        int b = 0;
+
+        for (; b < BUCKETS - 1; b++) {
+
+            cumulative += snapshot[b];
+
+            if (cumulative >= target) {
+                break;
+            }
+        }
+
+        return Math.min(highestEquivalentValue(b), max.get());
+    }
+
+    /**
+     * Discards all recorded values.
+     * <p>
+     * Values recorded concurrently with a reset may be partially discarded.
+     * </p>
+     */
+    public void reset() {
+
+        for (int b = 0; b < BUCKETS; b++) {
+            counts.set(b, 0);
+        }
+
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Answers the bucket in which a value is counted.
+     *
+     * @param value
+     *            the value (0 to <code>MAX_TRACKABLE</code>).
+     *
+     * @return the bucket index.
+     */
+    private static int bucket(long value) {
+
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+
+        /* The shift that leaves the top SUB_BUCKET_BITS + 1 bits of the value */
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Answers the highest value counted in a bucket.
+     *
+     * @param bucket
+     *            the bucket index.
+     *
+     * @return the value.
+     */
+    private static long highestEquivalentValue(int bucket) {
+
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+
+        int shift = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,503 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Latency histograms and throughput counters for each stage of the Fabric message pipeline, exposed as MBeans.
+ * <p>
+ * Metrics are kept for each stage for the whole node, and (where applicable) for each feed or neighbouring node. Each
+ * is registered with the platform MBean server under a name of the form:
+ * </p>
+ *
+ * <pre>
+ * fabric:type=Pipeline,node=&lt;node&gt;,stage=&lt;stage&gt;[,feed=&lt;feed&gt;|,neighbour=&lt;neighbour&gt;]
+ * </pre>
+ * <p>
+ * Collection is controlled through the <code>fabric:type=Pipeline,name=Control</code> MBean, so it can be switched
+ * on and off in a running process. When collection is disabled the cost of each measurement point is a flag check.
+ * </p>
+ * <p>
+ * A stage is timed as follows:
+ * </p>
+ *
+ * <pre>
+ * long start = PipelineMetrics.start();
+ * ...
+ * PipelineMetrics.stage(PipelineMetrics.STAGE_PARSE).recordSince(start);
+ * </pre>
+ */
+public class PipelineMetrics {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** Stage: handling of a message arriving from the MQTT client */
+    public static final String STAGE_MQTT_ARRIVAL = "mqttArrival";
+
+    /** Stage: wait in a channel's inbound queue */
+    public static final String STAGE_CHANNEL_QUEUE = "channelQueue";
+
+    /** Stage: parsing of a Fabric message */
+    public static final String STAGE_PARSE = "parse";
+
+    /** Stage: dispatch of a feed message to the node plug-ins */
+    public static final String STAGE_NODE_DISPATCH = "nodeDispatch";
+
+    /** Stage: dispatch of a feed message to the task plug-ins */
+    public static final String STAGE_TASK_DISPATCH = "taskDispatch";
+
+    /** Stage: dispatch of a feed message to the actor plug-ins */
+    public static final String STAGE_ACTOR_DISPATCH = "actorDispatch";
+
+    /** Stage: fan-out of a feed message to the subscribed tasks and actors */
+    public static final String STAGE_FANOUT = "fanout";
+
+    /** Stage: wait in the message forwarding queue for a destination */
+    public static final String STAGE_FORWARDING_QUEUE = "forwardingQueue";
+
+    /** Stage: publication of a message to its destination */
+    public static final String STAGE_PUBLISH = "publish";
+
+    /** Scope type for metrics kept for a feed */
+    public static final String SCOPE_FEED = "feed";
+
+    /** Scope type for metrics kept for a neighbouring node */
+    public static final String SCOPE_NEIGHBOUR = "neighbour";
+
+    /** Scope type for metrics kept for a channel topic */
+    public static final String SCOPE_TOPIC = "topic";
+
+    /** The key used for the metrics of a stage for the whole node */
+    private static final String NODE_SCOPE = "";
+
+    /** The MBean domain */
+    private static final String DOMAIN = "fabric";
+
+    private final static Logger logger = Logger.getLogger("fabric.core.metrics");
+
+    /*
+     * Class static fields
+     */
+
+    /** The stage metrics, keyed by stage name and then by scope */
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<String, StageMetrics>> stages =
+            new ConcurrentHashMap<String, ConcurrentHashMap<String, StageMetrics>>();
+
+    /** Flag indicating if metrics are being collected */
+    private static volatile boolean enabled = false;
+
+    /** The name of the node (used in the MBean names) */
+    private static String node = "local";
+
+    /** Flag indicating if the control MBean has been registered */
+    private static boolean controlRegistered = false;
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * The control MBean.
+     */
+    private static final class Control implements PipelineMetricsMBean {
+
+        /**
+         * @see fabric.core.metrics.PipelineMetricsMBean#isEnabled()
+         */
+        @Override
+        public boolean isEnabled() {
+
+            return PipelineMetrics.isEnabled();
+        }
+
+        /**
+         * @see fabric.core.metrics.PipelineMetricsMBean#setEnabled(boolean)
+         */
+        @Override
+        public void setEnabled(boolean enabled) {
+
+            PipelineMetrics.setEnabled(enabled);
+        }
+
+        /**
+         * @see fabric.core.metrics.PipelineMetricsMBean#getStageCount()
+         */
+        @Override
+        public int getStageCount() {
+
+            return allStages().size();
+        }
+
+        /**
+         * @see fabric.core.metrics.PipelineMetricsMBean#resetAll()
+         */
+        @Override
+        public void resetAll() {
+
+            for (StageMetrics stage : allStages()) {
+                stage.reset();
+            }
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Private constructor; all methods are static.
+     */
+    private PipelineMetrics() {
+    }
+
+    /**
+     * Answers <code>true</code> if metrics are being collected.
+     *
+     * @return the collection status.
+     */
+    public static boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Starts or stops the collection of metrics. When collection is started the stage metrics (and the control MBean)
+     * are registered with the platform MBean server.
+     *
+     * @param enable
+     *            <code>true</code> to collect metrics, <code>false</code> otherwise.
+     */
+    public static synchronized void setEnabled(boolean enable) {
+
+        enabled = enable;
+
+        if (enable) {
+
+            if (!controlRegistered) {
+                try {
+                    controlRegistered = register(new StandardMBean(new Control(), PipelineMetricsMBean.class), DOMAIN
+                            + ":type=Pipeline,name=Control");
+                } catch (NotCompliantMBeanException e) {
+                    /* Not possible, Control implements the MBean interface */
+                }
+            }
+
+            for (StageMetrics stage : allStages()) {
+                register(stage);
+            }
+        }
+    }
+
+    /**
+     * Sets the name of the node, re-registering any existing stage metrics under their new names.
+     *
+     * @param nodeName
+     *            the node name.
+     */
+    public static synchronized void setNode(String nodeName) {
+
+        node = nodeName;
+
+        for (StageMetrics stage : allStages()) {
+
+            if (stage.objectName != null) {
+                unregister(stage);
+                register(stage);
+            }
+        }
+    }
+
+    /**
+     * Answers the start time for a measurement.
+     *
+     * @return the current value of <code>System.nanoTime()</code>, or 0 if metrics are not being collected.
+     */
+    public static long start() {
+
+        return (enabled) ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Answers the metrics of a stage for the whole node.
+     *
+     * @param stage
+     *            the name of the stage.
+     *
+     * @return the metrics.
+     */
+    public static StageMetrics stage(String stage) {
+
+        return stage(stage, null, null);
+    }
+
+    /**
+     * Answers the metrics of a stage for a feed or neighbour, creating them if required.
+     *
+     * @param stage
+     *            the name of the stage.
+     *
+     * @param scopeType
+     *            the type of scope (for example <code>SCOPE_FEED</code> or <code>SCOPE_NEIGHBOUR</code>), or
+     *            <code>null</code> for the whole node.
+     *
+     * @param scope
+     *            the feed or neighbour, or <code>null</code> for the whole node.
+     *
+     * @return the metrics.
+     */
+    public static StageMetrics stage(String stage, String scopeType, String scope) {
+
+        ConcurrentHashMap<String, StageMetrics> stageScopes = stages.get(stage);
+
+        if (stageScopes == null) {
+            ConcurrentHashMap<String, StageMetrics> newScopes = new ConcurrentHashMap<String, StageMetrics>();
+            stageScopes = stages.putIfAbsent(stage, newScopes);
+            stageScopes = (stageScopes != null) ? stageScopes : newScopes;
+        }
+
+        String scopeKey = (scope != null) ? scope : NODE_SCOPE;
+        StageMetrics metrics = stageScopes.get(scopeKey);
+
+        if (metrics == null) {
+
+            StageMetrics newMetrics = new StageMetrics(stage, (scope != null) ? scopeType : null, scope);
+            metrics = stageScopes.putIfAbsent(scopeKey, newMetrics);
+
+            if (metrics == null) {
+
+                metrics = newMetrics;
+
+                synchronized (PipelineMetrics.class) {
+                    /* Don't register metrics that have already been removed */
+                    if (enabled && stageScopes.get(scopeKey) == metrics) {
+                        register(metrics);
+                    }
+                }
+            }
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Answers the metrics of a stage for a feed, neighbour or topic, creating them if required, on behalf of an object
+     * whose lifetime is shorter than the process. Each holder must call <code>remove()</code> when it is finished with
+     * the metrics.
+     *
+     * @param stage
+     *            the name of the stage.
+     *
+     * @param scopeType
+     *            the type of scope.
+     *
+     * @param scope
+     *            the feed, neighbour or topic.
+     *
+     * @return the metrics.
+     */
+    public static synchronized StageMetrics acquire(String stage, String scopeType, String scope) {
+
+        StageMetrics metrics = stage(stage, scopeType, scope);
+        metrics.holders++;
+        return metrics;
+    }
+
+    /**
+     * Discards the metrics of a stage for a feed, neighbour or topic that is no longer in use, unregistering them from
+     * the platform MBean server. Metrics obtained with <code>acquire()</code> are only discarded once every holder has
+     * removed them.
+     * <p>
+     * Metrics obtained before they were discarded can still be updated, but are no longer visible; a later call to
+     * <code>stage()</code> for the same scope answers new metrics.
+     * </p>
+     *
+     * @param stage
+     *            the name of the stage.
+     *
+     * @param scopeType
+     *            the type of scope, or <code>null</code> for the whole node.
+     *
+     * @param scope
+     *            the feed, neighbour or topic, or <code>null</code> for the whole node.
+     */
+    public static void remove(String stage, String scopeType, String scope) {
+
+        ConcurrentHashMap<String, StageMetrics> stageScopes = stages.get(stage);
+
+        if (stageScopes != null) {
+
+            String scopeKey = (scope != null) ? scope : NODE_SCOPE;
+
+            synchronized (PipelineMetrics.class) {
+
+                StageMetrics metrics = stageScopes.get(scopeKey);
+
+                if (metrics != null && (scope == null || String.valueOf(scopeType).equals(metrics.getScopeType()))
+                        && --metrics.holders <= 0) {
+
+                    stageScopes.remove(scopeKey, metrics);
+
+                    if (metrics.objectName != null) {
+                        unregister(metrics);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers all of the stage metrics.
+     *
+     * @return the metrics.
+     */
+    public static List<StageMetrics> allStages() {
+
+        List<StageMetrics> all = new ArrayList<StageMetrics>();
+
+        for (ConcurrentHashMap<String, StageMetrics> stageScopes : stages.values()) {
+            all.addAll(stageScopes.values());
+        }
+
+        return all;
+    }
+
+    /**
+     * Registers stage metrics with the platform MBean server (if they are not already registered). Must be called
+     * while synchronized on this class.
+     *
+     * @param stage
+     *            the stage metrics.
+     */
+    private static void register(StageMetrics stage) {
+
+        if (stage.objectName == null) {
+
+            StringBuilder name = new StringBuilder(DOMAIN);
+            name.append(":type=Pipeline,node=").append(quote(node));
+            name.append(",stage=").append(quote(stage.getStage()));
+
+            if (stage.getScope() != null) {
+                name.append(',').append(stage.getScopeType()).append('=').append(quote(stage.getScope()));
+            }
+
+            if (register(stage, name.toString())) {
+                try {
+                    stage.objectName = new ObjectName(name.toString());
+                } catch (Exception e) {
+                    /* Not possible, the name has already been used */
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers an MBean with the platform MBean server.
+     *
+     * @param mbean
+     *            the MBean.
+     *
+     * @param name
+     *            the object name.
+     *
+     * @return <code>true</code> if the MBean was registered, <code>false</code> otherwise.
+     */
+    private static boolean register(Object mbean, String name) {
+
+        boolean registered = false;
+
+        try {
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+
+            server.registerMBean(mbean, objectName);
+            registered = true;
+
+        } catch (Exception e) {
+
+            logger.log(Level.WARNING, "Cannot register MBean [{0}]: {1}", new Object[] {name, e.getMessage()});
+            logger.log(Level.FINEST, "Full exception: ", e);
+
+        }
+
+        return registered;
+    }
+
+    /**
+     * Unregisters stage metrics from the platform MBean server. Must be called while synchronized on this class.
+     *
+     * @param stage
+     *            the stage metrics.
+     */
+    private static void unregister(StageMetrics stage) {
+
+        try {
+
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(stage.objectName);
+
+        } catch (Exception e) {
+
+            logger.log(Level.FINE, "Cannot unregister MBean [{0}]: {1}", new Object[] {stage.objectName,
+                    e.getMessage()});
+
+        }
+
+        stage.objectName = null;
+    }
+
+    /**
+     * Quotes an MBean name property value if it contains reserved characters.
+     *
+     * @param value
+     *            the value.
+     *
+     * @return the value, quoted if required.
+     */
+    private static String quote(String value) {
+
+        for (int c = 0; c < value.length(); c++) {
+
+            switch (value.charAt(c)) {
+
+                case ',':
+                case '=':
+                case ':':
+                case '"':
+                case '*':
+                case '?':
+                case '\n':
+                    return ObjectName.quote(value);
+
+                default:
+                    break;
+            }
+        }
+
+        return value;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.metrics;
+
+/**
+ * Management interface used to control the collection of Fabric message pipeline metrics.
+ */
+public interface PipelineMetricsMBean {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /**
+     * Answers <code>true</code> if pipeline metrics are being collected.
+     *
+     * @return the collection status.
+     */
+    public boolean isEnabled();
+
+    /**
+     * Starts or stops the collection of pipeline metrics.
+     *
+     * @param enabled
+     *            <code>true</code> to collect metrics, <code>false</code> otherwise.
+     */
+    public void setEnabled(boolean enabled);
+
+    /**
+     * Answers the number of stage metrics (one per stage for the whole node, and per stage for each feed or neighbour).
+     *
+     * @return the count.
+     */
+    public int getStageCount();
+
+    /**
+     * Discards the metrics recorded so far for all stages.
+     */
+    public void resetAll();
+}
@@ -0,0 +1,238 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.metrics;
+
+import javax.management.ObjectName;
+
+/**
+ * The latency histogram and throughput of a stage of the Fabric message pipeline, for the whole node or for a single
+ * feed or neighbour.
+ * <p>
+ * Instances are obtained from <code>PipelineMetrics</code>, which registers them as MBeans.
+ * </p>
+ */
+public class StageMetrics implements StageMetricsMBean {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The minimum interval between throughput samples (nanoseconds) */
+    private static final long SAMPLE_INTERVAL = 1000000000L;
+
+    /*
+     * Class fields
+     */
+
+    /** The name of the stage */
+    private final String stage;
+
+    /** The type of scope (<code>feed</code> or <code>neighbour</code>), or <code>null</code> for the whole node */
+    private final String scopeType;
+
+    /** The feed or neighbour, or <code>null</code> for the whole node */
+    private final String scope;
+
+    /** The latencies recorded */
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    /** The time of the last throughput sample (from <code>System.nanoTime()</code>) */
+    private long sampleTime = System.nanoTime();
+
+    /** The count at the last throughput sample */
+    private long sampleCount = 0;
+
+    /** The throughput measured at the last sample (messages per second) */
+    private double throughput = 0;
+
+    /** The name under which this instance is registered as an MBean, or <code>null</code> if it is not registered */
+    ObjectName objectName = null;
+
+    /** The number of holders that acquired this instance and have not yet removed it (guarded by PipelineMetrics) */
+    int holders = 0;
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param stage
+     *            the name of the stage.
+     *
+     * @param scopeType
+     *            the type of scope (<code>feed</code> or <code>neighbour</code>), or <code>null</code> for the whole
+     *            node.
+     *
+     * @param scope
+     *            the feed or neighbour, or <code>null</code> for the whole node.
+     */
+    StageMetrics(String stage, String scopeType, String scope) {
+
+        this.stage = stage;
+        this.scopeType = scopeType;
+        this.scope = scope;
+    }
+
+    /**
+     * Records the latency of a message passing through the stage.
+     *
+     * @param start
+     *            the time at which the message entered the stage, as answered by <code>PipelineMetrics.start()</code>
+     *            (if this is 0 then nothing is recorded).
+     */
+    public void recordSince(long start) {
+
+        if (start != 0 && PipelineMetrics.isEnabled()) {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records the latency of a message passing through the stage.
+     *
+     * @param latency
+     *            the latency (nanoseconds).
+     */
+    public void record(long latency) {
+
+        if (PipelineMetrics.isEnabled()) {
+            histogram.record(latency);
+        }
+    }
+
+    /**
+     * Answers the type of scope to which the metrics apply.
+     *
+     * @return <code>feed</code>, <code>neighbour</code>, or <code>null</code> for the whole node.
+     */
+    public String getScopeType() {
+
+        return scopeType;
+    }
+
+    /**
+     * @see fabric.core.metrics.StageMetricsMBean#getStage()
+     */
+    @Override
+    public String getStage() {
+
+        return stage;
+    }
+
+    /**
+     * @see fabric.core.metrics.StageMetricsMBean#getScope()
+     */
+    @Override
+    public String getScope() {
+
+        return scope;
+    }
+
+    /**
+     * @see fabric.core.metrics.StageMetricsMBean#getCount()
+     */
+    @Override
+    public long getCount() {
+
+        return histogram.count();
+    }
+
+    /**
+     * @see fabric.core.metrics.StageMetricsMBean#getThroughput()
+     */
+    @Override
+    public synchronized double getThroughput() {
+
+        long now = System.nanoTime();
+        long elapsed = now - sampleTime;
+
+        if (elapsed >= SAMPLE_INTERVAL) {
+
+            long count = histogram.count();
+            throughput = Math.max(0, count - sampleCount) * 1e9 / elapsed;
+            sampleTime = now;
+            sampleCount = count;
+
+        }
+
+        return throughput;
+    }
+
+    /**
+     * @see fabric.core.metrics.StageMetricsMBean#getMeanLatency()
+     */
+    @Override
+    public double getMeanLatency() {
+
+        return histogram.mean() / 1000;
+    }
+
+    /**
+     * @see fabric.core.metrics.StageMetricsMBean#getP50Latency()
+     */
+    @Override
+    public double getP50Latency() {
+
+        return histogram.percentile(50) / 1000.0;
+    }
+
+    /**
+     * @see fabric.core.metrics.StageMetricsMBean#getP99Latency()
+     */
+    @Override
+    public double getP99Latency() {
+
+        return histogram.percentile(99) / 1000.0;
+    }
+
+    /**
+     * @see fabric.core.metrics.StageMetricsMBean#getP999Latency()
+     */
+    @Override
+    public double getP999Latency() {
+
+        return histogram.percentile(99.9) / 1000.0;
+    }
+
+    /**
+     * @see fabric.core.metrics.StageMetricsMBean#getMaxLatency()
+     */
+    @Override
+    public double getMaxLatency() {
+
+        return histogram.max() / 1000.0;
+    }
+
+    /**
+     * @see fabric.core.metrics.StageMetricsMBean#reset()
+     */
+    @Override
+    public synchronized void reset() {
+
+        histogram.reset();
+        sampleTime = System.nanoTime();
+        sampleCount = 0;
+        throughput = 0;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        return String.format("%s%s: count [%d], p50 [%.1fus], p99 [%.1fus], p999 [%.1fus], max [%.1fus]", stage,
+                (scope != null) ? " (" + scopeType + ' ' + scope + ')' : "", getCount(), getP50Latency(),
+                getP99Latency(), getP999Latency(), getMaxLatency());
+    }
+}
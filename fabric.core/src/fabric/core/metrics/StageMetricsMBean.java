@@ -0,0 +1,88 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.metrics;
+
+/**
+ * Management interface for the latency and throughput of a stage of the Fabric message pipeline.
+ * <p>
+ * Latencies are reported in microseconds.
+ * </p>
+ */
+public interface StageMetricsMBean {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /**
+     * Answers the name of the stage.
+     *
+     * @return the stage name.
+     */
+    public String getStage();
+
+    /**
+     * Answers the node, feed or neighbour to which the metrics apply.
+     *
+     * @return the scope, or <code>null</code> if the metrics apply to the whole node.
+     */
+    public String getScope();
+
+    /**
+     * Answers the number of messages handled by the stage since it was created or reset.
+     *
+     * @return the count.
+     */
+    public long getCount();
+
+    /**
+     * Answers the recent throughput of the stage, measured between successive samples taken at least a second apart.
+     *
+     * @return the throughput (messages per second).
+     */
+    public double getThroughput();
+
+    /**
+     * Answers the mean latency of the stage.
+     *
+     * @return the latency (microseconds).
+     */
+    public double getMeanLatency();
+
+    /**
+     * Answers the median latency of the stage.
+     *
+     * @return the latency (microseconds).
+     */
+    public double getP50Latency();
+
+    /**
+     * Answers the 99th percentile latency of the stage.
+     *
+     * @return the latency (microseconds).
+     */
+    public double getP99Latency();
+
+    /**
+     * Answers the 99.9th percentile latency of the stage.
+     *
+     * @return the latency (microseconds).
+     */
+    public double getP999Latency();
+
+    /**
+     * Answers the maximum latency of the stage.
+     *
+     * @return the latency (microseconds).
+     */
+    public double getMaxLatency();
+
+    /**
+     * Discards the metrics recorded so far.
+     */
+    public void reset();
+}
@@ -59,6 +59,45 @@ public class ConfigProperties {
     /** Timeout configuration property indicating how long a local Registry query will wait for a response. */
     public static final String REGISTRY_LOCAL_TIMEOUT = "registry.local.timeout";
 
+    /**
+     * The number of pooled JDBC connections to a singleton Registry (zero, the default, selects the original single
+     * shared connection).
+     */
+    public static final String REGISTRY_POOL_SIZE = "registry.pool.size";
+
+    /** Default number of pooled JDBC connections to a singleton Registry. */
+    public static final String REGISTRY_POOL_SIZE_DEFAULT = "0";
+
+    /** The number of prepared statements cached for each pooled JDBC connection. */
+    public static final String REGISTRY_POOL_STATEMENT_CACHE = "registry.pool.statementCache";
+
+    /** Default number of prepared statements cached for each pooled JDBC connection. */
+    public static final String REGISTRY_POOL_STATEMENT_CACHE_DEFAULT = "64";
+
+    /** The time to wait for a pooled JDBC connection to become available (milliseconds). */
+    public static final String REGISTRY_POOL_WAIT = "registry.pool.wait";
+
+    /** Default time to wait for a pooled JDBC connection to become available (milliseconds). */
+    public static final String REGISTRY_POOL_WAIT_DEFAULT = "30000";
+
+    /** Configuration property indicating if the results of Registry factory queries are to be cached. */
+    public static final String REGISTRY_CACHE_ENABLED = "registry.cache.enabled";
+
+    /** Default for caching the results of Registry factory queries. */
+    public static final String REGISTRY_CACHE_ENABLED_DEFAULT = "false";
+
+    /** The maximum number of cached Registry query results. */
+    public static final String REGISTRY_CACHE_SIZE = "registry.cache.size";
+
+    /** Default maximum number of cached Registry query results. */
+    public static final String REGISTRY_CACHE_SIZE_DEFAULT = "1000";
+
+    /** The time for which a cached Registry query result remains valid (milliseconds). */
+    public static final String REGISTRY_CACHE_TTL = "registry.cache.ttl";
+
+    /** Default time for which a cached Registry query result remains valid (milliseconds). */
+    public static final String REGISTRY_CACHE_TTL_DEFAULT = "60000";
+
     /**
      * Configuration property indicating the amount by which the distributed Registry timeout is reduced at each hop in
      * the flood, to avoid requests timing-out before partial results are returned.
@@ -75,6 +114,21 @@ public class ConfigProperties {
     /** Default value for indicating whether remote distributed queries should be forwarded to our neighbours */
     public static final String REGISTRY_DISTRIBUTED_FLOOD_REMOTE_QUERY_DEFAULT = "true";
 
+    /**
+     * Configuration property indicating how long the results of a distributed Registry query are cached, during which
+     * time identical queries are answered from the cache (milliseconds, <code>0</code> to disable caching).
+     */
+    public static final String REGISTRY_DISTRIBUTED_CACHE_TTL = "registry.distributed.cache.ttl";
+
+    /** Default value for how long the results of a distributed Registry query are cached. */
+    public static final String REGISTRY_DISTRIBUTED_CACHE_TTL_DEFAULT = "1000";
+
+    /**
+     * Configuration property listing the Registry factory classes (comma separated, simple or fully qualified names)
+     * whose distributed queries are never answered from the cache.
+     */
+    public static final String REGISTRY_DISTRIBUTED_CACHE_EXCLUDE = "registry.distributed.cache.exclude";
+
     /** Distributed query topic configuration property. */
     public static final String REGISTRY_COMMAND_TOPIC = "registry.distributed.command.topic";
 
@@ -87,6 +141,59 @@ public class ConfigProperties {
     /** Default value for the distributed query result topic. */
     public static final String REGISTRY_RESULT_TOPIC_DEFAULT = "$fabric/{0}/$registry/$results";
 
+    /* Routing configuration */
+
+    /** The maximum age of the in-memory topology used for dynamic routing before it is reloaded (milliseconds). */
+    public static final String ROUTING_TOPOLOGY_MAX_AGE = "fabric.routing.topologyMaxAge";
+
+    /** Default maximum age of the in-memory topology used for dynamic routing (milliseconds). */
+    public static final String ROUTING_TOPOLOGY_MAX_AGE_DEFAULT = "10000";
+
+    /* Availability configuration */
+
+    /** The period over which availability status changes are coalesced before being applied (milliseconds). */
+    public static final String AVAILABILITY_COALESCE_PERIOD = "fabric.availability.coalescePeriod";
+
+    /** Default period over which availability status changes are coalesced (milliseconds). */
+    public static final String AVAILABILITY_COALESCE_PERIOD_DEFAULT = "250";
+
+    /* Metrics configuration */
+
+    /** Flag indicating if the message pipeline latency metrics are collected (and exposed as MBeans). */
+    public static final String PIPELINE_METRICS_ENABLED = "fabric.metrics.pipeline";
+
+    /** Default for collection of the message pipeline latency metrics. */
+    public static final String PIPELINE_METRICS_ENABLED_DEFAULT = "true";
+
+    /* Client configuration */
+
+    /**
+     * Flag indicating if a client's feed subscriptions are multiplexed over a single wildcard channel, rather than each
+     * opening its own channel.
+     */
+    public static final String CLIENT_MULTIPLEX_SUBSCRIPTIONS = "fabric.client.multiplexSubscriptions";
+
+    /** Default for multiplexing client feed subscriptions. */
+    public static final String CLIENT_MULTIPLEX_SUBSCRIPTIONS_DEFAULT = "false";
+
+    /**
+     * The number of threads used to deliver multiplexed feed messages to subscriptions; <code>0</code> to deliver them
+     * on the thread reading the wildcard channel.
+     */
+    public static final String CLIENT_MULTIPLEX_THREADS = "fabric.client.multiplex.threads";
+
+    /** Default number of threads used to deliver multiplexed feed messages. */
+    public static final String CLIENT_MULTIPLEX_THREADS_DEFAULT = "0";
+
+    /**
+     * Flag indicating if multiplexed feed messages are delivered to each subscription in arrival order when they are
+     * delivered by more than one thread.
+     */
+    public static final String CLIENT_MULTIPLEX_ORDERED = "fabric.client.multiplex.ordered";
+
+    /** Default for ordered delivery of multiplexed feed messages. */
+    public static final String CLIENT_MULTIPLEX_ORDERED_DEFAULT = "true";
+
     /* Node configuration */
 
     /** Node name configuration property. */
@@ -196,6 +303,36 @@ public class ConfigProperties {
     /** The MQTT retain publication setting configuration property. */
     public static final String MQTT_RETAIN = "mqtt.retainPublication";
 
+    /** The maximum number of inbound messages queued in memory for each channel. */
+    public static final String MQTT_CHANNEL_QUEUE_CAPACITY = "mqtt.channel.queueCapacity";
+
+    /** Default maximum number of inbound messages queued in memory for each channel. */
+    public static final String MQTT_CHANNEL_QUEUE_CAPACITY_DEFAULT = "10000";
+
+    /**
+     * The action taken when a channel's inbound queue is full (<code>DROP_OLDEST</code>, <code>DROP_NEWEST</code> or
+     * <code>SPILL</code>).
+     */
+    public static final String MQTT_CHANNEL_OVERFLOW_POLICY = "mqtt.channel.overflowPolicy";
+
+    /** Default action taken when a channel's inbound queue is full. */
+    public static final String MQTT_CHANNEL_OVERFLOW_POLICY_DEFAULT = "SPILL";
+
+    /** The directory used for messages spilled to disk by channels using the <code>SPILL</code> overflow policy. */
+    public static final String MQTT_CHANNEL_SPILL_DIRECTORY = "mqtt.channel.spillDirectory";
+
+    /**
+     * The maximum number of threads in the worker pool shared by all channels to deliver inbound messages (threads are
+     * started on demand, and stop once they have been idle for a minute).
+     */
+    public static final String MQTT_WORKER_THREADS = "mqtt.workerThreads";
+
+    /** The maximum number of channels waiting for a thread when all of the threads in the worker pool are busy. */
+    public static final String MQTT_WORKER_QUEUE_CAPACITY = "mqtt.workerQueueCapacity";
+
+    /** Default maximum number of channels waiting for a thread from the worker pool. */
+    public static final String MQTT_WORKER_QUEUE_CAPACITY_DEFAULT = "1024";
+
     /*
      * Default node properties
      */
@@ -0,0 +1,568 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A hierarchical timing wheel with millisecond resolution.
+ * <p>
+ * Timeouts are held in a series of wheels, each of 64 slots: the first wheel has one slot per millisecond, the
+ * second one slot per 64 milliseconds, and so on. Scheduling and cancelling a timeout are constant-time operations.
+ * As time advances the timeouts in the slots of the coarser wheels are cascaded down into the finer wheels until they
+ * reach the first wheel, from which they fire. A bit mask of the occupied slots of each wheel allows the timer thread
+ * to sleep until the next slot that needs attention, rather than ticking every millisecond.
+ * </p>
+ * <p>
+ * Timeout tasks are run on the timer thread, and so should not block.
+ * </p>
+ */
+public class TimerWheel {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The number of bits of the tick count covered by each wheel */
+    private static final int WHEEL_BITS = 6;
+
+    /** The number of slots in each wheel */
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+
+    /** Mask for the slot index within a wheel */
+    private static final long WHEEL_MASK = WHEEL_SIZE - 1;
+
+    /** The number of wheels (covering 64^7 milliseconds, or about 139 years) */
+    private static final int WHEELS = 7;
+
+    /** Value indicating that no timeouts are pending */
+    private static final long NONE = Long.MAX_VALUE;
+
+    private final static Logger logger = Logger.getLogger("fabric.core.util");
+
+    /*
+     * Class fields
+     */
+
+    /** The slots of each wheel; each slot is the head of a list of timeouts (or <code>null</code> if it is empty) */
+    private final Timeout[][] wheels = new Timeout[WHEELS][WHEEL_SIZE];
+
+    /** The occupied slots of each wheel, one bit per slot */
+    private final long[] occupied = new long[WHEELS];
+
+    /** The next tick to be processed; all earlier ticks have been processed */
+    private long currentTick = 0;
+
+    /** The time origin of the wheel (nanoseconds) */
+    private final long origin = System.nanoTime();
+
+    /** The number of pending timeouts */
+    private int pending = 0;
+
+    /** Lock guarding the state of the wheel */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Condition used to wake the timer thread when an earlier timeout is scheduled, or the wheel is stopped */
+    private final Condition wakeUp = lock.newCondition();
+
+    /** The tick at which the timer thread is next due to wake (<code>NONE</code> if it is waiting indefinitely) */
+    private long wakeTick = NONE;
+
+    /** Flag indicating if the timer thread is running */
+    private volatile boolean isRunning = true;
+
+    /** The timer thread */
+    private final Thread timerThread;
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * A scheduled timeout.
+     */
+    public static final class Timeout {
+
+        /** The task to run when the timeout expires */
+        private final Runnable task;
+
+        /** The tick at which the timeout expires */
+        private final long deadline;
+
+        /** The wheel holding this timeout (-1 if it is not in a wheel) */
+        private int wheel = -1;
+
+        /** The slot holding this timeout */
+        private int slot = -1;
+
+        /** The previous timeout in the slot */
+        private Timeout previous = null;
+
+        /** The next timeout in the slot */
+        private Timeout next = null;
+
+        /** The state of the timeout */
+        private volatile int state = PENDING;
+
+        private static final int PENDING = 0;
+
+        private static final int CANCELLED = 1;
+
+        private static final int EXPIRED = 2;
+
+        /** The owning wheel */
+        private final TimerWheel owner;
+
+        private Timeout(TimerWheel owner, Runnable task, long deadline) {
+
+            this.owner = owner;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the timeout.
+         *
+         * @return <code>true</code> if the timeout was cancelled, <code>false</code> if it had already expired or been
+         *         cancelled.
+         */
+        public boolean cancel() {
+
+            return owner.cancel(this);
+        }
+
+        /**
+         * Answers whether the timeout has been cancelled.
+         *
+         * @return <code>true</code> if the timeout has been cancelled, <code>false</code> otherwise.
+         */
+        public boolean isCancelled() {
+
+            return state == CANCELLED;
+        }
+
+        /**
+         * Answers whether the timeout has expired.
+         *
+         * @return <code>true</code> if the timeout has expired (and its task has been, or is being, run),
+         *         <code>false</code> otherwise.
+         */
+        public boolean isExpired() {
+
+            return state == EXPIRED;
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance and starts its timer thread.
+     *
+     * @param threadName
+     *            the name of the timer thread.
+     */
+    public TimerWheel(String threadName) {
+
+        timerThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+
+                runTimer();
+            }
+        }, threadName);
+
+        timerThread.setDaemon(true);
+        timerThread.start();
+    }
+
+    /**
+     * Schedules a task to be run after a delay.
+     *
+     * @param task
+     *            the task.
+     *
+     * @param delay
+     *            the delay.
+     *
+     * @param unit
+     *            the unit of the delay.
+     *
+     * @return the timeout, which can be used to cancel the task.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+
+        if (task == null) {
+            throw new IllegalArgumentException("Null timeout task");
+        }
+
+        long delayTicks = Math.max(0, unit.toMillis(delay));
+
+        lock.lock();
+
+        try {
+
+            /* Round the deadline up so that the task never runs early */
+            long deadline = nowTick() + 1 + delayTicks;
+            Timeout timeout = new Timeout(this, task, deadline);
+            add(timeout);
+            pending++;
+
+            /* If the timer thread is not due to wake in time for this timeout, wake it now */
+            if (deadline < wakeTick) {
+                wakeUp.signal();
+            }
+
+            return timeout;
+
+        } finally {
+
+            lock.unlock();
+
+        }
+    }
+
+    /**
+     * Answers the number of pending timeouts.
+     *
+     * @return the count.
+     */
+    public int pending() {
+
+        lock.lock();
+
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the timer thread. Pending timeouts are discarded.
+     */
+    public void stop() {
+
+        isRunning = false;
+
+        lock.lock();
+
+        try {
+            wakeUp.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels a timeout.
+     *
+     * @param timeout
+     *            the timeout.
+     *
+     * @return <code>true</code> if the timeout was cancelled, <code>false</code> if it had already expired or been
+     *         cancelled.
+     */
+    private boolean cancel(Timeout timeout) {
+
+        lock.lock();
+
+        try {
+
+            if (timeout.state != Timeout.PENDING) {
+                return false;
+            }
+
+            timeout.state = Timeout.CANCELLED;
+            pending--;
+
+            if (timeout.wheel >= 0) {
+                unlink(timeout);
+            }
+
+            return true;
+
+        } finally {
+
+            lock.unlock();
+
+        }
+    }
+
+    /**
+     * The main loop of the timer thread.
+     */
+    private void runTimer() {
+
+        List<Timeout> expired = new ArrayList<Timeout>();
+
+        while (isRunning) {
+
+            lock.lock();
+
+            try {
+
+                advance(nowTick(), expired);
+
+                if (expired.isEmpty()) {
+
+                    wakeTick = nextEventTick();
+
+                    if (wakeTick == NONE) {
+                        wakeUp.await();
+                    } else {
+                        long waitNanos = TimeUnit.MILLISECONDS.toNanos(wakeTick) - (System.nanoTime() - origin);
+                        if (waitNanos > 0) {
+                            wakeUp.awaitNanos(waitNanos);
+                        }
+                    }
+
+                    wakeTick = NONE;
+                }
+
+            } catch (InterruptedException e) {
+
+                /* Not too worried about this happening */
+
+            } finally {
+
+                lock.unlock();
+
+            }
+
+            /* Run the expired tasks outside of the lock, so that they can schedule or cancel other timeouts */
+            for (Timeout timeout : expired) {
+
+                try {
+
+                    timeout.task.run();
+
+                } catch (Throwable t) {
+
+                    logger.log(Level.WARNING, "Exception running timeout task: {0}", t.getMessage());
+                    logger.log(Level.FINEST, "Full exception: ", t);
+
+                }
+            }
+
+            expired.clear();
+        }
+
+        logger.log(Level.FINE, "Timer thread [{0}] stopped", Thread.currentThread().getName());
+    }
+
+    /**
+     * Processes the ticks up to and including the specified tick, collecting the timeouts that have expired. Must be
+     * called while holding the lock.
+     *
+     * @param toTick
+     *            the last tick to process.
+     *
+     * @param expired
+     *            the list to which expired timeouts are added.
+     */
+    private void advance(long toTick, List<Timeout> expired) {
+
+        while (currentTick <= toTick) {
+
+            long eventTick = nextEventTick();
+
+            /* If nothing happens before the target tick, skip straight to it */
+            if (eventTick > toTick) {
+                currentTick = toTick + 1;
+                break;
+            }
+
+            currentTick = Math.max(currentTick, eventTick);
+
+            /* Cascade the timeouts from the coarser wheels whose slots are now current */
+            for (int w = WHEELS - 1; w > 0; w--) {
+
+                int slot = (int) ((currentTick >>> (w * WHEEL_BITS)) & WHEEL_MASK);
+                Timeout timeout = detach(w, slot);
+
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    timeout.next = null;
+                    add(timeout);
+                    timeout = next;
+                }
+            }
+
+            /* Fire the timeouts in the current slot of the finest wheel */
+            Timeout timeout = detach(0, (int) (currentTick & WHEEL_MASK));
+
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                timeout.next = null;
+                expire(timeout, expired);
+                timeout = next;
+            }
+
+            currentTick++;
+        }
+    }
+
+    /**
+     * Marks a timeout as expired and adds it to the list of timeouts to run. Must be called while holding the lock.
+     *
+     * @param timeout
+     *            the timeout.
+     *
+     * @param expired
+     *            the list of expired timeouts.
+     */
+    private void expire(Timeout timeout, List<Timeout> expired) {
+
+        timeout.state = Timeout.EXPIRED;
+        pending--;
+        expired.add(timeout);
+    }
+
+    /**
+     * Adds a timeout to the slot corresponding to its deadline. The timeout is placed in the wheel corresponding to the
+     * most significant digit (in base 64) in which its deadline differs from the current tick; a timeout that is
+     * already due is placed in the current slot of the finest wheel. Must be called while holding the lock.
+     *
+     * @param timeout
+     *            the timeout.
+     */
+    private void add(Timeout timeout) {
+
+        long deadline = Math.max(timeout.deadline, currentTick);
+
+        int wheel = 0;
+        long difference = deadline ^ currentTick;
+
+        while (wheel < WHEELS - 1 && (difference >>> ((wheel + 1) * WHEEL_BITS)) != 0) {
+            wheel++;
+        }
+
+        int slot = (int) ((deadline >>> (wheel * WHEEL_BITS)) & WHEEL_MASK);
+
+        timeout.wheel = wheel;
+        timeout.slot = slot;
+        timeout.previous = null;
+        timeout.next = wheels[wheel][slot];
+
+        if (timeout.next != null) {
+            timeout.next.previous = timeout;
+        }
+
+        wheels[wheel][slot] = timeout;
+        occupied[wheel] |= 1L << slot;
+    }
+
+    /**
+     * Removes a timeout from its slot. Must be called while holding the lock.
+     *
+     * @param timeout
+     *            the timeout.
+     */
+    private void unlink(Timeout timeout) {
+
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            wheels[timeout.wheel][timeout.slot] = timeout.next;
+        }
+
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+
+        if (wheels[timeout.wheel][timeout.slot] == null) {
+            occupied[timeout.wheel] &= ~(1L << timeout.slot);
+        }
+
+        timeout.wheel = -1;
+        timeout.previous = null;
+        timeout.next = null;
+    }
+
+    /**
+     * Removes all of the timeouts from a slot. Must be called while holding the lock.
+     *
+     * @param wheel
+     *            the wheel.
+     *
+     * @param slot
+     *            the slot.
+     *
+     * @return the first of the (linked) timeouts, or <code>null</code> if the slot was empty.
+     */
+    private Timeout detach(int wheel, int slot) {
+
+        Timeout first = wheels[wheel][slot];
+
+        if (first != null) {
+
+            wheels[wheel][slot] = null;
+            occupied[wheel] &= ~(1L << slot);
+
+            for (Timeout timeout = first; timeout != null; timeout = timeout.next) {
+                timeout.wheel = -1;
+                timeout.previous = null;
+            }
+        }
+
+        return first;
+    }
+
+    /**
+     * Answers the next tick at which a timeout fires or must be cascaded. Must be called while holding the lock.
+     *
+     * @return the tick, or <code>NONE</code> if there are no timeouts in the wheels.
+     */
+    private long nextEventTick() {
+
+        long next = NONE;
+
+        for (int w = 0; w < WHEELS; w++) {
+
+            if (occupied[w] != 0) {
+
+                int shift = w * WHEEL_BITS;
+                int currentSlot = (int) ((currentTick >>> shift) & WHEEL_MASK);
+                long candidates = occupied[w] & (-1L << currentSlot);
+
+                if (candidates != 0) {
+
+                    /* The start of the occupied slot within the current revolution of this wheel */
+                    long revolution = (shift + WHEEL_BITS < 64) ? currentTick & (-1L << (shift + WHEEL_BITS)) : 0;
+                    long slotTick = revolution + ((long) Long.numberOfTrailingZeros(candidates) << shift);
+                    next = Math.min(next, Math.max(currentTick, slotTick));
+
+                }
+            }
+        }
+
+        return next;
+    }
+
+    /**
+     * Answers the current tick (milliseconds since the origin of the wheel).
+     *
+     * @return the tick.
+     */
+    private long nowTick() {
+
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - origin);
+    }
+}
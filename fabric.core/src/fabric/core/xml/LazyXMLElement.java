@@ -0,0 +1,113 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.xml;
+
+import java.util.HashMap;
+
+/**
+ * An XML element parsed from UTF-8 bytes, whose attribute values are decoded only when its attributes are first
+ * requested.
+ */
+class LazyXMLElement extends XMLElement {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class fields
+     */
+
+    /** The buffer containing the undecoded attribute values, or <code>null</code> once they have been decoded */
+    private volatile byte[] source = null;
+
+    /** The names of the attributes */
+    private String[] attributeNames = null;
+
+    /** The start and end offsets of the undecoded attribute values */
+    private int[] attributeValues = null;
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance from the current start element token of a tokenizer.
+     *
+     * @param tokenizer
+     *            the tokenizer.
+     * @param parent
+     *            the parent node.
+     */
+    LazyXMLElement(XMLByteTokenizer tokenizer, XMLNode parent) {
+
+        super(tokenizer.getName(), parent);
+
+        int attributeCount = tokenizer.getAttributeCount();
+
+        if (attributeCount > 0) {
+
+            attributeNames = new String[attributeCount];
+            attributeValues = new int[attributeCount * 2];
+
+            for (int a = 0; a < attributeCount; a++) {
+                attributeNames[a] = tokenizer.getAttributeName(a);
+                attributeValues[a * 2] = tokenizer.getAttributeValueStart(a);
+                attributeValues[a * 2 + 1] = tokenizer.getAttributeValueEnd(a);
+            }
+
+            source = tokenizer.getBytes();
+        }
+    }
+
+    /**
+     * Decodes the attribute values, if they have not already been decoded.
+     */
+    private synchronized void decode() {
+
+        if (source != null) {
+
+            HashMap<String, String> attributes = super.getAttributes();
+
+            for (int a = 0; a < attributeNames.length; a++) {
+                attributes.put(attributeNames[a],
+                        XMLByteTokenizer.decode(source, attributeValues[a * 2], attributeValues[a * 2 + 1]));
+            }
+
+            source = null;
+            attributeNames = null;
+            attributeValues = null;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see fabric.core.xml.XMLElement#getAttributes()
+     */
+    @Override
+    public HashMap<String, String> getAttributes() {
+
+        if (source != null) {
+            decode();
+        }
+
+        return super.getAttributes();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see fabric.core.xml.XMLElement#setAttributes(java.util.HashMap)
+     */
+    @Override
+    public synchronized void setAttributes(HashMap<String, String> attributes) {
+
+        source = null;
+        attributeNames = null;
+        attributeValues = null;
+        super.setAttributes(attributes);
+    }
+}
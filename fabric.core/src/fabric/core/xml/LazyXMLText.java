@@ -0,0 +1,116 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.xml;
+
+/**
+ * An XML element's content, parsed from UTF-8 bytes and decoded only when first requested.
+ */
+class LazyXMLText extends XMLText {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class fields
+     */
+
+    /** The buffer containing the undecoded text, or <code>null</code> once the text has been decoded */
+    private volatile byte[] source = null;
+
+    /** The start offset of the undecoded text */
+    private final int start;
+
+    /** The end offset of the undecoded text */
+    private final int end;
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param source
+     *            the buffer containing the undecoded text.
+     * @param start
+     *            the start offset of the text.
+     * @param end
+     *            the end offset of the text.
+     * @param parent
+     *            the parent node.
+     */
+    LazyXMLText(byte[] source, int start, int end, XMLNode parent) {
+
+        super(null, parent);
+
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Decodes the text, if it has not already been decoded.
+     */
+    private synchronized void decode() {
+
+        if (source != null) {
+            super.setText(XMLByteTokenizer.decode(source, start, end));
+            source = null;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see fabric.core.xml.XMLText#toString()
+     */
+    @Override
+    public String toString() {
+
+        if (source != null) {
+            decode();
+        }
+
+        return super.toString();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see fabric.core.xml.XMLText#getText()
+     */
+    @Override
+    public String getText() {
+
+        if (source != null) {
+            decode();
+        }
+
+        return super.getText();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see fabric.core.xml.XMLText#setText(java.lang.String)
+     */
+    @Override
+    public synchronized void setText(String text) {
+
+        source = null;
+        super.setText(text);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see fabric.core.xml.XMLText#appendText(java.lang.String)
+     */
+    @Override
+    public synchronized void appendText(String text) {
+
+        decode();
+        super.appendText(text);
+    }
+}
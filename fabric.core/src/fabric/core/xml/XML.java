@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2006, 2010
+ * (C) Copyright IBM Corp. 2006, 2014
  *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -17,6 +17,7 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -76,7 +77,7 @@ import fabric.core.util.Formatter;
 public class XML implements IXMLTokenHandler {
 
     /** Copyright notice. */
-    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2006, 2010";
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2006, 2014";
 
     /*
      * Class constants
@@ -103,9 +104,6 @@ public class XML implements IXMLTokenHandler {
     private static final char XML_INDENT = '\t';
     // private static final char XML_INDENT = ' ';
 
-    /** Regular expression for a path to a text node. */
-    private static final String REGEXP_TEXT_NODE_PATH = "/.*/\\$(\\[.*\\]|$)";
-
     /*
      * Class fields
      */
@@ -149,24 +147,6 @@ public class XML implements IXMLTokenHandler {
     /** Used to track if a single content node is broken into multiple chunks by the parser */
     protected XMLText currentText = null;
 
-    /** Precompiled regular expression for matching a path to a text node */
-    protected static Pattern regexpTextNodePath = null;
-
-    /*
-     * Class static initialization
-     */
-
-    static {
-
-        try {
-            regexpTextNodePath = Pattern.compile(REGEXP_TEXT_NODE_PATH);
-        } catch (Exception e) {
-            /* Internal error */
-            e.printStackTrace();
-        }
-
-    }
-
     /*
      * Inner classes
      */
@@ -449,6 +429,10 @@ public class XML implements IXMLTokenHandler {
 
     /**
      * Parses the XML contained in the specified byte array.
+     * <p>
+     * Unless disabled via <code>XMLTokenizerFactory.setByteTokenizer()</code>, the bytes are treated as UTF-8 and
+     * tokenized directly, and the text and attribute values of the document are only decoded when they are requested.
+     * </p>
      *
      * @param xmlBytes
      *            the XML.
@@ -458,7 +442,14 @@ public class XML implements IXMLTokenHandler {
      */
     public void parseBytes(byte[] xmlBytes) throws Exception {
 
-        parseString(new String(xmlBytes));
+        if (XMLTokenizerFactory.isByteTokenizer()) {
+            this.xmlString = null;
+            this.xmlFile = null;
+            this.xmlStream = null;
+            parseXML(xmlBytes);
+        } else {
+            parseString(new String(xmlBytes));
+        }
 
     }
 
@@ -711,26 +702,32 @@ public class XML implements IXMLTokenHandler {
      */
     public String get(String path) {
 
-        String value = null;
+        return get(XMLPath.forPath(path));
 
-        /* If this is not an attribute path and it is not terminated properly to match a text node... */
-        if (path.indexOf('@') < 0 && !(regexpTextNodePath.matcher(path).matches())) {
-            path = path + "/$";
-        }
+    }
 
-        /* Expand the path and convert it to its internal format */
-        ArrayList<XMLPathSegment> segments = XMLPathSegment.split(path);
-        XMLPathSegment lastSegment = segments.get(segments.size() - 1);
+    /**
+     * As <code>get(<em>path</em>)</code>, but using a compiled path.
+     *
+     * @param path
+     *            the compiled path.
+     *
+     * @return the value, or <code>null</code> if it is not defined.
+     */
+    public String get(XMLPath path) {
+
+        String value = null;
 
         /* Get the node */
-        XMLNode node = findNode(segments, false);
+        XMLNode node = findNode(path.valueSegments(), false);
+        String attributeName = path.attributeName();
 
         /* If an attribute was requested... */
-        if (lastSegment.getAttributeName().length() > 0) {
+        if (attributeName.length() > 0) {
 
             /* Get it */
             XMLElement element = (XMLElement) node;
-            value = (element != null) ? (String) element.getAttributes().get(lastSegment.getAttributeName()) : null;
+            value = (element != null) ? (String) element.getAttributes().get(attributeName) : null;
 
         } else if (node != null) {
 
@@ -813,6 +810,20 @@ public class XML implements IXMLTokenHandler {
      */
     public boolean getBoolean(String path) {
 
+        return getBoolean(XMLPath.forPath(path));
+
+    }
+
+    /**
+     * As <code>getBoolean(<em>path</em>)</code>, but using a compiled path.
+     *
+     * @param path
+     *            the compiled path.
+     *
+     * @return the value, or <code>false</code> if it is not defined.
+     */
+    public boolean getBoolean(XMLPath path) {
+
         String result = get(path);
 
         if (result == null) {
@@ -874,6 +885,18 @@ public class XML implements IXMLTokenHandler {
      */
     public byte[] getBytes(String path) {
 
+        return getBytes(XMLPath.forPath(path));
+
+    }
+
+    /**
+     * As <code>getBytes(<em>path</em>)</code>, but using a compiled path.
+     *
+     * @param path
+     *            the compiled path.
+     */
+    public byte[] getBytes(XMLPath path) {
+
         /* To hold the result */
         byte[] result = null;
 
@@ -994,6 +1017,20 @@ public class XML implements IXMLTokenHandler {
      */
     public void set(String path, String value) {
 
+        set(XMLPath.forPath(path), value);
+
+    }
+
+    /**
+     * As <code>set(<em>path</em>, <em>value</em>)</code>, but using a compiled path.
+     *
+     * @param path
+     *            the compiled path.
+     * @param value
+     *            the value.
+     */
+    public void set(XMLPath path, String value) {
+
         if (isReadOnly) {
             throw new UnsupportedOperationException("XML document is read-only");
         }
@@ -1004,32 +1041,22 @@ public class XML implements IXMLTokenHandler {
 
         if (value != null) {
 
-            /*
-             * If this is not an attribute path and it is not terminated properly to match a text node...
-             */
-            if (path.indexOf('@') < 0 && !(regexpTextNodePath.matcher(path).matches())) {
-                path = path + "/$";
-            }
-
-            /* Expand the path and convert it to its internal format */
-            ArrayList<XMLPathSegment> segments = XMLPathSegment.split(path);
-            XMLPathSegment lastSegment = segments.get(segments.size() - 1);
-
             /* Get the node */
-            XMLNode node = findNode(segments, true);
+            XMLNode node = findNode(path.valueSegments(), true);
+            String attributeName = path.attributeName();
 
             /* If an attribute was specified... */
-            if (lastSegment.getAttributeName().length() > 0) {
+            if (attributeName.length() > 0) {
 
                 /* Set it */
                 XMLElement element = (XMLElement) node;
 
                 if (value != null) {
                     /* Set it */
-                    element.getAttributes().put(lastSegment.getAttributeName(), value);
+                    element.getAttributes().put(attributeName, value);
                 } else {
                     /* Remove it */
-                    element.getAttributes().remove(lastSegment.getAttributeName());
+                    element.getAttributes().remove(attributeName);
                 }
 
             } else {
@@ -1141,6 +1168,21 @@ public class XML implements IXMLTokenHandler {
 
     }
 
+    /**
+     * As <code>setBoolean(<em>path</em>, <em>value</em>)</code>, but using a compiled path.
+     *
+     * @param path
+     *            the compiled path.
+     *
+     * @param value
+     *            the new value.
+     */
+    public void setBoolean(XMLPath path, boolean value) {
+
+        set(path, Boolean.toString(value));
+
+    }
+
     /**
      * As <code>setBoolean(<em>path</em>, <em>value</em>)</code>, but with support for inserts in the path.
      *
@@ -1206,6 +1248,21 @@ public class XML implements IXMLTokenHandler {
      */
     public void setBytes(String path, byte[] value) {
 
+        setBytes(XMLPath.forPath(path), value);
+
+    }
+
+    /**
+     * As <code>setBytes(<em>path</em>, <em>value</em>)</code>, but using a compiled path.
+     *
+     * @param path
+     *            the compiled path.
+     *
+     * @param value
+     *            the new value.
+     */
+    public void setBytes(XMLPath path, byte[] value) {
+
         if (value == null) {
             throw new IllegalArgumentException("'value' parameter cannot be null");
         }
@@ -1271,15 +1328,24 @@ public class XML implements IXMLTokenHandler {
      */
     public void remove(String path) {
 
+        remove(XMLPath.forPath(path));
+
+    }
+
+    /**
+     * As <code>remove(<em>path</em>)</code>, but using a compiled path.
+     *
+     * @param path
+     *            the compiled path.
+     */
+    public void remove(XMLPath path) {
+
         if (isReadOnly) {
             throw new UnsupportedOperationException("XML document is read-only");
         }
 
-        /* Expand the path and convert it to its internal format */
-        ArrayList<XMLPathSegment> segments = XMLPathSegment.split(path);
-
         /* Get the node */
-        XMLNode targetNode = findNode(segments, true);
+        XMLNode targetNode = findNode(path.nodeSegments(), true);
 
         if (targetNode != null) {
 
@@ -1331,11 +1397,21 @@ public class XML implements IXMLTokenHandler {
      */
     public XMLNode getNode(String path) {
 
-        /* Expand the path and convert it to its internal format */
-        ArrayList<XMLPathSegment> segments = XMLPathSegment.split(path);
+        return getNode(XMLPath.forPath(path));
+
+    }
+
+    /**
+     * As <code>getNode(<em>path</em>)</code>, but using a compiled path.
+     *
+     * @param path
+     *            the compiled path of the node.
+     * @return the node.
+     */
+    public XMLNode getNode(XMLPath path) {
 
         /* Get the node */
-        XMLNode node = findNode(segments, false);
+        XMLNode node = findNode(path.nodeSegments(), false);
 
         return node;
 
@@ -1898,6 +1974,108 @@ public class XML implements IXMLTokenHandler {
 
     }
 
+    /**
+     * Parses XML held as UTF-8 bytes, building a document whose text and attribute values are decoded only when they
+     * are requested.
+     *
+     * @param xmlBytes
+     *            the XML.
+     *
+     * @throws Exception
+     *             thrown if there is a problem parsing the XML.
+     */
+    protected void parseXML(byte[] xmlBytes) throws Exception {
+
+        if (isReadOnly) {
+            throw new UnsupportedOperationException("XML document is read-only");
+        }
+
+        setDefaultPIs();
+
+        XMLByteTokenizer xmlTokenizer = new XMLByteTokenizer(xmlBytes);
+
+        for (int token = xmlTokenizer.next(); token != XMLByteTokenizer.END_DOCUMENT; token = xmlTokenizer.next()) {
+
+            switch (token) {
+
+                case XMLByteTokenizer.START_ELEMENT:
+
+                    XMLElement parentElement = (elementStack.size() > 0) ? elementStack.peek() : null;
+                    XMLElement newElement = new LazyXMLElement(xmlTokenizer, parentElement);
+
+                    if (parentElement != null) {
+                        parentElement.getSubnodes().add(newElement);
+                    } else {
+                        documentElement = newElement;
+                    }
+
+                    elementStack.push(newElement);
+                    currentText = null;
+                    break;
+
+                case XMLByteTokenizer.END_ELEMENT:
+
+                    handleEndElement(xmlTokenizer.getName());
+                    break;
+
+                case XMLByteTokenizer.TEXT:
+
+                    handleText(xmlBytes, xmlTokenizer.getTextStart(), xmlTokenizer.getTextEnd());
+                    break;
+
+                case XMLByteTokenizer.PROCESSING_INSTRUCTION:
+
+                    xmlProcessingInstruction(xmlTokenizer.getText());
+                    break;
+
+            }
+        }
+
+        setDirty(false);
+
+    }
+
+    /**
+     * Handles a run of undecoded text content, as found by the byte tokenizer.
+     *
+     * @param xmlBytes
+     *            the XML.
+     * @param start
+     *            the start offset of the text.
+     * @param end
+     *            the end offset of the text.
+     */
+    private void handleText(byte[] xmlBytes, int start, int end) {
+
+        /* Trim whitespace if required (no byte of a multi-byte UTF-8 sequence is whitespace) */
+        if (noMixedContent) {
+            while (start < end && xmlBytes[start] >= 0 && xmlBytes[start] <= ' ') {
+                start++;
+            }
+            while (end > start && xmlBytes[end - 1] >= 0 && xmlBytes[end - 1] <= ' ') {
+                end--;
+            }
+        }
+
+        /* If there is any content... */
+        if (start < end) {
+
+            if (currentText == null) {
+
+                /* Create the new content node, to be decoded when it is first used */
+                XMLElement parentElement = elementStack.peek();
+                XMLText text = new LazyXMLText(xmlBytes, start, end, parentElement);
+                parentElement.getSubnodes().add(text);
+                currentText = text;
+
+            } else {
+
+                currentText.appendText(new String(xmlBytes, start, end - start, Charset.forName("UTF-8")));
+
+            }
+        }
+    }
+
     /**
      * Set up default processing instructions.
      */
@@ -2085,7 +2263,7 @@ public class XML implements IXMLTokenHandler {
     }
 
     /**
-     * Locatte a node based upon its path.
+     * Locate a node based upon its path.
      *
      * @param path
      *            the path to the node.
@@ -2094,15 +2272,27 @@ public class XML implements IXMLTokenHandler {
      */
     protected XMLNode findNode(ArrayList<XMLPathSegment> path, boolean doCreate) {
 
+        return findNode(path.toArray(new XMLPathSegment[path.size()]), doCreate);
+    }
+
+    /**
+     * Locate a node based upon its path.
+     *
+     * @param path
+     *            the segments of the path to the node.
+     * @param doCreate
+     *            <code>true</code> if missing nodes should be created, <code>false</code> otherwise.
+     */
+    protected XMLNode findNode(XMLPathSegment[] path, boolean doCreate) {
+
         if (doCreate && documentElement == null) {
 
-            XMLPathSegment segment = path.get(0);
+            XMLPathSegment segment = path[0];
             documentElement = new XMLElement(segment.getNodeName(), null);
 
         }
 
-        ArrayList<XMLPathSegment> pathCopy = new ArrayList<XMLPathSegment>(path);
-        XMLNode resultNode = findNode(documentElement, 0, pathCopy, doCreate);
+        XMLNode resultNode = findNode(documentElement, 0, path, 0, doCreate);
 
         return resultNode;
     }
@@ -2119,6 +2309,25 @@ public class XML implements IXMLTokenHandler {
      */
     protected XMLNode findNode(XMLNode node, int index, ArrayList<XMLPathSegment> path, boolean doCreate) {
 
+        return findNode(node, index, path.toArray(new XMLPathSegment[path.size()]), 0, doCreate);
+    }
+
+    /**
+     * Locates a node based upon its path.
+     *
+     * @param node
+     *            the starting node.
+     * @param index
+     *            the index of the starting node relative to its peers.
+     * @param path
+     *            the segments of the path to the node.
+     * @param start
+     *            the segment of the path matching the starting node; earlier segments have already been matched.
+     * @param doCreate
+     *            <code>true</code> if missing nodes should be created, <code>false</code> otherwise.
+     */
+    protected XMLNode findNode(XMLNode node, int index, XMLPathSegment[] path, int start, boolean doCreate) {
+
         /* Flag indicating that the required node has been located */
         boolean nodeFound = false;
 
@@ -2126,7 +2335,7 @@ public class XML implements IXMLTokenHandler {
         XMLNode resultNode = null;
 
         /* Get the current segment */
-        XMLPathSegment currentSegment = path.get(0);
+        XMLPathSegment currentSegment = path[start];
 
         /* To hold the current element */
         XMLElement element = null;
@@ -2134,7 +2343,7 @@ public class XML implements IXMLTokenHandler {
         /* If this is the node we are looking for... */
         if (node.getNodeName().equals(currentSegment.getNodeName()) && currentSegment.getIndex() == index) {
 
-            if (path.size() == 1) {
+            if (path.length - start == 1) {
 
                 /* We've finished */
                 resultNode = node;
@@ -2144,7 +2353,7 @@ public class XML implements IXMLTokenHandler {
                 /* Look through the nodes children to match the next segment */
 
                 element = (XMLElement) node;
-                currentSegment = path.get(1);
+                currentSegment = path[start + 1];
 
                 /* If this node does not have any children, and we are looking for a text node... */
                 if (element.getSubnodes().size() == 0 && currentSegment.getNodeName().equals("$")
@@ -2181,12 +2390,9 @@ public class XML implements IXMLTokenHandler {
                             if (nodeIndex == currentSegment.getIndex()) {
 
                                 nodeFound = true;
-                                path.remove(0);
 
-                                /* If there are any path elements left... */
-                                if (path.size() > 0) {
-                                    resultNode = findNode(subnode, nodeIndex, path, doCreate);
-                                }
+                                /* Continue from the sub-node (there is always at least one path element left) */
+                                resultNode = findNode(subnode, nodeIndex, path, start + 1, doCreate);
 
                             } else {
 
@@ -2214,7 +2420,7 @@ public class XML implements IXMLTokenHandler {
             /* Create a new node */
 
             /* If it is a text node... */
-            if (path.get(1).getNodeName().equals("$")) {
+            if (path[start + 1].getNodeName().equals("$")) {
 
                 resultNode = new XMLText("", element);
                 element.getSubnodes().add(resultNode);
@@ -2223,7 +2429,7 @@ public class XML implements IXMLTokenHandler {
 
                 XMLElement newElement = new XMLElement(currentSegment.getNodeName(), element);
                 element.getSubnodes().add(newElement);
-                resultNode = findNode(node, index, path, doCreate);
+                resultNode = findNode(node, index, path, start, doCreate);
 
             }
         }
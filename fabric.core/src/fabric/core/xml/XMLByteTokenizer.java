@@ -0,0 +1,733 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.xml;
+
+import java.nio.charset.Charset;
+
+/**
+ * Pull tokenizer for XML encoded as UTF-8 bytes.
+ * <p>
+ * Unlike the tokenizers used with <code>IXMLTokenHandler</code>, this tokenizer works directly on the bytes of the
+ * document rather than on characters read from a <code>Reader</code>. Element and attribute names are decoded as they
+ * are read, but text content and attribute values are only located: their offsets in the document are recorded, and
+ * they are decoded (including entity references) only if asked for.
+ * </p>
+ * <p>
+ * The tokenizer accepts the same simplified XML as the simple XML tokenizer: processing instructions and comments in
+ * the header, elements with attributes, text content and comments in the body. As with the simple XML tokenizer, the
+ * end of the input ends the document without error, and any text following the last tag is ignored.
+ * </p>
+ */
+public class XMLByteTokenizer {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** Token type: the end of the document */
+    public static final int END_DOCUMENT = 0;
+
+    /** Token type: the start of an element */
+    public static final int START_ELEMENT = 1;
+
+    /** Token type: the end of an element */
+    public static final int END_ELEMENT = 2;
+
+    /** Token type: text content */
+    public static final int TEXT = 3;
+
+    /** Token type: a comment */
+    public static final int COMMENT = 4;
+
+    /** Token type: a processing instruction */
+    public static final int PROCESSING_INSTRUCTION = 5;
+
+    /** The character set of the document */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** The initial capacity of the attribute tables */
+    private static final int INITIAL_ATTRIBUTES = 8;
+
+    /*
+     * Class fields
+     */
+
+    /** The document */
+    private final byte[] xml;
+
+    /** The offset of the end of the document */
+    private final int end;
+
+    /** The offset of the next byte to be tokenized */
+    private int position = 0;
+
+    /** Flag indicating that the document element has started, i.e. that the header has been tokenized */
+    private boolean inBody = false;
+
+    /** Flag indicating that the current start element token is for an empty element (i.e. "<code>&lt;a/&gt;</code>") */
+    private boolean emptyElement = false;
+
+    /** The name of the current element */
+    private String name = null;
+
+    /** The start offset of the current text, comment or processing instruction */
+    private int textStart = 0;
+
+    /** The end offset of the current text, comment or processing instruction */
+    private int textEnd = 0;
+
+    /** The number of attributes of the current element */
+    private int attributeCount = 0;
+
+    /** The names of the attributes of the current element */
+    private String[] attributeNames = new String[INITIAL_ATTRIBUTES];
+
+    /** The start and end offsets of the (undecoded) values of the attributes of the current element */
+    private int[] attributeValues = new int[INITIAL_ATTRIBUTES * 2];
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param xml
+     *            the UTF-8 encoded document.
+     */
+    public XMLByteTokenizer(byte[] xml) {
+
+        this(xml, 0, xml.length);
+    }
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param xml
+     *            the buffer containing the UTF-8 encoded document.
+     *
+     * @param offset
+     *            the offset of the document in the buffer.
+     *
+     * @param length
+     *            the length of the document.
+     */
+    public XMLByteTokenizer(byte[] xml, int offset, int length) {
+
+        this.xml = xml;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    /**
+     * Answers the buffer containing the document, into which the offsets answered by this tokenizer point.
+     *
+     * @return the buffer.
+     */
+    public byte[] getBytes() {
+
+        return xml;
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @return the token type.
+     *
+     * @throws Exception
+     *             thrown if an unexpected character is found.
+     */
+    public int next() throws Exception {
+
+        int token = END_DOCUMENT;
+
+        if (emptyElement) {
+
+            /* The start of an empty element is immediately followed by its end */
+            emptyElement = false;
+            token = END_ELEMENT;
+
+        } else if (!inBody) {
+
+            int tag = skipWhiteSpace(position);
+
+            if (tag < end) {
+                if (xml[tag] != '<') {
+                    unexpectedCharacter(tag);
+                }
+                token = readMarkup(tag + 1);
+            } else {
+                position = end;
+            }
+
+        } else {
+
+            int tag = indexOf((byte) '<', position);
+
+            if (tag < 0) {
+
+                /* Text that is not followed by a tag is ignored */
+                position = end;
+
+            } else if (tag > position) {
+
+                textStart = position;
+                textEnd = tag;
+                position = tag;
+                token = TEXT;
+
+            } else {
+
+                token = readMarkup(tag + 1);
+
+            }
+        }
+
+        return token;
+    }
+
+    /**
+     * Answers the name of the current element (for start and end element tokens).
+     *
+     * @return the name.
+     */
+    public String getName() {
+
+        return name;
+    }
+
+    /**
+     * Answers the number of attributes of the current element (for start element tokens).
+     *
+     * @return the number of attributes.
+     */
+    public int getAttributeCount() {
+
+        return attributeCount;
+    }
+
+    /**
+     * Answers the name of an attribute of the current element.
+     *
+     * @param index
+     *            the index of the attribute.
+     *
+     * @return the name.
+     */
+    public String getAttributeName(int index) {
+
+        return attributeNames[index];
+    }
+
+    /**
+     * Answers the start offset of the undecoded value of an attribute of the current element.
+     *
+     * @param index
+     *            the index of the attribute.
+     *
+     * @return the offset.
+     */
+    public int getAttributeValueStart(int index) {
+
+        return attributeValues[index * 2];
+    }
+
+    /**
+     * Answers the end offset of the undecoded value of an attribute of the current element.
+     *
+     * @param index
+     *            the index of the attribute.
+     *
+     * @return the offset.
+     */
+    public int getAttributeValueEnd(int index) {
+
+        return attributeValues[index * 2 + 1];
+    }
+
+    /**
+     * Answers the decoded value of an attribute of the current element.
+     *
+     * @param index
+     *            the index of the attribute.
+     *
+     * @return the value.
+     */
+    public String getAttributeValue(int index) {
+
+        return decode(xml, getAttributeValueStart(index), getAttributeValueEnd(index));
+    }
+
+    /**
+     * Answers the start offset of the current undecoded text (for text, comment and processing instruction tokens).
+     *
+     * @return the offset.
+     */
+    public int getTextStart() {
+
+        return textStart;
+    }
+
+    /**
+     * Answers the end offset of the current undecoded text (for text, comment and processing instruction tokens).
+     *
+     * @return the offset.
+     */
+    public int getTextEnd() {
+
+        return textEnd;
+    }
+
+    /**
+     * Answers the current text (for text, comment and processing instruction tokens). The text of a text token is
+     * decoded, the text of comments and processing instructions is answered as written.
+     *
+     * @return the text.
+     */
+    public String getText() {
+
+        return decode(xml, textStart, textEnd);
+    }
+
+    /**
+     * Decodes a run of UTF-8 encoded text, replacing any entity references with the characters they represent.
+     *
+     * @param xml
+     *            the buffer containing the text.
+     *
+     * @param start
+     *            the start offset of the text.
+     *
+     * @param end
+     *            the end offset of the text.
+     *
+     * @return the decoded text.
+     */
+    public static String decode(byte[] xml, int start, int end) {
+
+        String text = new String(xml, start, end - start, UTF_8);
+
+        for (int b = start; b < end; b++) {
+            if (xml[b] == '&') {
+                text = XML.decodeEntityRefs(text);
+                break;
+            }
+        }
+
+        return text;
+    }
+
+    /**
+     * Reads a tag.
+     *
+     * @param start
+     *            the offset of the byte following the "<code>&lt;</code>".
+     *
+     * @return the token type.
+     *
+     * @throws Exception
+     *             thrown if an unexpected character is found.
+     */
+    private int readMarkup(int start) throws Exception {
+
+        int token = END_DOCUMENT;
+        int p = skipWhiteSpace(start);
+
+        if (p >= end) {
+
+            position = end;
+
+        } else if (xml[p] == '?' && !inBody) {
+
+            token = readProcessingInstruction(p + 1);
+
+        } else if (xml[p] == '!') {
+
+            token = readComment(p + 1);
+
+        } else if (xml[p] == '/') {
+
+            token = readEndTag(p + 1);
+
+        } else if (isNameStart(xml[p])) {
+
+            token = readStartTag(p);
+
+        } else {
+
+            unexpectedCharacter(p);
+
+        }
+
+        return token;
+    }
+
+    /**
+     * Reads a processing instruction.
+     *
+     * @param start
+     *            the offset of the byte following the "<code>&lt;?</code>".
+     *
+     * @return the token type.
+     */
+    private int readProcessingInstruction(int start) {
+
+        int token = END_DOCUMENT;
+        int p = start;
+
+        while (p + 1 < end && (xml[p] != '?' || xml[p + 1] != '>')) {
+            p++;
+        }
+
+        if (p + 1 < end) {
+
+            /* Trim the instruction */
+            textStart = start;
+            textEnd = p;
+            while (textStart < textEnd && xml[textStart] >= 0 && xml[textStart] <= ' ') {
+                textStart++;
+            }
+            while (textEnd > textStart && xml[textEnd - 1] >= 0 && xml[textEnd - 1] <= ' ') {
+                textEnd--;
+            }
+
+            position = p + 2;
+            token = PROCESSING_INSTRUCTION;
+
+        } else {
+
+            position = end;
+
+        }
+
+        return token;
+    }
+
+    /**
+     * Reads a comment.
+     *
+     * @param start
+     *            the offset of the byte following the "<code>&lt;!</code>".
+     *
+     * @return the token type.
+     *
+     * @throws Exception
+     *             thrown if the comment is malformed.
+     */
+    private int readComment(int start) throws Exception {
+
+        int token = END_DOCUMENT;
+
+        for (int p = start; p < start + 2; p++) {
+            if (p >= end) {
+                position = end;
+                return token;
+            } else if (xml[p] != '-') {
+                unexpectedCharacter(p);
+            }
+        }
+
+        int p = start + 2;
+
+        while (p + 2 < end && (xml[p] != '-' || xml[p + 1] != '-' || xml[p + 2] != '>')) {
+            p++;
+        }
+
+        if (p + 2 < end) {
+            textStart = start + 2;
+            textEnd = p;
+            position = p + 3;
+            token = COMMENT;
+        } else {
+            position = end;
+        }
+
+        return token;
+    }
+
+    /**
+     * Reads a start tag, including its attributes.
+     *
+     * @param start
+     *            the offset of the first byte of the element name.
+     *
+     * @return the token type.
+     *
+     * @throws Exception
+     *             thrown if an unexpected character is found.
+     */
+    private int readStartTag(int start) throws Exception {
+
+        int p = readName(start);
+        name = new String(xml, start, p - start, UTF_8);
+        attributeCount = 0;
+
+        while (true) {
+
+            p = skipWhiteSpace(p);
+
+            if (p >= end) {
+
+                position = end;
+                return END_DOCUMENT;
+
+            } else if (xml[p] == '>') {
+
+                position = p + 1;
+                break;
+
+            } else if (xml[p] == '/') {
+
+                p = skipWhiteSpace(p + 1);
+                if (p >= end) {
+                    position = end;
+                    return END_DOCUMENT;
+                } else if (xml[p] != '>') {
+                    unexpectedCharacter(p);
+                }
+                position = p + 1;
+                emptyElement = true;
+                break;
+
+            } else if (isNameStart(xml[p])) {
+
+                p = readAttribute(p);
+                if (p >= end) {
+                    position = end;
+                    return END_DOCUMENT;
+                }
+
+            } else {
+
+                unexpectedCharacter(p);
+
+            }
+        }
+
+        inBody = true;
+        return START_ELEMENT;
+    }
+
+    /**
+     * Reads an attribute, adding it to the attributes of the current element.
+     *
+     * @param start
+     *            the offset of the first byte of the attribute name.
+     *
+     * @return the offset of the byte following the attribute value, or the end of the document if the attribute is
+     *         incomplete.
+     *
+     * @throws Exception
+     *             thrown if an unexpected character is found.
+     */
+    private int readAttribute(int start) throws Exception {
+
+        int p = readName(start);
+        String attributeName = new String(xml, start, p - start, UTF_8);
+
+        p = skipWhiteSpace(p);
+        if (p >= end) {
+            return end;
+        } else if (xml[p] != '=') {
+            unexpectedCharacter(p);
+        }
+
+        p = skipWhiteSpace(p + 1);
+        if (p >= end) {
+            return end;
+        } else if (xml[p] != '"' && xml[p] != '\'') {
+            unexpectedCharacter(p);
+        }
+
+        int valueEnd = indexOf(xml[p], p + 1);
+        if (valueEnd < 0) {
+            return end;
+        }
+
+        if (attributeCount == attributeNames.length) {
+            String[] names = new String[attributeCount * 2];
+            System.arraycopy(attributeNames, 0, names, 0, attributeCount);
+            attributeNames = names;
+            int[] values = new int[attributeCount * 4];
+            System.arraycopy(attributeValues, 0, values, 0, attributeCount * 2);
+            attributeValues = values;
+        }
+
+        attributeNames[attributeCount] = attributeName;
+        attributeValues[attributeCount * 2] = p + 1;
+        attributeValues[attributeCount * 2 + 1] = valueEnd;
+        attributeCount++;
+
+        return valueEnd + 1;
+    }
+
+    /**
+     * Reads an end tag.
+     *
+     * @param start
+     *            the offset of the byte following the "<code>&lt;/</code>".
+     *
+     * @return the token type.
+     *
+     * @throws Exception
+     *             thrown if an unexpected character is found.
+     */
+    private int readEndTag(int start) throws Exception {
+
+        int token = END_DOCUMENT;
+        int nameStart = skipWhiteSpace(start);
+
+        if (nameStart < end && !isNameStart(xml[nameStart])) {
+            unexpectedCharacter(nameStart);
+        }
+
+        int p = readName(nameStart);
+        int close = skipWhiteSpace(p);
+
+        if (close >= end) {
+            position = end;
+        } else if (xml[close] != '>') {
+            unexpectedCharacter(close);
+        } else {
+            name = new String(xml, nameStart, p - nameStart, UTF_8);
+            position = close + 1;
+            token = END_ELEMENT;
+        }
+
+        return token;
+    }
+
+    /**
+     * Finds the end of a name.
+     *
+     * @param start
+     *            the offset of the first byte of the name.
+     *
+     * @return the offset of the byte following the name.
+     */
+    private int readName(int start) {
+
+        int p = start + 1;
+
+        while (p < end && isNamePart(xml[p])) {
+            p++;
+        }
+
+        return p;
+    }
+
+    /**
+     * Finds the next byte that is not whitespace.
+     *
+     * @param start
+     *            the offset at which to start.
+     *
+     * @return the offset of the byte, or the end of the document if there is none.
+     */
+    private int skipWhiteSpace(int start) {
+
+        int p = start;
+
+        while (p < end && isWhiteSpace(xml[p])) {
+            p++;
+        }
+
+        return p;
+    }
+
+    /**
+     * Finds the next occurrence of a byte.
+     *
+     * @param b
+     *            the byte.
+     *
+     * @param start
+     *            the offset at which to start.
+     *
+     * @return the offset of the byte, or <code>-1</code> if there is none.
+     */
+    private int indexOf(byte b, int start) {
+
+        for (int p = start; p < end; p++) {
+            if (xml[p] == b) {
+                return p;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Checks if the specified byte can start an element or attribute name. All bytes of multi-byte UTF-8 sequences are
+     * accepted.
+     *
+     * @param b
+     *            the byte to test.
+     *
+     * @return <code>true</code> if the byte is valid, <code>false</code> otherwise.
+     */
+    private static boolean isNameStart(byte b) {
+
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || b == '_' || b == ':' || b < 0;
+    }
+
+    /**
+     * Checks if the specified byte can be part of an element or attribute name. All bytes of multi-byte UTF-8
+     * sequences are accepted.
+     *
+     * @param b
+     *            the byte to test.
+     *
+     * @return <code>true</code> if the byte is valid, <code>false</code> otherwise.
+     */
+    private static boolean isNamePart(byte b) {
+
+        return isNameStart(b) || (b >= '0' && b <= '9') || b == '.' || b == '-';
+    }
+
+    /**
+     * Checks if the specified byte is a whitespace character.
+     *
+     * @param b
+     *            the byte to test.
+     *
+     * @return <code>true</code> if the byte is whitespace, <code>false</code> otherwise.
+     */
+    private static boolean isWhiteSpace(byte b) {
+
+        return b == ' ' || (b >= '\t' && b <= '\r') || (b >= 0x1c && b <= 0x1f);
+    }
+
+    /**
+     * An unexpected character was encountered in the document.
+     *
+     * @param offset
+     *            the offset of the character.
+     *
+     * @throws Exception
+     */
+    private void unexpectedCharacter(int offset) throws Exception {
+
+        int length = 1;
+        int lead = xml[offset] & 0xff;
+
+        if (lead >= 0xf0) {
+            length = 4;
+        } else if (lead >= 0xe0) {
+            length = 3;
+        } else if (lead >= 0xc0) {
+            length = 2;
+        }
+
+        String c = new String(xml, offset, Math.min(length, end - offset), UTF_8);
+        throw new Exception("Unexpected character in XML input stream: " + c);
+    }
+}
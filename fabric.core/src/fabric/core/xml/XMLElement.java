@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2006
+ * (C) Copyright IBM Corp. 2006, 2014
  *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -17,7 +17,7 @@ import java.util.Iterator;
 public class XMLElement extends XMLNode {
 
     /** Copyright notice. */
-    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2006";
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2006, 2014";
 
     /*
      * Class fields
@@ -63,6 +63,7 @@ public class XMLElement extends XMLNode {
 
             /* Add its attributes */
 
+            HashMap<String, String> attributes = getAttributes();
             Iterator<String> a = attributes.keySet().iterator();
 
             while (a.hasNext()) {
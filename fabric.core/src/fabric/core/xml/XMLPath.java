@@ -0,0 +1,247 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.core.xml;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compiled path to an XML node.
+ * <p>
+ * Compiling a path splits it into its segments once, so that it can be resolved against any number of documents
+ * without being parsed again. Compiled paths are immutable and can be shared between threads.
+ * </p>
+ * <p>
+ * Constant paths can be compiled into static fields using <code>compile()</code>. Paths built at run time are
+ * compiled using <code>forPath()</code>, which keeps them in a bounded cache. Paths relative to a
+ * compiled path (for example the attributes and sub-elements of a message element) are compiled using
+ * <code>resolve()</code>, which caches them against the parent path so that no strings need be built to look them up.
+ * </p>
+ */
+public final class XMLPath {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The maximum number of paths held in the cache of compiled paths */
+    private static final int CACHE_SIZE = 1024;
+
+    /** The maximum number of relative paths cached against each compiled path */
+    private static final int RESOLVED_CACHE_SIZE = 64;
+
+    /*
+     * Class static fields
+     */
+
+    /** The cache of compiled paths, keyed by path */
+    private static final ConcurrentHashMap<String, XMLPath> cache = new ConcurrentHashMap<String, XMLPath>();
+
+    /*
+     * Class fields
+     */
+
+    /** The path, as written */
+    private final String path;
+
+    /** The segments of the path as written, used to locate the node itself */
+    private final XMLPathSegment[] nodeSegments;
+
+    /**
+     * The segments of the path to the value of the node: the same as the path as written if it identifies an attribute
+     * or a text node, otherwise extended to the text node of the element
+     */
+    private final XMLPathSegment[] valueSegments;
+
+    /** The compiled paths relative to this path, keyed by relative path */
+    private final ConcurrentHashMap<String, XMLPath> resolved = new ConcurrentHashMap<String, XMLPath>();
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param path
+     *            the path.
+     */
+    private XMLPath(String path) {
+
+        this.path = path;
+        nodeSegments = split(path);
+
+        /* If this is not an attribute path and it is not terminated properly to match a text node... */
+        if (path.indexOf('@') < 0 && !isTextNodePath(path)) {
+            valueSegments = split(path + "/$");
+        } else {
+            valueSegments = nodeSegments;
+        }
+    }
+
+    /**
+     * Compiles a path.
+     *
+     * @param path
+     *            the path.
+     *
+     * @return the compiled path.
+     */
+    public static XMLPath compile(String path) {
+
+        return new XMLPath(path);
+    }
+
+    /**
+     * Answers the compiled form of a path, from the cache of compiled paths if it has already been compiled.
+     *
+     * @param path
+     *            the path.
+     *
+     * @return the compiled path.
+     */
+    public static XMLPath forPath(String path) {
+
+        XMLPath compiled = cache.get(path);
+
+        if (compiled == null) {
+
+            compiled = new XMLPath(path);
+
+            /* Rather than track the use of each path, start again when the cache is full */
+            if (cache.size() >= CACHE_SIZE) {
+                cache.clear();
+            }
+
+            cache.put(path, compiled);
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Answers the compiled form of a path relative to this path.
+     *
+     * @param relativePath
+     *            the relative path, starting with either "<code>/</code>" (a sub-node) or "<code>@</code>" (an
+     *            attribute).
+     *
+     * @return the compiled path.
+     */
+    public XMLPath resolve(String relativePath) {
+
+        XMLPath compiled = resolved.get(relativePath);
+
+        if (compiled == null) {
+
+            compiled = new XMLPath(path + relativePath);
+
+            if (resolved.size() < RESOLVED_CACHE_SIZE) {
+                resolved.put(relativePath, compiled);
+            }
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Answers the path, as written.
+     *
+     * @return the path.
+     */
+    public String getPath() {
+
+        return path;
+    }
+
+    /**
+     * Answers the segments of the path as written.
+     *
+     * @return the segments (which must not be modified).
+     */
+    XMLPathSegment[] nodeSegments() {
+
+        return nodeSegments;
+    }
+
+    /**
+     * Answers the segments of the path to the value of the node (its text node or attribute).
+     *
+     * @return the segments (which must not be modified).
+     */
+    XMLPathSegment[] valueSegments() {
+
+        return valueSegments;
+    }
+
+    /**
+     * Answers the name of the attribute identified by this path.
+     *
+     * @return the attribute name, or the empty string if this path does not identify an attribute.
+     */
+    String attributeName() {
+
+        return valueSegments[valueSegments.length - 1].getAttributeName();
+    }
+
+    /**
+     * Splits a path into its segments, interning the node and attribute names.
+     *
+     * @param path
+     *            the path.
+     *
+     * @return the segments.
+     */
+    private static XMLPathSegment[] split(String path) {
+
+        ArrayList<XMLPathSegment> segmentList = XMLPathSegment.split(path);
+        XMLPathSegment[] segments = segmentList.toArray(new XMLPathSegment[segmentList.size()]);
+
+        for (int s = 0; s < segments.length; s++) {
+            segments[s].setNodeName(segments[s].getNodeName().intern());
+            segments[s].setAttributeName(segments[s].getAttributeName().intern());
+        }
+
+        return segments;
+    }
+
+    /**
+     * Answers <code>true</code> if a path ends with a text node segment (i.e. "<code>/$</code>" or "
+     * <code>/$[<em>n</em>]</code>").
+     *
+     * @param path
+     *            the path.
+     *
+     * @return <code>true</code> if the path identifies a text node, <code>false</code> otherwise.
+     */
+    static boolean isTextNodePath(String path) {
+
+        boolean isTextNodePath = false;
+        int textNode = path.lastIndexOf("/$");
+
+        if (textNode > 0 && path.charAt(0) == '/') {
+            int end = textNode + 2;
+            isTextNodePath = end == path.length()
+                    || (path.charAt(end) == '[' && path.charAt(path.length() - 1) == ']');
+        }
+
+        return isTextNodePath;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        return path;
+    }
+}
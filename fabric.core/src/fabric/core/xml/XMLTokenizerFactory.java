@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2007
+ * (C) Copyright IBM Corp. 2007, 2014
  * 
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -16,7 +16,7 @@ package fabric.core.xml;
 public class XMLTokenizerFactory {
 
 	/** Copyright notice. */
-	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2007";
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2007, 2014";
 
 	/*
 	 * Class static fields
@@ -28,6 +28,9 @@ public class XMLTokenizerFactory {
 	/** Flag indicating if SAX should be used (can only be set if SAX is available) */
 	private static boolean tokenizeWithSAX = false;
 
+	/** Flag indicating if XML held as bytes should be tokenized directly, into a lazily decoded document */
+	private static boolean tokenizeBytes = true;
+
 	/*
 	 * Class static initialization
 	 */
@@ -119,4 +122,32 @@ public class XMLTokenizerFactory {
 
 	}
 
+	/**
+	 * Sets the flag indicating that XML held as UTF-8 bytes should be tokenized directly by the byte tokenizer, into a
+	 * document whose text and attribute values are decoded only when requested (the alternative is to decode the bytes
+	 * into a string and tokenize it with the tokenizer answered by <code>getTokenizer()</code>).
+	 * <p>
+	 * <strong>Note: </strong>the byte tokenizer is not used if the factory is returning SAX-based tokenizers.
+	 * </p>
+	 * 
+	 * @param tokenizeBytes
+	 *            <code>true</code> if bytes should be tokenized directly; <code>false</code> otherwise.
+	 */
+	public static void setByteTokenizer(boolean tokenizeBytes) {
+
+		XMLTokenizerFactory.tokenizeBytes = tokenizeBytes;
+
+	}
+
+	/**
+	 * Gets the flag indicating if XML held as UTF-8 bytes will be tokenized directly by the byte tokenizer.
+	 * 
+	 * @return <code>true</code> if bytes will be tokenized directly; <code>false</code> otherwise.
+	 */
+	public static boolean isByteTokenizer() {
+
+		return tokenizeBytes && !tokenizeWithSAX;
+
+	}
+
 }
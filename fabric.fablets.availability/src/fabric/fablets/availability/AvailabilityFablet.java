@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2010, 2012
+ * (C) Copyright IBM Corp. 2010, 2014
  *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -7,6 +7,9 @@
 
 package fabric.fablets.availability;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,27 +24,26 @@ import fabric.bus.plugins.IPluginConfig;
 import fabric.core.io.ICallback;
 import fabric.core.io.InputTopic;
 import fabric.core.io.Message;
+import fabric.core.io.OutputTopic;
 import fabric.core.logging.FLog;
+import fabric.core.properties.ConfigProperties;
 import fabric.registry.FabricRegistry;
-import fabric.registry.Node;
-import fabric.registry.NodeFactory;
-import fabric.registry.Platform;
-import fabric.registry.PlatformFactory;
-import fabric.registry.Service;
-import fabric.registry.ServiceFactory;
-import fabric.registry.System;
-import fabric.registry.SystemFactory;
-import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
+import fabric.registry.impl.RegistryCache;
+import fabric.registry.persistence.ParameterizedSql;
 
 /**
  * Fablet class to map data feeds conveying asset availability status to matching Registry updates.
- *
+ * <p>
+ * Status changes are coalesced over a short period (see <code>ConfigProperties.AVAILABILITY_COALESCE_PERIOD</code>),
+ * so that only the latest value for each asset is applied. Each batch of changes is applied using set-based updates
+ * (one per table for each changed asset), followed by a single notification summarising the changes.
+ * </p>
  */
 public class AvailabilityFablet extends FabricBus implements IFabletPlugin, ICallback {
 
     /** Copyright notice. */
-    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2010, 2012";
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2010, 2014";
 
     /*
      * Class constants
@@ -50,6 +52,9 @@ public class AvailabilityFablet extends FabricBus implements IFabletPlugin, ICal
     /** The feed descriptor value used to indicate if a platform, system, or feed is an availability feed */
     private static final String AVAILABILITY_FEED_DESCRIPTOR_PART = "availability";
 
+    /** SQL condition selecting the rows whose availability differs from a new value (the placeholder) */
+    private static final String AVAILABILITY_CHANGED = "(AVAILABILITY is null or AVAILABILITY<>?)";
+
     /*
      * Class fields
      */
@@ -75,6 +80,71 @@ public class AvailabilityFablet extends FabricBus implements IFabletPlugin, ICal
     /** Flag used to indicate if availability status changes should be propagated between assets */
     private boolean doPropagate = true;
 
+    /** The period over which availability status changes are coalesced before being applied (milliseconds) */
+    private long coalescePeriod = 0;
+
+    /** The availability status changes awaiting application, keyed by asset (guarded by threadSync) */
+    private final LinkedHashMap<String, AvailabilityChange> pendingChanges =
+            new LinkedHashMap<String, AvailabilityChange>();
+
+    /*
+     * Inner classes
+     */
+
+    /** The types of asset whose availability can change */
+    private enum Asset {
+        NODE, PLATFORM, SYSTEM
+    }
+
+    /**
+     * An availability status change awaiting application.
+     */
+    private static final class AvailabilityChange {
+
+        /** The type of asset */
+        final Asset asset;
+
+        /** The descriptor of the availability feed identifying the asset */
+        final ServiceDescriptor descriptor;
+
+        /** The key identifying the asset in the list of pending changes */
+        final String key;
+
+        /** The new availability value */
+        final String availability;
+
+        AvailabilityChange(Asset asset, ServiceDescriptor descriptor, String availability) {
+
+            this.asset = asset;
+            this.descriptor = descriptor;
+            this.key = descriptor.toString();
+            this.availability = availability;
+        }
+
+        /**
+         * Answers the ID of the asset.
+         *
+         * @param homeNode
+         *            the ID of the home node.
+         *
+         * @return the node ID, platform ID, or platform and system IDs (separated by '/').
+         */
+        String id(String homeNode) {
+
+            switch (asset) {
+
+                case NODE:
+                    return homeNode;
+
+                case PLATFORM:
+                    return descriptor.platform();
+
+                default:
+                    return descriptor.platform() + '/' + descriptor.system();
+            }
+        }
+    }
+
     /*
      * Class methods
      */
@@ -101,6 +171,9 @@ public class AvailabilityFablet extends FabricBus implements IFabletPlugin, ICal
 
         }
 
+        coalescePeriod = Long.parseLong(config(ConfigProperties.AVAILABILITY_COALESCE_PERIOD,
+                ConfigProperties.AVAILABILITY_COALESCE_PERIOD_DEFAULT));
+
     }
 
     /**
@@ -158,11 +231,12 @@ public class AvailabilityFablet extends FabricBus implements IFabletPlugin, ICal
 
             /* While the Fablet is running... */
             while (isRunning) {
-                try {
-                    synchronized (threadSync) {
-                        threadSync.wait();
-                    }
-                } catch (InterruptedException e) {
+
+                /* Apply the next batch of (coalesced) availability status changes */
+                AvailabilityChange[] changes = nextChanges();
+
+                if (changes.length > 0) {
+                    applyChanges(changes);
                 }
             }
 
@@ -229,24 +303,24 @@ public class AvailabilityFablet extends FabricBus implements IFabletPlugin, ICal
 
             }
 
-            /* Update the Registry to reflect the new availability status */
+            /* Queue the Registry update to reflect the new availability status */
 
             /* If this is a node availability status change... */
             if (serviceDescriptor.platform().equalsIgnoreCase(AVAILABILITY_FEED_DESCRIPTOR_PART)) {
 
-                setNodeAvailability(availability);
+                queueChange(new AvailabilityChange(Asset.NODE, serviceDescriptor, availability));
 
             }
             /* Else if this is a platform availability status change... */
             else if (serviceDescriptor.system().equalsIgnoreCase(AVAILABILITY_FEED_DESCRIPTOR_PART)) {
 
-                setPlatformAvailability(availability, serviceDescriptor);
+                queueChange(new AvailabilityChange(Asset.PLATFORM, serviceDescriptor, availability));
 
             }
             /* Else if this is a system availability status change... */
             else if (serviceDescriptor.service().equalsIgnoreCase(AVAILABILITY_FEED_DESCRIPTOR_PART)) {
 
-                setSystemAvailability(availability, serviceDescriptor);
+                queueChange(new AvailabilityChange(Asset.SYSTEM, serviceDescriptor, availability));
 
             } else {
 
@@ -267,45 +341,146 @@ public class AvailabilityFablet extends FabricBus implements IFabletPlugin, ICal
     }
 
     /**
-     * Sets the availability of a node.
+     * Queues an availability status change, replacing any change to the same asset that is still pending.
      *
-     * @param availability
-     *            the new availability value.
+     * @param change
+     *            the change.
+     */
+    private void queueChange(AvailabilityChange change) {
+
+        synchronized (threadSync) {
+
+            /* Re-insert so that the pending changes stay in the order in which their latest values arrived */
+            pendingChanges.remove(change.key);
+            pendingChanges.put(change.key, change);
+            threadSync.notify();
+
+        }
+    }
+
+    /**
+     * Waits for availability status changes, and then for the coalescing period to elapse so that rapid changes to the
+     * same asset collapse to their latest value.
      *
-     * @throws IncompleteObjectException
-     * @throws PersistenceException
+     * @return the pending changes, in the order in which they are to be applied (empty if the Fablet is stopping).
      */
-    private void setNodeAvailability(String availability) throws IncompleteObjectException, PersistenceException {
+    private AvailabilityChange[] nextChanges() {
 
-        /* Update the availability of the node */
-        NodeFactory nodeFactory = FabricRegistry.getNodeFactory();
-        Node node = nodeFactory.getNodeById(homeNode());
-        node.setAvailability(availability);
-        nodeFactory.update(node);
-        pause();
+        AvailabilityChange[] changes = new AvailabilityChange[0];
 
-        if (doPropagate) {
+        try {
+
+            synchronized (threadSync) {
+
+                while (isRunning && pendingChanges.isEmpty()) {
+                    threadSync.wait();
+                }
+
+                long deadline = System.currentTimeMillis() + coalescePeriod;
+                long remaining = coalescePeriod;
+
+                while (isRunning && remaining > 0) {
+                    threadSync.wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+
+                if (isRunning) {
+                    changes = pendingChanges.values().toArray(changes);
+                    pendingChanges.clear();
+                }
+            }
+
+        } catch (InterruptedException e) {
+        }
+
+        return changes;
+    }
+
+    /**
+     * Applies a set of availability status changes to the Registry as a single batch of set-based updates, and then
+     * sends a single notification summarising them.
+     *
+     * @param changes
+     *            the changes, in the order in which they are to be applied.
+     */
+    private void applyChanges(AvailabilityChange[] changes) {
+
+        ArrayList<ParameterizedSql> updates = new ArrayList<ParameterizedSql>();
+
+        for (AvailabilityChange change : changes) {
 
-            /* Get the list of platforms attached to this node */
-            PlatformFactory platformFactory = FabricRegistry.getPlatformFactory();
-            Platform[] platforms = platformFactory.getPlatformsByNode(homeNode());
+            switch (change.asset) {
 
-            /* For each platform... */
-            for (int p = 0; p < platforms.length; p++) {
+                case NODE:
+                    addNodeUpdates(change.availability, updates);
+                    break;
 
-                /* Update the availability of the platform */
-                ServiceDescriptor platformFeedDescriptor = new ServiceDescriptor(platforms[p].getId(),
-                        AVAILABILITY_FEED_DESCRIPTOR_PART, AVAILABILITY_FEED_DESCRIPTOR_PART);
-                setPlatformAvailability(availability, platformFeedDescriptor);
+                case PLATFORM:
+                    addPlatformUpdates(change.availability, change.descriptor, updates);
+                    break;
 
+                case SYSTEM:
+                    addSystemUpdates(change.availability, change.descriptor, updates);
+                    break;
             }
+        }
+
+        try {
+
+            FabricRegistry.runUpdates(updates.toArray(new ParameterizedSql[updates.size()]));
+            logger.log(Level.FINER, "Applied {0} availability change(s) using {1} update(s)", new Object[] {
+                    changes.length, updates.size()});
+
+        } catch (PersistenceException e) {
+
+            logger.log(Level.WARNING, "Cannot update availability of {0} asset(s): {1}", new Object[] {changes.length,
+                    e.getMessage()});
+            logger.log(Level.FINEST, "Full exception: ", e);
+            return;
 
         }
 
+        sendChangeNotification(changes);
     }
 
     /**
-     * Sets the availability of a platform.
+     * Adds the updates required to set the availability of the home node (and, if status changes are propagated, of
+     * its platforms, systems and services).
+     *
+     * @param availability
+     *            the new availability value.
+     *
+     * @param updates
+     *            the list to which the update statements are added.
+     */
+    private void addNodeUpdates(String availability, List<ParameterizedSql> updates) {
+
+        String node = homeNode();
+
+        /* Update the availability of the node */
+        addUpdate(updates, "update " + FabricRegistry.NODES + " set AVAILABILITY=? where NODE_ID=?", availability,
+                node);
+
+        if (doPropagate) {
+
+            /* Update the availability of the platforms attached to this node... */
+            addUpdate(updates, "update " + FabricRegistry.PLATFORMS + " set AVAILABILITY=? where NODE_ID=? and "
+                    + AVAILABILITY_CHANGED, availability, node, availability);
+
+            /* ...and of their systems and services */
+            String nodePlatforms = "PLATFORM_ID in (select PLATFORM_ID from " + FabricRegistry.PLATFORMS
+                    + " where NODE_ID=?)";
+            addUpdate(updates, "update " + FabricRegistry.SYSTEMS + " set AVAILABILITY=? where " + nodePlatforms
+                    + " and " + AVAILABILITY_CHANGED, availability, node, availability);
+            addUpdate(updates, "update " + FabricRegistry.DATA_FEEDS + " set AVAILABILITY=? where " + nodePlatforms
+                    + " and " + AVAILABILITY_CHANGED, availability, node, availability);
+
+        }
+    }
+
+    /**
+     * Adds the updates required to set the availability of a platform (and, if status changes are propagated, of its
+     * systems and services).
      *
      * @param availability
      *            the new availability value.
@@ -313,41 +488,32 @@ public class AvailabilityFablet extends FabricBus implements IFabletPlugin, ICal
      * @param serviceDescriptor
      *            the descriptor identifying the platform.
      *
-     * @throws IncompleteObjectException
-     * @throws PersistenceException
+     * @param updates
+     *            the list to which the update statements are added.
      */
-    private void setPlatformAvailability(String availability, ServiceDescriptor serviceDescriptor)
-        throws IncompleteObjectException, PersistenceException {
+    private void addPlatformUpdates(String availability, ServiceDescriptor serviceDescriptor,
+            List<ParameterizedSql> updates) {
+
+        String platform = serviceDescriptor.platform();
 
         /* Update the availability of the platform */
-        PlatformFactory platformFactory = FabricRegistry.getPlatformFactory();
-        Platform platform = platformFactory.getPlatformById(serviceDescriptor.platform());
-        platform.setAvailability(availability);
-        platformFactory.update(platform);
-        pause();
+        addUpdate(updates, "update " + FabricRegistry.PLATFORMS + " set AVAILABILITY=? where PLATFORM_ID=?",
+                availability, platform);
 
         if (doPropagate) {
 
-            /* Get the list of systems attached to this platform */
-            SystemFactory systemFactory = FabricRegistry.getSystemFactory();
-            System[] systems = systemFactory.getSystemsByPlatform(serviceDescriptor.platform());
-
-            /* For each system... */
-            for (int s = 0; s < systems.length; s++) {
-
-                /* Update the availability of the system */
-                ServiceDescriptor availabilityDescriptor = new ServiceDescriptor(systems[s].getPlatformId(), systems[s]
-                        .getId(), AVAILABILITY_FEED_DESCRIPTOR_PART);
-                setSystemAvailability(availability, availabilityDescriptor);
-
-            }
+            /* Update the availability of the systems attached to this platform, and of their services */
+            addUpdate(updates, "update " + FabricRegistry.SYSTEMS + " set AVAILABILITY=? where PLATFORM_ID=? and "
+                    + AVAILABILITY_CHANGED, availability, platform, availability);
+            addUpdate(updates, "update " + FabricRegistry.DATA_FEEDS
+                    + " set AVAILABILITY=? where PLATFORM_ID=? and " + AVAILABILITY_CHANGED, availability, platform,
+                    availability);
 
         }
-
     }
 
     /**
-     * Sets the availability of a system.
+     * Adds the updates required to set the availability of a system and of its services.
      *
      * @param availability
      *            the new availability value.
@@ -355,31 +521,83 @@ public class AvailabilityFablet extends FabricBus implements IFabletPlugin, ICal
      * @param serviceDescriptor
      *            the descriptor identifying the system.
      *
-     * @throws IncompleteObjectException
-     * @throws PersistenceException
+     * @param updates
+     *            the list to which the update statements are added.
      */
-    private void setSystemAvailability(String availability, ServiceDescriptor serviceDescriptor)
-        throws IncompleteObjectException, PersistenceException {
+    private void addSystemUpdates(String availability, ServiceDescriptor serviceDescriptor,
+            List<ParameterizedSql> updates) {
+
+        String platform = serviceDescriptor.platform();
+        String system = serviceDescriptor.system();
 
         /* Update the availability of the system */
-        SystemFactory systemFactory = FabricRegistry.getSystemFactory();
-        System system = systemFactory.getSystemsById(serviceDescriptor.platform(), serviceDescriptor.system());
-        system.setAvailability(availability);
-        systemFactory.update(system);
-        pause();
+        addUpdate(updates, "update " + FabricRegistry.SYSTEMS + " set AVAILABILITY=? where PLATFORM_ID=? and ID=?",
+                availability, platform, system);
 
-        /* Get the list of feeds for this system */
-        ServiceFactory serviceFactory = FabricRegistry.getServiceFactory();
-        Service[] servicesForSystem = serviceFactory.getServicesBySystem(serviceDescriptor.platform(),
-                serviceDescriptor.system());
+        /* Update the availability of the services for this system */
+        addUpdate(updates, "update " + FabricRegistry.DATA_FEEDS
+                + " set AVAILABILITY=? where PLATFORM_ID=? and SERVICE_ID=? and " + AVAILABILITY_CHANGED,
+                availability, platform, system, availability);
+    }
 
-        /* For each service... */
-        for (int f = 0; f < servicesForSystem.length; f++) {
+    /**
+     * Adds a parameterized update statement to a list.
+     *
+     * @param updates
+     *            the list of update statements.
+     *
+     * @param sql
+     *            the statement.
+     *
+     * @param parameters
+     *            the parameter values, in placeholder order.
+     */
+    private void addUpdate(List<ParameterizedSql> updates, String sql, Object... parameters) {
+
+        updates.add(new ParameterizedSql(sql, parameters));
+    }
+
+    /**
+     * Sends a single Registry update notification summarising a set of availability status changes.
+     * <p>
+     * The notification is published on the Registry update feed in the same form as those sent by the Registry
+     * triggers, using the table name <code>AVAILABILITY</code>, with the individual changes listed in a
+     * <code>changes</code> array.
+     * </p>
+     *
+     * @param changes
+     *            the changes.
+     */
+    private void sendChangeNotification(AvailabilityChange[] changes) {
+
+        StringBuilder notification = new StringBuilder("{");
+        notification.append(String.format(
+                "\"table\":\"AVAILABILITY\",\"key\":\"NODE_ID\",\"id\":\"%s\",\"action\":\"UPDATE\",\"timestamp\":%d",
+                homeNode(), System.currentTimeMillis()));
+        notification.append(",\"changes\":[");
+
+        for (int c = 0; c < changes.length; c++) {
+
+            if (c > 0) {
+                notification.append(',');
+            }
+
+            notification.append(String.format("{\"asset\":\"%s\",\"id\":\"%s\",\"availability\":\"%s\"}",
+                    changes[c].asset, changes[c].id(homeNode()), changes[c].availability));
+        }
 
-            /* Update the availability */
-            servicesForSystem[f].setAvailability(availability);
-            serviceFactory.update(servicesForSystem[f]);
-            pause();
+        notification.append("]}");
+
+        try {
+
+            OutputTopic updatesTopic = new OutputTopic(ioChannels.receiveLocalFeeds.name() + '/'
+                    + RegistryCache.REGISTRY_UPDATES_FEED);
+            ioChannels.receiveLocalFeedsChannel.write(notification.toString().getBytes(), updatesTopic);
+
+        } catch (Exception e) {
+
+            logger.log(Level.WARNING, "Cannot send availability change notification: {0}", e.getMessage());
+            logger.log(Level.FINEST, "Full exception: ", e);
 
         }
     }
@@ -403,16 +621,4 @@ public class AvailabilityFablet extends FabricBus implements IFabletPlugin, ICal
         /* Not supported */
 
     }
-
-    /**
-     * Wait to give the Registry a chance to catch up on any triggers fired as a result of the updates being made.
-     */
-    private void pause() {
-
-        try {
-            Thread.sleep(250);
-        } catch (InterruptedException e) {
-        }
-
-    }
 }
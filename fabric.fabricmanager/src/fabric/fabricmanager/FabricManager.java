@@ -46,6 +46,7 @@ import fabric.bus.services.impl.ConnectionManager;
 import fabric.bus.services.impl.FloodMessageService;
 import fabric.bus.services.impl.NotificationManager;
 import fabric.core.io.MessageQoS;
+import fabric.core.metrics.PipelineMetrics;
 import fabric.core.properties.ConfigProperties;
 import fabric.registry.FabricPlugin;
 import fabric.registry.FabricRegistry;
@@ -208,6 +209,9 @@ public class FabricManager extends FabricBus implements IBusServices, IFabricShu
 
         fabletDispatcher.stopDispatcher();
 
+        /* Allow messages already dispatched to be handled */
+        busIO.stopDispatchEngine();
+
         busMessageHandler.stop();
 
         /* Disconnect from the Fabric */
@@ -253,6 +257,11 @@ public class FabricManager extends FabricBus implements IBusServices, IFabricShu
         /* Clean up the Registry from the last run */
         cleanRegistry();
 
+        /* Start collecting the latency metrics for each stage of the message pipeline (exposed as MBeans) */
+        PipelineMetrics.setNode(homeNode());
+        PipelineMetrics.setEnabled(Boolean.parseBoolean(config(ConfigProperties.PIPELINE_METRICS_ENABLED,
+                ConfigProperties.PIPELINE_METRICS_ENABLED_DEFAULT)));
+
         /*
          * Join the Fabric
          */
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2008, 2009
+ * (C) Copyright IBM Corp. 2008, 2014
  * 
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -8,6 +8,7 @@
 package fabric;
 
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class to manage a single Fabric metrics n-tuple.
@@ -18,7 +19,7 @@ import java.util.Date;
 public class FabricMetric {
 
 	/** Copyright notice. */
-	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2008, 2009";
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2008, 2014";
 
 	/*
 	 * Class constants
@@ -91,11 +92,8 @@ public class FabricMetric {
 	/** Unique ID for this VM invocation */
 	private static final String runID = (new Date()).toString();
 
-	/** Lock protecting access to the metric record count for this VM */
-	private static Object vmRecordCount = new Object();
-
 	/** The record metric record count for this VM */
-	private static long vmRecordID = 0;
+	private static final AtomicLong vmRecordID = new AtomicLong();
 
 	/*
 	 * Class methods
@@ -137,20 +135,15 @@ public class FabricMetric {
 	public FabricMetric(String nodeID, String taskID, String actorID, ServiceDescriptor serviceDescriptor,
 			String messageID, long ordinal, byte[] message, String pluginName) {
 
-		/* Increment the record count */
-		synchronized (vmRecordCount) {
-
-			this.nodeID = nodeID;
-			this.messageID = messageID;
-			this.recordID = ++vmRecordID;
-			this.taskID = taskID;
-			this.actorID = actorID;
-			this.serviceDescriptor = serviceDescriptor;
-			this.pluginName = pluginName;
-			this.ordinal = ordinal;
-			this.message = message;
-
-		}
+		this.nodeID = nodeID;
+		this.messageID = messageID;
+		this.recordID = vmRecordID.incrementAndGet();
+		this.taskID = taskID;
+		this.actorID = actorID;
+		this.serviceDescriptor = serviceDescriptor;
+		this.pluginName = pluginName;
+		this.ordinal = ordinal;
+		this.message = message;
 	}
 
 	/**
@@ -161,22 +154,17 @@ public class FabricMetric {
 	 */
 	public FabricMetric(FabricMetric metric) {
 
-		/* Increment the record count */
-		synchronized (vmRecordCount) {
-
-			nodeID = metric.nodeID;
-			messageID = metric.messageID;
-			recordID = ++vmRecordID;
-			taskID = metric.taskID;
-			actorID = metric.actorID;
-			serviceDescriptor = metric.serviceDescriptor;
-			pluginName = metric.pluginName;
-			ordinal = metric.ordinal;
-			message = metric.message;
-			event = metric.event;
-			eventTime = metric.eventTime;
-
-		}
+		nodeID = metric.nodeID;
+		messageID = metric.messageID;
+		recordID = vmRecordID.incrementAndGet();
+		taskID = metric.taskID;
+		actorID = metric.actorID;
+		serviceDescriptor = metric.serviceDescriptor;
+		pluginName = metric.pluginName;
+		ordinal = metric.ordinal;
+		message = metric.message;
+		event = metric.event;
+		eventTime = metric.eventTime;
 	}
 
 	/**
@@ -186,22 +174,44 @@ public class FabricMetric {
 	 */
 	public String toCSV() {
 
-		String csv = "";
+		StringBuilder csv = new StringBuilder();
+
+		appendCSV(csv, recordID, event, eventTime);
+		csv.append(',');
+		csv.append(toCSVValue((message != null) ? new String(message) : null));
 
-		csv += toCSVValue(runID) + ',';
-		csv += toCSVValue(nodeID) + ',';
-		csv += recordID + ",";
-		csv += toCSVValue(event) + ',';
-		csv += toCSVValue(messageID) + ',';
-		csv += ordinal + ",";
-		csv += toCSVValue(taskID) + ',';
-		csv += toCSVValue(actorID) + ',';
-		csv += toCSVValue(serviceDescriptor.toString()) + ',';
-		csv += toCSVValue(pluginName) + ',';
-		csv += eventTime + ',';
-		csv += toCSVValue(new String(message));
+		return csv.toString();
 
-		return csv;
+	}
+
+	/**
+	 * Appends the values of this instance for a single event, excluding the message, to a comma separated value list.
+	 * 
+	 * @param csv
+	 *            the buffer to which the values are appended.
+	 * 
+	 * @param recordID
+	 *            the record ID.
+	 * 
+	 * @param event
+	 *            the event.
+	 * 
+	 * @param eventTime
+	 *            the event time stamp.
+	 */
+	void appendCSV(StringBuilder csv, long recordID, String event, long eventTime) {
+
+		csv.append(toCSVValue(runID)).append(',');
+		csv.append(toCSVValue(nodeID)).append(',');
+		csv.append(recordID).append(',');
+		csv.append(toCSVValue(event)).append(',');
+		csv.append(toCSVValue(messageID)).append(',');
+		csv.append(ordinal).append(',');
+		csv.append(toCSVValue(taskID)).append(',');
+		csv.append(toCSVValue(actorID)).append(',');
+		csv.append(toCSVValue((serviceDescriptor != null) ? serviceDescriptor.toString() : null)).append(',');
+		csv.append(toCSVValue(pluginName)).append(',');
+		csv.append(eventTime);
 
 	}
 
@@ -252,7 +262,7 @@ public class FabricMetric {
 		toString += "serviceDescriptor=[" + serviceDescriptor + "],";
 		toString += "pluginName=[" + pluginName + "],";
 		toString += "eventTime=[" + eventTime + "]";
-		toString += "message=[" + new String(message) + "]";
+		toString += "message=[" + ((message != null) ? new String(message) : null) + "]";
 
 		return toString;
 
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2006, 2012
+ * (C) Copyright IBM Corp. 2006, 2014
  *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -7,33 +7,67 @@
 
 package fabric;
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Class to manage the instrumentation (profiling information) for the Fabric running on a node.
+ * <p>
+ * Events are recorded into a preallocated ring buffer owned by the recording thread, so recording an event takes no
+ * locks and allocates nothing: only the event name, a reference to the (unchanging) <code>FabricMetric</code> describing
+ * its context, and a <code>System.nanoTime()</code> time stamp are stored. A background thread periodically drains the
+ * buffers and, if a metrics file is configured, appends the events to it as comma separated values (the columns of
+ * <code>FabricMetric.toCSV()</code>, with the message identified by its UID rather than included, followed by the name
+ * of the recording thread; event times are in nanoseconds since the epoch). If a buffer is full when an event is
+ * recorded then the event is discarded and counted (see <code>droppedEvents()</code>), rather than blocking the
+ * recording thread.
+ * </p>
  */
 public class MetricsManager extends Fabric {
 
     /** Copyright notice. */
-    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2006, 2012";
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2006, 2014";
 
     /*
-     * Class static fields
+     * Class constants
      */
 
+    /** The minimum capacity of each per-thread event buffer */
+    private static final int MIN_BUFFER_CAPACITY = 1024;
+
+    /** The period between drains of the event buffers (milliseconds) */
+    private static final long DRAIN_PERIOD = 100;
+
     /*
      * Class fields
      */
 
-    /** The metrics recorded by this instance */
-    private ArrayList<FabricMetric> metrics = new ArrayList<FabricMetric>();
+    /** The event buffers of all recording threads */
+    private final CopyOnWriteArrayList<EventBuffer> buffers = new CopyOnWriteArrayList<EventBuffer>();
+
+    /** The event buffer of the current thread */
+    private final ThreadLocal<EventBuffer> threadBuffer = new ThreadLocal<EventBuffer>() {
+
+        @Override
+        protected EventBuffer initialValue() {
+
+            EventBuffer buffer = new EventBuffer(Thread.currentThread(), bufferCapacity);
+            buffers.add(buffer);
+            return buffer;
+        }
+    };
+
+    /** Lock ensuring that the event buffers are drained by one thread at a time */
+    private final Object drainLock = new Object();
 
     /** Flag indicating if instrumentation is required */
-    private boolean doInstrument = false;
+    private volatile boolean doInstrument = false;
 
     /** Flag indicating if metrics should be persisted to a file */
     private boolean persistToFile = false;
@@ -42,18 +76,157 @@ public class MetricsManager extends Fabric {
     private String fileName = null;
 
     /** The output stream to which metrics is to be written */
-    private FileWriter metricsWriter = null;
+    private BufferedWriter metricsWriter = null;
 
-    /**
-     * The maximum number of records that should be buffered before being written to the file, written to the registry,
-     * or discarded
-     */
-    private int maxBufferedMetrics = 1;
+    /** The capacity of each per-thread event buffer */
+    private int bufferCapacity = MIN_BUFFER_CAPACITY;
+
+    /** The thread draining the event buffers */
+    private Thread drainThread = null;
+
+    /** The number of events drained from the buffers */
+    private long drainedEvents = 0;
+
+    /** The number of events dropped by threads that have terminated */
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    /** The wall clock time corresponding to <code>baseNanoTime</code> (milliseconds since the epoch) */
+    private final long baseTime = System.currentTimeMillis();
+
+    /** The value of <code>System.nanoTime()</code> when this instance was created */
+    private final long baseNanoTime = System.nanoTime();
 
     /*
      * Inner classes
      */
 
+    /**
+     * A single-producer, single-consumer ring buffer of events recorded by one thread.
+     * <p>
+     * Only the owning thread adds events, and only the thread holding <code>drainLock</code> removes them, so the
+     * buffer needs no locks: the head and tail indexes are published with ordered writes.
+     * </p>
+     */
+    private static final class EventBuffer {
+
+        /** The thread recording events into this buffer */
+        final WeakReference<Thread> owner;
+
+        /** The name of the thread */
+        final String threadName;
+
+        /** Mask used to convert an index into a slot number */
+        final int mask;
+
+        /** The event time stamps (from <code>System.nanoTime()</code>) */
+        final long[] times;
+
+        /** The event names */
+        final String[] events;
+
+        /** The metrics describing the context of each event */
+        final FabricMetric[] metrics;
+
+        /** The index of the next event to be added (written by the owning thread only) */
+        final AtomicLong head = new AtomicLong();
+
+        /** The index of the next event to be removed (written by the draining thread only) */
+        final AtomicLong tail = new AtomicLong();
+
+        /** The owning thread's most recently read copy of <code>tail</code> */
+        long cachedTail = 0;
+
+        /** The number of events discarded because the buffer was full (written by the owning thread only) */
+        final AtomicLong dropped = new AtomicLong();
+
+        /**
+         * Constructs a new instance.
+         *
+         * @param owner
+         *            the thread recording events into this buffer.
+         *
+         * @param capacity
+         *            the capacity of the buffer (a power of two).
+         */
+        EventBuffer(Thread owner, int capacity) {
+
+            this.owner = new WeakReference<Thread>(owner);
+            threadName = owner.getName();
+            mask = capacity - 1;
+            times = new long[capacity];
+            events = new String[capacity];
+            metrics = new FabricMetric[capacity];
+        }
+
+        /**
+         * Adds an event to the buffer. Must only be called by the owning thread.
+         *
+         * @param time
+         *            the event time stamp.
+         *
+         * @param event
+         *            the event name.
+         *
+         * @param metric
+         *            the metric describing the context of the event.
+         */
+        void add(long time, String event, FabricMetric metric) {
+
+            long index = head.get();
+
+            if (index - cachedTail > mask) {
+
+                cachedTail = tail.get();
+
+                /* If the buffer is still full... */
+                if (index - cachedTail > mask) {
+                    dropped.lazySet(dropped.get() + 1);
+                    return;
+                }
+            }
+
+            int slot = (int) index & mask;
+            times[slot] = time;
+            events[slot] = event;
+            metrics[slot] = metric;
+            head.lazySet(index + 1);
+        }
+
+        /**
+         * Answers <code>true</code> if the owning thread has terminated.
+         *
+         * @return the owner status.
+         */
+        boolean ownerTerminated() {
+
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+    }
+
+    /**
+     * Task periodically draining the event buffers.
+     */
+    private final class DrainTask implements Runnable {
+
+        /**
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+
+            while (doInstrument) {
+
+                try {
+                    Thread.sleep(DRAIN_PERIOD);
+                } catch (InterruptedException e) {
+                }
+
+                drain();
+            }
+        }
+    }
+
     /*
      * Class methods
      */
@@ -73,17 +246,18 @@ public class MetricsManager extends Fabric {
      *            the name of the file to which metrics should be persisted, or <code>null</code> if there is none.
      *
      * @param maxBufferedMetrics
-     *            the maximum number of records that should be buffered before being written to the file, written to the
-     *            Registry, or discarded.
+     *            the number of events that each thread can buffer before they are written to the file or discarded
+     *            (rounded up to a power of two, with a minimum of 1024).
      *
      * @throws IOException
      *             thrown if there is a problem opening the persistence file.
      */
     public void initManager(boolean doInstrument, String fileName, int maxBufferedMetrics) throws IOException {
 
-        this.doInstrument = doInstrument;
         this.fileName = fileName;
-        this.maxBufferedMetrics = maxBufferedMetrics;
+        this.bufferCapacity = Math.max(MIN_BUFFER_CAPACITY, Integer.highestOneBit(Math.max(1,
+                maxBufferedMetrics - 1)) << 1);
+        this.persistToFile = fileName != null;
 
         /* If instrumentation is enabled... */
         if (doInstrument) {
@@ -93,10 +267,17 @@ public class MetricsManager extends Fabric {
 
                 /* Open the file */
                 logger.log(Level.FINE, "Opening instrumentation file [{0}]", fileName);
-                metricsWriter = new FileWriter(fileName);
+                metricsWriter = new BufferedWriter(new FileWriter(fileName));
 
             }
 
+            this.doInstrument = true;
+
+            /* Start draining the event buffers */
+            drainThread = new Thread(new DrainTask(), "Fabric-Metrics-Writer");
+            drainThread.setDaemon(true);
+            drainThread.start();
+
         }
     }
 
@@ -112,14 +293,31 @@ public class MetricsManager extends Fabric {
     public void startTiming(FabricMetric metric, String event) {
 
         if (doInstrument) {
+            threadBuffer.get().add(System.nanoTime(), event, metric);
+        }
 
-            /* Record the start time */
-            metric.setEventTime(System.currentTimeMillis());
-            metric.setEvent(event);
+    }
 
-            /* Save the record */
-            addMetric(metric);
+    /**
+     * Set the start time of a Fabric metric to a time that has already passed, and record.
+     * <p>
+     * This allows a metric to be recorded once its fields are known (for example, once a message has been parsed),
+     * since a metric must not be modified after it has been recorded.
+     * </p>
+     *
+     * @param metric
+     *            the metric to record.
+     *
+     * @param event
+     *            the event that has occurred.
+     *
+     * @param startTime
+     *            the time at which the event occurred, as returned by <code>System.nanoTime()</code>.
+     */
+    public void startTiming(FabricMetric metric, String event, long startTime) {
 
+        if (doInstrument) {
+            threadBuffer.get().add(startTime, event, metric);
         }
 
     }
@@ -136,21 +334,13 @@ public class MetricsManager extends Fabric {
     public void endTiming(FabricMetric metric, String event) {
 
         if (doInstrument) {
-
-            /* Record the end time */
-            metric.setEventTime(System.currentTimeMillis());
-            metric.setEvent(event);
-
-            /* Save the record */
-            addMetric(metric);
-
+            threadBuffer.get().add(System.nanoTime(), event, metric);
         }
 
     }
 
     /**
-     * Adds a new metric. If the new metric exceeds the maximum size of the buffer then the results are persisted (if
-     * persistence is enabled) and cleared.
+     * Adds a new metric, recording its current event at the current time.
      *
      * @param metric
      *            the metric to add.
@@ -158,87 +348,161 @@ public class MetricsManager extends Fabric {
     public void addMetric(FabricMetric metric) {
 
         if (doInstrument) {
-
-            synchronized (metrics) {
-
-                /* Record the new metric */
-                metrics.add(new FabricMetric(metric));
-
-                /* If we have reached the maximum size of the buffer... */
-                if (metrics.size() >= maxBufferedMetrics) {
-                    flushMetrics();
-                }
-            }
+            threadBuffer.get().add(System.nanoTime(), metric.getEvent(), metric);
         }
     }
 
     /**
-     * Empties the buffer of metrics by writing to a file, and/or discarding.
+     * Empties the event buffers by writing to a file, and/or discarding.
      */
     public void flushMetrics() {
 
         if (doInstrument) {
 
             logger.log(Level.FINE, "Persisting instrumentation");
+            drain();
+
+        }
+    }
+
+    /**
+     * Answers the number of events discarded because a thread's event buffer was full.
+     *
+     * @return the event count.
+     */
+    public long droppedEvents() {
+
+        long dropped = droppedEvents.get();
+
+        for (EventBuffer buffer : buffers) {
+            dropped += buffer.dropped.get();
+        }
+
+        return dropped;
+    }
+
+    /**
+     * Answers the number of events drained from the event buffers (and written to the file, if there is one).
+     *
+     * @return the event count.
+     */
+    public long drainedEvents() {
 
-            synchronized (metrics) {
+        synchronized (drainLock) {
+            return drainedEvents;
+        }
+    }
+
+    /**
+     * Drains the events from all of the event buffers, writing them to the file (if there is one).
+     */
+    private void drain() {
+
+        synchronized (drainLock) {
+
+            StringBuilder csv = new StringBuilder(256);
+
+            for (EventBuffer buffer : buffers) {
 
-                /* To hold the records ready for output to file */
-                String csvRecords = "";
+                boolean terminated = buffer.ownerTerminated();
+                long index = buffer.tail.get();
+                long head = buffer.head.get();
 
-                /* While there are more records to process... */
-                while (metrics.size() > 0) {
+                for (; index < head; index++) {
 
-                    /* Get the next metric, and remove it from the buffer */
-                    FabricMetric next = metrics.remove(0);
+                    int slot = (int) index & buffer.mask;
 
-                    /* If metrics are to be persisted to file... */
-                    if (persistToFile) {
+                    if (metricsWriter != null) {
 
-                        /* Add the next record as a CSV list */
-                        String csv = next.toCSV();
-                        csvRecords += csv + '\n';
+                        csv.setLength(0);
+                        long eventTime = baseTime * 1000000L + (buffer.times[slot] - baseNanoTime);
+                        buffer.metrics[slot].appendCSV(csv, ++drainedEvents, buffer.events[slot], eventTime);
+                        csv.append(',').append(buffer.threadName).append('\n');
+
+                        try {
+                            metricsWriter.append(csv);
+                        } catch (IOException e) {
+                            logger.log(Level.SEVERE, "Cannot persist metrics to file: ", e);
+                            closeWriter();
+                        }
+
+                    } else {
+
+                        drainedEvents++;
 
                     }
+
+                    /* Release the references held by the slot */
+                    buffer.events[slot] = null;
+                    buffer.metrics[slot] = null;
                 }
 
-                /* If there are metrics to be persisted to file... */
-                if (csvRecords.length() > 0) {
+                buffer.tail.lazySet(index);
 
-                    /* Write the records to the file */
-                    try {
-                        /* Append the record to the file */
-                        metricsWriter.write(csvRecords);
-                    } catch (Exception e) {
-                        logger.log(Level.SEVERE, "Cannot persist metrics to file: ", e);
-                    }
+                /* Discard the buffers of threads that have terminated (no more events can arrive) */
+                if (terminated) {
+                    buffers.remove(buffer);
+                    droppedEvents.addAndGet(buffer.dropped.get());
+                }
+            }
 
+            if (metricsWriter != null) {
+                try {
+                    metricsWriter.flush();
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "Cannot persist metrics to file: ", e);
+                    closeWriter();
                 }
             }
         }
     }
 
     /**
-     * Stops this instance, flushing the current contents of the buffer and closing files.
+     * Closes the metrics file. Must be called while synchronized on <code>drainLock</code>.
+     */
+    private void closeWriter() {
+
+        if (metricsWriter != null) {
+
+            try {
+                metricsWriter.close();
+            } catch (IOException e) {
+                /* Not much we can do at this point */
+                logger.log(Level.SEVERE, "Closure of instrumentation metrics file failed: ", e);
+            }
+
+            metricsWriter = null;
+        }
+    }
+
+    /**
+     * Stops this instance, flushing the current contents of the buffers and closing files.
      */
     public void closeManager() {
 
         if (doInstrument) {
 
-            synchronized (metrics) {
+            /* Stop the drain thread */
+            doInstrument = false;
 
-                /* Flush the buffer */
-                flushMetrics();
+            if (drainThread != null) {
+                drainThread.interrupt();
+                try {
+                    drainThread.join(DRAIN_PERIOD * 10);
+                } catch (InterruptedException e) {
+                }
+                drainThread = null;
+            }
+
+            synchronized (drainLock) {
+
+                /* Flush the buffers */
+                drain();
 
                 if (persistToFile) {
 
                     /* We're done with the file */
-                    try {
-                        metricsWriter.close();
-                    } catch (IOException e) {
-                        /* Not much we can do at this point */
-                        logger.log(Level.SEVERE, "Closure of instrumentation metrics file failed: ", e);
-                    }
+                    closeWriter();
 
                 }
             }
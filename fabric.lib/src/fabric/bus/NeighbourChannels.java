@@ -9,6 +9,8 @@ package fabric.bus;
 
 import java.io.IOException;
 
+import fabric.bus.messages.IFabricMessage;
+import fabric.bus.messages.WireFormat;
 import fabric.core.io.ICallback;
 import fabric.core.io.InputTopic;
 import fabric.core.io.OutputTopic;
@@ -54,6 +56,9 @@ public class NeighbourChannels {
 	/** The neighbour's Fabric Distributed Registry topic. */
 	private OutputTopic outboundRegistryBus = null;
 
+	/** The encoding used for messages sent to the neighbour. */
+	private volatile WireFormat wireFormat = WireFormat.XML;
+
 	/*
 	 * Class methods
 	 */
@@ -299,6 +304,47 @@ public class NeighbourChannels {
 		return neighbourDescriptor;
 	}
 
+	/**
+	 * Answers the encoding used for messages sent to the neighbour.
+	 * 
+	 * @return the wire format.
+	 */
+	public WireFormat wireFormat() {
+
+		return wireFormat;
+	}
+
+	/**
+	 * Sets the encoding used for messages sent to the neighbour.
+	 * <p>
+	 * All nodes accept both encodings on receipt, so the binary format should only be selected once the neighbour has
+	 * been upgraded to a level that can decode it.
+	 * </p>
+	 * 
+	 * @param wireFormat
+	 *            the wire format (<code>null</code> selects XML).
+	 */
+	public void setWireFormat(WireFormat wireFormat) {
+
+		this.wireFormat = (wireFormat != null) ? wireFormat : WireFormat.XML;
+	}
+
+	/**
+	 * Answers the wire form of a message, encoded for this neighbour.
+	 * 
+	 * @param message
+	 *            the message.
+	 * 
+	 * @return the wire message bytes.
+	 * 
+	 * @throws Exception
+	 *             thrown if the conversion into the wire format fails.
+	 */
+	public byte[] wireBytes(IFabricMessage message) throws Exception {
+
+		return message.toWireBytes(wireFormat);
+	}
+
 	/**
 	 * Answers the SharedEndPoint of the Neighbour.
 	 * 
@@ -0,0 +1,407 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.bus.feeds.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fabric.TaskServiceDescriptor;
+import fabric.bus.BusIOChannels;
+import fabric.bus.feeds.ISubscription;
+import fabric.bus.feeds.ISubscriptionCallback;
+import fabric.bus.messages.IServiceMessage;
+import fabric.client.FabricClient;
+import fabric.core.logging.FLog;
+import fabric.registry.FabricRegistry;
+import fabric.registry.FeedRoutes;
+import fabric.registry.QueryScope;
+import fabric.registry.RegistryObject;
+import fabric.registry.TaskSubscription;
+import fabric.registry.TaskSubscriptionFactory;
+import fabric.registry.impl.FeedRoutesFactoryImpl;
+
+/**
+ * Subscribes a client to, and unsubscribes it from, many Fabric data feeds at once.
+ * <p>
+ * The routes to the feeds are resolved with one distributed Registry query per batch of feeds, and the route nodes are
+ * resolved once per distinct route. Feeds sharing a route are subscribed with a single subscription message listing
+ * all of them, and the Registry records of the subscriptions are written in a single batch of updates. Each feed
+ * still has its own <code>ISubscription</code>, which can be unsubscribed individually or in bulk.
+ * </p>
+ */
+public class BulkSubscriber {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The maximum number of feeds whose routes are resolved by a single Registry query */
+    private static final int ROUTE_QUERY_BATCH = 50;
+
+    /*
+     * Class fields
+     */
+
+    private final Logger logger = Logger.getLogger("fabric.bus.feeds");
+
+    /** The client connection to the Fabric. */
+    private final FabricClient fabricClient;
+
+    /** To hold the channels and topics used to communicate with the local Fabric Manager. */
+    private final BusIOChannels ioChannels;
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance for the given FabricClient.
+     *
+     * @param fabricClient
+     *            the client connection to the Fabric.
+     *
+     * @throws IllegalStateException
+     *             if the client is not currently connected to the Fabric
+     */
+    public BulkSubscriber(FabricClient fabricClient) throws IllegalStateException {
+
+        if (fabricClient.isConnectedToFabric()) {
+            this.fabricClient = fabricClient;
+            this.ioChannels = fabricClient.getIOChannels();
+        } else {
+            logger.log(Level.SEVERE, "Not connected to the Fabric; subscriptions not possible");
+            throw new IllegalStateException("Client not connected");
+        }
+    }
+
+    /**
+     * Subscribes to a list of feeds.
+     *
+     * @param feeds
+     *            the feeds (which must not contain wildcards).
+     *
+     * @param callback
+     *            the client callback to receive incoming Fabric feed messages and subscription events.
+     *
+     * @return the subscriptions, in the same order as the feeds; the entry for a feed is <code>null</code> if it could
+     *         not be subscribed to (for example because no route to it could be found), or if it is repeated in the
+     *         list.
+     *
+     * @throws Exception
+     *             thrown if the routes to the feeds cannot be resolved.
+     */
+    public ISubscription[] subscribe(TaskServiceDescriptor[] feeds, ISubscriptionCallback callback) throws Exception {
+
+        ISubscription[] subscriptions = new ISubscription[feeds.length];
+
+        /* Select the valid, distinct feeds */
+
+        LinkedHashMap<String, Integer> feedIndexes = new LinkedHashMap<String, Integer>();
+
+        for (int f = 0; f < feeds.length; f++) {
+
+            try {
+
+                Subscription.validate(feeds[f]);
+
+                if (feedIndexes.containsKey(feeds[f].toString())) {
+                    logger.log(Level.FINE, "Ignoring repeated subscription to service [{0}]", feeds[f]);
+                } else {
+                    feedIndexes.put(feeds[f].toString(), f);
+                }
+
+            } catch (IllegalArgumentException e) {
+
+                logger.log(Level.WARNING, "Cannot subscribe to service [{0}]: {1}", new Object[] {feeds[f],
+                        e.getMessage()});
+
+            }
+        }
+
+        /* Resolve the routes to the feeds, and group the feeds by route */
+
+        HashMap<String, String[]> routesByFeed = resolveRoutes(feeds, feedIndexes);
+        LinkedHashMap<List<String>, ArrayList<Subscription>> subscriptionsByRoute =
+                new LinkedHashMap<List<String>, ArrayList<Subscription>>();
+        HashMap<List<String>, SubscriptionGroup> groupsByRoute = new HashMap<List<String>, SubscriptionGroup>();
+
+        for (Integer f : feedIndexes.values()) {
+
+            String[] route = routesByFeed.get(feeds[f].toString());
+
+            if (route == null) {
+                logger.log(Level.FINE, "Subscription failed; cannot find route to service [{0}]", feeds[f]);
+                continue;
+            }
+
+            List<String> routeKey = Arrays.asList(route);
+            SubscriptionGroup group = groupsByRoute.get(routeKey);
+
+            if (group == null) {
+                group = new SubscriptionGroup(fabricClient);
+                groupsByRoute.put(routeKey, group);
+                subscriptionsByRoute.put(routeKey, new ArrayList<Subscription>());
+            }
+
+            Subscription subscription = new Subscription(fabricClient, group);
+
+            try {
+
+                subscription.open(feeds[f], callback);
+                subscription.prepare(route);
+                subscriptionsByRoute.get(routeKey).add(subscription);
+                subscriptions[f] = subscription;
+
+            } catch (Exception e) {
+
+                logger.log(Level.WARNING, "Cannot subscribe to service [{0}]: {1}", new Object[] {feeds[f],
+                        e.getMessage()});
+                logger.log(Level.FINEST, "Full exception: ", e);
+
+            }
+        }
+
+        /* Send one subscription message per route */
+
+        ArrayList<TaskSubscription> taskSubscriptions = new ArrayList<TaskSubscription>();
+        TaskSubscriptionFactory factory = FabricRegistry.getTaskSubscriptionFactory();
+
+        for (List<String> routeKey : subscriptionsByRoute.keySet()) {
+
+            ArrayList<Subscription> members = subscriptionsByRoute.get(routeKey);
+
+            if (members.isEmpty()) {
+                continue;
+            }
+
+            TaskServiceDescriptor[] services = new TaskServiceDescriptor[members.size()];
+
+            for (int m = 0; m < services.length; m++) {
+                services[m] = members.get(m).service();
+            }
+
+            SubscriptionMessage subscriptionMessage = Subscription.subscriptionMessage(groupsByRoute.get(routeKey)
+                    .correlationID(), fabricClient, services, routeKey.toArray(new String[routeKey.size()]));
+
+            logger.log(Level.FINE, "Sending subscription message for service(s): [{0}]", FLog
+                    .arrayAsString(services));
+            logger.log(Level.FINEST, "Full message:\n{0}", subscriptionMessage);
+
+            try {
+
+                ioChannels.sendCommandsChannel.write(subscriptionMessage.toWireBytes());
+
+            } catch (Exception e) {
+
+                logger.log(Level.WARNING, "Cannot subscribe to service(s) [{0}]: {1}", new Object[] {
+                        FLog.arrayAsString(services), e.getMessage()});
+                logger.log(Level.FINEST, "Full exception: ", e);
+
+                /* The subscriptions on this route were never made, so stop listening for their messages */
+                release(members, subscriptions);
+                continue;
+
+            }
+
+            for (Subscription member : members) {
+
+                /* Update the Client with the subscription */
+                fabricClient.registerSubscription(member);
+
+                taskSubscriptions.add(member.taskSubscription(factory));
+            }
+        }
+
+        /* Update the Registry with the subscriptions */
+        if (!taskSubscriptions.isEmpty()) {
+            factory.save(taskSubscriptions.toArray(new TaskSubscription[taskSubscriptions.size()]));
+        }
+
+        return subscriptions;
+    }
+
+    /**
+     * Releases subscriptions that have been opened but whose subscribe message could not be sent, and removes them
+     * from the list of subscriptions answered to the caller.
+     *
+     * @param members
+     *            the subscriptions to release.
+     *
+     * @param subscriptions
+     *            the list of subscriptions answered to the caller.
+     */
+    private void release(List<Subscription> members, ISubscription[] subscriptions) {
+
+        for (Subscription member : members) {
+
+            try {
+                member.release();
+            } catch (Exception e) {
+                logger.log(Level.FINE, "Cannot release subscription to service [{0}]: {1}", new Object[] {
+                        member.service(), e.getMessage()});
+                logger.log(Level.FINEST, "Full exception: ", e);
+            }
+
+            for (int s = 0; s < subscriptions.length; s++) {
+                if (subscriptions[s] == member) {
+                    subscriptions[s] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Unsubscribes a list of subscriptions.
+     * <p>
+     * Subscriptions made in bulk that share a route and correlation ID are unsubscribed using a single unsubscribe
+     * message; any other subscriptions are unsubscribed individually.
+     * </p>
+     *
+     * @param subscriptions
+     *            the subscriptions (<code>null</code> entries are ignored).
+     *
+     * @throws Exception
+     *             thrown if the unsubscribe messages cannot be sent.
+     */
+    public void unsubscribe(ISubscription[] subscriptions) throws Exception {
+
+        LinkedHashMap<String, ArrayList<Subscription>> subscriptionsByGroup =
+                new LinkedHashMap<String, ArrayList<Subscription>>();
+
+        for (int s = 0; s < subscriptions.length; s++) {
+
+            if (subscriptions[s] == null) {
+                continue;
+            }
+
+            if (subscriptions[s] instanceof Subscription && subscriptions[s].route() != null) {
+
+                String groupKey = subscriptions[s].correlationID() + Arrays.toString(subscriptions[s].route());
+                ArrayList<Subscription> members = subscriptionsByGroup.get(groupKey);
+
+                if (members == null) {
+                    members = new ArrayList<Subscription>();
+                    subscriptionsByGroup.put(groupKey, members);
+                }
+
+                members.add((Subscription) subscriptions[s]);
+
+            } else {
+
+                subscriptions[s].unsubscribe();
+
+            }
+        }
+
+        ArrayList<TaskSubscription> taskSubscriptions = new ArrayList<TaskSubscription>();
+        TaskSubscriptionFactory factory = FabricRegistry.getTaskSubscriptionFactory(QueryScope.LOCAL);
+
+        for (ArrayList<Subscription> members : subscriptionsByGroup.values()) {
+
+            TaskServiceDescriptor[] services = new TaskServiceDescriptor[members.size()];
+
+            for (int m = 0; m < services.length; m++) {
+                services[m] = members.get(m).service();
+                members.get(m).release();
+            }
+
+            SubscriptionMessage unsubscribeMessage = Subscription.subscriptionMessage(members.get(0).correlationID(),
+                    fabricClient, services, members.get(0).route());
+            unsubscribeMessage.setAction(IServiceMessage.ACTION_UNSUBSCRIBE);
+
+            logger.log(Level.FINE, "Sending unsubscribe message for service(s): [{0}]", FLog.arrayAsString(services));
+            logger.log(Level.FINEST, "Full message:\n{0}", unsubscribeMessage);
+
+            ioChannels.sendCommandsChannel.write(unsubscribeMessage.toWireBytes());
+
+            for (Subscription member : members) {
+
+                /* De-register this subscription from the Fabric client */
+                fabricClient.deregisterSubscription(member);
+
+                taskSubscriptions.add(member.taskSubscription(factory));
+            }
+        }
+
+        /* Remove the subscriptions from the Registry */
+        if (!taskSubscriptions.isEmpty()) {
+            factory.delete(taskSubscriptions.toArray(new TaskSubscription[taskSubscriptions.size()]));
+        }
+    }
+
+    /**
+     * Resolves the routes to a list of feeds.
+     *
+     * @param feeds
+     *            the feeds.
+     *
+     * @param feedIndexes
+     *            the indexes of the feeds to resolve, keyed by feed.
+     *
+     * @return the routes, keyed by feed; feeds with no route have no entry.
+     *
+     * @throws Exception
+     *             thrown if the Registry cannot be queried.
+     */
+    private HashMap<String, String[]> resolveRoutes(TaskServiceDescriptor[] feeds,
+            LinkedHashMap<String, Integer> feedIndexes) throws Exception {
+
+        HashMap<String, String[]> routesByFeed = new HashMap<String, String[]>();
+        HashMap<String, String[]> routeNodesByRoute = new HashMap<String, String[]>();
+        ArrayList<TaskServiceDescriptor> batch = new ArrayList<TaskServiceDescriptor>();
+        Integer[] indexes = feedIndexes.values().toArray(new Integer[feedIndexes.size()]);
+
+        for (int i = 0; i < indexes.length; i++) {
+
+            batch.add(feeds[indexes[i]]);
+
+            if (batch.size() == ROUTE_QUERY_BATCH || i == indexes.length - 1) {
+
+                // Query not restricted to just local
+                RegistryObject[] objects = FabricRegistry.runQuery(FeedRoutesFactoryImpl.getRouteQuery(batch
+                        .toArray(new TaskServiceDescriptor[batch.size()]), fabricClient.homeNode()),
+                        FeedRoutesFactoryImpl.class, QueryScope.DISTRIBUTED);
+
+                for (int o = 0; objects != null && o < objects.length; o++) {
+
+                    FeedRoutes feedRoute = (FeedRoutes) objects[o];
+                    String feed = new TaskServiceDescriptor(feedRoute.getTaskId(), feedRoute.getPlatformId(),
+                            feedRoute.getServiceId(), feedRoute.getFeedId()).toString();
+
+                    /* The results are ordered by preference, so only use the first route to each feed */
+                    if (!routesByFeed.containsKey(feed)) {
+
+                        /* Resolve the nodes of each distinct route only once */
+                        String routeKey = feedRoute.getEndNodeId() + ':' + feedRoute.getRoute();
+                        String[] route = routeNodesByRoute.get(routeKey);
+
+                        if (route == null && !routeNodesByRoute.containsKey(routeKey)) {
+                            route = FabricRegistry.getRouteFactory().getRouteNodes(fabricClient.homeNode(),
+                                    feedRoute.getEndNodeId(), feedRoute.getRoute());
+                            routeNodesByRoute.put(routeKey, route);
+                        }
+
+                        routesByFeed.put(feed, route);
+                    }
+                }
+
+                batch.clear();
+            }
+        }
+
+        return routesByFeed;
+    }
+}
@@ -8,12 +8,16 @@
 package fabric.bus.feeds.impl;
 
 import java.beans.PropertyChangeEvent;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.logging.Logger;
 
 import fabric.Notifier;
 import fabric.TaskServiceDescriptor;
+import fabric.bus.messages.BinaryWire;
+import fabric.bus.messages.IEmbeddedBinary;
 import fabric.bus.messages.IEmbeddedXML;
 import fabric.bus.messages.IReplicate;
 import fabric.core.xml.XML;
@@ -22,7 +26,7 @@ import fabric.core.xml.XML;
  * Class representing the list of Fabric services embedded in a subscription message.
  *
  */
-public class ServiceList extends Notifier implements IEmbeddedXML {
+public class ServiceList extends Notifier implements IEmbeddedXML, IEmbeddedBinary {
 
     /** Copyright notice. */
     public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009, 2016";
@@ -115,6 +119,53 @@ public class ServiceList extends Notifier implements IEmbeddedXML {
 
     }
 
+    /**
+     * @see fabric.bus.messages.IEmbeddedBinary#initBinary(java.io.DataInput)
+     */
+    @Override
+    public void initBinary(DataInput in) throws Exception {
+
+        serviceList.clear();
+
+        /* For each service... */
+        for (int count = BinaryWire.readCount(in), s = 0; s < count; s++) {
+
+            /* Get and record the next service */
+
+            String task = BinaryWire.readString(in);
+            String platform = BinaryWire.readString(in);
+            String system = BinaryWire.readString(in);
+            String service = BinaryWire.readString(in);
+
+            serviceList.add(new TaskServiceDescriptor(task, platform, system, service));
+
+        }
+
+        xmlCache = null;
+    }
+
+    /**
+     * @see fabric.bus.messages.IEmbeddedBinary#embedBinary(java.io.DataOutput)
+     */
+    @Override
+    public void embedBinary(DataOutput out) throws Exception {
+
+        out.writeInt(serviceList.size());
+
+        /* For each service... */
+        for (int s = 0; s < serviceList.size(); s++) {
+
+            TaskServiceDescriptor nextService = serviceList.get(s);
+
+            BinaryWire.writeString(out, nextService.task());
+            BinaryWire.writeString(out, nextService.platform());
+            BinaryWire.writeString(out, nextService.system());
+            BinaryWire.writeString(out, nextService.service());
+
+        }
+
+    }
+
     /**
      * Answers the list of services.
      *
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2012
+ * (C) Copyright IBM Corp. 2012, 2014
  *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -26,6 +26,7 @@ import fabric.bus.messages.IServiceMessage;
 import fabric.bus.messages.impl.ServiceMessage;
 import fabric.bus.routing.impl.StaticRouting;
 import fabric.client.FabricClient;
+import fabric.client.SubscriptionMultiplexer;
 import fabric.client.services.IClientNotificationHandler;
 import fabric.core.io.ICallback;
 import fabric.core.io.InputTopic;
@@ -49,7 +50,7 @@ import fabric.registry.impl.FeedRoutesFactoryImpl;
 public class Subscription implements ISubscription, ICallback, IClientNotificationHandler {
 
     /** Copyright notice. */
-    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2012";
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2012, 2014";
 
     private Logger logger;
 
@@ -57,7 +58,10 @@ public class Subscription implements ISubscription, ICallback, IClientNotificati
     private BusIOChannels ioChannels = null;
 
     /** The correlation ID for this subscription */
-    private final String correlationID = FabricMessageFactory.generateUID();
+    private final String correlationID;
+
+    /** The group of subscriptions sharing a subscribe message (if the subscription was made in bulk). */
+    private SubscriptionGroup group = null;
 
     /** The services represented by this subscription. */
     private TaskServiceDescriptor activeServiceDescriptor = null;
@@ -71,9 +75,12 @@ public class Subscription implements ISubscription, ICallback, IClientNotificati
     /** The name of the topic upon which feed messages will arrive. */
     private String topic = null;
 
-    /** The channel upon which feed messages will arrive. */
+    /** The channel upon which feed messages will arrive (if the subscription is not multiplexed). */
     private SharedChannel channel = null;
 
+    /** The multiplexer from which feed messages will arrive (if the subscription is multiplexed). */
+    private SubscriptionMultiplexer multiplexer = null;
+
     /** The client connection to the Fabric. */
     private FabricClient fabricClient = null;
 
@@ -92,7 +99,24 @@ public class Subscription implements ISubscription, ICallback, IClientNotificati
      */
     public Subscription(FabricClient fabricClient) throws IllegalStateException {
 
+        this(fabricClient, null);
+    }
+
+    /**
+     * Create a new Subscription instance, as a member of a group of subscriptions made in bulk, for the given
+     * FabricClient
+     *
+     * @param fabricClient
+     * @param group
+     *            the group to which the subscription belongs, or <code>null</code> if none.
+     * @throws IllegalStateException
+     *             if the client is not currently connected to the Fabric
+     */
+    Subscription(FabricClient fabricClient, SubscriptionGroup group) throws IllegalStateException {
+
         this.logger = Logger.getLogger("fabric.bus.feeds");
+        this.group = group;
+        this.correlationID = (group != null) ? group.correlationID() : FabricMessageFactory.generateUID();
 
         if (fabricClient.isConnectedToFabric()) {
             this.fabricClient = fabricClient;
@@ -130,27 +154,7 @@ public class Subscription implements ISubscription, ICallback, IClientNotificati
     public TaskServiceDescriptor subscribe(TaskServiceDescriptor serviceDescriptor, String[] route,
             ISubscriptionCallback callback) throws IllegalArgumentException, Exception {
 
-        // Ensure the feed does not contain wildcards
-        if (serviceDescriptor.service() == null || serviceDescriptor.service().equals("*")
-                || serviceDescriptor.platform() == null || serviceDescriptor.platform().equals("*")
-                || serviceDescriptor.system() == null || serviceDescriptor.system().equals("*")
-                || serviceDescriptor.task() == null || serviceDescriptor.task().equals("*")) {
-            throw new IllegalArgumentException("Task service descriptor must not contain null or wildcards");
-        }
-
-        if (activeServiceDescriptor != null) {
-            throw new SubscriptionException(ReasonCode.ALREADY_SUBSCRIBED, "Subscription already active");
-        }
-
-        activeServiceDescriptor = serviceDescriptor;
-
-        logger.log(Level.FINE, "Subscribing to service [{0}]", serviceDescriptor);
-
-        this.callback = callback;
-
-        topic = generateTopic(activeServiceDescriptor);
-        channel = fabricClient.homeNodeEndPoint().openInputChannel(new InputTopic(topic), this);
-        logger.log(Level.FINER, "Listening for subscription messages on [{0}]", topic);
+        open(serviceDescriptor, callback);
 
         /* No route specified, so determine one for ourselves */
         if (route == null) {
@@ -177,38 +181,8 @@ public class Subscription implements ISubscription, ICallback, IClientNotificati
 
         } else {
 
-            /* Record the route used by this subscription */
-            subscriptionRoute = Arrays.copyOf(route, route.length);
-
-            /*
-             * Build the subscription message
-             */
-
-            subscriptionMessage = new SubscriptionMessage();
-
-            /* Set the correlation ID */
-            subscriptionMessage.setCorrelationID(correlationID);
-
-            /* Indicate that we want notifications that this message is handled */
-            subscriptionMessage.setNotification(true);
-
-            /* Register to receive notifications related to this subscription */
-            fabricClient.registerNotificationHandler(correlationID, this);
-
-            /* Configure this as a subscription message */
-            subscriptionMessage.setAction(IServiceMessage.ACTION_SUBSCRIBE);
-            subscriptionMessage.setEvent(IServiceMessage.EVENT_ACTOR_REQUEST);
-            subscriptionMessage.setProperty(IServiceMessage.PROPERTY_ACTOR, fabricClient.actor());
-            subscriptionMessage.setProperty(IServiceMessage.PROPERTY_ACTOR_PLATFORM, fabricClient.platform());
-
-            /* Store the service list in the subscription message payload */
-            ServiceList serviceList = new ServiceList();
-            serviceList.addService(activeServiceDescriptor);
-            subscriptionMessage.setServiceList(serviceList);
-
-            /* Set the message's routing */
-            StaticRouting messageRouting = new StaticRouting(route);
-            subscriptionMessage.setRouting(messageRouting);
+            /* Build the subscribe and unsubscribe messages, and register for notifications */
+            prepare(route);
 
             /* Send the subscribe command to the local Fabric Manager */
 
@@ -225,24 +199,194 @@ public class Subscription implements ISubscription, ICallback, IClientNotificati
 
             TaskSubscriptionFactory factory = FabricRegistry.getTaskSubscriptionFactory();
 
-            TaskSubscription ts = factory.createTaskSubscription(activeServiceDescriptor.task(), fabricClient.actor(),
-                    activeServiceDescriptor.platform(), activeServiceDescriptor.system(), activeServiceDescriptor
-                            .service(), fabricClient.platform());
+            TaskSubscription ts = taskSubscription(factory);
             try {
                 factory.save(ts);
             } catch (IncompleteObjectException e) {
                 logger.log(Level.WARNING, "Internal error: ", e);
             }
 
-            /* Build a corresponding unsubscribe command and record it */
-            unsubscribeMessage = (SubscriptionMessage) subscriptionMessage.replicate();
-            unsubscribeMessage.setAction(IServiceMessage.ACTION_UNSUBSCRIBE);
-
         }
 
         return activeServiceDescriptor;
     }
 
+    /**
+     * Checks that a feed descriptor identifies a single feed.
+     *
+     * @param serviceDescriptor
+     *            the feed descriptor.
+     *
+     * @throws IllegalArgumentException
+     *             thrown if the descriptor contains <code>null</code> or wildcards.
+     */
+    static void validate(TaskServiceDescriptor serviceDescriptor) throws IllegalArgumentException {
+
+        // Ensure the feed does not contain wildcards
+        if (serviceDescriptor.service() == null || serviceDescriptor.service().equals("*")
+                || serviceDescriptor.platform() == null || serviceDescriptor.platform().equals("*")
+                || serviceDescriptor.system() == null || serviceDescriptor.system().equals("*")
+                || serviceDescriptor.task() == null || serviceDescriptor.task().equals("*")) {
+            throw new IllegalArgumentException("Task service descriptor must not contain null or wildcards");
+        }
+    }
+
+    /**
+     * Starts listening for the feed messages of a subscription.
+     *
+     * @param serviceDescriptor
+     *            the feed.
+     *
+     * @param callback
+     *            the client callback to receive incoming Fabric feed messages.
+     *
+     * @throws IllegalArgumentException
+     *             thrown if the descriptor contains <code>null</code> or wildcards.
+     *
+     * @throws Exception
+     *             thrown if the subscription is already active, or the feed messages cannot be received.
+     */
+    void open(TaskServiceDescriptor serviceDescriptor, ISubscriptionCallback callback)
+            throws IllegalArgumentException, Exception {
+
+        validate(serviceDescriptor);
+
+        if (activeServiceDescriptor != null) {
+            throw new SubscriptionException(ReasonCode.ALREADY_SUBSCRIBED, "Subscription already active");
+        }
+
+        activeServiceDescriptor = serviceDescriptor;
+
+        logger.log(Level.FINE, "Subscribing to service [{0}]", serviceDescriptor);
+
+        this.callback = callback;
+
+        topic = generateTopic(activeServiceDescriptor);
+
+        if (fabricClient.isMultiplexingSubscriptions()) {
+            multiplexer = fabricClient.subscriptionMultiplexer();
+            multiplexer.register(topic, this);
+            logger.log(Level.FINER, "Listening for subscription messages on [{0}] (multiplexed)", topic);
+        } else {
+            channel = fabricClient.homeNodeEndPoint().openInputChannel(new InputTopic(topic), this);
+            logger.log(Level.FINER, "Listening for subscription messages on [{0}]", topic);
+        }
+    }
+
+    /**
+     * Records the route of an open subscription, builds its subscribe and unsubscribe messages, and registers to
+     * receive its notifications (directly, or via its group).
+     *
+     * @param route
+     *            the route between the publisher and the subscriber.
+     */
+    void prepare(String[] route) {
+
+        /* Record the route used by this subscription */
+        subscriptionRoute = Arrays.copyOf(route, route.length);
+
+        subscriptionMessage = subscriptionMessage(correlationID, fabricClient,
+                new TaskServiceDescriptor[] {activeServiceDescriptor}, route);
+
+        /* Register to receive notifications related to this subscription */
+        if (group != null) {
+            group.add(this);
+        } else {
+            fabricClient.registerNotificationHandler(correlationID, this);
+        }
+
+        /* Build a corresponding unsubscribe command and record it */
+        unsubscribeMessage = (SubscriptionMessage) subscriptionMessage.replicate();
+        unsubscribeMessage.setAction(IServiceMessage.ACTION_UNSUBSCRIBE);
+    }
+
+    /**
+     * Builds a subscription message.
+     *
+     * @param correlationID
+     *            the correlation ID of the subscription(s).
+     *
+     * @param fabricClient
+     *            the subscribing client.
+     *
+     * @param services
+     *            the feeds to which the message subscribes.
+     *
+     * @param route
+     *            the route between the publisher and the subscriber.
+     *
+     * @return the message.
+     */
+    static SubscriptionMessage subscriptionMessage(String correlationID, FabricClient fabricClient,
+            TaskServiceDescriptor[] services, String[] route) {
+
+        SubscriptionMessage subscriptionMessage = new SubscriptionMessage();
+
+        /* Set the correlation ID */
+        subscriptionMessage.setCorrelationID(correlationID);
+
+        /* Indicate that we want notifications that this message is handled */
+        subscriptionMessage.setNotification(true);
+
+        /* Configure this as a subscription message */
+        subscriptionMessage.setAction(IServiceMessage.ACTION_SUBSCRIBE);
+        subscriptionMessage.setEvent(IServiceMessage.EVENT_ACTOR_REQUEST);
+        subscriptionMessage.setProperty(IServiceMessage.PROPERTY_ACTOR, fabricClient.actor());
+        subscriptionMessage.setProperty(IServiceMessage.PROPERTY_ACTOR_PLATFORM, fabricClient.platform());
+
+        /* Store the service list in the subscription message payload */
+        ServiceList serviceList = new ServiceList();
+        serviceList.setServices(services);
+        subscriptionMessage.setServiceList(serviceList);
+
+        /* Set the message's routing */
+        StaticRouting messageRouting = new StaticRouting(route);
+        subscriptionMessage.setRouting(messageRouting);
+
+        return subscriptionMessage;
+    }
+
+    /**
+     * Answers the Registry record of this subscription.
+     *
+     * @param factory
+     *            the factory used to create the record.
+     *
+     * @return the record.
+     */
+    TaskSubscription taskSubscription(TaskSubscriptionFactory factory) {
+
+        return factory.createTaskSubscription(activeServiceDescriptor.task(), fabricClient.actor(),
+                activeServiceDescriptor.platform(), activeServiceDescriptor.system(),
+                activeServiceDescriptor.service(), fabricClient.platform());
+    }
+
+    /**
+     * Stops listening for the feed messages and notifications of this subscription.
+     *
+     * @throws Exception
+     *             thrown if the feed message channel cannot be closed.
+     */
+    void release() throws Exception {
+
+        if (multiplexer != null) {
+            multiplexer.deregister(topic, this);
+        } else if (channel != null) {
+            fabricClient.homeNodeEndPoint().closeChannel(channel, false);
+        }
+        logger.log(Level.FINER, "Stopped listening for feed messages on [{0}]", topic);
+
+        channel = null;
+        multiplexer = null;
+        topic = null;
+
+        if (group != null) {
+            group.remove(this);
+        } else if (unsubscribeMessage != null) {
+            fabricClient.deregisterNotificationHandler(unsubscribeMessage.getCorrelationID());
+        }
+    }
+
     /**
      * @see fabric.bus.feeds.ISubscription#resubscribe()
      */
@@ -272,15 +416,10 @@ public class Subscription implements ISubscription, ICallback, IClientNotificati
             throw new SubscriptionException(ReasonCode.NOT_SUBSCRIBED, "No active subscription");
         }
 
-        fabricClient.homeNodeEndPoint().closeChannel(channel, false);
-        logger.log(Level.FINER, "Stopped listening for feed messages on [{0}]", topic);
-
-        channel = null;
-        topic = null;
+        release();
 
         logger.log(Level.FINE, "Sending unsubscribe message for service [{0}]", activeServiceDescriptor);
         logger.log(Level.FINEST, "Full message:\n{0}", unsubscribeMessage.toString());
-        fabricClient.deregisterNotificationHandler(unsubscribeMessage.getCorrelationID());
         ioChannels.sendCommandsChannel.write(unsubscribeMessage.toWireBytes());
 
         /* De-register this subscription from the Fabric client */
@@ -288,9 +427,7 @@ public class Subscription implements ISubscription, ICallback, IClientNotificati
 
         /* Remove this subscription from the Registry */
         TaskSubscriptionFactory tsf = FabricRegistry.getTaskSubscriptionFactory(QueryScope.LOCAL);
-        TaskSubscription ts = tsf.createTaskSubscription(activeServiceDescriptor.task(), fabricClient.actor(),
-                activeServiceDescriptor.platform(), activeServiceDescriptor.system(),
-                activeServiceDescriptor.service(), fabricClient.platform());
+        TaskSubscription ts = taskSubscription(tsf);
         tsf.delete(ts);
 
     }
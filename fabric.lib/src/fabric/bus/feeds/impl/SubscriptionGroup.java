@@ -0,0 +1,138 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.bus.feeds.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+import fabric.TaskServiceDescriptor;
+import fabric.bus.messages.FabricMessageFactory;
+import fabric.bus.messages.IClientNotificationMessage;
+import fabric.client.FabricClient;
+import fabric.client.services.IClientNotificationHandler;
+
+/**
+ * A group of subscriptions made in bulk, sharing a single subscribe message and correlation ID.
+ * <p>
+ * The group receives the notifications for its correlation ID and passes each one to the subscriptions for the feeds
+ * that it lists (or to all of them if it lists none).
+ * </p>
+ */
+class SubscriptionGroup implements IClientNotificationHandler {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class fields
+     */
+
+    /** The client connection to the Fabric. */
+    private final FabricClient fabricClient;
+
+    /** The correlation ID shared by the subscriptions in the group. */
+    private final String correlationID = FabricMessageFactory.generateUID();
+
+    /** The subscriptions in the group, keyed by feed. */
+    private final LinkedHashMap<String, Subscription> members = new LinkedHashMap<String, Subscription>();
+
+    /** Flag indicating if the group is registered to receive notifications. */
+    private boolean registered = false;
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param fabricClient
+     *            the client connection to the Fabric.
+     */
+    SubscriptionGroup(FabricClient fabricClient) {
+
+        this.fabricClient = fabricClient;
+    }
+
+    /**
+     * Answers the correlation ID shared by the subscriptions in the group.
+     *
+     * @return the correlation ID.
+     */
+    String correlationID() {
+
+        return correlationID;
+    }
+
+    /**
+     * Adds a subscription to the group, registering the group to receive notifications if required.
+     *
+     * @param member
+     *            the subscription.
+     */
+    synchronized void add(Subscription member) {
+
+        if (!registered) {
+            fabricClient.registerNotificationHandler(correlationID, this);
+            registered = true;
+        }
+
+        members.put(member.service().toString(), member);
+    }
+
+    /**
+     * Removes a subscription from the group, removing the registration for notifications if it was the last one.
+     *
+     * @param member
+     *            the subscription.
+     */
+    synchronized void remove(Subscription member) {
+
+        if (members.get(member.service().toString()) == member) {
+            members.remove(member.service().toString());
+        }
+
+        if (members.isEmpty() && registered) {
+            fabricClient.deregisterNotificationHandler(correlationID);
+            registered = false;
+        }
+    }
+
+    /**
+     * @see fabric.client.services.IClientNotificationHandler#handleNotification(fabric.bus.messages.IClientNotificationMessage)
+     */
+    @Override
+    public void handleNotification(IClientNotificationMessage message) {
+
+        ArrayList<Subscription> targets = new ArrayList<Subscription>();
+        ServiceList serviceList = message.getServiceList();
+        TaskServiceDescriptor[] services = (serviceList != null) ? serviceList.getServices() : null;
+
+        synchronized (this) {
+
+            if (services == null || services.length == 0) {
+
+                targets.addAll(members.values());
+
+            } else {
+
+                for (int s = 0; s < services.length; s++) {
+                    Subscription member = members.get(services[s].toString());
+                    if (member != null) {
+                        targets.add(member);
+                    }
+                }
+            }
+        }
+
+        /* Deliver the notification outside of the lock, since the callbacks may unsubscribe */
+        for (Subscription member : targets) {
+            member.handleNotification(message);
+        }
+    }
+}
@@ -0,0 +1,463 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.bus.feeds.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+
+import fabric.bus.plugins.impl.FeedPluginDispatcher;
+
+/**
+ * Immutable index of the active subscriptions of a Fabric Manager, by feed, then task, then actor. Each task entry
+ * also records the task plug-in dispatchers for its feed/task.
+ * <p>
+ * Instances are never modified once created: adding or removing a subscription answers a new index that shares every
+ * entry not on the path to the change. Feed messages can therefore be handled against a snapshot of the index without
+ * locking, while subscribe and unsubscribe actions publish a new index.
+ * </p>
+ */
+final class SubscriptionIndex {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** An empty list of subscriptions */
+    private static final SubscriptionRecord[] NO_SUBSCRIPTIONS = new SubscriptionRecord[0];
+
+    /** The empty index */
+    static final SubscriptionIndex EMPTY = new SubscriptionIndex(new HashMap<String, FeedEntry>());
+
+    /*
+     * Class fields
+     */
+
+    /** The entries for each feed with subscriptions or task plug-in dispatchers, keyed by feed name */
+    private final HashMap<String, FeedEntry> feeds;
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * The entries for the tasks of a feed.
+     */
+    static final class FeedEntry {
+
+        /** The entries for each task, keyed by task ID */
+        private final HashMap<String, TaskEntry> tasks;
+
+        /** The IDs of the tasks */
+        private final Set<String> taskIDs;
+
+        /**
+         * Constructs a new instance.
+         *
+         * @param tasks
+         *            the entries for each task (which must not be modified once passed to this constructor).
+         */
+        private FeedEntry(HashMap<String, TaskEntry> tasks) {
+
+            this.tasks = tasks;
+            this.taskIDs = Collections.unmodifiableSet(tasks.keySet());
+        }
+
+        /**
+         * Answers the entry for a task.
+         *
+         * @param task
+         *            the ID of the task.
+         *
+         * @return the entry, or <code>null</code> if there is none.
+         */
+        TaskEntry task(String task) {
+
+            return tasks.get(task);
+        }
+
+        /**
+         * Answers the IDs of the tasks with entries for this feed.
+         *
+         * @return the task IDs.
+         */
+        Set<String> tasks() {
+
+            return taskIDs;
+        }
+
+        /**
+         * Answers the entries for the tasks of this feed.
+         *
+         * @return the entries.
+         */
+        Collection<TaskEntry> taskEntries() {
+
+            return Collections.unmodifiableCollection(tasks.values());
+        }
+    }
+
+    /**
+     * The task plug-in dispatchers and subscriptions for a feed/task.
+     */
+    static final class TaskEntry {
+
+        /** The in-bound task plug-in dispatcher */
+        private final FeedPluginDispatcher inboundDispatcher;
+
+        /** The out-bound task plug-in dispatcher */
+        private final FeedPluginDispatcher outboundDispatcher;
+
+        /** The subscriptions, in the order in which they were made */
+        private final SubscriptionRecord[] subscriptions;
+
+        /** The subscriptions, keyed by actor ID */
+        private final HashMap<String, SubscriptionRecord[]> subscriptionsByActor;
+
+        /**
+         * Constructs a new instance.
+         *
+         * @param inboundDispatcher
+         *            the in-bound task plug-in dispatcher.
+         *
+         * @param outboundDispatcher
+         *            the out-bound task plug-in dispatcher.
+         *
+         * @param subscriptions
+         *            the subscriptions.
+         *
+         * @param subscriptionsByActor
+         *            the subscriptions keyed by actor ID (which must not be modified once passed to this constructor).
+         */
+        private TaskEntry(FeedPluginDispatcher inboundDispatcher, FeedPluginDispatcher outboundDispatcher,
+                SubscriptionRecord[] subscriptions, HashMap<String, SubscriptionRecord[]> subscriptionsByActor) {
+
+            this.inboundDispatcher = inboundDispatcher;
+            this.outboundDispatcher = outboundDispatcher;
+            this.subscriptions = subscriptions;
+            this.subscriptionsByActor = subscriptionsByActor;
+        }
+
+        /**
+         * Answers the in-bound task plug-in dispatcher.
+         *
+         * @return the dispatcher.
+         */
+        FeedPluginDispatcher inboundDispatcher() {
+
+            return inboundDispatcher;
+        }
+
+        /**
+         * Answers the out-bound task plug-in dispatcher.
+         *
+         * @return the dispatcher.
+         */
+        FeedPluginDispatcher outboundDispatcher() {
+
+            return outboundDispatcher;
+        }
+
+        /**
+         * Answers the subscriptions for this feed/task.
+         *
+         * @return the subscriptions (which must not be modified).
+         */
+        SubscriptionRecord[] subscriptions() {
+
+            return subscriptions;
+        }
+
+        /**
+         * Answers the subscriptions of an actor for this feed/task.
+         *
+         * @param actor
+         *            the ID of the actor.
+         *
+         * @return the subscriptions (which must not be modified); empty if there are none.
+         */
+        SubscriptionRecord[] subscriptions(String actor) {
+
+            SubscriptionRecord[] actorSubscriptions = subscriptionsByActor.get(actor);
+            return (actorSubscriptions != null) ? actorSubscriptions : NO_SUBSCRIPTIONS;
+        }
+
+        /**
+         * Answers a copy of this entry with a subscription added.
+         *
+         * @param subscription
+         *            the subscription.
+         *
+         * @return the new entry.
+         */
+        private TaskEntry with(SubscriptionRecord subscription) {
+
+            HashMap<String, SubscriptionRecord[]> newByActor = new HashMap<String, SubscriptionRecord[]>(
+                    subscriptionsByActor);
+            newByActor.put(subscription.actor(), append(subscriptions(subscription.actor()), subscription));
+
+            return new TaskEntry(inboundDispatcher, outboundDispatcher, append(subscriptions, subscription),
+                    newByActor);
+        }
+
+        /**
+         * Answers a copy of this entry with a subscription removed.
+         *
+         * @param subscription
+         *            the subscription.
+         *
+         * @return the new entry, or this entry if it does not include the subscription.
+         */
+        private TaskEntry without(SubscriptionRecord subscription) {
+
+            TaskEntry without = this;
+            SubscriptionRecord[] actorSubscriptions = subscriptions(subscription.actor());
+            SubscriptionRecord[] newActorSubscriptions = remove(actorSubscriptions, subscription);
+
+            if (newActorSubscriptions != actorSubscriptions) {
+
+                HashMap<String, SubscriptionRecord[]> newByActor = new HashMap<String, SubscriptionRecord[]>(
+                        subscriptionsByActor);
+
+                if (newActorSubscriptions.length > 0) {
+                    newByActor.put(subscription.actor(), newActorSubscriptions);
+                } else {
+                    newByActor.remove(subscription.actor());
+                }
+
+                without = new TaskEntry(inboundDispatcher, outboundDispatcher, remove(subscriptions, subscription),
+                        newByActor);
+            }
+
+            return without;
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param feeds
+     *            the entries for each feed (which must not be modified once passed to this constructor).
+     */
+    private SubscriptionIndex(HashMap<String, FeedEntry> feeds) {
+
+        this.feeds = feeds;
+    }
+
+    /**
+     * Answers the entry for a feed.
+     *
+     * @param feedName
+     *            the name of the feed.
+     *
+     * @return the entry, or <code>null</code> if there is none.
+     */
+    FeedEntry feed(String feedName) {
+
+        return feeds.get(feedName);
+    }
+
+    /**
+     * Answers the entry for a feed/task.
+     *
+     * @param feedName
+     *            the name of the feed.
+     *
+     * @param task
+     *            the ID of the task.
+     *
+     * @return the entry, or <code>null</code> if there is none.
+     */
+    TaskEntry task(String feedName, String task) {
+
+        FeedEntry feedEntry = feeds.get(feedName);
+        return (feedEntry != null) ? feedEntry.task(task) : null;
+    }
+
+    /**
+     * Answers the entries for each feed.
+     *
+     * @return the entries.
+     */
+    Collection<FeedEntry> feeds() {
+
+        return Collections.unmodifiableCollection(feeds.values());
+    }
+
+    /**
+     * Answers a copy of this index with a subscription added. If there is no entry for the subscription's feed/task
+     * then one is created using the specified task plug-in dispatchers, otherwise the dispatchers already recorded are
+     * retained.
+     *
+     * @param feedName
+     *            the name of the feed.
+     *
+     * @param subscription
+     *            the subscription.
+     *
+     * @param inboundTaskDispatcher
+     *            the in-bound task plug-in dispatcher for the feed/task.
+     *
+     * @param outboundTaskDispatcher
+     *            the out-bound task plug-in dispatcher for the feed/task.
+     *
+     * @return the new index.
+     */
+    SubscriptionIndex with(String feedName, SubscriptionRecord subscription,
+            FeedPluginDispatcher inboundTaskDispatcher, FeedPluginDispatcher outboundTaskDispatcher) {
+
+        String task = subscription.service().task();
+        TaskEntry taskEntry = task(feedName, task);
+
+        if (taskEntry == null) {
+            taskEntry = new TaskEntry(inboundTaskDispatcher, outboundTaskDispatcher, NO_SUBSCRIPTIONS,
+                    new HashMap<String, SubscriptionRecord[]>());
+        }
+
+        return replace(feedName, task, taskEntry.with(subscription));
+    }
+
+    /**
+     * Answers a copy of this index with a subscription removed. The entry for the subscription's feed/task is retained
+     * (together with its task plug-in dispatchers) even if it has no subscriptions left.
+     *
+     * @param feedName
+     *            the name of the feed.
+     *
+     * @param subscription
+     *            the subscription.
+     *
+     * @return the new index, or this index if it does not include the subscription.
+     */
+    SubscriptionIndex without(String feedName, SubscriptionRecord subscription) {
+
+        SubscriptionIndex without = this;
+        String task = subscription.service().task();
+        TaskEntry taskEntry = task(feedName, task);
+
+        if (taskEntry != null) {
+            TaskEntry newTaskEntry = taskEntry.without(subscription);
+            if (newTaskEntry != taskEntry) {
+                without = replace(feedName, task, newTaskEntry);
+            }
+        }
+
+        return without;
+    }
+
+    /**
+     * Answers a copy of this index with the entry for a feed/task (including any remaining subscriptions) removed.
+     *
+     * @param feedName
+     *            the name of the feed.
+     *
+     * @param task
+     *            the ID of the task.
+     *
+     * @return the new index, or this index if there is no entry for the feed/task.
+     */
+    SubscriptionIndex withoutTask(String feedName, String task) {
+
+        return (task(feedName, task) != null) ? replace(feedName, task, null) : this;
+    }
+
+    /**
+     * Answers a copy of this index with the entry for a feed/task replaced. Only the maps on the path to the entry are
+     * copied.
+     *
+     * @param feedName
+     *            the name of the feed.
+     *
+     * @param task
+     *            the ID of the task.
+     *
+     * @param taskEntry
+     *            the new entry, or <code>null</code> to remove the entry.
+     *
+     * @return the new index.
+     */
+    private SubscriptionIndex replace(String feedName, String task, TaskEntry taskEntry) {
+
+        FeedEntry feedEntry = feeds.get(feedName);
+        HashMap<String, TaskEntry> newTasks = (feedEntry != null) ? new HashMap<String, TaskEntry>(feedEntry.tasks)
+                : new HashMap<String, TaskEntry>();
+
+        if (taskEntry != null) {
+            newTasks.put(task, taskEntry);
+        } else {
+            newTasks.remove(task);
+        }
+
+        HashMap<String, FeedEntry> newFeeds = new HashMap<String, FeedEntry>(feeds);
+
+        if (!newTasks.isEmpty()) {
+            newFeeds.put(feedName, new FeedEntry(newTasks));
+        } else {
+            newFeeds.remove(feedName);
+        }
+
+        return new SubscriptionIndex(newFeeds);
+    }
+
+    /**
+     * Answers a copy of a list of subscriptions with a subscription appended.
+     *
+     * @param subscriptions
+     *            the list.
+     *
+     * @param subscription
+     *            the subscription to append.
+     *
+     * @return the new list.
+     */
+    private static SubscriptionRecord[] append(SubscriptionRecord[] subscriptions, SubscriptionRecord subscription) {
+
+        SubscriptionRecord[] newSubscriptions = new SubscriptionRecord[subscriptions.length + 1];
+        System.arraycopy(subscriptions, 0, newSubscriptions, 0, subscriptions.length);
+        newSubscriptions[subscriptions.length] = subscription;
+        return newSubscriptions;
+    }
+
+    /**
+     * Answers a copy of a list of subscriptions with a subscription removed.
+     *
+     * @param subscriptions
+     *            the list.
+     *
+     * @param subscription
+     *            the subscription to remove.
+     *
+     * @return the new list, or the original list if it does not contain the subscription.
+     */
+    private static SubscriptionRecord[] remove(SubscriptionRecord[] subscriptions, SubscriptionRecord subscription) {
+
+        SubscriptionRecord[] newSubscriptions = subscriptions;
+
+        for (int s = 0; s < subscriptions.length; s++) {
+
+            if (subscriptions[s] == subscription) {
+
+                newSubscriptions = new SubscriptionRecord[subscriptions.length - 1];
+                System.arraycopy(subscriptions, 0, newSubscriptions, 0, s);
+                System.arraycopy(subscriptions, s + 1, newSubscriptions, s, subscriptions.length - s - 1);
+                break;
+
+            }
+        }
+
+        return newSubscriptions;
+    }
+}
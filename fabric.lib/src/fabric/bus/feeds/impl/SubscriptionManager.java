@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2007, 2012
+ * (C) Copyright IBM Corp. 2007, 2014
  *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -13,6 +13,8 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,6 +41,7 @@ import fabric.bus.services.IPersistentService;
 import fabric.bus.services.impl.BusService;
 import fabric.core.io.MessageQoS;
 import fabric.core.logging.FLog;
+import fabric.core.metrics.PipelineMetrics;
 import fabric.registry.ActorPlugin;
 import fabric.registry.FabricRegistry;
 import fabric.registry.NodePlugin;
@@ -60,7 +63,7 @@ import fabric.services.messageforwarding.OutboundMessage;
 public class SubscriptionManager extends BusService implements ISubscriptionManager, IPersistentService {
 
     /** Copyright notice. */
-    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2007, 2012";
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2007, 2014";
 
     /*
      * Class constants
@@ -80,10 +83,11 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
     private final HashMap<String, SubscriptionRecord> activeSubscriptionIDs = new HashMap<String, SubscriptionRecord>();
 
     /**
-     * The table of active subscriptions, keyed by feed names, with each entry containing the submap of active
-     * subscriptions for the feed.
+     * The index of active subscriptions and task plug-in dispatchers, by feed, task and actor. The index is immutable:
+     * feed messages are handled against the current index without locking, while subscribe and unsubscribe actions
+     * replace it.
      */
-    private final HashMap<String, ArrayList<SubscriptionRecord>> activeSubscriptions = new HashMap<String, ArrayList<SubscriptionRecord>>();
+    private volatile SubscriptionIndex subscriptionIndex = SubscriptionIndex.EMPTY;
 
     /**
      * The count of active subscriptions for each task, keyed by task ID; when the count reaches zero the task plug-ins
@@ -92,7 +96,7 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
     private final HashMap<String, Integer> taskSubscriptionCounts = new HashMap<String, Integer>();
 
     /** Map of QoS settings for Fabric feeds, keyed by feed descriptor. */
-    private final HashMap<String, MessageQoS> feedQoS = new HashMap<String, MessageQoS>();
+    private final Map<String, MessageQoS> feedQoS = new ConcurrentHashMap<String, MessageQoS>();
 
     /** The manager for in-bound per-node plug-ins. */
     private FeedPluginDispatcher inboundNodeDispatcher = null;
@@ -100,21 +104,12 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
     /** The manager for out-bound per-node plug-ins. */
     private FeedPluginDispatcher outboundNodeDispatcher = null;
 
-    /**
-     * The table of in-bound per-task plug-in dispatchers, keyed by feed names, with each entry containing the sub-table
-     * of in-bound task plug-in dispatchers for the feed.
-     */
-    private final HashMap<String, HashMap<String, FeedPluginDispatcher>> inboundTaskDispatchers = new HashMap<String, HashMap<String, FeedPluginDispatcher>>();
-
-    /**
-     * The table of out-bound per-task plug-in dispatchers, keyed by feed names, with each entry containing the
-     * sub-table of out-bound task plug-in dispatchers for the feed.
-     */
-    private final HashMap<String, HashMap<String, FeedPluginDispatcher>> outboundTaskDispatchers = new HashMap<String, HashMap<String, FeedPluginDispatcher>>();
-
     /** A local copy of the interface to Fabric management functions. */
     private IBusServices busServices = null;
 
+    /** Lock serializing the subscribe and unsubscribe actions that update the subscription index. */
+    private final ReentrantLock subscriptionLock = new ReentrantLock();
+
     /*
      * Inner classes
      */
@@ -145,14 +140,8 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
         /* The action resulting from actor plug-ins */
         int actorPluginAction = IFeedPlugin.ACTION_CONTINUE;
 
-        /* The list of active subscriptions at which this message is associated */
-        ArrayList<SubscriptionRecord> feedSubscriptions = null;
-
-        /* The in-bound task plug-in dispatchers for this feed */
-        HashMap<String, FeedPluginDispatcher> inboundFeedTaskDispatchers = null;
-
-        /* The out-bound task plug-in dispatchers for this feed */
-        HashMap<String, FeedPluginDispatcher> outboundFeedTaskDispatchers = null;
+        /* The task plug-in dispatchers and active subscriptions for the feed with which this message is associated */
+        SubscriptionIndex.FeedEntry feedSubscriptions = null;
 
         /*
          * Table recoding the nodes to which this message is to be sent next. The key for each entry in the table is the
@@ -177,6 +166,30 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
 
     }
 
+    /**
+     * Constructs a new instance using the specified node plug-in dispatchers, rather than loading the node plug-ins
+     * from the Registry. Used to exercise feed handling outside of a running Fabric Manager (e.g. by benchmarks).
+     *
+     * @param busServices
+     *            accessor for Fabric management services.
+     *
+     * @param inboundNodeDispatcher
+     *            the in-bound node plug-in dispatcher.
+     *
+     * @param outboundNodeDispatcher
+     *            the out-bound node plug-in dispatcher.
+     */
+    SubscriptionManager(IBusServices busServices, FeedPluginDispatcher inboundNodeDispatcher,
+            FeedPluginDispatcher outboundNodeDispatcher) {
+
+        this();
+
+        this.busServices = busServices;
+        this.inboundNodeDispatcher = inboundNodeDispatcher;
+        this.outboundNodeDispatcher = outboundNodeDispatcher;
+
+    }
+
     /**
      * @see fabric.bus.services.impl.BusService#initService(fabric.bus.plugins.IPluginConfig)
      */
@@ -213,21 +226,31 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
         /* Get the name of the action to perform */
         String action = message.getAction();
 
-        /* If this is a subscribe command... */
-        if (action.equals(IServiceMessage.ACTION_SUBSCRIBE)
-                || action.equals(IServiceMessage.ACTION_RESTORE_SUBSCRIPTION)) {
+        subscriptionLock.lock();
 
-            actionSubscribe(message);
+        try {
 
-        }
-        /* Else if this is a unsubscribe command... */
-        else if (action.equals(IServiceMessage.ACTION_UNSUBSCRIBE)) {
+            /* If this is a subscribe command... */
+            if (action.equals(IServiceMessage.ACTION_SUBSCRIBE)
+                    || action.equals(IServiceMessage.ACTION_RESTORE_SUBSCRIPTION)) {
 
-            actionUnsubscribe(message);
+                actionSubscribe(message);
 
-        } else {
+            }
+            /* Else if this is a unsubscribe command... */
+            else if (action.equals(IServiceMessage.ACTION_UNSUBSCRIBE)) {
+
+                actionUnsubscribe(message);
+
+            } else {
+
+                logger.log(Level.WARNING, "Unrecognized action: {0}", action);
+
+            }
 
-            logger.log(Level.WARNING, "Unrecognized action: {0}", action);
+        } finally {
+
+            subscriptionLock.unlock();
 
         }
 
@@ -241,44 +264,53 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
     @Override
     public void stopService() {
 
-        /* Stop node plug-ins */
-        inboundNodeDispatcher.stopDispatcher();
+        subscriptionLock.lock();
 
-        /* Stop task plug-ins */
-        for (Iterator<HashMap<String, FeedPluginDispatcher>> feedTaskDispatchersIterator = inboundTaskDispatchers
-                .values().iterator(); feedTaskDispatchersIterator.hasNext();) {
+        try {
 
-            HashMap<String, FeedPluginDispatcher> taskDispatchersIterator = feedTaskDispatchersIterator.next();
+            stopDispatchers();
 
-            for (Iterator<FeedPluginDispatcher> dispatchersIterator = taskDispatchersIterator.values().iterator(); dispatchersIterator
-                    .hasNext();) {
+        } finally {
 
-                FeedPluginDispatcher dispatcher = dispatchersIterator.next();
-                dispatcher.stopDispatcher();
+            subscriptionLock.unlock();
 
-            }
         }
 
-        /* Stop actor plug-ins */
-        for (Iterator<ArrayList<SubscriptionRecord>> a = activeSubscriptions.values().iterator(); a.hasNext();) {
+        logger.log(Level.FINE, "Service [{0}] stopped", getClass().getName());
+    }
 
-            ArrayList<SubscriptionRecord> feedSubscriptionList = a.next();
+    /**
+     * Stops the node, task and actor plug-in dispatchers.
+     */
+    private void stopDispatchers() {
 
-            for (Iterator<SubscriptionRecord> s = feedSubscriptionList.iterator(); s.hasNext();) {
+        /* Stop node plug-ins */
+        inboundNodeDispatcher.stopDispatcher();
 
-                SubscriptionRecord nextSubscription = s.next();
+        for (Iterator<SubscriptionIndex.FeedEntry> f = subscriptionIndex.feeds().iterator(); f.hasNext();) {
 
-                IFeedPluginDispatcher nextInboundDispatcher = nextSubscription.inboundActorDispatcher();
-                nextInboundDispatcher.stopDispatcher();
+            for (Iterator<SubscriptionIndex.TaskEntry> t = f.next().taskEntries().iterator(); t.hasNext();) {
 
-                IFeedPluginDispatcher nextOutboundDispatcher = nextSubscription.outboundActorDispatcher();
-                nextOutboundDispatcher.stopDispatcher();
+                SubscriptionIndex.TaskEntry taskEntry = t.next();
 
-            }
+                /* Stop task plug-ins */
+                taskEntry.inboundDispatcher().stopDispatcher();
 
-        }
+                /* Stop actor plug-ins */
 
-        logger.log(Level.FINE, "Service [{0}] stopped", getClass().getName());
+                SubscriptionRecord[] subscriptions = taskEntry.subscriptions();
+
+                for (int s = 0; s < subscriptions.length; s++) {
+
+                    IFeedPluginDispatcher nextInboundDispatcher = subscriptions[s].inboundActorDispatcher();
+                    nextInboundDispatcher.stopDispatcher();
+
+                    IFeedPluginDispatcher nextOutboundDispatcher = subscriptions[s].outboundActorDispatcher();
+                    nextOutboundDispatcher.stopDispatcher();
+
+                }
+            }
+        }
     }
 
     /**
@@ -304,12 +336,11 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
         /* If the message is to be processed further... */
         if (fhmd.nodePluginAction == IFeedPlugin.ACTION_CONTINUE) {
 
-            /* Get the list of active subscriptions for the feed associated with this message */
-            fhmd.feedSubscriptions = activeSubscriptions.get(fhmd.feedName);
-
-            /* Get the task plug-in dispatchers for this feed */
-            fhmd.inboundFeedTaskDispatchers = inboundTaskDispatchers.get(fhmd.feedName);
-            fhmd.outboundFeedTaskDispatchers = outboundTaskDispatchers.get(fhmd.feedName);
+            /*
+             * Get the task plug-in dispatchers and active subscriptions for the feed associated with this message (the
+             * message is handled against this snapshot, whatever (un)subscribe actions happen meanwhile)
+             */
+            fhmd.feedSubscriptions = subscriptionIndex.feed(fhmd.feedName);
 
             /* Get the list of tasks with subscriptions for this feed */
             Iterator<String> tasks = feedTaskList(nodeMessage, fhmd);
@@ -317,12 +348,19 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
             /* If there are any tasks to handle... */
             if (tasks != null) {
 
+                long fanoutStart = PipelineMetrics.start();
+
                 /* Handle the feed message for each task with an active subscription */
                 handleFeedForTaskList(nodeMessage, tasks, fhmd);
 
                 /* Forward the message */
                 sendFeedMessageToNextHop(fhmd);
 
+                if (fanoutStart != 0) {
+                    PipelineMetrics.stage(PipelineMetrics.STAGE_FANOUT, PipelineMetrics.SCOPE_FEED, fhmd.feedName)
+                            .recordSince(fanoutStart);
+                }
+
             }
 
         } else {
@@ -366,9 +404,9 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
             tasks = fhmd.taskSubscriptions.taskIterator();
         }
         /* Else if there are any task dispatchers registered for this feed */
-        else if (fhmd.inboundFeedTaskDispatchers != null) {
-            /* Iterate across the dispatchers */
-            tasks = fhmd.inboundFeedTaskDispatchers.keySet().iterator();
+        else if (fhmd.feedSubscriptions != null) {
+            /* Iterate across the tasks */
+            tasks = fhmd.feedSubscriptions.tasks().iterator();
         }
 
         return tasks;
@@ -412,7 +450,7 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
 
             if (doInstrument()) {
                 taskMetric = new FabricMetric(homeNode(), task, null, message.metaGetFeedDescriptor(),
-                        message.getUID(), message.getOrdinal(), message.toXML().toBytes(), null);
+                        message.getUID(), message.getOrdinal(), null, null);
                 metrics().startTiming(taskMetric, FabricMetric.EVENT_TASK_PROCESSING_START);
             }
 
@@ -442,10 +480,22 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
      */
     private void handleFeedForTask(IFeedMessage message, FeedHandlingMetaData fhmd, String task) throws Exception {
 
+        /* Get the task plug-in dispatchers and subscriptions for this task */
+        SubscriptionIndex.TaskEntry taskEntry = (fhmd.feedSubscriptions != null) ? fhmd.feedSubscriptions.task(task)
+                : null;
+
+        /* If there are none (the message is targeted at a task with no subscriptions here)... */
+        if (taskEntry == null) {
+
+            logger.log(Level.FINEST, "No subscriptions to feed [{0}] for task [{1}]", new Object[] {fhmd.feedName,
+                    task});
+            return;
+
+        }
+
         /* Apply the in-bound task plug-ins to the message */
         IFeedMessage taskMessage = (IFeedMessage) message.replicate();
-        FeedPluginDispatcher inboundTaskDispatcher = fhmd.inboundFeedTaskDispatchers.get(task);
-        fhmd.taskPluginAction = inboundTaskDispatcher.dispatch(taskMessage, fhmd.nodePluginAction);
+        fhmd.taskPluginAction = taskEntry.inboundDispatcher().dispatch(taskMessage, fhmd.nodePluginAction);
 
         /* If the message is to be processed further... */
         if (fhmd.taskPluginAction == IFeedPlugin.ACTION_CONTINUE) {
@@ -453,22 +503,17 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
             /* Determine if the message was modified by the plug-ins */
             fhmd.messageModified = (fhmd.messageModified == true) ? true : taskMessage.metaIsModified();
 
-            /* If there are any subscriptions for this feed... */
-            if (fhmd.feedSubscriptions != null) {
-
-                List<String> actorList = null;
-
-                /* If the message is directed at specific tasks and actors... */
-                if (fhmd.messageIsTargetted) {
-                    /* Get the list of actors for this message */
-                    actorList = fhmd.taskSubscriptions.getActors(task);
-                }
-
-                /* Handle the message for each actor */
-                handleFeedForActorList(taskMessage, task, actorList, fhmd);
+            List<String> actorList = null;
 
+            /* If the message is directed at specific tasks and actors... */
+            if (fhmd.messageIsTargetted) {
+                /* Get the list of actors for this message */
+                actorList = fhmd.taskSubscriptions.getActors(task);
             }
 
+            /* Handle the message for each actor */
+            handleFeedForActorList(taskMessage, taskEntry, actorList, fhmd);
+
         } else {
 
             /* The message is not to be processed further */
@@ -490,8 +535,8 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
      * @param taskMessage
      *            the feed message.
      *
-     * @param task
-     *            the task via which the actors are subscribed.
+     * @param taskEntry
+     *            the task plug-in dispatchers and subscriptions of the task via which the actors are subscribed.
      *
      * @param actorList
      *            the list of actors.
@@ -501,61 +546,91 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
      *
      * @throws Exception
      */
-    private void handleFeedForActorList(IFeedMessage taskMessage, String task, List<String> actorList,
-            FeedHandlingMetaData fhmd) throws Exception {
+    private void handleFeedForActorList(IFeedMessage taskMessage, SubscriptionIndex.TaskEntry taskEntry,
+            List<String> actorList, FeedHandlingMetaData fhmd) throws Exception {
 
-        /* For each subscription... */
-        for (Iterator<SubscriptionRecord> s = fhmd.feedSubscriptions.iterator(); s.hasNext();) {
+        /* If the message is for all subscribed actors... */
+        if (actorList == null) {
 
-            /* Get the next subscription */
-            SubscriptionRecord nextSubscription = s.next();
+            /* For each subscription... */
+            SubscriptionRecord[] subscriptions = taskEntry.subscriptions();
+            for (int s = 0; s < subscriptions.length; s++) {
+                handleFeedForSubscription(taskMessage, taskEntry, subscriptions[s], fhmd);
+            }
 
-            /* If it is for the current task and actor... */
-            if (nextSubscription.service().task().equals(task)
-                    && (actorList == null || actorList.contains(nextSubscription.actor()))) {
+        } else {
 
-                /* Actor instrumentation */
-                FabricMetric actorMetric = null;
+            /* For each actor... */
+            for (Iterator<String> a = actorList.iterator(); a.hasNext();) {
 
-                if (doInstrument()) {
-                    actorMetric = new FabricMetric(homeNode(), task, null, taskMessage.metaGetFeedDescriptor(),
-                            taskMessage.getUID(), taskMessage.getOrdinal(), taskMessage.toXML().toBytes(), null);
-                    metrics().startTiming(actorMetric, FabricMetric.EVENT_ACTOR_PROCESSING_START);
+                /* For each of the actor's subscriptions... */
+                SubscriptionRecord[] subscriptions = taskEntry.subscriptions(a.next());
+                for (int s = 0; s < subscriptions.length; s++) {
+                    handleFeedForSubscription(taskMessage, taskEntry, subscriptions[s], fhmd);
                 }
+            }
+        }
+    }
 
-                /* Handle the message for this actor */
-                IFeedMessage actorMessage = handleFeedForActor(taskMessage, nextSubscription, fhmd);
+    /**
+     * Handles the processing of a feed message for the specified subscription, applying the actor plug-ins followed by
+     * the out-bound task plug-ins, and saving the message ready to be sent onward.
+     *
+     * @param taskMessage
+     *            the feed message.
+     *
+     * @param taskEntry
+     *            the task plug-in dispatchers of the task via which the actor is subscribed.
+     *
+     * @param subscription
+     *            the subscription.
+     *
+     * @param fhmd
+     *            feed handling meta-data for this message.
+     *
+     * @throws Exception
+     */
+    private void handleFeedForSubscription(IFeedMessage taskMessage, SubscriptionIndex.TaskEntry taskEntry,
+            SubscriptionRecord subscription, FeedHandlingMetaData fhmd) throws Exception {
 
-                if (doInstrument()) {
-                    metrics().endTiming(actorMetric, FabricMetric.EVENT_ACTOR_PROCESSING_STOP);
-                }
+        /* Actor instrumentation */
+        FabricMetric actorMetric = null;
+
+        if (doInstrument()) {
+            actorMetric = new FabricMetric(homeNode(), subscription.service().task(), null, taskMessage
+                    .metaGetFeedDescriptor(), taskMessage.getUID(), taskMessage.getOrdinal(), null, null);
+            metrics().startTiming(actorMetric, FabricMetric.EVENT_ACTOR_PROCESSING_START);
+        }
 
-                /* If the message is to be processed further... */
-                if (actorMessage != null) {
+        /* Handle the message for this actor */
+        IFeedMessage actorMessage = handleFeedForActor(taskMessage, subscription, fhmd);
 
-                    /* Apply the out-bound task plug-ins to the message */
-                    FeedPluginDispatcher outboundTaskDispatcher = fhmd.outboundFeedTaskDispatchers.get(task);
-                    fhmd.taskPluginAction = outboundTaskDispatcher.dispatch(actorMessage, fhmd.actorPluginAction);
+        if (doInstrument()) {
+            metrics().endTiming(actorMetric, FabricMetric.EVENT_ACTOR_PROCESSING_STOP);
+        }
 
-                    /* If the message is to be processed further... */
-                    if (fhmd.taskPluginAction == IFeedPlugin.ACTION_CONTINUE) {
+        /* If the message is to be processed further... */
+        if (actorMessage != null) {
 
-                        /* Determine if the message was modified by the plug-ins */
-                        fhmd.messageModified = (fhmd.messageModified == true) ? true : actorMessage.metaIsModified();
+            /* Apply the out-bound task plug-ins to the message */
+            fhmd.taskPluginAction = taskEntry.outboundDispatcher().dispatch(actorMessage, fhmd.actorPluginAction);
 
-                        /* Task and actor processing is now complete */
-                        addMessageToSendList(nextSubscription, fhmd, actorMessage);
+            /* If the message is to be processed further... */
+            if (fhmd.taskPluginAction == IFeedPlugin.ACTION_CONTINUE) {
 
-                    } else {
+                /* Determine if the message was modified by the plug-ins */
+                fhmd.messageModified = (fhmd.messageModified == true) ? true : actorMessage.metaIsModified();
 
-                        /* The message is not to be processed further */
-                        logger.log(Level.FINEST,
-                                "Discarding message from feed [{0}] due to out-bound task plug-in action",
-                                fhmd.feedName);
-                        fhmd.messageModified = true;
+                /* Task and actor processing is now complete */
+                addMessageToSendList(subscription, fhmd, actorMessage);
+
+            } else {
+
+                /* The message is not to be processed further */
+                logger.log(Level.FINEST, "Discarding message from feed [{0}] due to out-bound task plug-in action",
+                        fhmd.feedName);
+                fhmd.messageModified = true;
 
-                    }
-                }
             }
         }
     }
@@ -714,8 +789,7 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
      *
      * @throws Exception
      */
-    private FeedPluginDispatcher taskDispatcherFactory(TaskServiceDescriptor taskFeed, String type,
-            HashMap<String, HashMap<String, FeedPluginDispatcher>> taskDispatchers) throws Exception {
+    private FeedPluginDispatcher taskDispatcherFactory(TaskServiceDescriptor taskFeed, String type) throws Exception {
 
         ServiceDescriptor feed = new ServiceDescriptor(taskFeed);
 
@@ -726,15 +800,18 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
                 taskFeed.system(), taskFeed.service(), homeNode(), type);
         TaskPlugin[] taskPlugins = FabricRegistry.getTaskPluginFactory(QueryScope.LOCAL).getTaskPlugins(predicate);
 
-        HashMap<String, FeedPluginDispatcher> feedTaskDispatchers = lookupSubmap(feed.toString(), taskDispatchers);
-        FeedPluginDispatcher taskDispatcher = feedTaskDispatchers.get(taskFeed.task());
+        SubscriptionIndex.TaskEntry taskEntry = subscriptionIndex.task(feed.toString(), taskFeed.task());
+        FeedPluginDispatcher taskDispatcher = null;
+
+        if (taskEntry != null) {
+            taskDispatcher = type.equals(INBOUND) ? taskEntry.inboundDispatcher() : taskEntry.outboundDispatcher();
+        }
 
         /* If we haven't loaded the task plug-ins yet... */
         if (taskDispatcher == null) {
 
-            /* Initialize the dispatcher for this list of plug-ins and record it */
+            /* Initialize the dispatcher for this list of plug-ins (it is recorded with the subscription) */
             taskDispatcher = FeedPluginDispatcher.taskPluginFactory(homeNode(), taskPlugins, busServices, taskFeed);
-            feedTaskDispatchers.put(taskFeed.task(), taskDispatcher);
 
         }
 
@@ -886,9 +963,8 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
             lookupFeedQoS(feed);
 
             /* Get the task plug-in dispatchers for this feed/task */
-            incrementTaskSubscriptionCount(taskFeed.task());
-            taskDispatcherFactory(taskFeed, INBOUND, inboundTaskDispatchers);
-            taskDispatcherFactory(taskFeed, OUTBOUND, outboundTaskDispatchers);
+            FeedPluginDispatcher inboundTaskDispatcher = taskDispatcherFactory(taskFeed, INBOUND);
+            FeedPluginDispatcher outboundTaskDispatcher = taskDispatcherFactory(taskFeed, OUTBOUND);
 
             /* Get the actor plug-in dispatcher for this feed/task/actor */
             FeedPluginDispatcher inboundActorDispatcher = actorDispatcherFactory(actor, taskFeed, INBOUND);
@@ -900,16 +976,10 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
             /* Determine the route for the feed messages associated with this subscription */
             IRouting feedRouting = message.route();
 
-            /* Get the list of active subscriptions for this feed */
-            ArrayList<SubscriptionRecord> feedSubscriptions = lookupSublist(feed.toString(), activeSubscriptions);
-
             /* Create and record a new subscription record */
             SubscriptionRecord subscription = new SubscriptionRecord(actor, actorPlatform, taskFeed, feedRouting,
                     MessageQoS.DEFAULT, inboundActorDispatcher, outboundActorDispatcher, cleanupMessageHandles);
-            feedSubscriptions.add(subscription);
-
-            /* Add this subscription to the active list */
-            activeSubscriptionIDs.put(subscriptionID, subscription);
+            recordSubscription(subscriptionID, subscription, inboundTaskDispatcher, outboundTaskDispatcher);
 
         } else {
 
@@ -919,6 +989,42 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
         }
     }
 
+    /**
+     * Records a new active subscription, together with the task plug-in dispatchers for its feed/task. Must be called
+     * while holding the subscription write lock (if the instance is in use).
+     *
+     * @param subscriptionID
+     *            the ID of the subscription.
+     *
+     * @param subscription
+     *            the subscription.
+     *
+     * @param inboundTaskDispatcher
+     *            the in-bound task plug-in dispatcher for the feed/task.
+     *
+     * @param outboundTaskDispatcher
+     *            the out-bound task plug-in dispatcher for the feed/task.
+     */
+    void recordSubscription(String subscriptionID, SubscriptionRecord subscription,
+            FeedPluginDispatcher inboundTaskDispatcher, FeedPluginDispatcher outboundTaskDispatcher) {
+
+        String feedName = new ServiceDescriptor(subscription.service()).toString();
+        String task = subscription.service().task();
+
+        incrementTaskSubscriptionCount(task);
+
+        /*
+         * Publish a new subscription index including the subscription, and the task plug-in dispatchers unless they
+         * have been recorded by an earlier subscription
+         */
+        subscriptionIndex = subscriptionIndex.with(feedName, subscription, inboundTaskDispatcher,
+                outboundTaskDispatcher);
+
+        /* Add this subscription to the active list */
+        activeSubscriptionIDs.put(subscriptionID, subscription);
+
+    }
+
     /**
      * Determines, from the Registry, what the QoS setting is for this feed.
      * <p>
@@ -1254,18 +1360,22 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
 
             logger.log(Level.FINE, "Stopping subscription to service [{0}]", taskFeed);
 
-            /* Get the list of active subscriptions for this feed */
-            ArrayList<SubscriptionRecord> feedSubscriptions = lookupSublist(feed.toString(), activeSubscriptions);
+            /* Get the actor's active subscriptions for this feed/task */
+            SubscriptionIndex.TaskEntry taskEntry = subscriptionIndex.task(feed.toString(), taskFeed.task());
+            SubscriptionRecord[] actorSubscriptions = (taskEntry != null) ? taskEntry.subscriptions(actor)
+                    : new SubscriptionRecord[0];
 
             /* For each subscription... */
-            for (int s = 0; s < feedSubscriptions.size(); s++) {
+            for (int s = 0; s < actorSubscriptions.length; s++) {
 
                 /* Get the next subscription */
-                SubscriptionRecord nextSubscription = feedSubscriptions.get(s);
+                SubscriptionRecord nextSubscription = actorSubscriptions[s];
 
                 /* If this is the subscription we want... */
-                if (nextSubscription.actor().equals(actor) && nextSubscription.actorPlatform().equals(actorPlatform)
-                        && nextSubscription.service().task().equals(taskFeed.task())) {
+                if (nextSubscription.actorPlatform().equals(actorPlatform)) {
+
+                    /* Remove the subscription, so that no further feed messages are handled for it */
+                    subscriptionIndex = subscriptionIndex.without(feed.toString(), nextSubscription);
 
                     /* Stop the actor plug-ins */
                     nextSubscription.inboundActorDispatcher().stopDispatcher();
@@ -1278,12 +1388,6 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
 
                     fireSubscriberNotifications(correlationID, nextSubscription.service(), event);
 
-                    /* Remove the subscription */
-                    feedSubscriptions.remove(s);
-
-                    /* Allow for the subscription list shifting down one */
-                    s--;
-
                     /* Finished */
                     break;
 
@@ -1293,24 +1397,18 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
             /* If there are no subscriptions left for this task... */
             if (decrementTaskSubscriptionCount(taskFeed.task()) == 0) {
 
-                ArrayList<HashMap<String, FeedPluginDispatcher>> taskDispatchers = new ArrayList<HashMap<String, FeedPluginDispatcher>>();
-                taskDispatchers.add(lookupSubmap(feed.toString(), inboundTaskDispatchers));
-                taskDispatchers.add(lookupSubmap(feed.toString(), outboundTaskDispatchers));
+                taskEntry = subscriptionIndex.task(feed.toString(), taskFeed.task());
 
-                for (Iterator<HashMap<String, FeedPluginDispatcher>> i = taskDispatchers.iterator(); i.hasNext();) {
+                if (taskEntry != null) {
 
-                    /* Get the next task plug-in dispatcher for this feed/task */
-                    HashMap<String, FeedPluginDispatcher> feedTaskDispatchers = i.next();
-                    FeedPluginDispatcher taskDispatcher = feedTaskDispatchers.get(taskFeed.task());
+                    /* Remove the task plug-in dispatchers for this feed/task */
+                    subscriptionIndex = subscriptionIndex.withoutTask(feed.toString(), taskFeed.task());
 
                     /* Stop the plug-ins */
-                    taskDispatcher.stopDispatcher();
-
-                    /* Remove the dispatcher */
-                    feedTaskDispatchers.remove(taskFeed.task());
+                    taskEntry.inboundDispatcher().stopDispatcher();
+                    taskEntry.outboundDispatcher().stopDispatcher();
 
                 }
-
             }
 
             /* Remove this subscription from the active list */
@@ -1573,6 +1671,9 @@ public class SubscriptionManager extends BusService implements ISubscriptionMana
                 /* Get the list of subscriptions relevant to this feed */
                 ArrayList<SubscriptionRecord> subscriptionList = messageTable.get(key);
 
+                /* Encode the message once, so that the per-subscription replicas all share the same wire bytes */
+                message.toWireBytes();
+
                 /* While this message has more subscriptions to process... */
                 for (Iterator<SubscriptionRecord> s = subscriptionList.iterator(); s.hasNext();) {
 
@@ -14,6 +14,7 @@ import fabric.bus.plugins.IFeedPluginDispatcher;
 import fabric.bus.plugins.impl.FeedPluginDispatcher;
 import fabric.bus.routing.IRouting;
 import fabric.core.io.MessageQoS;
+import fabric.core.io.OutputTopic;
 
 /**
  * Data structure holding the details of a Fabric subscription.
@@ -60,10 +61,47 @@ public class SubscriptionRecord {
      */
     private String downstreamCleanupMessageHandle = null;
 
+    /** The most recently used topic for the delivery of feed messages to the actor. */
+    private volatile DeliveryTopic deliveryTopic = null;
+
     /*
      * Inner classes
      */
 
+    /**
+     * A delivery topic and the bus and feed topic from which it was built.
+     */
+    private static final class DeliveryTopic {
+
+        /** The name of the bus used to deliver messages to local actors. */
+        final String busName;
+
+        /** The feed topic. */
+        final String feedTopic;
+
+        /** The full delivery topic. */
+        final OutputTopic topic;
+
+        /**
+         * Constructs a new instance.
+         *
+         * @param busName
+         *            the name of the bus used to deliver messages to local actors.
+         *
+         * @param feedTopic
+         *            the feed topic.
+         *
+         * @param topic
+         *            the full delivery topic.
+         */
+        DeliveryTopic(String busName, String feedTopic, OutputTopic topic) {
+
+            this.busName = busName;
+            this.feedTopic = feedTopic;
+            this.topic = topic;
+        }
+    }
+
     /*
      * Class methods
      */
@@ -213,6 +251,36 @@ public class SubscriptionRecord {
         return downstreamCleanupMessageHandle;
     }
 
+    /**
+     * Answers the topic used to deliver feed messages to the actor, built from the bus name, the actor, platform and
+     * task of this subscription, and the feed topic.
+     * <p>
+     * The topic is cached, so that it is only rebuilt if the bus name or feed topic change.
+     * </p>
+     *
+     * @param busName
+     *            the name of the bus used to deliver messages to local actors.
+     *
+     * @param feedTopic
+     *            the feed topic.
+     *
+     * @return the delivery topic.
+     */
+    public OutputTopic deliveryTopic(String busName, String feedTopic) {
+
+        DeliveryTopic cached = deliveryTopic;
+
+        if (cached == null || !cached.busName.equals(busName) || !cached.feedTopic.equals(feedTopic)) {
+
+            String fullTopic = busName + '/' + actor + '/' + actorPlatform + '/' + service.task() + '/' + feedTopic;
+            cached = new DeliveryTopic(busName, feedTopic, new OutputTopic(fullTopic));
+            deliveryTopic = cached;
+
+        }
+
+        return cached.topic;
+    }
+
     /**
      * @see java.lang.Object#toString()
      */
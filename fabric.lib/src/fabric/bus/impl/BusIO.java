@@ -8,8 +8,8 @@
 package fabric.bus.impl;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,6 +28,7 @@ import fabric.bus.messages.IFabricMessage;
 import fabric.bus.messages.IFeedMessage;
 import fabric.bus.messages.IMessagePayload;
 import fabric.bus.messages.IServiceMessage;
+import fabric.bus.messages.WireFormat;
 import fabric.bus.messages.impl.FeedMessage;
 import fabric.bus.messages.impl.MessagePayload;
 import fabric.bus.messages.impl.ServiceMessage;
@@ -72,7 +73,7 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
     private BusMessageHandler messageHandler = null;
 
     /** The list of nodes neighbouring this Fabric Manager */
-    private final HashMap<NodeDescriptor, NeighbourChannels> neighbourChannelsTable = new HashMap<NodeDescriptor, NeighbourChannels>();
+    private final ConcurrentHashMap<NodeDescriptor, NeighbourChannels> neighbourChannelsTable = new ConcurrentHashMap<NodeDescriptor, NeighbourChannels>();
 
     /** To hold the channels and topics used by the Fabric Manager */
     private final BusIOChannels ioChannels = new BusIOChannels();
@@ -89,6 +90,9 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
     /** The UID of the next message to be published onto the Fabric */
     private long fabricMessageUID = 0;
 
+    /** The engine dispatching inbound messages onto worker lanes (<code>null</code> if messages are handled inline) */
+    private volatile MessageDispatchEngine dispatchEngine = null;
+
     /*
      * Class methods
      */
@@ -132,6 +136,16 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
 
             logger.log(Level.FINE, "Opening Fabric channels on node [{0}]", homeNode());
 
+            /*
+             * Start the dispatch engine: inbound messages are handled on a configurable number of lanes, ordered by
+             * feed (feed messages) or correlation ID (service messages)
+             */
+            int dispatchLanes = Integer.parseInt(config("fabric.bus.dispatchLanes",
+                    Integer.toString(Runtime.getRuntime().availableProcessors())));
+            if (dispatchLanes > 0 && dispatchEngine == null) {
+                dispatchEngine = new MessageDispatchEngine(dispatchLanes);
+            }
+
             /*
              * Connect to the local node and open the ports
              */
@@ -205,6 +219,19 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
         }
     }
 
+    /**
+     * Stops the dispatch engine, allowing messages already queued on each lane to be handled.
+     */
+    public void stopDispatchEngine() {
+
+        MessageDispatchEngine engine = dispatchEngine;
+
+        if (engine != null) {
+            dispatchEngine = null;
+            engine.stop(Long.parseLong(config("fabric.bus.dispatchLanes.stopTimeout", "5000")));
+        }
+    }
+
     /**
      * @see fabric.core.io.ICallback#startCallback(java.lang.Object)
      */
@@ -218,24 +245,157 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
      * @see fabric.core.io.ICallback#handleMessage(fabric.core.io.Message)
      */
     @Override
-    public synchronized void handleMessage(Message message) {
+    public void handleMessage(final Message message) {
 
         FLog.enter(logger, Level.FINER, this, "handleMessage", message);
 
         String messageTopic = (String) message.topic;
-        byte[] messageData = message.data;
-        String messageString = new String((messageData != null) ? messageData : new byte[0]);
 
-        logger.log(Level.FINEST, "Full message:\n{0}", messageString);
+        /* To hold the key used to select the dispatch lane for this message */
+        String dispatchKey = null;
+
+        /* To hold the parsed message (command messages only) */
+        IFabricMessage parsedMessage = null;
+
+        /* If this is a feed message (local, replay, or en route across the Fabric)... */
+        if (isFeedTopic(messageTopic)) {
+
+            /* Feed messages are ordered by feed */
+            dispatchKey = ServiceDescriptor.extract(messageTopic);
+
+        } else {
+
+            /* Parse the message now so that it can be ordered by correlation ID */
+            parsedMessage = parseMessage(messageTopic, message.data);
+            dispatchKey = dispatchKey(messageTopic, parsedMessage);
+
+        }
+
+        MessageDispatchEngine engine = dispatchEngine;
+
+        /* If there is no dispatch engine... */
+        if (engine == null) {
+
+            /* Handle the message on the calling thread */
+            synchronized (this) {
+                processMessage(message, parsedMessage);
+            }
+
+        } else {
+
+            final IFabricMessage dispatchMessage = parsedMessage;
+
+            /* Hand the message off to its lane */
+            engine.dispatch(dispatchKey, new Runnable() {
+
+                @Override
+                public void run() {
+
+                    processMessage(message, dispatchMessage);
+                }
+            });
+
+        }
+
+        FLog.exit(logger, Level.FINER, this, "handleMessage", null);
+    }
+
+    /**
+     * Answers <code>true</code> if the specified topic is one of the topics on which feed messages are received.
+     *
+     * @param messageTopic
+     *            the topic.
+     *
+     * @return <code>true</code> if this is a feed topic, <code>false</code> otherwise.
+     */
+    private boolean isFeedTopic(String messageTopic) {
+
+        return messageTopic.startsWith(ioChannels.receiveLocalFeeds.name())
+                || messageTopic.startsWith(ioChannels.receiveLocalReplayFeeds.name())
+                || messageTopic.startsWith(ioChannels.receiveBus.name());
+    }
+
+    /**
+     * Answers the dispatch key for a command message: the correlation ID if there is one, otherwise the message topic.
+     *
+     * @param messageTopic
+     *            the topic on which the message was received.
+     *
+     * @param parsedMessage
+     *            the parsed message (<code>null</code> if the message could not be parsed).
+     *
+     * @return the dispatch key.
+     */
+    private String dispatchKey(String messageTopic, IFabricMessage parsedMessage) {
+
+        String dispatchKey = null;
+
+        if (parsedMessage instanceof IServiceMessage) {
+            dispatchKey = ((IServiceMessage) parsedMessage).getCorrelationID();
+        }
+
+        return (dispatchKey != null) ? dispatchKey : messageTopic;
+    }
+
+    /**
+     * Parses a Fabric message, logging (but otherwise ignoring) any formatting errors.
+     *
+     * @param messageTopic
+     *            the topic on which the message was received.
+     *
+     * @param messageData
+     *            the message bytes.
+     *
+     * @return the parsed message, or <code>null</code> if the message could not be parsed.
+     */
+    private IFabricMessage parseMessage(String messageTopic, byte[] messageData) {
+
+        IFabricMessage parsedMessage = null;
+
+        try {
+
+            /* Parse the message */
+            parsedMessage = FabricMessageFactory.create(messageTopic, messageData);
+
+        } catch (Exception e) {
+
+            logger.log(Level.WARNING, "Improperly formatted message received on topic {0}: {1}", new Object[] {
+                    messageTopic, e.getMessage()});
+            logger.log(Level.FINEST, "Full message:\n{0}", new String((messageData != null) ? messageData
+                    : new byte[0]));
+            logger.log(Level.FINEST, "Full exception: ", e);
+
+        }
+
+        return parsedMessage;
+    }
+
+    /**
+     * Handles a message received from the home node broker.
+     * <p>
+     * Messages with the same dispatch key are always handled by the same lane, and therefore in arrival order.
+     * </p>
+     *
+     * @param message
+     *            the message.
+     *
+     * @param parsedMessage
+     *            the parsed Fabric message, or <code>null</code> if this is a feed message (which is parsed here) or
+     *            if parsing failed.
+     */
+    private void processMessage(Message message, IFabricMessage parsedMessage) {
 
-        /* Instrumentation */
-        FabricMetric metric = null;
+        String messageTopic = (String) message.topic;
+        byte[] messageData = message.data;
 
-        if (doInstrument()) {
-            metric = new FabricMetric(homeNode(), null, null, null, null, -1, messageData, null);
-            metrics().startTiming(metric, FabricMetric.EVENT_NODE_PROCESSING_START);
+        if (logger.isLoggable(Level.FINEST)) {
+            logger.log(Level.FINEST, "Full message:\n{0}", new String((messageData != null) ? messageData
+                    : new byte[0]));
         }
 
+        /* Instrumentation (the metric itself is recorded once the message has been parsed) */
+        long startTime = doInstrument() ? System.nanoTime() : 0;
+
         try {
 
             /* If this is a local message from a source attached directly to the node... */
@@ -268,20 +428,9 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
             /* Else this should be a message that we can parse */
             else {
 
-                IFabricMessage parsedMessage = null;
-
-                try {
-
-                    /* Parse the message */
-                    parsedMessage = FabricMessageFactory.create(messageTopic, messageData);
-
-                } catch (Exception e) {
-
-                    logger.log(Level.WARNING, "Improperly formatted message received on topic {0}: {1}", new Object[] {
-                            messageTopic, e.getMessage()});
-                    logger.log(Level.FINEST, "Full message:\n{0}", messageString);
-                    logger.log(Level.FINEST, "Full exception: ", e);
-
+                /* If the message has not already been parsed... */
+                if (parsedMessage == null && isFeedTopic(messageTopic)) {
+                    parsedMessage = parseMessage(messageTopic, messageData);
                 }
 
                 /* If this is a Fabric feed message... */
@@ -312,12 +461,12 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
                     logger.log(
                             Level.WARNING,
                             "Ignoring improperly formatted connection status (last-will-and-testament) message recevied on topic {0}:\n{1}",
-                            new Object[] {messageTopic, messageString});
+                            new Object[] {messageTopic, new String((messageData != null) ? messageData : new byte[0])});
 
                 } else {
 
                     logger.log(Level.WARNING, "Ignoring improperly formatted message recevied on topic {0}:\n{1}",
-                            new Object[] {messageTopic, messageString});
+                            new Object[] {messageTopic, new String((messageData != null) ? messageData : new byte[0])});
 
                 }
 
@@ -328,17 +477,45 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
             logger.log(Level.WARNING, "Exception handling message received on topic [{0}]: {1}", new Object[] {
                     messageTopic, e.getMessage()});
             logger.log(Level.FINEST, "Full exception: ", e);
-            logger.log(Level.FINEST, "Full message:\n{0}", messageString);
+            logger.log(Level.FINEST, "Full message:\n{0}", new String((messageData != null) ? messageData
+                    : new byte[0]));
 
         } finally {
 
             if (doInstrument()) {
+                FabricMetric metric = messageMetric(parsedMessage);
+                metrics().startTiming(metric, FabricMetric.EVENT_NODE_PROCESSING_START, startTime);
                 metrics().endTiming(metric, FabricMetric.EVENT_NODE_PROCESSING_STOP);
             }
 
         }
+    }
 
-        FLog.exit(logger, Level.FINER, this, "handleMessage", null);
+    /**
+     * Builds the metric recording the processing of a message by this node.
+     *
+     * @param parsedMessage
+     *            the parsed Fabric message, or <code>null</code> if the message was not (or could not be) parsed.
+     *
+     * @return the metric, identifying the message by its UID (and, for feed messages, its feed and ordinal) if known.
+     */
+    private FabricMetric messageMetric(IFabricMessage parsedMessage) {
+
+        String messageID = null;
+        ServiceDescriptor feed = null;
+        long ordinal = -1;
+
+        if (parsedMessage != null) {
+
+            messageID = parsedMessage.getUID();
+
+            if (parsedMessage instanceof IFeedMessage) {
+                feed = ((IFeedMessage) parsedMessage).metaGetFeedDescriptor();
+                ordinal = ((IFeedMessage) parsedMessage).getOrdinal();
+            }
+        }
+
+        return new FabricMetric(homeNode(), null, null, feed, messageID, ordinal, null, null);
     }
 
     /**
@@ -416,6 +593,49 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
             neighbourChannels = neighbourChannelsTable.get(nodeDescriptor);
 
             /* If we don't currently have a connection to the neighbour... */
+            if (neighbourChannels == null) {
+                neighbourChannels = connectNewNeighbour(neighbour, nodeDescriptor);
+                if (neighbourChannels == null) {
+                    /*
+                     * Move onto next possible nodeDescriptor, previous one should be marked unavailable and not
+                     * returned.
+                     */
+                    nodeDescriptor = createDescriptor(neighbour);
+                }
+            }
+        }
+
+        if (nodeDescriptor == null) {
+            logger.log(Level.WARNING, "Could not connect to neighbour [{0}]; node details not found", neighbour);
+        }
+
+        return neighbourChannels;
+    }
+
+    /**
+     * Establishes a new connection to a neighbour.
+     * <p>
+     * Connections are made under a lock so that concurrent dispatch lanes sending to the same neighbour share a single
+     * connection.
+     * </p>
+     *
+     * @param neighbour
+     *            the Fabric name of the neighbour.
+     *
+     * @param nodeDescriptor
+     *            the descriptor of the neighbour interface to connect to.
+     *
+     * @return the connection, or <code>null</code> if the connection failed.
+     */
+    private NeighbourChannels connectNewNeighbour(String neighbour, NodeDescriptor nodeDescriptor) {
+
+        NeighbourChannels neighbourChannels = null;
+
+        synchronized (neighbourChannelsTable) {
+
+            /* Check again, in case another lane has connected in the meantime */
+            neighbourChannels = neighbourChannelsTable.get(nodeDescriptor);
+
             if (neighbourChannels == null) {
 
                 logger.log(Level.FINER, "Attempting to connect to potential new neighbour [{0}]", neighbour);
@@ -435,11 +655,6 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
                     /* Mark this nodeDescriptor as unavailable */
                     FabricRegistry.getNodeNeighbourFactory(QueryScope.LOCAL)
                             .markUnavailable(homeNode(), nodeDescriptor);
-                    /*
-                     * Move onto next possible nodeDescriptor, previous one should be marked unavailable and not
-                     * returned.
-                     */
-                    nodeDescriptor = createDescriptor(neighbour);
                 }
 
                 /*
@@ -450,10 +665,6 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
             }
         }
 
-        if (nodeDescriptor == null) {
-            logger.log(Level.WARNING, "Could not connect to neighbour [{0}]; node details not found", neighbour);
-        }
-
         return neighbourChannels;
     }
 
@@ -537,6 +748,13 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
                 newNeighbour = new NeighbourChannels(neighbourDescriptor, neighbourEndPoint, fabricCommandsBusTemplate,
                         fabricFeedsBusTemplate, fabricRegistryBusTemplate, this);
 
+                /* Select the message encoding for this neighbour (a per-node setting overrides the default) */
+                String wireFormat = config("fabric.bus.wireFormat." + neighbourDescriptor.name(), config(
+                        "fabric.bus.wireFormat", WireFormat.XML.name()));
+                newNeighbour.setWireFormat(WireFormat.fromName(wireFormat));
+                logger.log(Level.FINE, "Using {0} wire format for neighbour [{1}]", new Object[] {
+                        newNeighbour.wireFormat(), neighbourDescriptor});
+
             }
 
         } catch (Exception e) {
@@ -576,10 +794,7 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
     @Override
     public void disconnectNeighbour(String id) throws UnsupportedOperationException, IOException {
 
-        HashMap<NodeDescriptor, NeighbourChannels> neighbourChannelsTableCopy = (HashMap<NodeDescriptor, NeighbourChannels>) neighbourChannelsTable
-                .clone();
-
-        for (NodeDescriptor nodeDescriptor : neighbourChannelsTableCopy.keySet()) {
+        for (NodeDescriptor nodeDescriptor : neighbourChannelsTable.keySet()) {
             if (nodeDescriptor.name().equals(id)) {
                 disconnectNeighbour(nodeDescriptor, false);
             }
@@ -593,7 +808,8 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
     public NeighbourChannels disconnectNeighbour(NodeDescriptor nodeDescriptor, boolean doRetry)
             throws UnsupportedOperationException, IOException {
 
-        NeighbourChannels currentChannels = neighbourChannelsTable.remove(nodeDescriptor);
+        NeighbourChannels currentChannels = (nodeDescriptor != null) ? neighbourChannelsTable.remove(nodeDescriptor)
+                : null;
         NeighbourChannels newChannels = null;
 
         if (currentChannels != null) {
@@ -601,7 +817,7 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
             disconnectNode(nodeDescriptor);
         }
 
-        if (doRetry) {
+        if (doRetry && nodeDescriptor != null) {
             newChannels = connectNeighbour(nodeDescriptor.name());
         }
 
@@ -671,7 +887,7 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
                 if (nodeConnection != null) {
 
                     /* Forward the message */
-                    nodeConnection.commandBusChannel().write(message.toWireBytes());
+                    nodeConnection.commandBusChannel().write(nodeConnection.wireBytes(message));
 
                 } else {
 
@@ -701,7 +917,7 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
             logger.log(Level.FINEST, "Sending feed [{0}] message to node [{1}]", new Object[] {feedTopic,
                     nodeConnection.neighbourDescriptor()});
             String fullTopic = nodeConnection.outboundFeedBus().name() + '/' + feedTopic;
-            nodeConnection.feedBusChannel().write(message.toWireBytes(), new OutputTopic(fullTopic));
+            nodeConnection.feedBusChannel().write(nodeConnection.wireBytes(message), new OutputTopic(fullTopic));
 
         } else {
 
@@ -718,13 +934,12 @@ public class BusIO extends FabricBus implements IBusIO, ICallback, IEndPointCall
     public void deliverFeedMessage(String topic, IFeedMessage message, SubscriptionRecord subscription, MessageQoS qos)
         throws Exception {
 
-        String fullTopic = ioChannels.sendLocalSubscription.name() + '/' + subscription.actor() + '/'
-                + subscription.actorPlatform() + '/' + subscription.service().task() + '/' + topic;
+        OutputTopic fullTopic = subscription.deliveryTopic(ioChannels.sendLocalSubscription.name(), topic);
 
         logger.log(Level.FINEST, "Delivering service [{0}] message to client [{1}], task [{2}] using topic [{3}]",
                 new Object[] {subscription.service(), subscription.actor(), subscription.service().task(), fullTopic});
 
-        ioChannels.sendLocalSubscriptionChannel.write(message.toWireBytes(), new OutputTopic(fullTopic));
+        ioChannels.sendLocalSubscriptionChannel.write(message.toWireBytes(), fullTopic);
 
     }
 
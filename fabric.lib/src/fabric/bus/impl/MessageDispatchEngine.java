@@ -0,0 +1,170 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.bus.impl;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fabric.Fabric;
+
+/**
+ * Dispatches inbound Fabric messages onto a fixed set of worker lanes.
+ * <p>
+ * Each lane is serviced by a single thread, and messages are assigned to a lane by hashing a dispatch key (typically
+ * the feed descriptor or the correlation ID of the message). All messages with the same key are therefore handled in
+ * arrival order, while messages with different keys can be handled concurrently.
+ * </p>
+ */
+public class MessageDispatchEngine extends Fabric {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The prefix for lane thread names */
+    private static final String prefix = "Bus-Dispatch-Lane-";
+
+    /*
+     * Class fields
+     */
+
+    /** The worker lanes; each is a single-threaded executor */
+    private final ExecutorService[] lanes;
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * Thread factory for lane threads.
+     */
+    private static class LaneThreadFactory implements ThreadFactory {
+
+        /** The ID of the lane serviced by threads from this factory */
+        private final int lane;
+
+        /**
+         * Constructs a new instance.
+         *
+         * @param lane
+         *            the ID of the lane.
+         */
+        LaneThreadFactory(int lane) {
+
+            this.lane = lane;
+        }
+
+        /**
+         * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+         */
+        @Override
+        public Thread newThread(Runnable r) {
+
+            Thread newThread = new Thread(r, prefix + lane);
+            newThread.setDaemon(true);
+            return newThread;
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param laneCount
+     *            the number of worker lanes (values less than one are treated as one).
+     */
+    public MessageDispatchEngine(int laneCount) {
+
+        super(Logger.getLogger("fabric.bus"));
+
+        lanes = new ExecutorService[Math.max(1, laneCount)];
+
+        for (int l = 0; l < lanes.length; l++) {
+            lanes[l] = Executors.newSingleThreadExecutor(new LaneThreadFactory(l));
+        }
+
+        logger.log(Level.FINE, "Message dispatch engine started with {0} lane(s)", lanes.length);
+    }
+
+    /**
+     * Answers the number of worker lanes.
+     *
+     * @return the lane count.
+     */
+    public int laneCount() {
+
+        return lanes.length;
+    }
+
+    /**
+     * Answers the lane to which messages with the specified dispatch key are assigned.
+     *
+     * @param key
+     *            the dispatch key (<code>null</code> is assigned to lane zero).
+     *
+     * @return the lane ID.
+     */
+    public int laneFor(String key) {
+
+        return (key == null) ? 0 : (key.hashCode() & 0x7fffffff) % lanes.length;
+    }
+
+    /**
+     * Queues a task for execution on the lane associated with the dispatch key.
+     *
+     * @param key
+     *            the dispatch key.
+     *
+     * @param task
+     *            the task to execute.
+     */
+    public void dispatch(String key, Runnable task) {
+
+        lanes[laneFor(key)].execute(task);
+    }
+
+    /**
+     * Stops the worker lanes, waiting (for up to the specified time) for queued messages to be handled.
+     *
+     * @param timeout
+     *            the maximum time to wait for each lane (milliseconds).
+     */
+    public void stop(long timeout) {
+
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+
+        for (ExecutorService lane : lanes) {
+
+            try {
+
+                if (!lane.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                    lane.shutdownNow();
+                }
+
+            } catch (InterruptedException e) {
+
+                lane.shutdownNow();
+
+            }
+        }
+
+        logger.log(Level.FINE, "Message dispatch engine stopped");
+    }
+}
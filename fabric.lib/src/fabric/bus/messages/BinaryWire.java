@@ -0,0 +1,276 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ * 
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.bus.messages;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import fabric.Fabric;
+
+/**
+ * Helper methods for the compact binary form of a Fabric message.
+ * <p>
+ * A binary message starts with a two byte magic number (which cannot begin a UTF-8 encoded XML document) and a format
+ * version byte, allowing the receiver to distinguish binary and XML messages. All strings are written as a length
+ * prefixed array of UTF-8 bytes (a length of <code>-1</code> represents <code>null</code>), and byte arrays are written
+ * as-is, prefixed by their length.
+ * </p>
+ */
+public final class BinaryWire {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	/*
+	 * Class constants
+	 */
+
+	/** The first byte of the binary message header */
+	public static final byte MAGIC_0 = (byte) 0xFB;
+
+	/** The second byte of the binary message header */
+	public static final byte MAGIC_1 = (byte) 0xB1;
+
+	/** The version of the binary format */
+	public static final byte VERSION = 1;
+
+	/** The length of the binary message header */
+	public static final int HEADER_LENGTH = 3;
+
+	/** The length used to encode a <code>null</code> string or byte array */
+	private static final int NULL_LENGTH = -1;
+
+	/** The character set used for strings */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/*
+	 * Class methods
+	 */
+
+	/**
+	 * No instantiation of this class.
+	 */
+	private BinaryWire() {
+
+	}
+
+	/**
+	 * Determines if a wire message is in the binary form.
+	 * 
+	 * @param wireBytes
+	 *            the wire message.
+	 * 
+	 * @return <code>true</code> if the message carries the binary header, <code>false</code> otherwise.
+	 */
+	public static boolean isBinary(byte[] wireBytes) {
+
+		return wireBytes != null && wireBytes.length >= HEADER_LENGTH && wireBytes[0] == MAGIC_0
+				&& wireBytes[1] == MAGIC_1;
+	}
+
+	/**
+	 * Writes the binary message header.
+	 * 
+	 * @param out
+	 *            the output stream.
+	 * 
+	 * @throws IOException
+	 */
+	public static void writeHeader(DataOutput out) throws IOException {
+
+		out.writeByte(MAGIC_0);
+		out.writeByte(MAGIC_1);
+		out.writeByte(VERSION);
+	}
+
+	/**
+	 * Reads and checks the binary message header.
+	 * 
+	 * @param in
+	 *            the input stream.
+	 * 
+	 * @throws IOException
+	 *             thrown if the header is not valid, or the version is not supported.
+	 */
+	public static void readHeader(DataInput in) throws IOException {
+
+		if (in.readByte() != MAGIC_0 || in.readByte() != MAGIC_1) {
+			throw new IOException("Not a binary Fabric message");
+		}
+
+		byte version = in.readByte();
+
+		if (version != VERSION) {
+			throw new IOException("Unsupported binary Fabric message version (" + version + ")");
+		}
+	}
+
+	/**
+	 * Writes a (possibly <code>null</code>) string.
+	 * 
+	 * @param out
+	 *            the output stream.
+	 * 
+	 * @param value
+	 *            the string.
+	 * 
+	 * @throws IOException
+	 */
+	public static void writeString(DataOutput out, String value) throws IOException {
+
+		writeBytes(out, (value != null) ? value.getBytes(UTF8) : null);
+	}
+
+	/**
+	 * Reads a (possibly <code>null</code>) string.
+	 * 
+	 * @param in
+	 *            the input stream.
+	 * 
+	 * @return the string.
+	 * 
+	 * @throws IOException
+	 */
+	public static String readString(DataInput in) throws IOException {
+
+		byte[] bytes = readBytes(in);
+		return (bytes != null) ? new String(bytes, UTF8) : null;
+	}
+
+	/**
+	 * Writes a (possibly <code>null</code>) length-prefixed byte array.
+	 * 
+	 * @param out
+	 *            the output stream.
+	 * 
+	 * @param value
+	 *            the bytes.
+	 * 
+	 * @throws IOException
+	 */
+	public static void writeBytes(DataOutput out, byte[] value) throws IOException {
+
+		if (value == null) {
+
+			out.writeInt(NULL_LENGTH);
+
+		} else {
+
+			out.writeInt(value.length);
+			out.write(value);
+
+		}
+	}
+
+	/**
+	 * Reads a (possibly <code>null</code>) length-prefixed byte array.
+	 * 
+	 * @param in
+	 *            the input stream.
+	 * 
+	 * @return the bytes.
+	 * 
+	 * @throws IOException
+	 *             thrown if the length is negative, or (where the input is a stream) exceeds the bytes remaining.
+	 */
+	public static byte[] readBytes(DataInput in) throws IOException {
+
+		byte[] value = null;
+		int length = in.readInt();
+
+		if (length < NULL_LENGTH) {
+
+			throw new IOException("Invalid length (" + length + ") in binary Fabric message");
+
+		} else if (length != NULL_LENGTH) {
+
+			/* Check the length before allocating, so that a corrupt message cannot trigger a huge allocation */
+			if (in instanceof InputStream && length > ((InputStream) in).available()) {
+				throw new IOException("Length (" + length + ") exceeds the bytes remaining in binary Fabric message");
+			}
+
+			value = new byte[length];
+			in.readFully(value);
+
+		}
+
+		return value;
+	}
+
+	/**
+	 * Reads the number of elements in a list or map that follows.
+	 * 
+	 * @param in
+	 *            the input stream.
+	 * 
+	 * @return the count.
+	 * 
+	 * @throws IOException
+	 *             thrown if the count is negative, or (where the input is a stream) exceeds the bytes remaining (since
+	 *             every element occupies at least one byte).
+	 */
+	public static int readCount(DataInput in) throws IOException {
+
+		int count = in.readInt();
+
+		if (count < 0) {
+			throw new IOException("Invalid element count (" + count + ") in binary Fabric message");
+		}
+
+		/* Check the count before it is used to size a collection, as for lengths */
+		if (in instanceof InputStream && count > ((InputStream) in).available()) {
+			throw new IOException("Element count (" + count + ") exceeds the bytes remaining in binary Fabric message");
+		}
+
+		return count;
+	}
+
+	/**
+	 * Writes the type of an embedded object, using the short form of the class name where one is available.
+	 * 
+	 * @param out
+	 *            the output stream.
+	 * 
+	 * @param instance
+	 *            the object, or <code>null</code>.
+	 * 
+	 * @throws IOException
+	 */
+	public static void writeType(DataOutput out, Object instance) throws IOException {
+
+		String type = null;
+
+		if (instance != null) {
+			type = instance.getClass().getName();
+			String shortName = Fabric.shortName(type);
+			type = (shortName != null) ? shortName : type;
+		}
+
+		writeString(out, type);
+	}
+
+	/**
+	 * Reads the type of an embedded object, expanding the short form of the class name where necessary.
+	 * 
+	 * @param in
+	 *            the input stream.
+	 * 
+	 * @return the full class name, or <code>null</code> if no object was embedded.
+	 * 
+	 * @throws IOException
+	 */
+	public static String readType(DataInput in) throws IOException {
+
+		String compactType = readString(in);
+		String type = (compactType != null) ? Fabric.longName(compactType) : null;
+		return (type != null) ? type : compactType;
+	}
+}
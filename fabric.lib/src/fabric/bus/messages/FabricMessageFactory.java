@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2009, 2012
+ * (C) Copyright IBM Corp. 2009, 2014
  *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -7,11 +7,15 @@
 
 package fabric.bus.messages;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 
 import fabric.Fabric;
 import fabric.bus.messages.impl.FabricMessage;
+import fabric.core.metrics.PipelineMetrics;
+import fabric.core.metrics.StageMetrics;
 import fabric.core.xml.XML;
 
 /**
@@ -20,12 +24,15 @@ import fabric.core.xml.XML;
 public abstract class FabricMessageFactory {
 
     /** Copyright notice. */
-    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009, 2012";
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009, 2014";
 
     /*
      * Class static fields
      */
 
+    /** The metrics for the parsing of wire messages */
+    private static final StageMetrics parseMetrics = PipelineMetrics.stage(PipelineMetrics.STAGE_PARSE);
+
     /** The unique ordinal number used for messages created in this VM */
     private static int ordinal = 1;
 
@@ -198,9 +205,69 @@ public abstract class FabricMessageFactory {
     public static IFabricMessage create(String topic, byte[] wireBytes) throws ClassNotFoundException,
     IllegalAccessException, InstantiationException, Exception {
 
-        /* Currently the wire format is just a byte array representation of an XML document */
-        XML messageXML = new XML(wireBytes);
-        return create(topic, messageXML);
+        IFabricMessage instance = null;
+        long parseStart = PipelineMetrics.start();
+
+        /* If this is a binary message... */
+        if (BinaryWire.isBinary(wireBytes)) {
+
+            instance = createFromBinary(topic, wireBytes);
+
+        } else {
+
+            /* It's a byte array representation of an XML document */
+            XML messageXML = new XML(wireBytes);
+            instance = create(topic, messageXML);
+
+        }
+
+        parseMetrics.recordSince(parseStart);
+        return instance;
+
+    }
+
+    /**
+     * Create a Fabric message from the binary form of a wire message.
+     *
+     * @param topic
+     *            the topic associated with the message of <code>null</code> if none.
+     *
+     * @param wireBytes
+     *            the Fabric message, as received.
+     *
+     * @return the instance.
+     *
+     * @throws Exception
+     *             thrown if the class cannot be instantiated or initialized.
+     */
+    private static IFabricMessage createFromBinary(String topic, byte[] wireBytes) throws Exception {
+
+        /* To hold the new instance */
+        IFabricMessage instance = null;
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(wireBytes));
+        BinaryWire.readHeader(in);
+
+        /* Get the message type (making sure that we have the full class name for the type) */
+        String className = BinaryWire.readType(in);
+
+        /* If no message type has been specified... */
+        if (className == null) {
+            throw new IllegalArgumentException("No type in binary Fabric message");
+        }
+
+        /* Create a new instance */
+        instance = (IFabricMessage) Fabric.instantiate(className);
+
+        /* If we have created a new instance... */
+        if (instance != null) {
+
+            instance.initBinary(in);
+            instance.metaSetTopic(topic);
+
+        }
+
+        return instance;
 
     }
 
@@ -0,0 +1,51 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ * 
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.bus.messages;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+
+/**
+ * Interface for classes that can be serialized into the compact binary form of a Fabric message (see
+ * <code>BinaryWire</code>). Conversely they can be initialized from the binary form.
+ * <p>
+ * Implementations must read fields in exactly the order in which they were written.
+ * </p>
+ */
+public interface IEmbeddedBinary {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	/*
+	 * Interface methods
+	 */
+
+	/**
+	 * Serializes this instance into the specified binary stream.
+	 * 
+	 * @param out
+	 *            the stream into which this instance will be serialized.
+	 * 
+	 * @throws Exception
+	 *             thrown if the instance cannot be serialized.
+	 */
+	public void embedBinary(DataOutput out) throws Exception;
+
+	/**
+	 * Initializes this instance from the specified binary stream.
+	 * 
+	 * @param in
+	 *            the stream from which this instance will be initialized.
+	 * 
+	 * @throws Exception
+	 *             thrown if the instance cannot be initialized from the stream.
+	 */
+	public void initBinary(DataInput in) throws Exception;
+
+}
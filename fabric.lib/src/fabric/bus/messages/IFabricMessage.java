@@ -16,7 +16,7 @@ import fabric.core.xml.XML;
 /**
  * Base interface for all Fabric message types.
  */
-public interface IFabricMessage extends IEmbeddedXML, IWireXML {
+public interface IFabricMessage extends IEmbeddedXML, IEmbeddedBinary, IWireXML {
 
 	/** Copyright notice. */
 	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009, 2012";
@@ -57,7 +57,7 @@ public interface IFabricMessage extends IEmbeddedXML, IWireXML {
 	public void setProperty(String key, String value);
 
 	/**
-	 * Answers an iterator across the set of property names from the message properties.
+	 * Answers an iterator across a snapshot of the property names from the message properties.
 	 * 
 	 * @return the properties key name iterator.
 	 */
@@ -158,6 +158,19 @@ public interface IFabricMessage extends IEmbeddedXML, IWireXML {
 	 */
 	public byte[] toWireBytes() throws Exception;
 
+	/**
+	 * Gets the wire form of the message in the specified encoding.
+	 * 
+	 * @param format
+	 *            the wire format.
+	 * 
+	 * @return the wire message bytes.
+	 * 
+	 * @throws Exception
+	 *             thrown if the conversion into the wire format fails.
+	 */
+	public byte[] toWireBytes(WireFormat format) throws Exception;
+
 	/**
 	 * Gets the flag indicating if this instance has been modified since it was created of the flag has been reset.
 	 * 
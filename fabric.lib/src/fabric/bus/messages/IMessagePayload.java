@@ -10,7 +10,7 @@ package fabric.bus.messages;
 /**
  * Base interface for classes representing a Fabric message payload.
  */
-public interface IMessagePayload extends IEmbeddedXML {
+public interface IMessagePayload extends IEmbeddedXML, IEmbeddedBinary {
 
 	/** Copyright notice. */
 	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009";
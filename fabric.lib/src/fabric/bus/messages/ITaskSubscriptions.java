@@ -13,7 +13,7 @@ import java.util.List;
 /**
  * Interface representing the list of actor subscriptions associated with a task.
  */
-public interface ITaskSubscriptions extends IEmbeddedXML {
+public interface ITaskSubscriptions extends IEmbeddedXML, IEmbeddedBinary {
 
 	/** Copyright notice. */
 	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009";
@@ -0,0 +1,40 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ * 
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.bus.messages;
+
+/**
+ * The encodings available for Fabric messages on the wire.
+ */
+public enum WireFormat {
+
+	/** The XML document form (understood by all nodes and clients). */
+	XML,
+
+	/** The compact binary form (see <code>BinaryWire</code>). */
+	BINARY;
+
+	/**
+	 * Answers the wire format corresponding to the specified name, defaulting to <code>XML</code> if the name is not
+	 * recognized.
+	 * 
+	 * @param name
+	 *            the name of the format (case insensitive).
+	 * 
+	 * @return the wire format.
+	 */
+	public static WireFormat fromName(String name) {
+
+		WireFormat format = XML;
+
+		if (name != null && name.trim().equalsIgnoreCase(BINARY.name())) {
+			format = BINARY;
+		}
+
+		return format;
+	}
+}
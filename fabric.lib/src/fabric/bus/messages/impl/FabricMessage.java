@@ -8,6 +8,10 @@
 package fabric.bus.messages.impl;
 
 import java.beans.PropertyChangeEvent;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.logging.Level;
@@ -15,13 +19,16 @@ import java.util.logging.Logger;
 
 import fabric.Fabric;
 import fabric.Notifier;
+import fabric.bus.messages.BinaryWire;
 import fabric.bus.messages.FabricMessageFactory;
 import fabric.bus.messages.IFabricMessage;
 import fabric.bus.messages.IMessagePayload;
 import fabric.bus.messages.IReplicate;
 import fabric.bus.routing.IRouting;
+import fabric.bus.messages.WireFormat;
 import fabric.bus.routing.MessageRoutingFactory;
 import fabric.core.xml.XML;
+import fabric.core.xml.XMLPath;
 
 /**
  * Class representing a Fabric message.
@@ -75,6 +82,12 @@ public abstract class FabricMessage extends Notifier implements IFabricMessage {
     /** Cache of the XML form of the message. */
     private XML xmlCache = null;
 
+    /** Cache of the XML wire form of the message. */
+    private byte[] xmlBytesCache = null;
+
+    /** Cache of the binary wire form of the message. */
+    private byte[] binaryCache = null;
+
     /** The message object's meta data properties. */
     private final HashMap<String, Object> metaProperties = new HashMap<String, Object>();
 
@@ -131,11 +144,13 @@ public abstract class FabricMessage extends Notifier implements IFabricMessage {
     @Override
     public void init(String element, XML messageXML) throws Exception {
 
+        XMLPath elementPath = XMLPath.forPath(element);
+
         /* Get the message's unique identifier */
-        uid = messageXML.get(element + "@uid");
+        uid = messageXML.get(elementPath.resolve("@uid"));
 
         /* Get the message's correlation ID */
-        correlationID = messageXML.get(element + "@cid");
+        correlationID = messageXML.get(elementPath.resolve("@cid"));
 
         /* Get the message properties */
         properties.init(element, messageXML);
@@ -157,19 +172,21 @@ public abstract class FabricMessage extends Notifier implements IFabricMessage {
     @Override
     public void embed(String element, XML messageXML) throws Exception {
 
+        XMLPath elementPath = XMLPath.forPath(element);
+
         /* Set the XML namespace */
-        messageXML.set(element + "@xmlns", xmlNamespace);
+        messageXML.set(elementPath.resolve("@xmlns"), xmlNamespace);
 
         /* Set the message type */
-        messageXML.set(element + "@t", compactType);
+        messageXML.set(elementPath.resolve("@t"), compactType);
 
         /* Set the message's unique identifier */
-        messageXML.set(element + "@uid", uid);
+        messageXML.set(elementPath.resolve("@uid"), uid);
 
         /* If there is a correlation ID... */
         if (correlationID != null) {
             /* Serialize it */
-            messageXML.set(element + "@cid", correlationID);
+            messageXML.set(elementPath.resolve("@cid"), correlationID);
         }
 
         /* If there are any properties associated with this message... */
@@ -192,6 +209,64 @@ public abstract class FabricMessage extends Notifier implements IFabricMessage {
 
     }
 
+    /**
+     * @see fabric.bus.messages.IEmbeddedBinary#embedBinary(java.io.DataOutput)
+     */
+    @Override
+    public void embedBinary(DataOutput out) throws Exception {
+
+        /* Set the message's unique identifier and correlation ID */
+        BinaryWire.writeString(out, uid);
+        BinaryWire.writeString(out, correlationID);
+
+        /* Set the message properties */
+        out.writeBoolean(properties != null);
+        if (properties != null) {
+            properties.embedBinary(out);
+        }
+
+        /* Set the routing information (prefixed by its type) */
+        BinaryWire.writeType(out, routing);
+        if (routing != null) {
+            routing.embedBinary(out);
+        }
+
+        /* Set the payload */
+        out.writeBoolean(payload != null);
+        if (payload != null) {
+            payload.embedBinary(out);
+        }
+
+    }
+
+    /**
+     * @see fabric.bus.messages.IEmbeddedBinary#initBinary(java.io.DataInput)
+     */
+    @Override
+    public void initBinary(DataInput in) throws Exception {
+
+        /* Get the message's unique identifier and correlation ID */
+        uid = BinaryWire.readString(in);
+        correlationID = BinaryWire.readString(in);
+
+        /* Get the message properties */
+        if (in.readBoolean()) {
+            properties.initBinary(in);
+        }
+
+        /* Get the routing information from the message */
+        setRouting(MessageRoutingFactory.construct(in));
+
+        /* Get the payload */
+        if (in.readBoolean()) {
+            payload.initBinary(in);
+        }
+
+        /* These changes shouldn't be reflected in the instance's "modified" status as this is a new instance */
+        metaResetModified();
+
+    }
+
     /**
      * @see fabric.bus.messages.IFabricMessage#getProperty(java.lang.String)
      */
@@ -442,7 +517,47 @@ public abstract class FabricMessage extends Notifier implements IFabricMessage {
     @Override
     public byte[] toWireBytes() throws Exception {
 
-        return toXML().toBytes();
+        if (xmlBytesCache == null) {
+            xmlBytesCache = toXML().toBytes();
+        }
+
+        return xmlBytesCache;
+
+    }
+
+    /**
+     * @see fabric.bus.messages.IFabricMessage#toWireBytes(fabric.bus.messages.WireFormat)
+     */
+    @Override
+    public byte[] toWireBytes(WireFormat format) throws Exception {
+
+        byte[] wireBytes = null;
+
+        if (format == WireFormat.BINARY) {
+
+            if (binaryCache == null) {
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+                DataOutputStream out = new DataOutputStream(bytes);
+
+                BinaryWire.writeHeader(out);
+                BinaryWire.writeString(out, compactType);
+                embedBinary(out);
+                out.flush();
+
+                binaryCache = bytes.toByteArray();
+
+            }
+
+            wireBytes = binaryCache;
+
+        } else {
+
+            wireBytes = toWireBytes();
+
+        }
+
+        return wireBytes;
 
     }
 
@@ -452,6 +567,8 @@ public abstract class FabricMessage extends Notifier implements IFabricMessage {
     protected void invalidateXMLCache() {
 
         xmlCache = null;
+        xmlBytesCache = null;
+        binaryCache = null;
 
     }
 
@@ -582,17 +699,51 @@ public abstract class FabricMessage extends Notifier implements IFabricMessage {
 
     }
 
+    /**
+     * Initializes this instance as a replica of the specified message.
+     * <p>
+     * Embedded objects are replicated using their own <code>replicate()</code> methods; these share any state that is
+     * never modified in place (such as payload bytes) and copy the remainder. Subclasses with additional state must
+     * override this method, calling the superclass implementation first.
+     * </p>
+     *
+     * @param source
+     *            the message to replicate (of the same type as this instance).
+     *
+     * @throws Exception
+     *             thrown if the message cannot be replicated.
+     */
+    protected void replicateFrom(FabricMessage source) throws Exception {
+
+        uid = source.uid;
+        correlationID = source.correlationID;
+
+        setProperties((source.properties != null) ? (MessageProperties) source.properties.replicate() : null);
+        setRouting((source.routing != null) ? (IRouting) source.routing.replicate() : null);
+        setPayload((source.payload != null) ? (IMessagePayload) source.payload.replicate() : null);
+
+        metaSetTopic(source.topic);
+
+    }
+
     /**
      * @see fabric.bus.messages.IReplicate#replicate()
      */
     @Override
     public IReplicate replicate() {
 
-        IFabricMessage replica = null;
+        FabricMessage replica = null;
 
         try {
-            XML messageXML = toXML();
-            replica = FabricMessageFactory.create(metaGetTopic(), messageXML);
+
+            replica = getClass().getDeclaredConstructor().newInstance();
+            replica.replicateFrom(this);
+
+            /* The replica is a new, unmodified, instance identical to this one, so can share its encoded form */
+            replica.metaResetModified();
+            replica.xmlBytesCache = xmlBytesCache;
+            replica.binaryCache = binaryCache;
+
         } catch (Exception e) {
             logger.log(Level.FINE, "Failed to replicate message: {0}", e.getMessage());
             logger.log(Level.FINEST, "Full exception:\n", e);
@@ -7,6 +7,8 @@
 
 package fabric.bus.messages.impl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -90,6 +92,48 @@ public class FeedMessage extends FabricMessage implements IFeedMessage {
 
     }
 
+    /**
+     * @see fabric.bus.messages.impl.FabricMessage#initBinary(java.io.DataInput)
+     */
+    @Override
+    public void initBinary(DataInput in) throws Exception {
+
+        super.initBinary(in);
+
+        /* Get the list of subscriptions in this message */
+        subscriptions.initBinary(in);
+
+        /* These changes shouldn't be reflected in the instance's "modified" status as this is a new instance */
+        metaResetModified();
+
+    }
+
+    /**
+     * @see fabric.bus.messages.impl.FabricMessage#embedBinary(java.io.DataOutput)
+     */
+    @Override
+    public void embedBinary(DataOutput out) throws Exception {
+
+        super.embedBinary(out);
+
+        /* Set the list of subscriptions in this message */
+        subscriptions.embedBinary(out);
+
+    }
+
+    /**
+     * @see fabric.bus.messages.impl.FabricMessage#replicateFrom(fabric.bus.messages.impl.FabricMessage)
+     */
+    @Override
+    protected void replicateFrom(FabricMessage source) throws Exception {
+
+        super.replicateFrom(source);
+
+        TaskSubscriptions sourceSubscriptions = ((FeedMessage) source).subscriptions;
+        setSubscriptions((sourceSubscriptions != null) ? (TaskSubscriptions) sourceSubscriptions.replicate() : null);
+
+    }
+
     /**
      * Makes a deep copy of a table of task and client IDs.
      * <p>
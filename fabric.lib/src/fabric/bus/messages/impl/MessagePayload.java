@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2009, 2012
+ * (C) Copyright IBM Corp. 2009, 2014
  *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -8,15 +8,19 @@
 package fabric.bus.messages.impl;
 
 import java.beans.PropertyChangeEvent;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import fabric.Notifier;
+import fabric.bus.messages.BinaryWire;
 import fabric.bus.messages.EmbeddedXMLFactory;
 import fabric.bus.messages.IEmbeddedXML;
 import fabric.bus.messages.IMessagePayload;
 import fabric.bus.messages.IReplicate;
 import fabric.core.xml.XML;
+import fabric.core.xml.XMLPath;
 
 /**
  * Class representing Fabric message payload.
@@ -24,7 +28,7 @@ import fabric.core.xml.XML;
 public class MessagePayload extends Notifier implements IMessagePayload {
 
     /** Copyright notice. */
-    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009, 2012";
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009, 2014";
 
     /*
      * Class constants
@@ -44,6 +48,9 @@ public class MessagePayload extends Notifier implements IMessagePayload {
     /** An XML payload */
     public static final String PAYLOAD_XML_STRING = "xml";
 
+    /** The path of the encoding attribute in a stand-alone XML payload document */
+    private static final XMLPath XML_PAYLOAD_ENCODING_PATH = XMLPath.compile("/pay@enc");
+
     /*
      * Class fields
      */
@@ -54,6 +61,15 @@ public class MessagePayload extends Notifier implements IMessagePayload {
     /** The message payload. */
     private Object payload = null;
 
+    /**
+     * The document from which a text or binary payload is still to be read (<code>null</code> if the payload has been
+     * read, or was not initialized from a document).
+     */
+    private XML sourceXML = null;
+
+    /** The path of the payload in <code>sourceXML</code>. */
+    private XMLPath sourcePath = null;
+
     /** Cache of the XML form of the message. */
     private XML xmlCache = null;
 
@@ -81,6 +97,7 @@ public class MessagePayload extends Notifier implements IMessagePayload {
 
         this();
 
+        source.readPayload();
         payloadEncoding = source.payloadEncoding;
 
         if (source.payload != null) {
@@ -94,7 +111,7 @@ public class MessagePayload extends Notifier implements IMessagePayload {
 
                 case PAYLOAD_XML:
 
-                    IReplicate sourceXML = (IReplicate) payload;
+                    IReplicate sourceXML = (IReplicate) source.payload;
                     payload = sourceXML.replicate();
                     break;
 
@@ -106,9 +123,8 @@ public class MessagePayload extends Notifier implements IMessagePayload {
 
                 case PAYLOAD_BYTES:
 
-                    byte[] sourceBytes = (byte[]) source.payload;
-                    payload = new byte[sourceBytes.length];
-                    System.arraycopy(sourceBytes, 0, payload, 0, sourceBytes.length);
+                    /* Payload bytes are never modified in place, so can be shared with the source */
+                    payload = source.payload;
                     break;
 
             }
@@ -137,10 +153,92 @@ public class MessagePayload extends Notifier implements IMessagePayload {
     public void embed(String element, XML messageXML) throws Exception {
 
         /* Set the payload */
+        readPayload();
         setPayloadInMessage(element, messageXML);
 
     }
 
+    /**
+     * @see fabric.bus.messages.IEmbeddedBinary#initBinary(java.io.DataInput)
+     */
+    @Override
+    public void initBinary(DataInput in) throws Exception {
+
+        discardSource();
+        payloadEncoding = in.readByte();
+
+        switch (payloadEncoding) {
+
+            case PAYLOAD_TEXT:
+
+                payload = BinaryWire.readString(in);
+                break;
+
+            case PAYLOAD_BYTES:
+
+                /* Raw bytes, no base 64 */
+                payload = BinaryWire.readBytes(in);
+                break;
+
+            case PAYLOAD_XML:
+
+                /* An embedded XML payload, carried as a standalone document */
+                XML payloadXML = new XML(BinaryWire.readBytes(in));
+                payload = EmbeddedXMLFactory.create("/pay", payloadXML);
+                break;
+
+            default:
+
+                payloadEncoding = PAYLOAD_UNKNOWN;
+                payload = null;
+                break;
+
+        }
+
+        xmlCache = null;
+
+    }
+
+    /**
+     * @see fabric.bus.messages.IEmbeddedBinary#embedBinary(java.io.DataOutput)
+     */
+    @Override
+    public void embedBinary(DataOutput out) throws Exception {
+
+        readPayload();
+        int encoding = (payload != null) ? payloadEncoding : PAYLOAD_UNKNOWN;
+
+        switch (encoding) {
+
+            case PAYLOAD_TEXT:
+
+                out.writeByte(PAYLOAD_TEXT);
+                BinaryWire.writeString(out, (String) payload);
+                break;
+
+            case PAYLOAD_BYTES:
+
+                out.writeByte(PAYLOAD_BYTES);
+                BinaryWire.writeBytes(out, (byte[]) payload);
+                break;
+
+            case PAYLOAD_XML:
+
+                out.writeByte(PAYLOAD_XML);
+                XML payloadXML = new XML();
+                payloadXML.set(XML_PAYLOAD_ENCODING_PATH, payload.getClass().getName());
+                ((IEmbeddedXML) payload).embed("/pay", payloadXML);
+                BinaryWire.writeBytes(out, payloadXML.toBytes());
+                break;
+
+            default:
+
+                out.writeByte(PAYLOAD_UNKNOWN);
+                break;
+
+        }
+    }
+
     /**
      * Gets the payload and payload-type from the message. Several payload types are supported:
      * <ul>
@@ -148,6 +246,10 @@ public class MessagePayload extends Notifier implements IMessagePayload {
      * <li><strong><code>PAYLOAD_BYTES</code>:</strong> Binary (represented as base 64).</li>
      * <li><strong><code>PAYLOAD_XML</code>:</strong> XML (encoded as a string).</li>
      * </ul>
+     * <p>
+     * Text and binary payloads are not read from the document here, but when they are first requested, so that the
+     * payload of a message that is only routed is never decoded.
+     * </p>
      *
      * @param element
      *            the element containing the XML.
@@ -159,8 +261,11 @@ public class MessagePayload extends Notifier implements IMessagePayload {
      */
     private void getPayloadFromMessage(String element, XML messageXML) throws Exception {
 
+        XMLPath payloadPath = XMLPath.forPath(element).resolve("/pay");
+        discardSource();
+
         /* Get the encoding from the message */
-        String encodingString = messageXML.get(element + "/pay@enc");
+        String encodingString = messageXML.get(payloadPath.resolve("@enc"));
 
         /* If there is a payload... */
         if (encodingString != null) {
@@ -170,24 +275,52 @@ public class MessagePayload extends Notifier implements IMessagePayload {
 
                 /* It's a simple ASCII string */
                 payloadEncoding = PAYLOAD_TEXT;
-                payload = messageXML.get(element + "/pay");
+                payload = null;
+                sourceXML = messageXML;
+                sourcePath = payloadPath;
 
             } else if (encodingString.equals(PAYLOAD_BYTES_STRING)) {
 
                 /* It's a base 64 string */
                 payloadEncoding = PAYLOAD_BYTES;
-                payload = messageXML.getBytes(element + "/pay");
+                payload = null;
+                sourceXML = messageXML;
+                sourcePath = payloadPath;
 
             } else {
 
                 /* It's an encoded XML message; the encoding is the Java type name */
                 payloadEncoding = PAYLOAD_XML;
-                payload = EmbeddedXMLFactory.create(element + "/pay", messageXML);
+                payload = EmbeddedXMLFactory.create(payloadPath.getPath(), messageXML);
 
             }
         }
     }
 
+    /**
+     * Reads a text or binary payload from the document from which this instance was initialized, if it has not
+     * already been read.
+     */
+    private synchronized void readPayload() {
+
+        if (sourceXML != null) {
+
+            payload = (payloadEncoding == PAYLOAD_BYTES) ? sourceXML.getBytes(sourcePath) : sourceXML.get(sourcePath);
+            discardSource();
+
+        }
+    }
+
+    /**
+     * Discards the reference to the document from which the payload was to be read, since the payload has been read
+     * or replaced.
+     */
+    private synchronized void discardSource() {
+
+        sourceXML = null;
+        sourcePath = null;
+    }
+
     /**
      * Sets the payload and payload encoding in the message.
      *
@@ -203,25 +336,27 @@ public class MessagePayload extends Notifier implements IMessagePayload {
 
         if (payload != null) {
 
+            XMLPath payloadPath = XMLPath.forPath(element).resolve("/pay");
+
             switch (payloadEncoding) {
 
                 case PAYLOAD_TEXT:
 
-                    messageXML.set(element + "/pay@enc", PAYLOAD_TEXT_STRING);
-                    messageXML.set(element + "/pay", (String) payload);
+                    messageXML.set(payloadPath.resolve("@enc"), PAYLOAD_TEXT_STRING);
+                    messageXML.set(payloadPath, (String) payload);
                     break;
 
                 case PAYLOAD_BYTES:
 
-                    messageXML.set(element + "/pay@enc", PAYLOAD_BYTES_STRING);
-                    messageXML.setBytes(element + "/pay", (byte[]) payload);
+                    messageXML.set(payloadPath.resolve("@enc"), PAYLOAD_BYTES_STRING);
+                    messageXML.setBytes(payloadPath, (byte[]) payload);
                     break;
 
                 case PAYLOAD_XML:
 
                     IEmbeddedXML embeddedXML = (IEmbeddedXML) payload;
-                    messageXML.set(element + "/pay@enc", payload.getClass().getName());
-                    embeddedXML.embed(element + "/pay", messageXML);
+                    messageXML.set(payloadPath.resolve("@enc"), payload.getClass().getName());
+                    embeddedXML.embed(payloadPath.getPath(), messageXML);
                     break;
 
             }
@@ -334,6 +469,7 @@ public class MessagePayload extends Notifier implements IMessagePayload {
     public String getPayloadText() {
 
         String payloadText = null;
+        readPayload();
 
         if (payloadEncoding == PAYLOAD_TEXT) {
 
@@ -359,6 +495,7 @@ public class MessagePayload extends Notifier implements IMessagePayload {
     @Override
     public void setPayloadText(String payload) {
 
+        discardSource();
         Object oldPayload = this.payload;
         this.payload = payload;
         payloadEncoding = PAYLOAD_TEXT;
@@ -373,6 +510,7 @@ public class MessagePayload extends Notifier implements IMessagePayload {
     public byte[] getPayloadBytes() {
 
         byte[] payloadBytes = null;
+        readPayload();
 
         if (payloadEncoding == PAYLOAD_BYTES) {
 
@@ -398,6 +536,7 @@ public class MessagePayload extends Notifier implements IMessagePayload {
     @Override
     public void setPayloadBytes(byte[] payload) {
 
+        discardSource();
         Object oldPayload = this.payload;
         this.payload = payload;
         payloadEncoding = PAYLOAD_BYTES;
@@ -437,6 +576,7 @@ public class MessagePayload extends Notifier implements IMessagePayload {
     @Override
     public void setPayloadXML(IEmbeddedXML payload) {
 
+        discardSource();
         Object oldPayload = this.payload;
         this.payload = payload;
         payloadEncoding = PAYLOAD_XML;
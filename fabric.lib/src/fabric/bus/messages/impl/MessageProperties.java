@@ -8,11 +8,17 @@
 package fabric.bus.messages.impl;
 
 import java.beans.PropertyChangeEvent;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.logging.Logger;
 
 import fabric.Notifier;
+import fabric.bus.messages.BinaryWire;
+import fabric.bus.messages.IEmbeddedBinary;
 import fabric.bus.messages.IEmbeddedXML;
 import fabric.bus.messages.IReplicate;
 import fabric.core.xml.XML;
@@ -20,7 +26,7 @@ import fabric.core.xml.XML;
 /**
  * Class representing a set of properties (name/value pairs) embedded in a Fabric message.
  */
-public class MessageProperties extends Notifier implements IEmbeddedXML {
+public class MessageProperties extends Notifier implements IEmbeddedXML, IEmbeddedBinary {
 
     /** Copyright notice. */
     public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009, 2016";
@@ -34,6 +40,9 @@ public class MessageProperties extends Notifier implements IEmbeddedXML {
     /** The message's properties (a table of name/value pairs). */
     private HashMap<String, String> properties = new HashMap<String, String>();
 
+    /** Flag indicating if the properties table is shared with a replica (and so must be copied before modification). */
+    private boolean isShared = false;
+
     /** Cache of the XML form of the message. */
     private XML xmlCache = null;
 
@@ -56,7 +65,12 @@ public class MessageProperties extends Notifier implements IEmbeddedXML {
     public MessageProperties(MessageProperties source) {
 
         this();
-        properties = (HashMap<String, String>) source.properties.clone();
+
+        /* Share the source's table until one of the instances is modified */
+        properties = source.properties;
+        source.isShared = true;
+        isShared = true;
+
         xmlCache = null;
 
     }
@@ -68,6 +82,7 @@ public class MessageProperties extends Notifier implements IEmbeddedXML {
     public void init(String element, XML messageXML) throws Exception {
 
         properties = new HashMap<String, String>();
+        isShared = false;
 
         /* Get the XML paths for the properties */
         String elementPath = XML.expandPath(element);
@@ -119,6 +134,48 @@ public class MessageProperties extends Notifier implements IEmbeddedXML {
 
     }
 
+    /**
+     * @see fabric.bus.messages.IEmbeddedBinary#initBinary(java.io.DataInput)
+     */
+    @Override
+    public void initBinary(DataInput in) throws Exception {
+
+        int count = BinaryWire.readCount(in);
+        properties = new HashMap<String, String>(Math.max(16, count * 2));
+        isShared = false;
+
+        /* For each property... */
+        for (int p = 0; p < count; p++) {
+
+            String name = BinaryWire.readString(in);
+            String value = BinaryWire.readString(in);
+            properties.put(name, value);
+
+        }
+
+        xmlCache = null;
+
+    }
+
+    /**
+     * @see fabric.bus.messages.IEmbeddedBinary#embedBinary(java.io.DataOutput)
+     */
+    @Override
+    public void embedBinary(DataOutput out) throws Exception {
+
+        out.writeInt(properties.size());
+
+        /* For each property... */
+        for (Iterator<String> i = properties.keySet().iterator(); i.hasNext();) {
+
+            String name = i.next();
+            BinaryWire.writeString(out, name);
+            BinaryWire.writeString(out, properties.get(name));
+
+        }
+
+    }
+
     /**
      * Gets the value of the specified property.
      *
@@ -149,6 +206,8 @@ public class MessageProperties extends Notifier implements IEmbeddedXML {
 
         String oldValue = properties.get(key);
 
+        copyOnWrite();
+
         /* If a value has been supplied... */
         if (value != null) {
 
@@ -165,13 +224,17 @@ public class MessageProperties extends Notifier implements IEmbeddedXML {
     }
 
     /**
-     * Answers an iterator across the set of property names from the message properties.
+     * Answers an iterator across a snapshot of the property names from the message properties.
+     * <p>
+     * The properties table may be shared with replicas of the message, so the iterator does not reflect (or support)
+     * later changes to it.
+     * </p>
      *
      * @return the key name iterator.
      */
     public Iterator<String> propertyKeys() {
 
-        return properties.keySet().iterator();
+        return Collections.unmodifiableList(new ArrayList<String>(properties.keySet())).iterator();
 
     }
 
@@ -180,11 +243,29 @@ public class MessageProperties extends Notifier implements IEmbeddedXML {
      */
     public void empty() {
 
-        properties.clear();
+        if (isShared) {
+            properties = new HashMap<String, String>();
+            isShared = false;
+        } else {
+            properties.clear();
+        }
+
         fireChangeNotification("properties", null, null);
 
     }
 
+    /**
+     * Takes a private copy of the properties table if it is currently shared with another instance.
+     */
+    private void copyOnWrite() {
+
+        if (isShared) {
+            properties = new HashMap<String, String>(properties);
+            isShared = false;
+        }
+
+    }
+
     /**
      * @see java.lang.Object#toString()
      */
@@ -7,10 +7,13 @@
 
 package fabric.bus.messages.impl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.util.HashMap;
 
 import fabric.Fabric;
 import fabric.bus.feeds.impl.ServiceList;
+import fabric.bus.messages.BinaryWire;
 import fabric.bus.messages.IServiceMessage;
 import fabric.core.xml.XML;
 
@@ -152,6 +155,81 @@ public class ServiceMessage extends FabricMessage implements IServiceMessage {
         }
     }
 
+    /**
+     * @see fabric.bus.messages.impl.FabricMessage#initBinary(java.io.DataInput)
+     */
+    @Override
+    public void initBinary(DataInput in) throws Exception {
+
+        super.initBinary(in);
+
+        /* Get the service family and service names */
+        this.serviceFamilyName = BinaryWire.readString(in);
+        this.compactServiceName = BinaryWire.readString(in);
+        String className = (compactServiceName != null) ? Fabric.longName(compactServiceName) : null;
+        this.serviceName = (className != null) ? className : compactServiceName;
+
+        /* Get the flags and the notification timeout */
+        this.actionEnRoute = in.readBoolean();
+        this.notification = in.readBoolean();
+        this.notificationTimeout = in.readInt();
+
+        /* Get the list of feeds */
+        if (in.readBoolean()) {
+            serviceList.initBinary(in);
+        }
+
+        /* These changes shouldn't be reflected in the instance's "modified" status as this is a new instance */
+        metaResetModified();
+
+    }
+
+    /**
+     * @see fabric.bus.messages.impl.FabricMessage#embedBinary(java.io.DataOutput)
+     */
+    @Override
+    public void embedBinary(DataOutput out) throws Exception {
+
+        super.embedBinary(out);
+
+        /* Set the service family and service names */
+        BinaryWire.writeString(out, serviceFamilyName);
+        BinaryWire.writeString(out, compactServiceName);
+
+        /* Set the flags and the notification timeout */
+        out.writeBoolean(actionEnRoute);
+        out.writeBoolean(notification);
+        out.writeInt(notificationTimeout);
+
+        /* Set the service list */
+        out.writeBoolean(serviceList != null);
+        if (serviceList != null) {
+            serviceList.embedBinary(out);
+        }
+    }
+
+    /**
+     * @see fabric.bus.messages.impl.FabricMessage#replicateFrom(fabric.bus.messages.impl.FabricMessage)
+     */
+    @Override
+    protected void replicateFrom(FabricMessage source) throws Exception {
+
+        super.replicateFrom(source);
+
+        ServiceMessage sourceMessage = (ServiceMessage) source;
+
+        serviceFamilyName = sourceMessage.serviceFamilyName;
+        serviceName = sourceMessage.serviceName;
+        compactServiceName = sourceMessage.compactServiceName;
+        actionEnRoute = sourceMessage.actionEnRoute;
+        notification = sourceMessage.notification;
+        notificationTimeout = sourceMessage.notificationTimeout;
+
+        ServiceList sourceServices = sourceMessage.serviceList;
+        setServiceList((sourceServices != null) ? (ServiceList) sourceServices.replicate() : null);
+
+    }
+
     /**
      * Answers the name corresponding to the specified resource type ID.
      *
@@ -8,6 +8,8 @@
 package fabric.bus.messages.impl;
 
 import java.beans.PropertyChangeEvent;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -15,6 +17,7 @@ import java.util.List;
 import java.util.logging.Logger;
 
 import fabric.Notifier;
+import fabric.bus.messages.BinaryWire;
 import fabric.bus.messages.IReplicate;
 import fabric.bus.messages.ITaskSubscriptions;
 import fabric.core.xml.XML;
@@ -67,7 +70,7 @@ public class TaskSubscriptions extends Notifier implements ITaskSubscriptions {
             ArrayList<String> nextClientList = source.taskSubscriptions.get(nextKey);
 
             /* Clone and save */
-            nextClientList = (nextClientList != null) ? (ArrayList<String>) nextClientList.clone() : null;
+            nextClientList = (nextClientList != null) ? new ArrayList<String>(nextClientList) : null;
             taskSubscriptions.put(nextKey, nextClientList);
 
         }
@@ -95,7 +98,7 @@ public class TaskSubscriptions extends Notifier implements ITaskSubscriptions {
             String task = messageXML.get(subscriptionPaths[s] + "@tsk");
 
             /* Get the list of clients subscribed to this task */
-            ArrayList<String> clients = lookupSublist(task, taskSubscriptions);
+            ArrayList<String> clients = clientList(task);
 
             /* Get and record the client ID */
             String client = messageXML.get(subscriptionPaths[s] + "@clnt");
@@ -133,6 +136,56 @@ public class TaskSubscriptions extends Notifier implements ITaskSubscriptions {
         }
     }
 
+    /**
+     * @see fabric.bus.messages.IEmbeddedBinary#initBinary(java.io.DataInput)
+     */
+    @Override
+    public void initBinary(DataInput in) throws Exception {
+
+        taskSubscriptions.clear();
+
+        /* For each task... */
+        for (int taskCount = BinaryWire.readCount(in), t = 0; t < taskCount; t++) {
+
+            /* Get the task ID and the list of clients subscribed to it */
+            String task = BinaryWire.readString(in);
+            ArrayList<String> clients = clientList(task);
+
+            /* Get and record each client ID */
+            for (int clientCount = BinaryWire.readCount(in), c = 0; c < clientCount; c++) {
+                clients.add(BinaryWire.readString(in));
+            }
+        }
+
+        xmlCache = null;
+
+    }
+
+    /**
+     * @see fabric.bus.messages.IEmbeddedBinary#embedBinary(java.io.DataOutput)
+     */
+    @Override
+    public void embedBinary(DataOutput out) throws Exception {
+
+        out.writeInt(taskSubscriptions.size());
+
+        /* For each task... */
+        for (Iterator<String> s = taskSubscriptions.keySet().iterator(); s.hasNext();) {
+
+            /* Get the task name and the list of client IDs */
+            String task = s.next();
+            ArrayList<String> clientIDs = taskSubscriptions.get(task);
+
+            BinaryWire.writeString(out, task);
+            out.writeInt(clientIDs.size());
+
+            /* For each client ID... */
+            for (int c = 0; c < clientIDs.size(); c++) {
+                BinaryWire.writeString(out, clientIDs.get(c));
+            }
+        }
+    }
+
     /**
      * @see fabric.bus.messages.ITaskSubscriptions#addActor(java.lang.String, java.lang.String)
      */
@@ -141,7 +194,7 @@ public class TaskSubscriptions extends Notifier implements ITaskSubscriptions {
 
         /* Get the list of client IDs */
         ArrayList<String> actorList = taskSubscriptions.get(task);
-        ArrayList<String> oldActorList = (actorList != null) ? (ArrayList<String>) actorList.clone() : null;
+        ArrayList<String> oldActorList = (actorList != null) ? new ArrayList<String>(actorList) : null;
 
         /* If the list is empty... */
         if (actorList == null) {
@@ -176,7 +229,7 @@ public class TaskSubscriptions extends Notifier implements ITaskSubscriptions {
         /* If the list isn't empty... */
         if (actorList != null) {
 
-            ArrayList<String> oldActorList = (ArrayList<String>) actorList.clone();
+            ArrayList<String> oldActorList = new ArrayList<String>(actorList);
 
             /* Remove the actor ID */
             actorList.remove(actorID);
@@ -202,7 +255,7 @@ public class TaskSubscriptions extends Notifier implements ITaskSubscriptions {
         if (actorList != null) {
 
             /* Copy the list */
-            getActors = (List<String>) actorList.clone();
+            getActors = new ArrayList<String>(actorList);
 
         } else {
 
@@ -220,8 +273,8 @@ public class TaskSubscriptions extends Notifier implements ITaskSubscriptions {
     public void setActors(String task, List<String> actors) {
 
         /* Get the list of actor IDs */
-        ArrayList<String> actorList = lookupSublist(task, taskSubscriptions);
-        ArrayList<String> oldActorList = (ArrayList<String>) actorList.clone();
+        ArrayList<String> actorList = clientList(task);
+        ArrayList<String> oldActorList = new ArrayList<String>(actorList);
 
         /* Remove the current list contents */
         actorList.clear();
@@ -308,4 +361,24 @@ public class TaskSubscriptions extends Notifier implements ITaskSubscriptions {
         xmlCache = null;
 
     }
+
+    /**
+     * Answers the list of client IDs subscribed to a task, creating it if it does not exist.
+     *
+     * @param task
+     *            the task ID.
+     *
+     * @return the list of client IDs.
+     */
+    private ArrayList<String> clientList(String task) {
+
+        ArrayList<String> clients = taskSubscriptions.get(task);
+
+        if (clients == null) {
+            clients = new ArrayList<String>();
+            taskSubscriptions.put(task, clients);
+        }
+
+        return clients;
+    }
 }
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2007, 2012
+ * (C) Copyright IBM Corp. 2007, 2014
  * 
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -11,6 +11,7 @@ import java.util.Iterator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import fabric.ServiceDescriptor;
 import fabric.TaskServiceDescriptor;
 import fabric.bus.IBusServices;
 import fabric.bus.messages.IFeedMessage;
@@ -21,6 +22,7 @@ import fabric.bus.plugins.IFeedPluginHandler;
 import fabric.bus.plugins.IPluginConfig;
 import fabric.bus.plugins.IPluginHandler;
 import fabric.bus.routing.IRouting;
+import fabric.core.metrics.PipelineMetrics;
 import fabric.registry.NodePlugin;
 import fabric.registry.TaskPlugin;
 
@@ -30,7 +32,14 @@ import fabric.registry.TaskPlugin;
 public class FeedPluginDispatcher extends FabletDispatcher implements IFeedPluginDispatcher {
 
 	/** Copyright notice. */
-	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2007, 2012";
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2007, 2014";
+
+	/*
+	 * Class fields
+	 */
+
+	/** The pipeline stage for which dispatch metrics are recorded (node, task or actor plug-in dispatch) */
+	private String stage = PipelineMetrics.STAGE_NODE_DISPATCH;
 
 	/*
 	 * Class methods
@@ -64,6 +73,7 @@ public class FeedPluginDispatcher extends FabletDispatcher implements IFeedPlugi
 		/* Get the dispatcher for this task */
 		FeedPluginDispatcher dispatcher = new FeedPluginDispatcher();
 		dispatcher.setFabricServices(busServices);
+		dispatcher.stage = PipelineMetrics.STAGE_NODE_DISPATCH;
 
 		/* While there are more plug-ins... */
 		for (int p = 0; p < plugins.length; p++) {
@@ -115,6 +125,7 @@ public class FeedPluginDispatcher extends FabletDispatcher implements IFeedPlugi
 		/* Get the dispatcher for this task */
 		FeedPluginDispatcher dispatcher = new FeedPluginDispatcher();
 		dispatcher.setFabricServices(busServices);
+		dispatcher.stage = PipelineMetrics.STAGE_TASK_DISPATCH;
 
 		/* While there are more plug-ins... */
 		for (int p = 0; p < plugins.length; p++) {
@@ -171,6 +182,7 @@ public class FeedPluginDispatcher extends FabletDispatcher implements IFeedPlugi
 		/* Get the dispatcher for this task */
 		FeedPluginDispatcher dispatcher = new FeedPluginDispatcher();
 		dispatcher.setFabricServices(busServices);
+		dispatcher.stage = PipelineMetrics.STAGE_ACTOR_DISPATCH;
 
 		/* While there are more plug-ins... */
 		for (int p = 0; p < plugins.length; p++) {
@@ -221,6 +233,8 @@ public class FeedPluginDispatcher extends FabletDispatcher implements IFeedPlugi
 	@Override
 	public int dispatch(IFeedMessage message, IRouting routing, int pluginAction) throws Exception {
 
+		long dispatchStart = PipelineMetrics.start();
+
 		/* Invoke each of the plug-ins for this dispatcher */
 
 		Iterator<IPluginHandler> p = plugins().iterator();
@@ -241,6 +255,12 @@ public class FeedPluginDispatcher extends FabletDispatcher implements IFeedPlugi
 			c++;
 		}
 
+		if (dispatchStart != 0) {
+			ServiceDescriptor feed = message.metaGetFeedDescriptor();
+			PipelineMetrics.stage(stage, PipelineMetrics.SCOPE_FEED, (feed != null) ? feed.toString() : null)
+					.recordSince(dispatchStart);
+		}
+
 		return pluginAction;
 	}
 
@@ -109,8 +109,8 @@ public class FeedPluginHandler extends PluginHandler implements IFeedPluginHandl
 
                 if (Fabric.doInstrument()) {
                     metric = new FabricMetric(routing.startNode(), pluginConfig.getTask(), pluginConfig.getActor(),
-                            message.metaGetFeedDescriptor(), message.getUID(), message.getOrdinal(), message.toXML()
-                            .toBytes(), pluginConfig.getName());
+                            message.metaGetFeedDescriptor(), message.getUID(), message.getOrdinal(), null, pluginConfig
+                            .getName());
                     pluginConfig.getMetricManager().startTiming(metric, FabricMetric.EVENT_PLUGIN_PROCESSING_START);
                 }
 
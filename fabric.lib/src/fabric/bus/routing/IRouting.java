@@ -7,13 +7,14 @@
 
 package fabric.bus.routing;
 
+import fabric.bus.messages.IEmbeddedBinary;
 import fabric.bus.messages.IEmbeddedXML;
 import fabric.bus.messages.IFabricMessage;
 
 /**
  * Base interface for all Fabric message routing components.
  */
-public interface IRouting extends IEmbeddedXML {
+public interface IRouting extends IEmbeddedXML, IEmbeddedBinary {
 
 	/** Copyright notice. */
 	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2007, 2009";
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2009, 2012
+ * (C) Copyright IBM Corp. 2009, 2014
  *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -7,8 +7,12 @@
 
 package fabric.bus.routing;
 
+import java.io.DataInput;
+
 import fabric.Fabric;
+import fabric.bus.messages.BinaryWire;
 import fabric.core.xml.XML;
+import fabric.core.xml.XMLPath;
 
 /**
  * Data structure representing the the route embedded in a Fabric message.
@@ -17,7 +21,7 @@ import fabric.core.xml.XML;
 public abstract class MessageRoutingFactory {
 
     /** Copyright notice. */
-    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009, 2012";
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009, 2014";
 
     /*
      * Class methods
@@ -47,7 +51,7 @@ public abstract class MessageRoutingFactory {
         IRouting instance = null;
 
         /* Get the message type (making sure that we have the full class name for the type) */
-        String compactType = messageXML.get(element + "/rt@t");
+        String compactType = messageXML.get(XMLPath.forPath(element).resolve("/rt@t"));
         String type = (compactType != null) ? Fabric.longName(compactType) : null;
         String className = (type != null) ? type : compactType;
 
@@ -65,4 +69,32 @@ public abstract class MessageRoutingFactory {
         return instance;
     }
 
+    /**
+     * Create a Fabric routing instance from an existing binary representation.
+     *
+     * @param in
+     *            the stream containing the binary form of the message.
+     *
+     * @return the instance, or <code>null</code> if the message carries no routing information.
+     *
+     * @throws Exception
+     */
+    public static IRouting construct(DataInput in) throws Exception {
+
+        /* To hold the new instance */
+        IRouting instance = null;
+
+        /* Get the routing type (as a full class name) */
+        String className = BinaryWire.readType(in);
+
+        /* If a routing type has been specified... */
+        if (className != null) {
+            /* Create and initialize a new instance */
+            instance = (IRouting) Fabric.instantiate(className);
+            instance.initBinary(in);
+        }
+
+        return instance;
+    }
+
 }
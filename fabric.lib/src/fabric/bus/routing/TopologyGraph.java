@@ -0,0 +1,811 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.bus.routing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fabric.Fabric;
+import fabric.core.json.JSON;
+import fabric.core.properties.ConfigProperties;
+import fabric.registry.FabricRegistry;
+import fabric.registry.Node;
+import fabric.registry.NodeNeighbour;
+import fabric.registry.QueryScope;
+import fabric.registry.exception.RegistryQueryException;
+
+/**
+ * An in-memory copy of the Fabric topology (the available nodes and their neighbours), used to compute the shortest
+ * routes between nodes.
+ * <p>
+ * The topology is held in an immutable snapshot that is replaced, never modified, so routes are computed without
+ * locking. The snapshot is loaded from the Registry on first use, and is then kept up to date incrementally from the
+ * Registry update notifications for the <code>NODES</code> and <code>NODE_NEIGHBOURS</code> tables. Since not every
+ * process receives these notifications (changes made at remote nodes are only seen by the distributed query that loads
+ * the neighbours), the snapshot is also reloaded once it is older than a configurable maximum age (see
+ * <code>ConfigProperties.ROUTING_TOPOLOGY_MAX_AGE</code>), and when no route is found across it.
+ * </p>
+ * <p>
+ * Notifications that need a Registry lookup, and reloads, are handled on a background thread so that neither the
+ * thread delivering notifications nor the thread asking for a route is held up by Registry I/O; routes are computed
+ * across the current snapshot until a reload completes. Computed routes are cached in the snapshot, so they are
+ * discarded when the topology changes.
+ * </p>
+ */
+public class TopologyGraph extends Fabric {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The weight assigned to every edge in the graph */
+    private static final int EDGE_WEIGHT = 1;
+
+    /** The value of the node availability attribute for available nodes */
+    private static final String AVAILABLE = "AVAILABLE";
+
+    /** The name of the thread applying topology updates */
+    private static final String UPDATE_THREAD_NAME = "Fabric-Topology-Updates";
+
+    /**
+     * The minimum age of the snapshot before it is reloaded because a route is missing (milliseconds), so that requests
+     * for a route that does not exist do not cause a continuous stream of distributed queries
+     */
+    private static final long MISSING_ROUTE_RELOAD_INTERVAL = 1000;
+
+    /*
+     * Class static fields
+     */
+
+    /** The single instance of this class */
+    private static TopologyGraph instance = null;
+
+    /*
+     * Class fields
+     */
+
+    /** The current snapshot of the topology, or <code>null</code> if it has not yet been loaded */
+    private volatile Topology topology = null;
+
+    /** Lock held while the topology is loaded from the Registry, so that only one load runs at a time */
+    private final Object loadLock = new Object();
+
+    /** Lock held while a new snapshot is installed (never held during Registry I/O) */
+    private final Object updateLock = new Object();
+
+    /** The updates applied while a load is in progress, reapplied to the loaded snapshot (<code>null</code> if none) */
+    private List<Update> loadUpdates = null;
+
+    /** Runs the Registry lookups and reloads triggered by update notifications, created on first use */
+    private ExecutorService updateExecutor = null;
+
+    /** The maximum age of the snapshot before it is reloaded (milliseconds) */
+    private final long maxAge;
+
+    /** Flag indicating if the topology is loaded from (and so reloaded from) the Registry */
+    private final boolean fromRegistry;
+
+    /** Flag indicating if a background reload has been requested and has not yet completed */
+    private final AtomicBoolean reloadPending = new AtomicBoolean(false);
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * An immutable snapshot of the topology, and the routes computed across it.
+     */
+    private static final class Topology {
+
+        /** The available nodes */
+        final Set<String> availableNodes;
+
+        /** The edges of the graph, mapping from each node to its neighbours */
+        final Map<String, Set<String>> neighbours;
+
+        /** The time at which the topology was loaded (kept by the snapshots derived from this one by updates) */
+        final long loadTime;
+
+        /** The computed routes, keyed by start and end node */
+        final ConcurrentHashMap<String, String[]> routes = new ConcurrentHashMap<String, String[]>();
+
+        /**
+         * Constructs a new instance.
+         *
+         * @param availableNodes
+         *            the available nodes.
+         *
+         * @param neighbours
+         *            the neighbours of each node.
+         *
+         * @param loadTime
+         *            the time at which the topology was loaded.
+         */
+        Topology(Set<String> availableNodes, Map<String, Set<String>> neighbours, long loadTime) {
+
+            this.availableNodes = availableNodes;
+            this.neighbours = neighbours;
+            this.loadTime = loadTime;
+        }
+
+        /**
+         * Answers a snapshot in which a node has the specified availability.
+         *
+         * @param node
+         *            the ID of the node.
+         *
+         * @param available
+         *            <code>true</code> if the node is available, <code>false</code> otherwise.
+         *
+         * @return the new snapshot, or this snapshot if the node's availability is unchanged.
+         */
+        Topology withNode(String node, boolean available) {
+
+            Topology updated = this;
+
+            if (availableNodes.contains(node) != available) {
+
+                HashSet<String> newNodes = new HashSet<String>(availableNodes);
+
+                if (available) {
+                    newNodes.add(node);
+                } else {
+                    newNodes.remove(node);
+                }
+
+                updated = new Topology(newNodes, neighbours, loadTime);
+            }
+
+            return updated;
+        }
+
+        /**
+         * Answers a snapshot in which an edge is present or absent.
+         *
+         * @param node
+         *            the ID of the node.
+         *
+         * @param neighbour
+         *            the ID of the neighbour.
+         *
+         * @param present
+         *            <code>true</code> if the edge is present, <code>false</code> otherwise.
+         *
+         * @return the new snapshot, or this snapshot if the edge is unchanged.
+         */
+        Topology withEdge(String node, String neighbour, boolean present) {
+
+            Topology updated = this;
+            Set<String> nodeNeighbours = neighbours.get(node);
+            boolean exists = nodeNeighbours != null && nodeNeighbours.contains(neighbour);
+
+            if (exists != present) {
+
+                HashSet<String> newNodeNeighbours = (nodeNeighbours != null) ? new HashSet<String>(nodeNeighbours)
+                        : new HashSet<String>();
+
+                if (present) {
+                    newNodeNeighbours.add(neighbour);
+                } else {
+                    newNodeNeighbours.remove(neighbour);
+                }
+
+                HashMap<String, Set<String>> newNeighbours = new HashMap<String, Set<String>>(neighbours);
+                newNeighbours.put(node, newNodeNeighbours);
+                updated = new Topology(availableNodes, newNeighbours, loadTime);
+            }
+
+            return updated;
+        }
+    }
+
+    /**
+     * A change to the availability of a node, or to an edge of the graph.
+     */
+    private static final class Update {
+
+        /** The ID of the node */
+        final String node;
+
+        /** The ID of the neighbour, or <code>null</code> if this is a change to the availability of the node */
+        final String neighbour;
+
+        /** <code>true</code> if the node is now available (or the edge now present), <code>false</code> otherwise */
+        final boolean present;
+
+        /**
+         * Constructs a new instance.
+         *
+         * @param node
+         *            the ID of the node.
+         *
+         * @param neighbour
+         *            the ID of the neighbour, or <code>null</code> for a change to the availability of the node.
+         *
+         * @param present
+         *            <code>true</code> if the node is now available (or the edge now present), <code>false</code>
+         *            otherwise.
+         */
+        Update(String node, String neighbour, boolean present) {
+
+            this.node = node;
+            this.neighbour = neighbour;
+            this.present = present;
+        }
+
+        /**
+         * Applies this change to a snapshot.
+         *
+         * @param topology
+         *            the snapshot.
+         *
+         * @return the updated snapshot, or the original if the change has no effect.
+         */
+        Topology applyTo(Topology topology) {
+
+            return (neighbour == null) ? topology.withNode(node, present) : topology.withEdge(node, neighbour,
+                    present);
+        }
+    }
+
+    /**
+     * A node awaiting a visit in the shortest-path search, ordered by its distance from the start node.
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+
+        /** The node ID */
+        final String node;
+
+        /** The distance of the node from the start node */
+        final int distance;
+
+        Candidate(String node, int distance) {
+
+            this.node = node;
+            this.distance = distance;
+        }
+
+        /**
+         * @see java.lang.Comparable#compareTo(java.lang.Object)
+         */
+        @Override
+        public int compareTo(Candidate other) {
+
+            return (distance < other.distance) ? -1 : ((distance == other.distance) ? 0 : 1);
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     */
+    private TopologyGraph() {
+
+        super(Logger.getLogger("fabric.bus.routing"));
+
+        maxAge = Long.parseLong(config(ConfigProperties.ROUTING_TOPOLOGY_MAX_AGE,
+                ConfigProperties.ROUTING_TOPOLOGY_MAX_AGE_DEFAULT));
+        fromRegistry = true;
+    }
+
+    /**
+     * Constructs a new instance holding a fixed topology that is never loaded from the Registry (unless the instance
+     * is invalidated); it is not reloaded when it ages or a route is missing. Used to compute routes across synthetic
+     * topologies (e.g. by benchmarks).
+     *
+     * @param topology
+     *            the neighbours of each node (all of which are available).
+     */
+    TopologyGraph(Map<String, Set<String>> topology) {
+
+        super(Logger.getLogger("fabric.bus.routing"));
+
+        maxAge = Long.MAX_VALUE;
+        fromRegistry = false;
+
+        HashSet<String> availableNodes = new HashSet<String>();
+        HashMap<String, Set<String>> neighbours = new HashMap<String, Set<String>>();
+
+        for (Map.Entry<String, Set<String>> node : topology.entrySet()) {
+            availableNodes.add(node.getKey());
+            neighbours.put(node.getKey(), new HashSet<String>(node.getValue()));
+        }
+
+        this.topology = new Topology(availableNodes, neighbours, System.currentTimeMillis());
+    }
+
+    /**
+     * Answers the single instance of this class.
+     *
+     * @return the topology graph.
+     */
+    public static synchronized TopologyGraph getInstance() {
+
+        if (instance == null) {
+            instance = new TopologyGraph();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Replaces the single instance of this class.
+     *
+     * @param graph
+     *            the new instance, or <code>null</code> to load a new instance from the Registry on next use.
+     */
+    static synchronized void setInstance(TopologyGraph graph) {
+
+        instance = graph;
+    }
+
+    /**
+     * Answers the nodes on a shortest route between two nodes.
+     * <p>
+     * Only the first call waits for the topology to be loaded from the Registry; later calls use the current snapshot,
+     * requesting a background reload if it is older than the maximum age or if there is no route across it.
+     * </p>
+     *
+     * @param startNode
+     *            the ID of the start node.
+     *
+     * @param endNode
+     *            the ID of the end node.
+     *
+     * @return the route, including the start and end nodes, or an empty array if there is no route.
+     */
+    public String[] routeNodes(String startNode, String endNode) {
+
+        Topology current = topology;
+
+        if (current == null) {
+            current = loadIfAbsent();
+        }
+
+        long age = System.currentTimeMillis() - current.loadTime;
+
+        if (age > maxAge) {
+            reload();
+        }
+
+        String routeKey = startNode + '/' + endNode;
+        String[] route = current.routes.get(routeKey);
+
+        if (route == null) {
+
+            route = shortestRoute(current, startNode, endNode);
+            current.routes.put(routeKey, route);
+
+            /* If there is no route the snapshot may predate a topology change that has not been notified */
+            if (route.length == 0 && age > MISSING_ROUTE_RELOAD_INTERVAL) {
+                logger.log(Level.FINER, "No route from [{0}] to [{1}], reloading topology", new Object[] {startNode,
+                        endNode});
+                reload();
+            }
+        }
+
+        return route.clone();
+    }
+
+    /**
+     * Updates the graph from a Registry update notification (a JSON object published by the
+     * <code>fabric.registry.trigger.TableUpdate</code> trigger).
+     * <p>
+     * Changes to node neighbours are applied immediately. Node notifications do not carry the node's availability, so
+     * the lookup (and the update) is made on a background thread.
+     * </p>
+     *
+     * @param notification
+     *            the notification.
+     */
+    public void registryUpdate(String notification) {
+
+        try {
+
+            JSON notificationJSON = new JSON(notification);
+            String table = notificationJSON.getString("table");
+            String id = notificationJSON.getString("id");
+            String action = notificationJSON.getString("action");
+
+            if (table == null || id == null || action == null) {
+                return;
+            }
+
+            switch (table.toUpperCase()) {
+
+                case "NODES":
+
+                    /* The ID is encoded as "node_id:type_id" */
+                    nodeUpdate(id.split(":")[0], action.toUpperCase());
+                    break;
+
+                case "NODE_NEIGHBOURS":
+
+                    /* The ID is encoded as "node_id/neighbour_id" (optionally followed by ":availability") */
+                    String[] idParts = id.split("/");
+
+                    if (idParts.length == 2) {
+                        apply(new Update(idParts[0], idParts[1].split(":")[0], !action.equalsIgnoreCase("DELETE")));
+                    } else {
+                        invalidate();
+                    }
+
+                    break;
+
+                default:
+
+                    /* Not a topology change */
+                    break;
+            }
+
+        } catch (Exception e) {
+
+            logger.log(Level.WARNING, "Cannot apply Registry update notification, topology will be reloaded: {0}", e
+                    .getMessage());
+            logger.log(Level.FINEST, "Full exception: ", e);
+            invalidate();
+
+        }
+    }
+
+    /**
+     * Reloads the graph from the Registry on a background thread. Routes continue to be computed across the current
+     * snapshot until the reload completes.
+     */
+    public void invalidate() {
+
+        submit(new Runnable() {
+
+            @Override
+            public void run() {
+
+                load();
+            }
+        });
+    }
+
+    /**
+     * Requests a reload of a graph loaded from the Registry on a background thread, unless one is already pending.
+     */
+    private void reload() {
+
+        if (fromRegistry && reloadPending.compareAndSet(false, true)) {
+
+            boolean submitted = submit(new Runnable() {
+
+                @Override
+                public void run() {
+
+                    try {
+                        load();
+                    } finally {
+                        reloadPending.set(false);
+                    }
+                }
+            });
+
+            if (!submitted) {
+                reloadPending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Applies a change to a node, looking up its availability on a background thread.
+     *
+     * @param node
+     *            the ID of the node.
+     *
+     * @param action
+     *            the change (<code>INSERT</code>, <code>UPDATE</code> or <code>DELETE</code>).
+     */
+    private void nodeUpdate(final String node, String action) {
+
+        if (action.equals("DELETE")) {
+
+            apply(new Update(node, null, false));
+
+        } else {
+
+            submit(new Runnable() {
+
+                @Override
+                public void run() {
+
+                    Node nodeRecord = FabricRegistry.getNodeFactory().getNodeById(node);
+                    apply(new Update(node, null, nodeRecord != null && AVAILABLE.equals(nodeRecord.getAvailability())));
+                }
+            });
+        }
+    }
+
+    /**
+     * Applies a change to the current snapshot, recording it for reapplication if a load is in progress.
+     *
+     * @param update
+     *            the change.
+     */
+    private void apply(Update update) {
+
+        synchronized (updateLock) {
+
+            Topology current = topology;
+
+            if (current != null) {
+
+                Topology updated = update.applyTo(current);
+
+                if (updated != current) {
+                    topology = updated;
+                    logger.log(Level.FINEST, "Topology updated: node [{0}], neighbour [{1}], {2}", new Object[] {
+                            update.node, update.neighbour, (update.present) ? "present" : "absent"});
+                }
+            }
+
+            /* The load may have read the Registry before this change was made */
+            if (loadUpdates != null) {
+                loadUpdates.add(update);
+            }
+        }
+    }
+
+    /**
+     * Runs a task on the background thread used for topology updates, creating the thread if required.
+     *
+     * @param task
+     *            the task.
+     *
+     * @return <code>true</code> if the task was accepted, <code>false</code> otherwise.
+     */
+    private boolean submit(Runnable task) {
+
+        boolean accepted = true;
+
+        try {
+
+            synchronized (updateLock) {
+
+                if (updateExecutor == null) {
+
+                    updateExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+
+                            Thread thread = new Thread(r, UPDATE_THREAD_NAME);
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+            }
+
+            updateExecutor.execute(task);
+
+        } catch (RejectedExecutionException e) {
+
+            accepted = false;
+            logger.log(Level.WARNING, "Cannot schedule topology update: {0}", e.getMessage());
+            logger.log(Level.FINEST, "Full exception: ", e);
+
+        }
+
+        return accepted;
+    }
+
+    /**
+     * Loads the graph from the Registry unless it has already been loaded.
+     *
+     * @return the current snapshot.
+     */
+    private Topology loadIfAbsent() {
+
+        synchronized (loadLock) {
+
+            Topology current = topology;
+            return (current != null) ? current : load();
+        }
+    }
+
+    /**
+     * Loads the graph from the Registry and installs it as the current snapshot.
+     * <p>
+     * The Registry is queried without holding the lock used to install snapshots, so updates are not held up by the
+     * load; any updates made while the load runs are reapplied to the loaded snapshot before it is installed.
+     * </p>
+     *
+     * @return the current snapshot.
+     */
+    private Topology load() {
+
+        synchronized (loadLock) {
+
+            synchronized (updateLock) {
+                loadUpdates = new ArrayList<Update>();
+            }
+
+            Topology loaded = null;
+
+            try {
+
+                HashSet<String> availableNodes = new HashSet<String>();
+                HashMap<String, Set<String>> neighbours = new HashMap<String, Set<String>>();
+
+                try {
+                    Node[] nodes = FabricRegistry.getNodeFactory().getNodes("AVAILABILITY='AVAILABLE'");
+                    for (int i = 0; nodes != null && i < nodes.length; i++) {
+                        availableNodes.add(nodes[i].getId());
+                    }
+                } catch (RegistryQueryException rqe) {
+                    // Never actually thrown
+                }
+
+                /* Get the complete set of node neighbours */
+                NodeNeighbour[] nn = FabricRegistry.getNodeNeighbourFactory(QueryScope.DISTRIBUTED).getAllNeighbours();
+
+                for (int i = 0; nn != null && i < nn.length; i++) {
+
+                    Set<String> nodeNeighbours = neighbours.get(nn[i].getNodeId());
+
+                    if (nodeNeighbours == null) {
+                        nodeNeighbours = new HashSet<String>();
+                        neighbours.put(nn[i].getNodeId(), nodeNeighbours);
+                    }
+
+                    nodeNeighbours.add(nn[i].getNeighbourId());
+                }
+
+                loaded = new Topology(availableNodes, neighbours, System.currentTimeMillis());
+                logger.log(Level.FINER, "Topology loaded: {0} available node(s)", availableNodes.size());
+
+            } finally {
+
+                synchronized (updateLock) {
+
+                    if (loaded != null) {
+
+                        for (Update update : loadUpdates) {
+                            loaded = update.applyTo(loaded);
+                        }
+
+                        topology = loaded;
+                    }
+
+                    loadUpdates = null;
+                }
+            }
+
+            return topology;
+        }
+    }
+
+    /**
+     * Computes a shortest route between two nodes across the current snapshot (routes computed by this method are not
+     * cached).
+     *
+     * @param startNode
+     *            the ID of the start node.
+     *
+     * @param endNode
+     *            the ID of the end node.
+     *
+     * @return the route, including the start and end nodes, or an empty array if there is no route.
+     */
+    String[] shortestRoute(String startNode, String endNode) {
+
+        Topology current = topology;
+        return shortestRoute((current != null) ? current : loadIfAbsent(), startNode, endNode);
+    }
+
+    /**
+     * Computes a shortest route between two nodes, using Dijkstra's algorithm with a binary heap. Only edges between
+     * available nodes are followed.
+     *
+     * @param topology
+     *            the snapshot of the topology.
+     *
+     * @param startNode
+     *            the ID of the start node.
+     *
+     * @param endNode
+     *            the ID of the end node.
+     *
+     * @return the route, including the start and end nodes, or an empty array if there is no route.
+     */
+    private static String[] shortestRoute(Topology topology, String startNode, String endNode) {
+
+        Set<String> availableNodes = topology.availableNodes;
+        Map<String, Set<String>> neighbours = topology.neighbours;
+
+        /* A map of node name to current shortest distance from the start node */
+        HashMap<String, Integer> distance = new HashMap<String, Integer>();
+
+        /* A map of node name to the node preceding it on the shortest route found so far */
+        HashMap<String, String> previous = new HashMap<String, String>();
+
+        HashSet<String> visited = new HashSet<String>();
+        PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>();
+
+        distance.put(startNode, 0);
+        queue.add(new Candidate(startNode, 0));
+        boolean found = false;
+
+        while (!queue.isEmpty()) {
+
+            Candidate current = queue.poll();
+
+            /* Skip stale queue entries for nodes already visited via a shorter route */
+            if (!visited.add(current.node)) {
+                continue;
+            }
+
+            if (current.node.equals(endNode)) {
+                found = true;
+                break;
+            }
+
+            /* Edges are only followed from and to available nodes */
+            Set<String> nodeNeighbours = neighbours.get(current.node);
+
+            if (nodeNeighbours == null || !availableNodes.contains(current.node)) {
+                continue;
+            }
+
+            for (String neighbour : nodeNeighbours) {
+
+                if (!visited.contains(neighbour) && availableNodes.contains(neighbour)) {
+
+                    int newDistance = current.distance + EDGE_WEIGHT;
+                    Integer oldDistance = distance.get(neighbour);
+
+                    if (oldDistance == null || newDistance < oldDistance) {
+                        distance.put(neighbour, newDistance);
+                        previous.put(neighbour, current.node);
+                        queue.add(new Candidate(neighbour, newDistance));
+                    }
+                }
+            }
+        }
+
+        String[] route = new String[] {};
+
+        if (found) {
+
+            /* Back-track from the end node to build the route */
+            LinkedList<String> path = new LinkedList<String>();
+
+            for (String node = endNode; node != null; node = previous.get(node)) {
+                path.addFirst(node);
+            }
+
+            route = path.toArray(route);
+        }
+
+        return route;
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2007, 2012
+ * (C) Copyright IBM Corp. 2007, 2014
  *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -8,6 +8,8 @@
 package fabric.bus.routing.impl;
 
 import java.beans.PropertyChangeEvent;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.util.logging.Logger;
 
 import fabric.Fabric;
@@ -16,6 +18,7 @@ import fabric.bus.messages.IFabricMessage;
 import fabric.bus.messages.impl.MessageProperties;
 import fabric.bus.routing.IRouting;
 import fabric.core.xml.XML;
+import fabric.core.xml.XMLPath;
 
 /**
  * Class representing the route embedded in a Fabric message.
@@ -23,7 +26,7 @@ import fabric.core.xml.XML;
 public abstract class Routing extends Notifier implements IRouting {
 
     /** Copyright notice. */
-    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2007, 2012";
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2007, 2014";
 
     /*
      * Class constants
@@ -89,7 +92,7 @@ public abstract class Routing extends Notifier implements IRouting {
     public void init(String element, XML messageXML) throws Exception {
 
         /* Get the message type */
-        compactType = messageXML.get(element + "/rt@t");
+        compactType = messageXML.get(XMLPath.forPath(element).resolve("/rt@t"));
         String type = Fabric.longName(compactType);
         this.type = (type != null) ? type : compactType;
 
@@ -107,13 +110,37 @@ public abstract class Routing extends Notifier implements IRouting {
     public void embed(String element, XML messageXML) throws Exception {
 
         /* Set the message type */
-        messageXML.set(element + "/rt@t", compactType);
+        messageXML.set(XMLPath.forPath(element).resolve("/rt@t"), compactType);
 
         /* Set the message properties */
         properties.embed(element + "/rt", messageXML);
 
     }
 
+    /**
+     * @see fabric.bus.messages.IEmbeddedBinary#initBinary(java.io.DataInput)
+     */
+    @Override
+    public void initBinary(DataInput in) throws Exception {
+
+        /* Get the route properties (the type has already been read by the routing factory) */
+        properties.initBinary(in);
+
+        xmlCache = null;
+
+    }
+
+    /**
+     * @see fabric.bus.messages.IEmbeddedBinary#embedBinary(java.io.DataOutput)
+     */
+    @Override
+    public void embedBinary(DataOutput out) throws Exception {
+
+        /* Set the route properties */
+        properties.embedBinary(out);
+
+    }
+
     /**
      * @see fabric.bus.routing.IRouting#getProperty(java.lang.String)
      */
@@ -7,8 +7,11 @@
 
 package fabric.bus.routing.impl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.util.Arrays;
 
+import fabric.bus.messages.BinaryWire;
 import fabric.bus.messages.IReplicate;
 import fabric.bus.routing.IRouting;
 import fabric.core.xml.XML;
@@ -54,7 +57,8 @@ public class StaticRouting extends Routing {
      */
     public StaticRouting(StaticRouting source) {
 
-        this(source.nodeIDs);
+        super(source);
+        setRouteNodes(source.nodeIDs);
 
     }
 
@@ -97,6 +101,40 @@ public class StaticRouting extends Routing {
 
     }
 
+    /**
+     * @see fabric.bus.routing.impl.Routing#initBinary(java.io.DataInput)
+     */
+    @Override
+    public void initBinary(DataInput in) throws Exception {
+
+        super.initBinary(in);
+
+        /* Get the IDs of each hop in the route */
+        String[] nodeIDs = new String[BinaryWire.readCount(in)];
+        for (int n = 0; n < nodeIDs.length; n++) {
+            nodeIDs[n] = BinaryWire.readString(in);
+        }
+
+        setRouteNodes(nodeIDs);
+
+    }
+
+    /**
+     * @see fabric.bus.routing.impl.Routing#embedBinary(java.io.DataOutput)
+     */
+    @Override
+    public void embedBinary(DataOutput out) throws Exception {
+
+        super.embedBinary(out);
+
+        /* Set the IDs of each hop in the route */
+        out.writeInt(nodeIDs.length);
+        for (int n = 0; n < nodeIDs.length; n++) {
+            BinaryWire.writeString(out, nodeIDs[n]);
+        }
+
+    }
+
     /**
      * Gets the list of nodes in the route.
      *
@@ -352,7 +352,7 @@ public class ConnectionManager extends BusService implements IPersistentService,
      *            the type of event that triggered the sending of this message, one of <code>EVENT_CONNECTED</code> or
      *            <code>EVENT_DISCONNECTED</code>.
      */
-    private void doAction(int action, String resourceType, String node, String platform, String system, String service,
+    private synchronized void doAction(int action, String resourceType, String node, String platform, String system, String service,
             String actor, String event) {
 
         /* Get the message table corresponding to the event type */
@@ -513,7 +513,7 @@ public class ConnectionManager extends BusService implements IPersistentService,
      * @param singleFire
      *            flag indicating if this message is a single or multiple fire.
      */
-    private String addMessage(String resourceType, String node, String platform, String system, String service,
+    private synchronized String addMessage(String resourceType, String node, String platform, String system, String service,
             String actor, IServiceMessage message, String event, boolean singleFire) {
 
         /* Get the message table corresponding to the status type */
@@ -702,7 +702,7 @@ public class ConnectionManager extends BusService implements IPersistentService,
      * @see fabric.bus.services.IConnectionManager#removeMessage(java.lang.String)
      */
     @Override
-    public void removeMessage(String handle) {
+    public synchronized void removeMessage(String handle) {
 
         /* Get the record for the message to be deleted */
         MessageRecord record = allMessages.get(handle);
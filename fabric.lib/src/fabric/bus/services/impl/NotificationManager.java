@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2010, 2012
+ * (C) Copyright IBM Corp. 2010, 2014
  *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -10,6 +10,9 @@ package fabric.bus.services.impl;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -25,15 +28,20 @@ import fabric.bus.services.IBusServiceConfig;
 import fabric.bus.services.INotificationManager;
 import fabric.bus.services.IPersistentService;
 import fabric.core.io.OutputTopic;
+import fabric.core.util.TimerWheel;
 
 /**
  * Class handling service acknowledgment messages for the Fabric.
+ * <p>
+ * Notification records are grouped by correlation ID, and each group is locked independently. Notification timeouts
+ * are scheduled on a timing wheel, so they fire when they fall due and are cancelled when their notifications are
+ * removed.
+ * </p>
  */
-public class NotificationManager extends BusService implements Runnable, IPersistentService,
-        INotificationManager {
+public class NotificationManager extends BusService implements IPersistentService, INotificationManager {
 
     /** Copyright notice. */
-    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2010, 2012";
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2010, 2014";
 
     /*
      * Class static fields
@@ -47,13 +55,10 @@ public class NotificationManager extends BusService implements Runnable, IPersis
     private IBusServices busServices = null;
 
     /** The table of notification records, keyed by correlation ID. */
-    private final HashMap<String, ArrayList<NotificationRecord>> notificationRecords = new HashMap<String, ArrayList<NotificationRecord>>();
+    private final ConcurrentHashMap<String, CorrelationRecords> notificationRecords = new ConcurrentHashMap<String, CorrelationRecords>();
 
-    /** Object used to synchronise with the mapper main thread */
-    private final Object threadSync = new Object();
-
-    /** Flag used to indicate when the main thread should terminate */
-    private boolean isRunning = true;
+    /** The timer used to fire notification timeouts. */
+    private TimerWheel timeouts = null;
 
     /*
      * Inner classes
@@ -83,8 +88,11 @@ public class NotificationManager extends BusService implements Runnable, IPersis
         /** The event ID associated with this message. */
         public String event = IServiceMessage.EVENT_UNKNOWN;
 
-        /** The timeout period for this notification (<code>null</code> indicates no timeout). */
-        public long timeout = 0;
+        /** The timeout period for this notification (in seconds, 0 indicates no timeout). */
+        public int timeoutPeriod = 0;
+
+        /** The scheduled timeout for this notification (<code>null</code> indicates no timeout). */
+        public TimerWheel.Timeout timeout = null;
 
         /** Flag indicating if this notification should be retained, or removed when any related notification fires. */
         public boolean retained = false;
@@ -111,7 +119,7 @@ public class NotificationManager extends BusService implements Runnable, IPersis
          *            the message to be sent upon receipt of the specified event.
          *
          * @param timeout
-         *            the timeout period (in milliseconds) until the notification times-out and the failure message is
+         *            the timeout period (in seconds) until the notification times-out and the failure message is
          *            automatically delivered.
          *
          * @param retained
@@ -128,131 +136,182 @@ public class NotificationManager extends BusService implements Runnable, IPersis
             this.actor = actor;
             this.actorPlatform = actorPlatform;
             this.message = (IServiceMessage) message.replicate();
+            this.timeoutPeriod = timeout;
+            this.retained = retained;
+        }
 
-            /* If a timeout has been specified... */
-            if (timeout != 0) {
-
-                this.timeout = System.currentTimeMillis() + (timeout * 1000);
+        /**
+         * Cancels the timeout (if any) for this record.
+         */
+        public void cancelTimeout() {
 
+            if (timeout != null) {
+                timeout.cancel();
             }
-
-            this.retained = retained;
         }
     }
 
-    /*
-     * Class methods
-     */
-
     /**
-     * Constructs a new instance.
+     * The notification records for a single correlation ID, keyed by feed descriptor. Access to the records is
+     * synchronized on the instance.
      */
-    public NotificationManager() {
+    private class CorrelationRecords {
 
-        super(Logger.getLogger("fabric.bus.services"));
-    }
+        /** The correlation ID. */
+        public final String correlationID;
 
-    /**
-     * Constructs a new instance.
-     */
-    public NotificationManager(Logger logger) {
+        /** The lists of notification records, keyed by feed descriptor. */
+        public final HashMap<String, ArrayList<NotificationRecord>> records = new HashMap<String, ArrayList<NotificationRecord>>();
 
-        super(logger);
-    }
+        /** Flag indicating if this group has been removed from the table of notification records. */
+        public boolean discarded = false;
 
-    /**
-     * @see fabric.bus.services.impl.BusService#initService(fabric.bus.plugins.IPluginConfig)
-     */
-    @Override
-    public void initService(IPluginConfig config) {
-
-        super.initService(config);
+        /**
+         * Constructs a new instance.
+         *
+         * @param correlationID
+         *            the correlation ID.
+         */
+        public CorrelationRecords(String correlationID) {
 
-        /* Make a local copy of the accessor for Fabric management services */
-        busServices = ((IBusServiceConfig) config).getFabricServices();
+            this.correlationID = correlationID;
+        }
 
-        /* Start the time out thread */
-        Thread pluginThread = new Thread(this, "Notification-Manager");
-        pluginThread.start();
+        /**
+         * Removes this group from the table of notification records if it is empty. Must be called while synchronized
+         * on this instance.
+         */
+        public void discardIfEmpty() {
 
+            if (records.isEmpty() && !discarded) {
+                discarded = true;
+                notificationRecords.remove(correlationID, this);
+            }
+        }
     }
 
     /**
-     * @see java.lang.Runnable#run()
+     * Task firing a notification when its timeout expires.
+     * <p>
+     * The record is removed under the lock of its correlation group before the notification is delivered, so a timeout
+     * that races with the removal (or firing) of the record is not delivered.
+     * </p>
      */
-    @Override
-    public void run() {
+    private class TimeoutTask implements Runnable {
 
-        isRunning = true;
+        /** The notification record. */
+        private final NotificationRecord record;
 
-        /* Determine the period between timeout checks */
-        long timeoutCheck = Integer.parseInt(config("fabric.notificationManager.timeoutCheck", "60")) * 1000;
+        /**
+         * Constructs a new instance.
+         *
+         * @param record
+         *            the notification record.
+         */
+        public TimeoutTask(NotificationRecord record) {
 
-        while (isRunning) {
+            this.record = record;
+        }
+
+        /**
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
 
             try {
 
-                synchronized (threadSync) {
+                /* Only fire the notification if it is still pending */
+                if (removeRecord()) {
 
-                    /* Make a note of the current time */
-                    long currentTime = System.currentTimeMillis();
+                    logger.log(
+                            Level.FINE,
+                            "Timeout triggered: firing notification for correlation ID [{0}], event [{1}], service ID [{2}], actor [{3}], platform [{4}]",
+                            new Object[] {record.correlationID, record.event, record.serviceDescriptor, record.actor,
+                                    record.actorPlatform});
+                    logger.log(Level.FINEST, "Full message:\n{0}", record.message);
+                    deliverNotification(record.actor, record.actorPlatform, null, record.message, null);
 
-                    /* To hold the list of notifications that are fired */
-                    ArrayList<NotificationRecord> firedNotifications = new ArrayList<NotificationRecord>();
+                    /* Remove notifications that no longer need to be fired */
+                    removeNotifications(record.correlationID, record.serviceDescriptor, false);
+                }
 
-                    /* For each list of notification records... */
-                    for (Iterator<String> recordListIterator = notificationRecords.keySet().iterator(); recordListIterator
-                            .hasNext();) {
+            } catch (Exception e) {
 
-                        /* Get the next list */
-                        String nextKey = recordListIterator.next();
-                        ArrayList<NotificationRecord> nextRecordList = notificationRecords.get(nextKey);
+                logger.log(Level.WARNING, "Exception firing timeout notificatons: ", e);
 
-                        /* For each record in the list... */
-                        for (NotificationRecord nextRecord : nextRecordList) {
+            }
+        }
 
-                            /* If this record has timed-out... */
-                            if (nextRecord.timeout != 0 && nextRecord.timeout < currentTime) {
+        /**
+         * Removes the record from its correlation group.
+         *
+         * @return <code>true</code> if the record was removed by this call, <code>false</code> if it had already been
+         *         removed.
+         */
+        private boolean removeRecord() {
 
-                                logger.log(
-                                        Level.FINE,
-                                        "Timeout triggered: firing notification for correlation ID [{0}], event [{1}], service ID [{2}], actor [{3}], platform [{4}]",
-                                        new Object[] {nextRecord.correlationID, nextRecord.event,
-                                                nextRecord.serviceDescriptor, nextRecord.actor,
-                                                nextRecord.actorPlatform});
-                                logger.log(Level.FINEST, "Full message:\n{0}", nextRecord.message);
-                                deliverNotification(nextRecord.actor, nextRecord.actorPlatform, null,
-                                        nextRecord.message, null);
+            boolean removed = false;
+            CorrelationRecords correlationRecords = notificationRecords.get(record.correlationID);
 
-                                /* Record this notification so that it can be removed later */
-                                firedNotifications.add(nextRecord);
+            if (correlationRecords != null) {
 
-                            }
+                synchronized (correlationRecords) {
+
+                    String recordListKey = String.valueOf(record.serviceDescriptor);
+                    ArrayList<NotificationRecord> recordList = correlationRecords.records.get(recordListKey);
+
+                    if (recordList != null && recordList.remove(record)) {
+
+                        removed = true;
+
+                        if (recordList.isEmpty()) {
+                            correlationRecords.records.remove(recordListKey);
                         }
-                    }
 
-                    /* Remove notifications that have fired (or no longer need to be fired) */
-                    for (NotificationRecord notification : firedNotifications) {
-                        removeNotifications(notification.correlationID, notification.serviceDescriptor, false);
+                        correlationRecords.discardIfEmpty();
                     }
-
                 }
+            }
 
-                synchronized (threadSync) {
-                    /* Sleep before the next timeout check */
-                    threadSync.wait(timeoutCheck);
-                }
+            return removed;
+        }
+    }
 
-            } catch (InterruptedException e) {
+    /*
+     * Class methods
+     */
 
-                /* Not too worried about this happening */
+    /**
+     * Constructs a new instance.
+     */
+    public NotificationManager() {
 
-            } catch (Exception e) {
+        super(Logger.getLogger("fabric.bus.services"));
+    }
 
-                logger.log(Level.WARNING, "Exception firing timeout notificatons: ", e);
+    /**
+     * Constructs a new instance.
+     */
+    public NotificationManager(Logger logger) {
+
+        super(logger);
+    }
+
+    /**
+     * @see fabric.bus.services.impl.BusService#initService(fabric.bus.plugins.IPluginConfig)
+     */
+    @Override
+    public void initService(IPluginConfig config) {
+
+        super.initService(config);
+
+        /* Make a local copy of the accessor for Fabric management services */
+        busServices = ((IBusServiceConfig) config).getFabricServices();
+
+        /* Start the time out thread */
+        timeouts = new TimerWheel("Notification-Manager");
 
-            }
-        }
     }
 
     /**
@@ -273,25 +332,22 @@ public class NotificationManager extends BusService implements Runnable, IPersis
         /* Extract the notification-specific arguments from the message, to be added to the client message */
         String notificationArgs = message.getNotificationArgs();
 
-        synchronized (threadSync) {
+        /* If there are no feeds in the list... */
+        if (serviceList.size() == 0) {
 
-            /* If there are no feeds in the list... */
-            if (serviceList.size() == 0) {
+            /* Fire the notifications */
+            fireNotifications(correlationID, event, notificationArgs, message);
 
-                /* Fire the notifications */
-                fireNotifications(correlationID, event, notificationArgs, message);
+        } else {
 
-            } else {
+            TaskServiceDescriptor[] feeds = serviceList.getServices();
 
-                TaskServiceDescriptor[] feeds = serviceList.getServices();
+            /* For each feed... */
+            for (int f = 0; f < feeds.length; f++) {
 
-                /* For each feed... */
-                for (int f = 0; f < feeds.length; f++) {
+                /* Fire the notification */
+                fireNotifications(correlationID, feeds[f], event, notificationArgs, message);
 
-                    /* Fire the notification */
-                    fireNotifications(correlationID, feeds[f], event, notificationArgs, message);
-
-                }
             }
         }
 
@@ -306,10 +362,8 @@ public class NotificationManager extends BusService implements Runnable, IPersis
     public void stopService() {
 
         /* Tell the timer thread to stop... */
-        isRunning = false;
-
-        synchronized (threadSync) {
-            threadSync.notifyAll();
+        if (timeouts != null) {
+            timeouts.stop();
         }
 
         logger.log(Level.FINE, "Service [{0}] stopped", getClass().getName());
@@ -338,13 +392,43 @@ public class NotificationManager extends BusService implements Runnable, IPersis
         NotificationRecord newRecord = new NotificationRecord(correlationID, serviceDescriptor, event, actor,
                 actorPlatform, message, timeout, retained);
 
-        synchronized (threadSync) {
+        boolean added = false;
+
+        while (!added) {
+
+            /* Get the group of records for this correlation ID */
+            CorrelationRecords correlationRecords = notificationRecords.get(correlationID);
+
+            if (correlationRecords == null) {
+                CorrelationRecords newRecords = new CorrelationRecords(correlationID);
+                correlationRecords = notificationRecords.putIfAbsent(correlationID, newRecords);
+                correlationRecords = (correlationRecords != null) ? correlationRecords : newRecords;
+            }
+
+            synchronized (correlationRecords) {
+
+                /* If the group has not just been discarded (in which case try again)... */
+                if (!correlationRecords.discarded) {
 
-            /* Add this message to the list for this correlation ID */
-            String recordListKey = correlationID + '/' + serviceDescriptor;
-            ArrayList<NotificationRecord> recordList = lookupSublist(recordListKey, notificationRecords);
-            recordList.add(newRecord);
+                    /* Add this message to the list for this feed */
+                    String recordListKey = String.valueOf(serviceDescriptor);
+                    ArrayList<NotificationRecord> recordList = correlationRecords.records.get(recordListKey);
 
+                    if (recordList == null) {
+                        recordList = new ArrayList<NotificationRecord>();
+                        correlationRecords.records.put(recordListKey, recordList);
+                    }
+
+                    recordList.add(newRecord);
+
+                    /* If a timeout has been specified... */
+                    if (timeout != 0 && timeouts != null) {
+                        newRecord.timeout = timeouts.schedule(new TimeoutTask(newRecord), timeout, TimeUnit.SECONDS);
+                    }
+
+                    added = true;
+                }
+            }
         }
 
     }
@@ -384,45 +468,59 @@ public class NotificationManager extends BusService implements Runnable, IPersis
      */
     private void removeNotifications(String correlationID, ServiceDescriptor serviceDescriptor, boolean doRemoveRetained) {
 
-        synchronized (threadSync) {
+        CorrelationRecords correlationRecords = notificationRecords.get(correlationID);
+
+        if (correlationRecords == null) {
+            return;
+        }
+
+        synchronized (correlationRecords) {
 
             /* If retained notifications are to be removed... */
             if (doRemoveRetained) {
 
-                String recordListKey = correlationID + '/' + serviceDescriptor;
-                notificationRecords.remove(recordListKey);
+                ArrayList<NotificationRecord> recordList = correlationRecords.records.remove(String
+                        .valueOf(serviceDescriptor));
+
+                if (recordList != null) {
+                    for (NotificationRecord record : recordList) {
+                        record.cancelTimeout();
+                    }
+                }
 
             }
             /* Else remove ALL non-retained notifications for this correlation ID */
             else {
 
-                /* For each notification record... */
-                for (Iterator<String> recordListIterator = notificationRecords.keySet().iterator(); recordListIterator
-                        .hasNext();) {
+                /* For each list of notification records... */
+                for (Iterator<ArrayList<NotificationRecord>> recordListIterator = correlationRecords.records.values()
+                        .iterator(); recordListIterator.hasNext();) {
 
-                    /* Get the key of the next list */
-                    String recordListKey = recordListIterator.next();
+                    ArrayList<NotificationRecord> nextRecordList = recordListIterator.next();
 
-                    /* If this is a list for the specified correlation ID... */
-                    if (recordListKey.startsWith(correlationID)) {
-
-                        /* Get the list */
-                        ArrayList<NotificationRecord> nextRecordList = notificationRecords.get(recordListKey);
+                    /* For each record in the list... */
+                    for (Iterator<NotificationRecord> recordIterator = nextRecordList.iterator(); recordIterator
+                            .hasNext();) {
 
-                        /* For each record in the list... */
-                        for (int n = 0; n < nextRecordList.size(); n++) {
+                        NotificationRecord nextRecord = recordIterator.next();
 
-                            /* If this is not a retained record... */
-                            if (!nextRecordList.get(n).retained) {
+                        /* If this is not a retained record... */
+                        if (!nextRecord.retained) {
 
-                                /* Remove it */
-                                nextRecordList.remove(n--);
+                            /* Remove it */
+                            nextRecord.cancelTimeout();
+                            recordIterator.remove();
 
-                            }
                         }
                     }
+
+                    if (nextRecordList.isEmpty()) {
+                        recordListIterator.remove();
+                    }
                 }
             }
+
+            correlationRecords.discardIfEmpty();
         }
     }
 
@@ -446,35 +544,47 @@ public class NotificationManager extends BusService implements Runnable, IPersis
     public void fireNotifications(String correlationID, ServiceDescriptor serviceDescriptor, String event,
             String notificationArgs, INotificationMessage trigger) throws Exception {
 
-        synchronized (threadSync) {
+        CorrelationRecords correlationRecords = notificationRecords.get(correlationID);
+
+        /* If there are any notifications for the specified correlation ID... */
+        if (correlationRecords != null) {
 
-            /* Get the list of notifications for the specified correlation ID */
-            String recordListKey = correlationID + '/' + serviceDescriptor;
-            ArrayList<NotificationRecord> recordList = notificationRecords.get(recordListKey);
+            /* To hold the notifications matching the specified event */
+            List<NotificationRecord> toFire = new ArrayList<NotificationRecord>();
+            boolean hasRecords = false;
 
-            /* If there are any... */
-            if (recordList != null) {
+            synchronized (correlationRecords) {
 
-                /* For each notification record... */
-                for (NotificationRecord record : recordList) {
+                /* Get the list of notifications for the specified feed */
+                ArrayList<NotificationRecord> recordList = correlationRecords.records.get(String
+                        .valueOf(serviceDescriptor));
 
-                    /* If the next record matches the specified event... */
-                    if (record.event.equals(event)) {
+                if (recordList != null) {
 
-                        /* Fire the notification */
-                        deliverNotification(record.actor, record.actorPlatform, notificationArgs, record.message,
-                                trigger);
+                    hasRecords = true;
 
+                    /* For each notification record... */
+                    for (NotificationRecord record : recordList) {
+
+                        /* If the next record matches the specified event... */
+                        if (record.event.equals(event)) {
+                            toFire.add(record);
+                        }
                     }
                 }
+            }
+
+            /* Fire the notifications (outside of the lock, since delivery may result in further notifications) */
+            for (NotificationRecord record : toFire) {
+                deliverNotification(record.actor, record.actorPlatform, notificationArgs, record.message, trigger);
+            }
 
-                /* If the notification event indicates that the message has been handled... */
-                if (IServiceMessage.EVENT_MESSAGE_HANDLED.equals(event)) {
+            /* If the notification event indicates that the message has been handled... */
+            if (hasRecords && IServiceMessage.EVENT_MESSAGE_HANDLED.equals(event)) {
 
-                    /* We can remove any pending messages that don't need to be retained */
-                    removeNotifications(correlationID, serviceDescriptor, false);
+                /* We can remove any pending messages that don't need to be retained */
+                removeNotifications(correlationID, serviceDescriptor, false);
 
-                }
             }
         }
     }
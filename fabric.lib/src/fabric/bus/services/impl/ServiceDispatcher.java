@@ -7,6 +7,7 @@
 
 package fabric.bus.services.impl;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.logging.Level;
@@ -136,8 +137,14 @@ public class ServiceDispatcher extends Dispatcher implements IServiceDispatcher
     @Override
     public void stopDispatcher() {
 
+        ArrayList<IService> activeServices = null;
+
+        synchronized (services) {
+            activeServices = new ArrayList<IService>(services.values());
+        }
+
         /* For each persistent service... */
-        for (Iterator<IService> i = services.values().iterator(); i.hasNext();) {
+        for (Iterator<IService> i = activeServices.iterator(); i.hasNext();) {
 
             /* Get the next service */
             IService service = i.next();
@@ -160,6 +167,36 @@ public class ServiceDispatcher extends Dispatcher implements IServiceDispatcher
         /* Generate the handler's persistence name */
         String fullName = familyName + '/' + name;
 
+        /* Serialise look-ups so that concurrent callers share a single instance of each persistent service */
+        synchronized (services) {
+            return serviceInstance(fullName, name, arguments, familyName, description);
+        }
+    }
+
+    /**
+     * Answers the active instance of a service, instantiating it if required. The caller must hold the lock on the
+     * service table.
+     *
+     * @param fullName
+     *            the persistence name of the service.
+     *
+     * @param name
+     *            the class name of the service.
+     *
+     * @param arguments
+     *            the service arguments.
+     *
+     * @param familyName
+     *            the service family name.
+     *
+     * @param description
+     *            the service description.
+     *
+     * @return the service, or <code>null</code> if it cannot be instantiated.
+     */
+    private IService serviceInstance(String fullName, String name, String arguments, String familyName,
+            String description) {
+
         /* Check if this service has already been instantiated (persistent handlers only) */
         IService service = services.get(fullName);
 
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2006, 2012
+ * (C) Copyright IBM Corp. 2006, 2014
  *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -16,8 +16,11 @@ import fabric.Fabric;
 import fabric.FabricBus;
 import fabric.FabricShutdownHook;
 import fabric.IFabricShutdownHookAction;
+import fabric.TaskServiceDescriptor;
 import fabric.bus.BusIOChannels;
 import fabric.bus.feeds.ISubscription;
+import fabric.bus.feeds.ISubscriptionCallback;
+import fabric.bus.feeds.impl.BulkSubscriber;
 import fabric.bus.messages.FabricMessageFactory;
 import fabric.bus.messages.IConnectionMessage;
 import fabric.bus.messages.IFabricMessage;
@@ -32,6 +35,7 @@ import fabric.core.io.ICallback;
 import fabric.core.io.InputTopic;
 import fabric.core.io.Message;
 import fabric.core.io.OutputTopic;
+import fabric.core.io.mqtt.MqttConfig;
 import fabric.core.logging.FLog;
 import fabric.core.properties.ConfigProperties;
 import fabric.registry.Actor;
@@ -61,7 +65,7 @@ import fabric.registry.exception.DuplicateKeyException;
 public class FabricClient extends FabricBus implements ICallback, IFabricShutdownHookAction, IFabricClientServices {
 
     /** Copyright notice. */
-    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2006, 2012";
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2006, 2014";
 
     /*
      * Class static fields
@@ -110,6 +114,15 @@ public class FabricClient extends FabricBus implements ICallback, IFabricShutdow
     /** Flag indicating if a shutdown of this Fabric client is in progress */
     protected boolean shutdownInProgress = false;
 
+    /**
+     * Flag indicating if feed subscriptions are multiplexed over a single wildcard channel, or <code>null</code> if
+     * this is determined by the Fabric configuration.
+     */
+    protected Boolean multiplexSubscriptions = null;
+
+    /** The multiplexer for feed subscriptions, created when the first multiplexed subscription is made. */
+    protected SubscriptionMultiplexer subscriptionMultiplexer = null;
+
     /*
      * Static class initialization
      */
@@ -226,6 +239,105 @@ public class FabricClient extends FabricBus implements ICallback, IFabricShutdow
         return platform;
     }
 
+    /**
+     * Answers <code>true</code> if new feed subscriptions are multiplexed over a single wildcard channel rather than
+     * each opening its own channel.
+     *
+     * @return <code>true</code> if subscriptions are multiplexed, <code>false</code> otherwise.
+     */
+    public boolean isMultiplexingSubscriptions() {
+
+        Boolean isMultiplexing = multiplexSubscriptions;
+
+        if (isMultiplexing == null) {
+            isMultiplexing = Boolean.valueOf(config(ConfigProperties.CLIENT_MULTIPLEX_SUBSCRIPTIONS,
+                    ConfigProperties.CLIENT_MULTIPLEX_SUBSCRIPTIONS_DEFAULT));
+        }
+
+        return isMultiplexing;
+    }
+
+    /**
+     * Sets whether new feed subscriptions are multiplexed over a single wildcard channel, overriding the Fabric
+     * configuration. Existing subscriptions are not affected.
+     *
+     * @param multiplexSubscriptions
+     *            <code>true</code> if subscriptions are to be multiplexed, <code>false</code> otherwise.
+     */
+    public void setMultiplexSubscriptions(boolean multiplexSubscriptions) {
+
+        this.multiplexSubscriptions = multiplexSubscriptions;
+    }
+
+    /**
+     * Answers the multiplexer used to deliver the messages for multiplexed feed subscriptions, creating it if required.
+     * <p>
+     * <strong>Note:</strong> this method is for internal Fabric use only.
+     * </p>
+     *
+     * @return the multiplexer.
+     */
+    public synchronized SubscriptionMultiplexer subscriptionMultiplexer() {
+
+        if (subscriptionMultiplexer == null) {
+
+            String baseTopic = config("fabric.feeds.offramp", null, homeNode()) + '/' + actor + '/' + platform;
+            int dispatchThreads = Integer.parseInt(config(ConfigProperties.CLIENT_MULTIPLEX_THREADS,
+                    ConfigProperties.CLIENT_MULTIPLEX_THREADS_DEFAULT));
+            boolean ordered = Boolean.parseBoolean(config(ConfigProperties.CLIENT_MULTIPLEX_ORDERED,
+                    ConfigProperties.CLIENT_MULTIPLEX_ORDERED_DEFAULT));
+
+            /* Messages awaiting delivery are queued with the same capacity and overflow policy as channels */
+            MqttConfig mqttConfig = (MqttConfig) homeNodeEndPoint().getConfig();
+
+            subscriptionMultiplexer = new SubscriptionMultiplexer(homeNodeEndPoint(), baseTopic, dispatchThreads,
+                    ordered, mqttConfig.getChannelQueueCapacity(), mqttConfig.getOverflowPolicy(), mqttConfig
+                            .getSpillDirectory());
+
+        }
+
+        return subscriptionMultiplexer;
+    }
+
+    /**
+     * Subscribes to a list of feeds in bulk.
+     * <p>
+     * Feeds sharing a route are subscribed to using a single subscription message, and the routes and Registry records
+     * of all of the feeds are resolved and written in batches. This is much faster than subscribing to each feed in
+     * turn when there are many feeds.
+     * </p>
+     *
+     * @param feeds
+     *            the feeds (which must not contain wildcards).
+     *
+     * @param callback
+     *            the callback to receive incoming Fabric feed messages and subscription events.
+     *
+     * @return the subscriptions, in the same order as the feeds; the entry for a feed is <code>null</code> if it could
+     *         not be subscribed to.
+     *
+     * @throws Exception
+     *             thrown if the routes to the feeds cannot be resolved.
+     */
+    public ISubscription[] subscribe(TaskServiceDescriptor[] feeds, ISubscriptionCallback callback) throws Exception {
+
+        return new BulkSubscriber(this).subscribe(feeds, callback);
+    }
+
+    /**
+     * Unsubscribes a list of subscriptions in bulk.
+     *
+     * @param subscriptions
+     *            the subscriptions (<code>null</code> entries are ignored).
+     *
+     * @throws Exception
+     *             thrown if the unsubscribe messages cannot be sent.
+     */
+    public void unsubscribe(ISubscription[] subscriptions) throws Exception {
+
+        new BulkSubscriber(this).unsubscribe(subscriptions);
+    }
+
     /**
      * Registers a new active subscription.
      * <p>
@@ -627,6 +739,14 @@ public class FabricClient extends FabricBus implements ICallback, IFabricShutdow
         /* Close all active subscriptions */
         unsubscribeAll();
 
+        /* Stop delivering multiplexed subscription messages */
+        synchronized (this) {
+            if (subscriptionMultiplexer != null) {
+                subscriptionMultiplexer.close();
+                subscriptionMultiplexer = null;
+            }
+        }
+
         /* Disconnect from the Fabric */
         disconnectFabric();
 
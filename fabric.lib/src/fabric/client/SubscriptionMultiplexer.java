@@ -0,0 +1,604 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.client;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fabric.bus.SharedChannel;
+import fabric.bus.SharedEndPoint;
+import fabric.core.io.ICallback;
+import fabric.core.io.InputTopic;
+import fabric.core.io.Message;
+import fabric.core.io.mqtt.ChannelQueue;
+import fabric.core.io.mqtt.OverflowPolicy;
+
+/**
+ * Delivers the feed messages for all of a client's subscriptions from a single wildcard channel.
+ * <p>
+ * Rather than each subscription opening its own channel (and so its own broker subscription and inbound queue), the
+ * multiplexer opens one channel on <code>&lt;offramp&gt;/&lt;actor&gt;/&lt;platform&gt;/#</code> and hands each
+ * message to the subscriptions registered for its topic. The channel is opened when the first subscription is
+ * registered and closed when the last one is removed.
+ * </p>
+ * <p>
+ * By default messages are delivered on the thread reading the channel, in arrival order. If a number of dispatch
+ * threads is configured, messages for different subscriptions are delivered concurrently; each subscription still
+ * receives its messages in arrival order unless ordering has been switched off. Messages waiting for ordered delivery
+ * are held in a bounded <code>ChannelQueue</code> for each subscription, with the same overflow policies as the
+ * inbound queues of channels.
+ * </p>
+ * <p>
+ * When ordering has been switched off, each message is handed to the dispatch pool separately. The pool's queue is
+ * then bounded by the same capacity, and when it is full the overflow policy is applied to the waiting messages:
+ * <code>DROP_NEWEST</code> discards the arriving message and <code>DROP_OLDEST</code> the one that has waited longest.
+ * Since tasks cannot be written to disk, <code>SPILL</code> instead delivers the arriving message on the thread reading
+ * the channel, holding back further messages until the dispatch threads catch up.
+ * </p>
+ */
+public class SubscriptionMultiplexer implements ICallback {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The prefix for dispatch thread names */
+    private static final String prefix = "Fabric-Subscription-Dispatch-";
+
+    /** The maximum number of messages delivered to a subscription before yielding to other subscriptions */
+    private static final int DISPATCH_BATCH = 64;
+
+    /** Used to register subscriptions with no targets */
+    private static final Target[] NO_TARGETS = new Target[0];
+
+    /*
+     * Class fields
+     */
+
+    private final Logger logger = Logger.getLogger("fabric.client");
+
+    /** The end point used to open the wildcard channel. */
+    private final SharedEndPoint endPoint;
+
+    /** The topic common to all of the client's feed messages (without the trailing wildcard). */
+    private final String baseTopic;
+
+    /** The subscriptions registered for each topic. */
+    private final ConcurrentHashMap<String, Target[]> targetsByTopic = new ConcurrentHashMap<String, Target[]>();
+
+    /** The thread pool used to deliver messages, or <code>null</code> if they are delivered on the channel's thread. */
+    private final ExecutorService dispatchPool;
+
+    /** Flag indicating if each subscription receives its messages in arrival order. */
+    private final boolean ordered;
+
+    /** The maximum number of messages held in memory for each subscription awaiting ordered delivery. */
+    private final int queueCapacity;
+
+    /** The action taken when a subscription's queue of messages awaiting ordered delivery is full. */
+    private final OverflowPolicy overflowPolicy;
+
+    /** The directory in which spill files are created (<code>SPILL</code> overflow policy only). */
+    private final String spillDirectory;
+
+    /** The wildcard channel, or <code>null</code> if it is not open. */
+    private SharedChannel channel = null;
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * A subscription registered with the multiplexer, and the messages waiting to be delivered to it.
+     * <p>
+     * At most one delivery run for a target is scheduled at any time, so messages are delivered in arrival order.
+     * </p>
+     */
+    private final class Target implements Runnable {
+
+        /** The subscription's callback. */
+        final ICallback callback;
+
+        /** The messages waiting for ordered delivery on the dispatch pool (otherwise <code>null</code>). */
+        final ChannelQueue pending;
+
+        /** Flag indicating if a delivery run is scheduled. */
+        final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        /**
+         * Constructs a new instance.
+         *
+         * @param topic
+         *            the topic of the subscription's feed messages.
+         *
+         * @param callback
+         *            the subscription's callback.
+         */
+        Target(String topic, ICallback callback) {
+
+            this.callback = callback;
+            pending = (dispatchPool != null && ordered) ? new ChannelQueue(topic, queueCapacity, overflowPolicy,
+                    spillDirectory, logger) : null;
+        }
+
+        /**
+         * Delivers a message to the subscription.
+         *
+         * @param message
+         *            the message.
+         */
+        void deliver(final Message message) {
+
+            if (dispatchPool == null) {
+
+                invoke(message);
+
+            } else if (!ordered) {
+
+                boolean accepted = execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        invoke(message);
+                    }
+                });
+
+                if (!accepted) {
+                    logger.log(Level.FINER, "Discarded multiplexed subscription message on topic [{0}]",
+                            message.topic);
+                }
+
+            } else {
+
+                if (pending.offer(message)) {
+                    schedule();
+                } else {
+                    logger.log(Level.FINER, "Discarded multiplexed subscription message on topic [{0}]",
+                            message.topic);
+                }
+
+            }
+        }
+
+        /**
+         * Schedules a delivery run, unless one is already scheduled.
+         */
+        void schedule() {
+
+            if (scheduled.compareAndSet(false, true) && !execute(this)) {
+                scheduled.set(false);
+            }
+        }
+
+        /**
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+
+            try {
+
+                for (int m = 0; m < DISPATCH_BATCH; m++) {
+
+                    Message message = pending.poll();
+
+                    if (message == null) {
+                        break;
+                    }
+
+                    invoke(message);
+                }
+
+            } finally {
+
+                scheduled.set(false);
+
+                /* If more messages arrived (or the batch limit was reached) go round again */
+                if (!pending.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+
+        /**
+         * Discards any messages waiting to be delivered.
+         */
+        void close() {
+
+            if (pending != null) {
+                pending.close();
+            }
+        }
+
+        /**
+         * Invokes the subscription's callback.
+         *
+         * @param message
+         *            the message.
+         */
+        void invoke(Message message) {
+
+            try {
+
+                callback.handleMessage(message);
+
+            } catch (Exception e) {
+
+                logger.log(Level.WARNING, "Exception in subscription callback for topic [{0}]: {1}", new Object[] {
+                        message.topic, e.getMessage()});
+                logger.log(Level.FINEST, "Full exception: ", e);
+
+            }
+        }
+    }
+
+    /**
+     * Thread factory for dispatch threads.
+     */
+    private static final class DispatchThreadFactory implements ThreadFactory {
+
+        /** The number of threads created. */
+        private static final AtomicInteger threadCount = new AtomicInteger(1);
+
+        /**
+         * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+         */
+        @Override
+        public Thread newThread(Runnable r) {
+
+            Thread newThread = new Thread(r, prefix + threadCount.getAndIncrement());
+            newThread.setDaemon(true);
+            return newThread;
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param endPoint
+     *            the end point used to open the wildcard channel.
+     *
+     * @param baseTopic
+     *            the topic common to all of the client's feed messages, i.e.
+     *            <code>&lt;offramp&gt;/&lt;actor&gt;/&lt;platform&gt;</code>.
+     *
+     * @param dispatchThreads
+     *            the number of threads used to deliver messages; <code>0</code> to deliver them on the thread reading
+     *            the channel.
+     *
+     * @param ordered
+     *            <code>true</code> if each subscription is to receive its messages in arrival order when they are
+     *            delivered by the dispatch threads, <code>false</code> otherwise.
+     *
+     * @param queueCapacity
+     *            the maximum number of messages held in memory for each subscription awaiting ordered delivery.
+     *
+     * @param overflowPolicy
+     *            the action taken when a subscription's queue of messages awaiting ordered delivery is full.
+     *
+     * @param spillDirectory
+     *            the directory in which spill files are created (<code>SPILL</code> overflow policy only).
+     */
+    public SubscriptionMultiplexer(SharedEndPoint endPoint, String baseTopic, int dispatchThreads, boolean ordered,
+            int queueCapacity, OverflowPolicy overflowPolicy, String spillDirectory) {
+
+        this.endPoint = endPoint;
+        this.baseTopic = baseTopic;
+        this.ordered = ordered;
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.spillDirectory = spillDirectory;
+        dispatchPool = (dispatchThreads > 0) ? dispatchPool(dispatchThreads, ordered, queueCapacity, overflowPolicy)
+                : null;
+
+    }
+
+    /**
+     * Creates the pool of dispatch threads.
+     * <p>
+     * For ordered delivery the pool's queue holds at most one delivery run for each subscription, the messages
+     * themselves waiting in the subscriptions' own bounded queues. Otherwise the queue holds the messages, and is
+     * bounded by the queue capacity with the overflow policy applied when it is full.
+     * </p>
+     *
+     * @param dispatchThreads
+     *            the number of threads used to deliver messages.
+     *
+     * @param ordered
+     *            <code>true</code> if each subscription is to receive its messages in arrival order.
+     *
+     * @param queueCapacity
+     *            the maximum number of messages waiting for delivery (unordered delivery only).
+     *
+     * @param overflowPolicy
+     *            the action taken when the maximum is reached (unordered delivery only).
+     *
+     * @return the pool.
+     */
+    static ThreadPoolExecutor dispatchPool(int dispatchThreads, boolean ordered, int queueCapacity,
+            OverflowPolicy overflowPolicy) {
+
+        BlockingQueue<Runnable> queue = null;
+        RejectedExecutionHandler handler = null;
+
+        if (ordered) {
+
+            queue = new LinkedBlockingQueue<Runnable>();
+            handler = new ThreadPoolExecutor.AbortPolicy();
+
+        } else {
+
+            queue = new ArrayBlockingQueue<Runnable>(Math.max(1, queueCapacity));
+
+            switch ((overflowPolicy != null) ? overflowPolicy : OverflowPolicy.DROP_NEWEST) {
+
+                case DROP_OLDEST:
+
+                    handler = new ThreadPoolExecutor.DiscardOldestPolicy();
+                    break;
+
+                case SPILL:
+
+                    handler = new ThreadPoolExecutor.CallerRunsPolicy();
+                    break;
+
+                default:
+
+                    /* DROP_NEWEST: the rejection is reported to (and logged by) the caller */
+                    handler = new ThreadPoolExecutor.AbortPolicy();
+                    break;
+            }
+        }
+
+        return new ThreadPoolExecutor(dispatchThreads, dispatchThreads, 0L, TimeUnit.MILLISECONDS, queue,
+                new DispatchThreadFactory(), handler);
+    }
+
+    /**
+     * Registers a subscription to receive the messages arriving on a topic, opening the wildcard channel if required.
+     *
+     * @param topic
+     *            the topic of the subscription's feed messages.
+     *
+     * @param callback
+     *            the subscription's callback.
+     *
+     * @throws IOException
+     *             thrown if the wildcard channel cannot be opened.
+     *
+     * @throws IllegalArgumentException
+     *             thrown if the topic is not covered by the wildcard channel.
+     */
+    public synchronized void register(String topic, ICallback callback) throws IOException,
+    IllegalArgumentException {
+
+        if (!topic.startsWith(baseTopic + '/')) {
+            throw new IllegalArgumentException("Topic [" + topic + "] is not a sub-topic of [" + baseTopic + ']');
+        }
+
+        if (channel == null) {
+            String wildcardTopic = baseTopic + "/#";
+            channel = endPoint.openInputChannel(new InputTopic(wildcardTopic), this);
+            logger.log(Level.FINER, "Listening for multiplexed subscription messages on [{0}]", wildcardTopic);
+        }
+
+        Target[] targets = targetsByTopic.get(topic);
+        targets = (targets != null) ? Arrays.copyOf(targets, targets.length + 1) : new Target[1];
+        targets[targets.length - 1] = new Target(topic, callback);
+        targetsByTopic.put(topic, targets);
+
+        try {
+
+            /* Initialize the callback, as the channel would for a subscription with its own channel */
+            callback.startCallback(null);
+
+        } catch (Exception e) {
+
+            logger.log(Level.WARNING, "Exception in subscription callback: ", e);
+
+        }
+    }
+
+    /**
+     * Removes the registration of a subscription, closing the wildcard channel if it was the last one.
+     *
+     * @param topic
+     *            the topic of the subscription's feed messages.
+     *
+     * @param callback
+     *            the subscription's callback.
+     *
+     * @throws IOException
+     *             thrown if the wildcard channel cannot be closed.
+     */
+    public synchronized void deregister(String topic, ICallback callback) throws IOException {
+
+        Target[] targets = targetsByTopic.get(topic);
+        Target[] remaining = NO_TARGETS;
+
+        if (targets != null) {
+
+            remaining = new Target[targets.length];
+            int r = 0;
+
+            for (int t = 0; t < targets.length; t++) {
+                if (targets[t].callback == callback) {
+                    targets[t].close();
+                    invokeCancel(callback);
+                } else {
+                    remaining[r++] = targets[t];
+                }
+            }
+
+            remaining = Arrays.copyOf(remaining, r);
+        }
+
+        if (remaining.length > 0) {
+            targetsByTopic.put(topic, remaining);
+        } else {
+            targetsByTopic.remove(topic);
+        }
+
+        if (targetsByTopic.isEmpty() && channel != null) {
+            endPoint.closeChannel(channel, false);
+            channel = null;
+            logger.log(Level.FINER, "Stopped listening for multiplexed subscription messages on [{0}/#]", baseTopic);
+        }
+    }
+
+    /**
+     * Answers the number of topics for which subscriptions are registered.
+     *
+     * @return the number of topics.
+     */
+    public int size() {
+
+        return targetsByTopic.size();
+    }
+
+    /**
+     * Closes the wildcard channel (if it is open) and stops the dispatch threads.
+     */
+    public synchronized void close() {
+
+        for (Target[] targets : targetsByTopic.values()) {
+            for (int t = 0; t < targets.length; t++) {
+                targets[t].close();
+            }
+        }
+
+        targetsByTopic.clear();
+
+        if (channel != null) {
+
+            try {
+                endPoint.closeChannel(channel, false);
+            } catch (Exception e) {
+                logger.log(Level.FINE, "Cannot close multiplexed subscription channel [{0}/#]: {1}", new Object[] {
+                        baseTopic, e.getMessage()});
+                logger.log(Level.FINEST, "Full exception: ", e);
+            }
+
+            channel = null;
+        }
+
+        if (dispatchPool != null) {
+            dispatchPool.shutdown();
+        }
+    }
+
+    /**
+     * Submits a task to the dispatch pool.
+     *
+     * @param task
+     *            the task.
+     *
+     * @return <code>true</code> if the task was accepted, <code>false</code> otherwise.
+     */
+    private boolean execute(Runnable task) {
+
+        boolean accepted = true;
+
+        try {
+
+            dispatchPool.execute(task);
+
+        } catch (RejectedExecutionException e) {
+
+            accepted = false;
+            logger.log(Level.FINE, "Cannot schedule delivery of multiplexed subscription messages: {0}", e
+                    .getMessage());
+            logger.log(Level.FINEST, "Full exception: ", e);
+
+        }
+
+        return accepted;
+    }
+
+    /**
+     * Invokes the cancel method of a subscription's callback.
+     *
+     * @param callback
+     *            the callback.
+     */
+    private void invokeCancel(ICallback callback) {
+
+        try {
+
+            callback.cancelCallback(null);
+
+        } catch (Exception e) {
+
+            logger.log(Level.WARNING, "Exception in subscription callback: ", e);
+
+        }
+    }
+
+    /**
+     * @see fabric.core.io.ICallback#startCallback(java.lang.Object)
+     */
+    @Override
+    public void startCallback(Object arg1) {
+
+        /* Nothing to do */
+
+    }
+
+    /**
+     * @see fabric.core.io.ICallback#handleMessage(fabric.core.io.Message)
+     */
+    @Override
+    public void handleMessage(Message message) {
+
+        Target[] targets = targetsByTopic.get(message.topic);
+
+        if (targets != null) {
+
+            for (int t = 0; t < targets.length; t++) {
+                targets[t].deliver(message);
+            }
+
+        } else {
+
+            logger.log(Level.FINEST, "No multiplexed subscription for message on topic [{0}]", message.topic);
+
+        }
+    }
+
+    /**
+     * @see fabric.core.io.ICallback#cancelCallback(java.lang.Object)
+     */
+    @Override
+    public void cancelCallback(Object arg1) {
+
+        /* Nothing to do */
+
+    }
+}
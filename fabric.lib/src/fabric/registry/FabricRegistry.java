@@ -32,6 +32,7 @@ import fabric.registry.impl.NodeIpMappingFactoryImpl;
 import fabric.registry.impl.NodeNeighbourFactoryImpl;
 import fabric.registry.impl.NodePluginFactoryImpl;
 import fabric.registry.impl.PlatformFactoryImpl;
+import fabric.registry.impl.RegistryCache;
 import fabric.registry.impl.RouteFactoryImpl;
 import fabric.registry.impl.ServiceFactoryImpl;
 import fabric.registry.impl.SystemFactoryImpl;
@@ -43,6 +44,7 @@ import fabric.registry.impl.TaskPluginFactoryImpl;
 import fabric.registry.impl.TaskServiceFactoryImpl;
 import fabric.registry.impl.TaskSubscriptionFactoryImpl;
 import fabric.registry.impl.TypeFactoryImpl;
+import fabric.registry.persistence.ParameterizedSql;
 import fabric.registry.persistence.PersistenceManager;
 
 /**
@@ -1147,6 +1149,38 @@ public class FabricRegistry {
             throw new PersistenceException(
                     "Invalid update SQL - valid statements must start with either DELETE, INSERT or UPDATE.");
         }
-        return PersistenceManager.getPersistence().updateRegistryObjects(sql);
+        try {
+            return PersistenceManager.getPersistence().updateRegistryObjects(sql);
+        } finally {
+            /* Part of a failed batch may have been applied, so the cached results are stale either way */
+            for (String statement : sql) {
+                RegistryCache.invalidateStatement(statement);
+            }
+        }
+    }
+
+    /**
+     * Runs a batch of parameterized SQL update statements ('DELETE', 'INSERT' or 'UPDATE') against the Fabric
+     * Registry.
+     *
+     * @param updates
+     *            The SQL statements to run, and their parameter values
+     * @return a boolean indicating whether the update was successful or not.
+     * @throws PersistenceException
+     */
+    public static boolean runUpdates(ParameterizedSql[] updates) throws PersistenceException {
+
+        if (updates == null || updates.length == 0 || updates[0].sql().toUpperCase().startsWith("SELECT")) {
+            throw new PersistenceException(
+                    "Invalid update SQL - valid statements must start with either DELETE, INSERT or UPDATE.");
+        }
+        try {
+            return PersistenceManager.getPersistence().updateRegistryObjects(updates);
+        } finally {
+            /* Part of a failed batch may have been applied, so the cached results are stale either way */
+            for (ParameterizedSql update : updates) {
+                RegistryCache.invalidateStatement(update.sql());
+            }
+        }
     }
 }
\ No newline at end of file
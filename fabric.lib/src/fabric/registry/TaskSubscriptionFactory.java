@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2009
+ * (C) Copyright IBM Corp. 2009, 2014
  * 
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -17,7 +17,7 @@ import fabric.registry.exception.RegistryQueryException;
 public interface TaskSubscriptionFactory extends Factory {
 
 	/** Copyright notice. */
-	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009";
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009, 2014";
 
 	/**
 	 * Create a TaskSubscription using the specified details.
@@ -66,4 +66,22 @@ public interface TaskSubscriptionFactory extends Factory {
 	 */
 	public TaskSubscription[] getTaskSubscriptionsByTask(String taskId);
 
+	/**
+	 * Saves a list of task subscriptions in a single batch of Registry updates.
+	 * 
+	 * @param taskSubscriptions
+	 *            - the task subscriptions.
+	 * @return true if the task subscriptions were saved, false otherwise.
+	 */
+	public boolean save(TaskSubscription[] taskSubscriptions);
+
+	/**
+	 * Deletes a list of task subscriptions in a single batch of Registry updates.
+	 * 
+	 * @param taskSubscriptions
+	 *            - the task subscriptions.
+	 * @return true if the task subscriptions were deleted, false otherwise.
+	 */
+	public boolean delete(TaskSubscription[] taskSubscriptions);
+
 }
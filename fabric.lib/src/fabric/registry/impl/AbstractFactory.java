@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2009, 2012
+ * (C) Copyright IBM Corp. 2009, 2014
  *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -7,10 +7,8 @@
 
 package fabric.registry.impl;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.logging.Level;
@@ -24,6 +22,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.MalformedPredicateException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 import fabric.registry.persistence.PersistenceManager;
 
 /**
@@ -36,7 +35,7 @@ public abstract class AbstractFactory extends Fabric {
     }
 
     /** Copyright notice. */
-    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009, 2012";
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009, 2014";
 
     /* Indicates if queries are to be local or distributed */
     protected QueryScope queryScope = QueryScope.DISTRIBUTED;
@@ -76,6 +75,53 @@ public abstract class AbstractFactory extends Fabric {
      */
     public abstract RegistryObject create(IPersistenceResultRow row) throws PersistenceException;
 
+    /**
+     * Get the INSERT statement, with bind parameters, for a given registry object.
+     * <p>
+     * The default implementation wraps the literal SQL from <code>getInsertSql()</code>; factories override this
+     * method to use a constant statement with bind parameters, allowing the query plan to be reused.
+     * </p>
+     *
+     * @param obj
+     *            the object to insert.
+     *
+     * @return the statement.
+     */
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+
+        return new ParameterizedSql(getInsertSql(obj));
+    }
+
+    /**
+     * Get the UPDATE statement, with bind parameters, for a given registry object.
+     *
+     * @param obj
+     *            the object to update.
+     *
+     * @return the statement.
+     *
+     * @see #getInsertStatement(RegistryObject)
+     */
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+
+        return new ParameterizedSql(getUpdateSql(obj));
+    }
+
+    /**
+     * Get the DELETE statement, with bind parameters, for a given registry object.
+     *
+     * @param obj
+     *            the object to delete.
+     *
+     * @return the statement.
+     *
+     * @see #getInsertStatement(RegistryObject)
+     */
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+
+        return new ParameterizedSql(getDeleteSql(obj));
+    }
+
     /**
      * Insert an object in the Registry.
      *
@@ -95,8 +141,10 @@ public abstract class AbstractFactory extends Fabric {
 
         if (obj != null && obj.isValid()) {
             try {
-                logger.log(Level.FINEST, "Insert SQL: {0}", factory.getInsertSql(obj));
-                boolean success = PersistenceManager.getPersistence().updateRegistryObject(factory.getInsertSql(obj));
+                ParameterizedSql insert = factory.getInsertStatement(obj);
+                logger.log(Level.FINEST, "Insert SQL: {0}", insert);
+                boolean success = PersistenceManager.getPersistence().updateRegistryObject(insert, false);
+                RegistryCache.invalidateStatement(insert.sql());
                 if (success) {
                     /* Update shadow since the object is now updated in the database */
                     ((AbstractRegistryObject) obj).createShadow();
@@ -124,8 +172,10 @@ public abstract class AbstractFactory extends Fabric {
         PersistenceException {
 
         if (obj != null && obj.isValid()) {
-            logger.log(Level.FINEST, "Update SQL: {0}", factory.getUpdateSql(obj));
-            boolean success = PersistenceManager.getPersistence().updateRegistryObject(factory.getUpdateSql(obj));
+            ParameterizedSql update = factory.getUpdateStatement(obj);
+            logger.log(Level.FINEST, "Update SQL: {0}", update);
+            boolean success = PersistenceManager.getPersistence().updateRegistryObject(update, false);
+            RegistryCache.invalidateStatement(update.sql());
             if (success) {
                 /* Update shadow since the object is now updated in the database */
                 ((AbstractRegistryObject) obj).createShadow();
@@ -187,8 +237,11 @@ public abstract class AbstractFactory extends Fabric {
 
         if (obj != null && obj.isValid()) {
             try {
-                logger.log(Level.FINEST, "Delete SQL: {0}", factory.getDeleteSql(obj));
-                return PersistenceManager.getPersistence().updateRegistryObject(factory.getDeleteSql(obj));
+                ParameterizedSql delete = factory.getDeleteStatement(obj);
+                logger.log(Level.FINEST, "Delete SQL: {0}", delete);
+                boolean success = PersistenceManager.getPersistence().updateRegistryObject(delete, false);
+                RegistryCache.invalidateStatement(delete.sql());
+                return success;
             } catch (PersistenceException e) {
                 e.printStackTrace();
                 return false;
@@ -201,12 +254,13 @@ public abstract class AbstractFactory extends Fabric {
     public boolean delete(RegistryObject[] objects, AbstractFactory factory) {
 
         if (objects != null && objects.length > 0 && checkObjectsAreValid(objects)) {
-            List<String> sqlDeletes = new ArrayList<String>();
+            ParameterizedSql[] sqlDeletes = new ParameterizedSql[objects.length];
             for (int i = 0; i < objects.length; i++) {
-                sqlDeletes.add(factory.getDeleteSql(objects[i]));
+                sqlDeletes[i] = factory.getDeleteStatement(objects[i]);
             }
             try {
-                PersistenceManager.getPersistence().updateRegistryObjects(sqlDeletes.toArray(new String[] {}));
+                PersistenceManager.getPersistence().updateRegistryObjects(sqlDeletes);
+                RegistryCache.invalidateStatement(sqlDeletes[0].sql());
                 return true;
             } catch (PersistenceException e) {
                 e.printStackTrace();
@@ -217,12 +271,97 @@ public abstract class AbstractFactory extends Fabric {
         }
     }
 
+    /**
+     * Saves a list of objects in the Registry as a single batch of updates.
+     * <p>
+     * Each object is saved by deleting any existing row with the same key and then inserting it, so that the batch is
+     * not interrupted by duplicate keys. The batch is run as a single transaction, so if any statement fails none of
+     * the existing rows are lost.
+     * </p>
+     *
+     * @param objects
+     *            the objects to save.
+     *
+     * @param factory
+     *            the factory associated with the objects.
+     *
+     * @return <code>true</code> if the objects were saved, <code>false</code> otherwise.
+     */
+    public boolean save(RegistryObject[] objects, AbstractFactory factory) {
+
+        if (objects != null && objects.length > 0 && checkObjectsAreValid(objects)) {
+            ParameterizedSql[] sqlUpdates = new ParameterizedSql[objects.length * 2];
+            for (int i = 0; i < objects.length; i++) {
+                sqlUpdates[i * 2] = factory.getDeleteStatement(objects[i]);
+                sqlUpdates[i * 2 + 1] = factory.getInsertStatement(objects[i]);
+            }
+            try {
+                logger.log(Level.FINEST, "Batched save of {0} objects", objects.length);
+                boolean success = PersistenceManager.getPersistence().updateRegistryObjects(sqlUpdates);
+                if (success) {
+                    /* Update shadows since the objects are now updated in the database */
+                    for (int i = 0; i < objects.length; i++) {
+                        ((AbstractRegistryObject) objects[i]).createShadow();
+                    }
+                }
+                return success;
+            } catch (PersistenceException e) {
+                logger.log(Level.WARNING, "Failed to save {0} objects: {1}", new Object[] {objects.length,
+                        e.getMessage()});
+                logger.log(Level.FINEST, "Full exception: ", e);
+                return false;
+            } finally {
+                /* Invalidate even if the batch failed, since the outcome of a lost connection is unknown */
+                RegistryCache.invalidateStatement(sqlUpdates[1].sql());
+            }
+        } else {
+            return false;
+        }
+    }
+
     public RegistryObject[] queryRegistryObjects(String sqlString, AbstractFactory factory) throws PersistenceException {
 
         logger.log(Level.FINEST, "Query SQL: {0}", sqlString);
         RegistryObject[] results = null;
         if (sqlString != null && sqlString.length() > 0) {
-            results = PersistenceManager.getPersistence().queryRegistryObjects(sqlString, factory, queryScope);
+            /* Try the cache first */
+            RegistryCache.Lookup lookup = RegistryCache.lookup(factory, queryScope, sqlString, null);
+            results = (lookup != null) ? lookup.results() : null;
+            if (results == null) {
+                results = PersistenceManager.getPersistence().queryRegistryObjects(sqlString, factory, queryScope);
+                RegistryCache.store(lookup, results);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs a query with bind parameters against the Registry, using the factory's query scope.
+     * <p>
+     * The results of local queries are answered from the registry cache where possible, and stored in it otherwise;
+     * distributed queries always bypass it.
+     * </p>
+     *
+     * @param query
+     *            the query and its bind parameters.
+     *
+     * @param factory
+     *            the factory used to create the objects from the result rows.
+     *
+     * @return the matching objects.
+     *
+     * @throws PersistenceException
+     */
+    public RegistryObject[] queryRegistryObjects(ParameterizedSql query, AbstractFactory factory)
+        throws PersistenceException {
+
+        logger.log(Level.FINEST, "Query SQL: {0}", query);
+        /* Try the cache first */
+        RegistryCache.Lookup lookup = RegistryCache.lookup(factory, queryScope, query.sql(), query.parameters());
+        RegistryObject[] results = (lookup != null) ? lookup.results() : null;
+        if (results == null) {
+            results = PersistenceManager.getPersistence().queryRegistryObjects(query, factory, queryScope);
+            RegistryCache.store(lookup, results);
         }
         return results;
     }
@@ -258,6 +397,20 @@ public abstract class AbstractFactory extends Fabric {
         }
     }
 
+    /**
+     * Takes a given value and answers the string to bind in its place where the literal SQL encloses the value in
+     * single quotes without using <code>nullOrString()</code>, so that a null value is still stored (and matched) as
+     * the string 'null'.
+     *
+     * @param value
+     *            the value to process
+     * @return the value as a string, or "null"
+     */
+    protected static String stringValue(Object value) {
+
+        return String.valueOf(value);
+    }
+
     /**
      * Takes a String in the following format and converts to a Map.
      *
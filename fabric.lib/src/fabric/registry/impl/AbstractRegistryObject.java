@@ -38,6 +38,21 @@ public abstract class AbstractRegistryObject implements RegistryObject, Cloneabl
 		}
 	}
 
+	/**
+	 * Answers a copy of this object.
+	 * <p>
+	 * The fields of Registry objects hold immutable values, and the shadow is never modified once created, so the copy
+	 * shares no mutable state with this object.
+	 * </p>
+	 * 
+	 * @return the copy.
+	 * 
+	 * @throws CloneNotSupportedException
+	 */
+	RegistryObject copy() throws CloneNotSupportedException {
+		return (RegistryObject) this.clone();
+	}
+
 	/**
 	 * Returns the shadow of this object - this is a protected clone of the object, representing the original state of
 	 * the object prior to any modification (i.e. when it was last read from the database).
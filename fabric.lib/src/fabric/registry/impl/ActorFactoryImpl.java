@@ -17,6 +17,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 /**
  * Implementation of the factory for <code>Actor</code>s.
@@ -41,6 +42,16 @@ public class ActorFactoryImpl extends AbstractFactory implements ActorFactory {
     /** Factory for local (singleton) Registry operations */
     private static ActorFactoryImpl localQueryInstance = null;
 
+    /** Insert a record */
+    private static final String INSERT_ACTOR = "insert into " + FabricRegistry.ACTORS + " values(?,?,?,?,?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_ACTOR = "update " + FabricRegistry.ACTORS + " set ACTOR_ID=?,TYPE_ID=?,ROLES=?,"
+            + "CREDENTIALS=?,AFFILIATION=?,DESCRIPTION=?,ATTRIBUTES=?,ATTRIBUTES_URI=? WHERE ACTOR_ID=? AND TYPE_ID=?";
+
+    /** Delete a record */
+    private static final String DELETE_ACTOR = "delete from " + FabricRegistry.ACTORS + " where ACTOR_ID=?";
+
     static {
         /* Create an instance for remote (gaian) Registry operations */
         remoteQueryInstance = new ActorFactoryImpl(QueryScope.DISTRIBUTED);
@@ -88,6 +99,43 @@ public class ActorFactoryImpl extends AbstractFactory implements ActorFactory {
         return client;
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof Actor) {
+            Actor client = (Actor) obj;
+            insert = new ParameterizedSql(INSERT_ACTOR, client.getId(), client.getTypeId(), client.getAffiliation(),
+                    client.getRoles(), client.getCredentials(), client.getDescription(), client.getAttributes(),
+                    client.getAttributesUri());
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof Actor) {
+            Actor client = (Actor) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            Actor where = (client.getShadow() != null) ? (Actor) client.getShadow() : client;
+            update = new ParameterizedSql(UPDATE_ACTOR, stringValue(client.getId()), client.getTypeId(),
+                    client.getRoles(), client.getCredentials(), client.getAffiliation(), client.getDescription(),
+                    client.getAttributes(), client.getAttributesUri(), stringValue(where.getId()),
+                    stringValue(where.getTypeId()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof Actor) {
+            Actor client = (Actor) obj;
+            delete = new ParameterizedSql(DELETE_ACTOR, stringValue(client.getId()));
+        }
+        return delete;
+    }
+
     @Override
     public String getDeleteSql(RegistryObject obj) {
 
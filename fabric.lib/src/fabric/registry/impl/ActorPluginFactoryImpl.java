@@ -18,6 +18,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 public class ActorPluginFactoryImpl extends AbstractFactory implements ActorPluginFactory {
 
@@ -42,6 +43,20 @@ public class ActorPluginFactoryImpl extends AbstractFactory implements ActorPlug
     /** Select records using an arbitrary WHERE clause */
     private String PREDICATE_QUERY_ACTOR_PLUGINS = null;
 
+    /** Insert a record */
+    private static final String INSERT_ACTOR_PLUGIN = "insert into " + FabricRegistry.ACTOR_PLUGINS
+            + " values(?,?,?,?,?,?,?,?,?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_ACTOR_PLUGIN = "update " + FabricRegistry.ACTOR_PLUGINS + " set NODE_ID=?,"
+            + "TASK_ID=?,ACTOR_ID=?,ORDINAL=?,TYPE=?,DESCRIPTION=?,ARGUMENTS=?,PLATFORM_ID=?,SERVICE_ID=?,"
+            + "DATA_FEED_ID=? WHERE NODE_ID=? AND TASK_ID=? AND ACTOR_ID=? AND NAME=? AND ORDINAL=? AND TYPE=?";
+
+    /** Delete a record */
+    private static final String DELETE_ACTOR_PLUGIN = "delete from " + FabricRegistry.ACTOR_PLUGINS + " where NODE_ID=?"
+            + " AND TASK_ID=? AND ACTOR_ID=? AND NAME=? AND FAMILY=? AND TYPE=? AND ORDINAL=? AND PLATFORM_ID=?"
+            + " AND SERVICE_ID=? AND DATA_FEED_ID=? AND DESCRIPTION=?";
+
     /*
      * Static initialisation
      */
@@ -94,6 +109,52 @@ public class ActorPluginFactoryImpl extends AbstractFactory implements ActorPlug
         return plugin;
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof ActorPlugin) {
+            ActorPlugin plugin = (ActorPlugin) obj;
+            insert = new ParameterizedSql(INSERT_ACTOR_PLUGIN, stringValue(plugin.getNodeId()),
+                    stringValue(plugin.getTaskId()), stringValue(plugin.getActorId()), stringValue(plugin.getName()),
+                    plugin.getFamilyName(), stringValue(plugin.getPluginType()), plugin.getOrdinal(),
+                    stringValue(plugin.getPlatformId()), stringValue(plugin.getSensorId()),
+                    stringValue(plugin.getFeedId()), plugin.getDescription(), plugin.getArguments());
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof ActorPlugin) {
+            ActorPlugin plugin = (ActorPlugin) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            ActorPlugin where = (plugin.getShadow() != null) ? (ActorPlugin) plugin.getShadow() : plugin;
+            update = new ParameterizedSql(UPDATE_ACTOR_PLUGIN, stringValue(plugin.getNodeId()),
+                    stringValue(plugin.getTaskId()), stringValue(plugin.getActorId()), plugin.getOrdinal(),
+                    stringValue(plugin.getPluginType()), plugin.getDescription(), plugin.getArguments(),
+                    stringValue(plugin.getPlatformId()), stringValue(plugin.getSensorId()),
+                    stringValue(plugin.getFeedId()), stringValue(where.getNodeId()), stringValue(where.getTaskId()),
+                    stringValue(where.getActorId()), stringValue(where.getName()), where.getOrdinal(),
+                    stringValue(where.getPluginType()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof ActorPlugin) {
+            ActorPlugin plugin = (ActorPlugin) obj;
+            delete = new ParameterizedSql(DELETE_ACTOR_PLUGIN, stringValue(plugin.getNodeId()),
+                    stringValue(plugin.getTaskId()), stringValue(plugin.getActorId()), stringValue(plugin.getName()),
+                    stringValue(plugin.getFamilyName()), stringValue(plugin.getPluginType()), plugin.getOrdinal(),
+                    stringValue(plugin.getPlatformId()), stringValue(plugin.getSensorId()),
+                    stringValue(plugin.getFeedId()), stringValue(plugin.getDescription()));
+        }
+        return delete;
+    }
+
     @Override
     public String getInsertSql(RegistryObject obj) {
         StringBuilder buf = new StringBuilder();
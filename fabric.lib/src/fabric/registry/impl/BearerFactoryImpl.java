@@ -17,6 +17,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 /**
  * Implementation of the factory for <code>Bearer</code>s.
@@ -45,6 +46,16 @@ public class BearerFactoryImpl extends AbstractFactory implements BearerFactory
     /** Select records using an arbitrary WHERE clause */
     private String PREDICATE_QUERY = null;
 
+    /** Insert a record */
+    private static final String INSERT_BEARER = "insert into " + FabricRegistry.BEARERS + " values(?,?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_BEARER = "update " + FabricRegistry.BEARERS + " set BEARER_ID=?,AVAILABLE=?,"
+            + "DESCRIPTION=?,ATTRIBUTES=?,ATTRIBUTES_URI=? WHERE BEARER_ID=?";
+
+    /** Delete a record */
+    private static final String DELETE_BEARER = "delete from " + FabricRegistry.BEARERS + " where BEARER_ID=?";
+
     static {
         localQueryInstance = new BearerFactoryImpl(QueryScope.LOCAL);
         remoteQueryInstance = new BearerFactoryImpl(QueryScope.DISTRIBUTED);
@@ -88,6 +99,43 @@ public class BearerFactoryImpl extends AbstractFactory implements BearerFactory
         return bearer;
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof Bearer) {
+            Bearer bearer = (Bearer) obj;
+            insert = new ParameterizedSql(INSERT_BEARER, stringValue(bearer.getId()),
+                    stringValue(bearer.getAvailable()), stringValue(bearer.getDescription()),
+                    stringValue(bearer.getAttributes()), stringValue(bearer.getAttributesURI()));
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof Bearer) {
+            Bearer bearer = (Bearer) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            Bearer where = (bearer.getShadow() != null) ? (Bearer) bearer.getShadow() : bearer;
+            update = new ParameterizedSql(UPDATE_BEARER, stringValue(bearer.getId()),
+                    stringValue(bearer.getAvailable()), stringValue(bearer.getDescription()),
+                    stringValue(bearer.getAttributes()), stringValue(bearer.getAttributesURI()),
+                    stringValue(where.getId()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof Bearer) {
+            Bearer bearer = (Bearer) obj;
+            delete = new ParameterizedSql(DELETE_BEARER, stringValue(bearer.getId()));
+        }
+        return delete;
+    }
+
     @Override
     public String getDeleteSql(RegistryObject obj) {
 
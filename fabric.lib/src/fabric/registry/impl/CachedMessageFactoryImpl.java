@@ -16,6 +16,7 @@ import fabric.registry.exception.DuplicateKeyException;
 import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 public class CachedMessageFactoryImpl extends AbstractFactory implements CachedMessageFactory {
 
@@ -28,6 +29,13 @@ public class CachedMessageFactoryImpl extends AbstractFactory implements CachedM
     private String SELECT_ALL_QUERY = null;
     private String BY_SRC_DST_QUERY = null;
 
+    /** Insert a record */
+    private static final String INSERT_MESSAGE = "insert into " + FabricRegistry.MESSAGE_CACHE + " values(?,?,?,?)";
+
+    /** Delete a record */
+    private static final String DELETE_MESSAGE = "delete from " + FabricRegistry.MESSAGE_CACHE
+            + " where timestamp=? AND source=? AND destination=?";
+
     public static CachedMessageFactory getInstance(QueryScope queryScope) {
         if (queryScope == QueryScope.LOCAL) {
             if (localInstance == null) {
@@ -49,6 +57,28 @@ public class CachedMessageFactoryImpl extends AbstractFactory implements CachedM
                 FabricRegistry.MESSAGE_CACHE);
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof CachedMessage) {
+            CachedMessage msg = (CachedMessage) obj;
+            String ts = (new java.sql.Timestamp(msg.getTimestamp())).toString();
+            insert = new ParameterizedSql(INSERT_MESSAGE, ts, msg.getSource(), msg.getDestination(), msg.getMessage());
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof CachedMessage) {
+            CachedMessage msg = (CachedMessage) obj;
+            String ts = (new java.sql.Timestamp(msg.getTimestamp())).toString();
+            delete = new ParameterizedSql(DELETE_MESSAGE, ts, msg.getSource(), msg.getDestination());
+        }
+        return delete;
+    }
+
     @Override
     public String getInsertSql(RegistryObject obj) {
         StringBuilder buf = new StringBuilder();
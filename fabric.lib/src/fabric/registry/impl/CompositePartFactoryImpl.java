@@ -17,6 +17,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 /**
  * Implementation of the factory for <code>CompositePart</code>s.
@@ -45,6 +46,18 @@ public class CompositePartFactoryImpl extends AbstractFactory implements Composi
     /** Select record by id */
     private String BY_ID_QUERY = null;
 
+    /** Insert a record */
+    private static final String INSERT_PART = "insert into " + FabricRegistry.COMPOSITE_PARTS + " values(?,?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_PART = "update " + FabricRegistry.COMPOSITE_PARTS + " set COMPOSITE_ID=?,"
+            + "SERVICE_PLATFORM_ID=?,SERVICE_ID=?,ATTRIBUTES=?,ATTRIBUTES_URI=? WHERE COMPOSITE_ID=?"
+            + " AND SERVICE_PLATFORM_ID=? AND SERVICE_ID=?";
+
+    /** Delete a record */
+    private static final String DELETE_PART = "delete from " + FabricRegistry.COMPOSITE_PARTS + " where COMPOSITE_ID=?"
+            + " AND SERVICE_PLATFORM_ID=? AND SERVICE_ID=?";
+
     static {
         localQueryInstance = new CompositePartFactoryImpl(QueryScope.LOCAL);
         remoteQueryInstance = new CompositePartFactoryImpl(QueryScope.DISTRIBUTED);
@@ -87,6 +100,44 @@ public class CompositePartFactoryImpl extends AbstractFactory implements Composi
         return service;
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof CompositePart) {
+            CompositePart part = (CompositePart) obj;
+            insert = new ParameterizedSql(INSERT_PART, stringValue(part.getCompositeId()),
+                    stringValue(part.getServicePlatformId()), stringValue(part.getServiceId()), part.getAttributes(),
+                    part.getAttributesURI());
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof CompositePart) {
+            CompositePart part = (CompositePart) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            CompositePart where = (part.getShadow() != null) ? (CompositePart) part.getShadow() : part;
+            update = new ParameterizedSql(UPDATE_PART, stringValue(part.getCompositeId()),
+                    stringValue(part.getServicePlatformId()), stringValue(part.getServiceId()), part.getAttributes(),
+                    part.getAttributesURI(), stringValue(where.getCompositeId()),
+                    stringValue(where.getServicePlatformId()), stringValue(where.getServiceId()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof CompositePart) {
+            CompositePart part = (CompositePart) obj;
+            delete = new ParameterizedSql(DELETE_PART, stringValue(part.getCompositeId()),
+                    stringValue(part.getServicePlatformId()), stringValue(part.getServiceId()));
+        }
+        return delete;
+    }
+
     @Override
     public String getDeleteSql(RegistryObject obj) {
         StringBuilder buf = new StringBuilder();
@@ -17,6 +17,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 /**
  * Implementation of the factory for <code>CompositeService</code>s.
@@ -47,6 +48,17 @@ public class CompositeServiceFactoryImpl extends AbstractFactory implements Comp
     /** Select record by id */
     private String BY_ID_QUERY = null;
 
+    /** Insert a record */
+    private static final String INSERT_COMPOSITE = "insert into " + FabricRegistry.COMPOSITE_SYSTEMS
+            + " values(?,?,?,?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_COMPOSITE = "update " + FabricRegistry.COMPOSITE_SYSTEMS + " set ID=?,TYPE=?,"
+            + "AFFILIATION=?,CREDENTIALS=?,DESCRIPTION=?,ATTRIBUTES=?,ATTRIBUTES_URI=? WHERE ID=?";
+
+    /** Delete a record */
+    private static final String DELETE_COMPOSITE = "delete from " + FabricRegistry.COMPOSITE_SYSTEMS + " where ID=?";
+
     static {
         localQueryInstance = new CompositeServiceFactoryImpl(QueryScope.LOCAL);
         remoteQueryInstance = new CompositeServiceFactoryImpl(QueryScope.DISTRIBUTED);
@@ -91,6 +103,42 @@ public class CompositeServiceFactoryImpl extends AbstractFactory implements Comp
         return service;
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof CompositeService) {
+            CompositeService service = (CompositeService) obj;
+            insert = new ParameterizedSql(INSERT_COMPOSITE, stringValue(service.getId()), service.getType(),
+                    service.getAffiliation(), service.getCredentials(), service.getDescription(),
+                    service.getAttributes(), service.getAttributesURI());
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof CompositeService) {
+            CompositeService service = (CompositeService) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            CompositeService where = (service.getShadow() != null) ? (CompositeService) service.getShadow() : service;
+            update = new ParameterizedSql(UPDATE_COMPOSITE, stringValue(service.getId()), service.getType(),
+                    service.getAffiliation(), service.getCredentials(), service.getDescription(),
+                    service.getAttributes(), service.getAttributesURI(), stringValue(where.getId()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof CompositeService) {
+            CompositeService service = (CompositeService) obj;
+            delete = new ParameterizedSql(DELETE_COMPOSITE, stringValue(service.getId()));
+        }
+        return delete;
+    }
+
     @Override
     public String getDeleteSql(RegistryObject obj) {
         StringBuilder buf = new StringBuilder();
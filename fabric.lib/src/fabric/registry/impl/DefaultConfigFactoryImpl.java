@@ -17,6 +17,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 /**
  * Implementation of the factory for <code>DefaultConfig</code>s.
@@ -44,6 +45,15 @@ public class DefaultConfigFactoryImpl extends AbstractFactory implements Default
     /** Select records using an arbitrary WHERE clause */
     private String PREDICATE_QUERY = null;
 
+    /** Insert a record */
+    private static final String INSERT_CONFIG = "insert into " + FabricRegistry.DEFAULT_CONFIG + " values(?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_CONFIG = "update " + FabricRegistry.DEFAULT_CONFIG + " set VALUE=? WHERE NAME=?";
+
+    /** Delete a record */
+    private static final String DELETE_CONFIG = "delete from " + FabricRegistry.DEFAULT_CONFIG + " where NAME=?";
+
     static {
         localQueryInstance = new DefaultConfigFactoryImpl(QueryScope.LOCAL);
         remoteQueryInstance = new DefaultConfigFactoryImpl(QueryScope.DISTRIBUTED);
@@ -91,6 +101,38 @@ public class DefaultConfigFactoryImpl extends AbstractFactory implements Default
         return dc;
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof DefaultConfig) {
+            DefaultConfig dc = (DefaultConfig) obj;
+            insert = new ParameterizedSql(INSERT_CONFIG, stringValue(dc.getName()), stringValue(dc.getValue()));
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof DefaultConfig) {
+            DefaultConfig dc = (DefaultConfig) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            DefaultConfig where = (dc.getShadow() != null) ? (DefaultConfig) dc.getShadow() : dc;
+            update = new ParameterizedSql(UPDATE_CONFIG, stringValue(dc.getValue()), stringValue(where.getName()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof DefaultConfig) {
+            DefaultConfig dc = (DefaultConfig) obj;
+            delete = new ParameterizedSql(DELETE_CONFIG, stringValue(dc.getName()));
+        }
+        return delete;
+    }
+
     /*
      * (non-Javadoc)
      * @see fabric.registry.impl.AbstractFactory#getDeleteSql(fabric.registry.RegistryObject)
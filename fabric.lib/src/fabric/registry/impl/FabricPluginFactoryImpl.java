@@ -17,6 +17,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 public class FabricPluginFactoryImpl extends AbstractFactory implements FabricPluginFactory {
 
@@ -37,6 +38,18 @@ public class FabricPluginFactoryImpl extends AbstractFactory implements FabricPl
     /** Select records using an arbitrary WHERE clause */
     private String PREDICATE_QUERY_FABRIC_PLUGINS = null;
 
+    /** Insert a record */
+    private static final String INSERT_FABRIC_PLUGIN = "insert into " + FabricRegistry.FABLET_PLUGINS
+            + " values(?,?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_FABRIC_PLUGIN = "update " + FabricRegistry.FABLET_PLUGINS + " set NODE_ID=?,"
+            + "NAME=?,DESCRIPTION=?,ARGUMENTS=? WHERE NODE_ID=? AND NAME=?";
+
+    /** Delete a record */
+    private static final String DELETE_FABRIC_PLUGIN = "delete from " + FabricRegistry.FABLET_PLUGINS
+            + " where NODE_ID=? AND NAME=? AND FAMILY=?";
+
     /*
      * Static initialisation
      */
@@ -64,6 +77,43 @@ public class FabricPluginFactoryImpl extends AbstractFactory implements FabricPl
         PREDICATE_QUERY_FABRIC_PLUGINS = format("select * from %s where \\%s", FabricRegistry.FABLET_PLUGINS);
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof FabricPlugin) {
+            FabricPlugin plugin = (FabricPlugin) obj;
+            insert = new ParameterizedSql(INSERT_FABRIC_PLUGIN, stringValue(plugin.getNodeId()),
+                    stringValue(plugin.getName()), plugin.getFamilyName(), plugin.getDescription(),
+                    plugin.getArguments());
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof FabricPlugin) {
+            FabricPlugin plugin = (FabricPlugin) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            FabricPlugin where = (plugin.getShadow() != null) ? (FabricPlugin) plugin.getShadow() : plugin;
+            update = new ParameterizedSql(UPDATE_FABRIC_PLUGIN, stringValue(plugin.getNodeId()),
+                    stringValue(plugin.getName()), plugin.getDescription(), plugin.getArguments(),
+                    stringValue(where.getNodeId()), stringValue(where.getName()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof FabricPlugin) {
+            FabricPlugin plugin = (FabricPlugin) obj;
+            delete = new ParameterizedSql(DELETE_FABRIC_PLUGIN, stringValue(plugin.getNodeId()),
+                    stringValue(plugin.getName()), stringValue(plugin.getFamilyName()));
+        }
+        return delete;
+    }
+
     @Override
     public String getUpdateSql(RegistryObject obj) {
         StringBuilder buf = new StringBuilder();
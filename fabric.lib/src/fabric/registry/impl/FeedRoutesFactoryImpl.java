@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2009, 2012
+ * (C) Copyright IBM Corp. 2009, 2014
  * 
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -7,6 +7,7 @@
 
 package fabric.registry.impl;
 
+import fabric.TaskServiceDescriptor;
 import fabric.registry.FabricRegistry;
 import fabric.registry.RegistryObject;
 import fabric.registry.exception.PersistenceException;
@@ -19,7 +20,7 @@ import fabric.registry.persistence.IPersistenceResultRow;
 public class FeedRoutesFactoryImpl extends CustomQueryFactory {
 
 	/** Copyright notice. */
-	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009, 2012";
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009, 2014";
 
 	/**
 	 * @see fabric.registry.ext.CustomQueryFactory#create(java.sql.ResultSet)
@@ -83,6 +84,83 @@ public class FeedRoutesFactoryImpl extends CustomQueryFactory {
 	 */
 	public static String getRouteQuery(String task, String platform, String systemId, String feedId, String startNode) {
 
+		String feedPredicate = feedPredicate(task, platform, systemId, feedId);
+		return routeQuery((feedPredicate.length() > 0) ? feedPredicate + " and " : "", startNode);
+	}
+
+	/**
+	 * Gets the Fabric feeds (and their default routes from the specified start node) for a list of feeds, using a
+	 * single query.
+	 * <p>
+	 * The results are ordered in the same way as those of the query for a single feed, so the first result for each
+	 * feed is the one that a subscription to that feed alone would use.
+	 * </p>
+	 * 
+	 * @param feeds
+	 *            the feeds (which must not contain wildcards).
+	 * @param startNode
+	 *            the node from which the routes start.
+	 * @return a String containing the complete SQL query
+	 */
+	public static String getRouteQuery(TaskServiceDescriptor[] feeds, String startNode) {
+
+		String feedPredicates = "(";
+
+		for (int f = 0; f < feeds.length; f++) {
+			feedPredicates += (f > 0) ? " or " : "";
+			feedPredicates += "(" + feedPredicate(feeds[f].task(), feeds[f].platform(), feeds[f].system(),
+					feeds[f].service()) + ")";
+		}
+
+		feedPredicates += ") and ";
+
+		return routeQuery(feedPredicates, startNode);
+	}
+
+	/**
+	 * Builds the predicate matching a feed specification.
+	 * 
+	 * @param task
+	 * @param platform
+	 * @param systemId
+	 * @param feedId
+	 * @return the predicate, or an empty string if all of the IDs are wildcards.
+	 */
+	private static String feedPredicate(String task, String platform, String systemId, String feedId) {
+
+		String predicate = "";
+
+		if (!task.equals("*")) {
+			predicate += "ts.task_id='" + task + "' and ";
+		}
+
+		if (!platform.equals("*")) {
+			predicate += "ts.platform_id='" + platform + "' and ";
+		}
+
+		if (!systemId.equals("*")) {
+			predicate += "ts.service_id='" + systemId + "' and ";
+		}
+
+		if (!feedId.equals("*")) {
+			predicate += "ts.data_feed_id='" + feedId + "' and ";
+		}
+
+		return (predicate.length() > 0) ? predicate.substring(0, predicate.length() - " and ".length()) : predicate;
+	}
+
+	/**
+	 * Builds the query for the routes to the feeds matching a predicate.
+	 * 
+	 * @param feedPredicates
+	 *            the predicates selecting the feeds, followed by <code>" and "</code> (or an empty string to select all
+	 *            feeds).
+	 * @param startNode
+	 *            the node from which the routes start.
+	 * @return a String containing the complete SQL query
+	 */
+	private static String routeQuery(String feedPredicates, String startNode) {
+
 		/* Build the query */
 		String query = "select ";
 		query += "'" + startNode + "' as my_node, ";
@@ -99,23 +177,7 @@ public class FeedRoutesFactoryImpl extends CustomQueryFactory {
 		query += FabricRegistry.TASK_SYSTEMS + " as ts, ";
 		query += FabricRegistry.PLATFORMS + " as p ";
 		query += "where ";
-
-		if (!task.equals("*")) {
-			query += "ts.task_id='" + task + "' and ";
-		}
-
-		if (!platform.equals("*")) {
-			query += "ts.platform_id='" + platform + "' and ";
-		}
-
-		if (!systemId.equals("*")) {
-			query += "ts.service_id='" + systemId + "' and ";
-		}
-
-		if (!feedId.equals("*")) {
-			query += "ts.data_feed_id='" + feedId + "' and ";
-		}
-
+		query += feedPredicates;
 		query += "ts.platform_id = p.platform_id and ";
 		query += "(" + "(p.node_id='$virtual' and r.start_node_id='*' and r.end_node_id='*')" + " or "
 				+ "(r.start_node_id='" + startNode + "' and r.end_node_id=p.node_id)" + " or "
@@ -17,6 +17,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 /**
  * Implementation of the factory for <code>NodeConfig</code>s.
@@ -44,6 +45,17 @@ public class NodeConfigFactoryImpl extends AbstractFactory implements NodeConfig
     /** Select records using an arbitrary WHERE clause */
     private String PREDICATE_QUERY = null;
 
+    /** Insert a record */
+    private static final String INSERT_CONFIG = "insert into " + FabricRegistry.NODE_CONFIG + " values(?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_CONFIG = "update " + FabricRegistry.NODE_CONFIG + " set VALUE=? WHERE NODE_ID=?"
+            + " AND NAME=?";
+
+    /** Delete a record */
+    private static final String DELETE_CONFIG = "delete from " + FabricRegistry.NODE_CONFIG + " where NODE_ID=?"
+            + " AND NAME=?";
+
     static {
         localQueryInstance = new NodeConfigFactoryImpl(QueryScope.LOCAL);
         remoteQueryInstance = new NodeConfigFactoryImpl(QueryScope.DISTRIBUTED);
@@ -93,6 +105,40 @@ public class NodeConfigFactoryImpl extends AbstractFactory implements NodeConfig
         return nc;
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof NodeConfig) {
+            NodeConfig nc = (NodeConfig) obj;
+            insert = new ParameterizedSql(INSERT_CONFIG, stringValue(nc.getNode()), stringValue(nc.getName()),
+                    stringValue(nc.getValue()));
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof NodeConfig) {
+            NodeConfig nc = (NodeConfig) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            NodeConfig where = (nc.getShadow() != null) ? (NodeConfig) nc.getShadow() : nc;
+            update = new ParameterizedSql(UPDATE_CONFIG, stringValue(nc.getValue()), stringValue(where.getNode()),
+                    stringValue(where.getName()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof NodeConfig) {
+            NodeConfig nc = (NodeConfig) obj;
+            delete = new ParameterizedSql(DELETE_CONFIG, stringValue(nc.getNode()), stringValue(nc.getName()));
+        }
+        return delete;
+    }
+
     /*
      * (non-Javadoc)
      * @see fabric.registry.impl.AbstractFactory#getDeleteSql(fabric.registry.RegistryObject)
@@ -17,6 +17,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 /**
  * Implementation of the factory for <code>Node</code>s.
@@ -43,6 +44,18 @@ public class NodeFactoryImpl extends AbstractFactory implements NodeFactory {
     /** Select records using an arbitrary WHERE clause */
     private String PREDICATE_QUERY = null;
 
+    /** Insert a record */
+    private static final String INSERT_NODE = "insert into " + FabricRegistry.NODES
+            + " values(?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_NODE = "update " + FabricRegistry.NODES + " set NODE_ID=?,TYPE_ID=?,"
+            + "AFFILIATION=?,CREDENTIALS=?,READINESS=?,AVAILABILITY=?,LATITUDE=?,LONGITUDE=?,ALTITUDE=?,BEARING=?,"
+            + "VELOCITY=?,DESCRIPTION=?,ATTRIBUTES=?,ATTRIBUTES_URI=? WHERE NODE_ID=?";
+
+    /** Delete a record */
+    private static final String DELETE_NODE = "delete from " + FabricRegistry.NODES + " where TYPE_ID=? AND NODE_ID=?";
+
     static {
         localQueryInstance = new NodeFactoryImpl(QueryScope.LOCAL);
         remoteQueryInstance = new NodeFactoryImpl(QueryScope.DISTRIBUTED);
@@ -93,6 +106,48 @@ public class NodeFactoryImpl extends AbstractFactory implements NodeFactory {
         return node;
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof Node) {
+            Node node = (Node) obj;
+            insert = new ParameterizedSql(INSERT_NODE, stringValue(node.getId()), stringValue(node.getTypeId()),
+                    stringValue(node.getAffiliation()), stringValue(node.getSecurityClassification()),
+                    stringValue(node.getReadiness()), stringValue(node.getAvailability()), node.getLatitude(),
+                    node.getLongitude(), node.getAltitude(), node.getBearing(), node.getVelocity(),
+                    stringValue(node.getDescription()), stringValue(node.getAttributes()),
+                    stringValue(node.getAttributesURI()));
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof Node) {
+            Node node = (Node) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            Node where = (node.getShadow() != null) ? (Node) node.getShadow() : node;
+            update = new ParameterizedSql(UPDATE_NODE, stringValue(node.getId()), stringValue(node.getTypeId()),
+                    stringValue(node.getAffiliation()), stringValue(node.getSecurityClassification()),
+                    stringValue(node.getReadiness()), stringValue(node.getAvailability()), node.getLatitude(),
+                    node.getLongitude(), node.getAltitude(), node.getBearing(), node.getVelocity(),
+                    stringValue(node.getDescription()), stringValue(node.getAttributes()),
+                    stringValue(node.getAttributesURI()), stringValue(where.getId()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof Node) {
+            Node node = (Node) obj;
+            delete = new ParameterizedSql(DELETE_NODE, stringValue(node.getTypeId()), stringValue(node.getId()));
+        }
+        return delete;
+    }
+
     @Override
     public String getDeleteSql(RegistryObject obj) {
         StringBuilder buf = new StringBuilder();
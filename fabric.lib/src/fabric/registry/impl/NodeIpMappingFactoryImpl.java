@@ -16,6 +16,7 @@ import fabric.registry.exception.DuplicateKeyException;
 import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 /**
  * Factory used to create NodeIpMapping objects and persist them in the Fabric Registry.
@@ -49,6 +50,17 @@ public class NodeIpMappingFactoryImpl extends AbstractFactory implements NodeIpM
     /** Select records using an arbitrary SQL <code>WHERE</code> clause. */
     private String PREDICATE_QUERY = null;
 
+    /** Insert a record */
+    private static final String INSERT_MAPPING = "insert into " + FabricRegistry.NODE_IP_MAPPING + " values(?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_MAPPING = "update " + FabricRegistry.NODE_IP_MAPPING + " set NODE_ID=?,"
+            + "NODE_INTERFACE=?,IP=?,PORT=? WHERE NODE_ID=? AND NODE_INTERFACE=?";
+
+    /** Delete a record */
+    private static final String DELETE_MAPPING = "delete from " + FabricRegistry.NODE_IP_MAPPING + " where NODE_ID=?"
+            + " AND NODE_INTERFACE=? AND IP=?";
+
     /*
      * Class static initialization
      */
@@ -121,6 +133,43 @@ public class NodeIpMappingFactoryImpl extends AbstractFactory implements NodeIpM
         return new NodeIpMappingImpl(nodeId, nodeInterface, ipAddress, port);
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof NodeIpMapping) {
+            NodeIpMapping ipMapping = (NodeIpMapping) obj;
+            insert = new ParameterizedSql(INSERT_MAPPING, stringValue(ipMapping.getNodeId()),
+                    stringValue(ipMapping.getNodeInterface()), stringValue(ipMapping.getIpAddress()),
+                    ipMapping.getPort());
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof NodeIpMapping) {
+            NodeIpMapping ipMapping = (NodeIpMapping) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            NodeIpMapping where = (ipMapping.getShadow() != null) ? (NodeIpMapping) ipMapping.getShadow() : ipMapping;
+            update = new ParameterizedSql(UPDATE_MAPPING, stringValue(ipMapping.getNodeId()),
+                    stringValue(ipMapping.getNodeInterface()), stringValue(ipMapping.getIpAddress()),
+                    ipMapping.getPort(), stringValue(where.getNodeId()), stringValue(where.getNodeInterface()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof NodeIpMapping) {
+            NodeIpMapping ipMapping = (NodeIpMapping) obj;
+            delete = new ParameterizedSql(DELETE_MAPPING, stringValue(ipMapping.getNodeId()),
+                    stringValue(ipMapping.getNodeInterface()), stringValue(ipMapping.getIpAddress()));
+        }
+        return delete;
+    }
+
     @Override
     public String getDeleteSql(RegistryObject obj) {
         StringBuilder buf = new StringBuilder();
@@ -17,6 +17,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 import fabric.registry.persistence.PersistenceManager;
 import fabric.session.NodeDescriptor;
 
@@ -61,6 +62,19 @@ public class NodeNeighbourFactoryImpl extends AbstractFactory implements NodeNei
     /** SQL to Mark Neighbours Unavailable. */
     private static String MARK_UNAVAILABLE = null;
 
+    /** Insert a record */
+    private static final String INSERT_NEIGHBOUR = "insert into " + FabricRegistry.NODE_NEIGHBOURS
+            + " values(?,?,?,?,?,?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_NEIGHBOUR = "update " + FabricRegistry.NODE_NEIGHBOURS + " set DISCOVEREDBY=?,"
+            + "AVAILABILITY=?,BEARER_ID=?,CONNECTION_ATTRIBUTES=?,CONNECTION_ATTRIBUTES_URI=? WHERE NODE_ID=?"
+            + " AND NODE_INTERFACE=? AND NEIGHBOUR_ID=? AND NEIGHBOUR_INTERFACE=?";
+
+    /** Delete a record */
+    private static final String DELETE_NEIGHBOUR = "delete from " + FabricRegistry.NODE_NEIGHBOURS + " where NODE_ID=?"
+            + " AND NODE_INTERFACE=? AND NEIGHBOUR_ID=? AND NEIGHBOUR_INTERFACE=?";
+
     /*
      * Class static initialization
      */
@@ -94,14 +108,14 @@ public class NodeNeighbourFactoryImpl extends AbstractFactory implements NodeNei
                         + NodeNeighbour.AVAILABLE + "'", FabricRegistry.NODE_NEIGHBOURS);
 
         /** Delete records matching a specified node ID */
-        DELETE_NEIGHBOURS_BY_NODE = "delete from " + FabricRegistry.NODE_NEIGHBOURS + " where NODE_ID='\\%s'";
+        DELETE_NEIGHBOURS_BY_NODE = "delete from " + FabricRegistry.NODE_NEIGHBOURS + " where NODE_ID=?";
 
         SET_STATIC_NEIGHBOURS_TO_AVAILABLE = format("UPDATE %s SET AVAILABILITY='" + NodeNeighbour.AVAILABLE
-                + "' WHERE DISCOVEREDBY='" + NodeNeighbour.DISCOVEREDBY_STATIC + "' AND NODE_ID='\\%s'",
+                + "' WHERE DISCOVEREDBY='" + NodeNeighbour.DISCOVEREDBY_STATIC + "' AND NODE_ID=?",
                 FabricRegistry.NODE_NEIGHBOURS);
 
         MARK_UNAVAILABLE = format("UPDATE %s SET AVAILABILITY='" + NodeNeighbour.UNAVAILABLE
-                + "' WHERE NODE_ID='\\%s' AND NEIGHBOUR_ID='\\%s' AND NEIGHBOUR_INTERFACE='\\%s' ",
+                + "' WHERE NODE_ID=? AND NEIGHBOUR_ID=? AND NEIGHBOUR_INTERFACE=?",
                 FabricRegistry.NODE_NEIGHBOURS);
 
     }
@@ -145,6 +159,50 @@ public class NodeNeighbourFactoryImpl extends AbstractFactory implements NodeNei
                 availability, bearerId, connectionAttributes, uri);
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof NodeNeighbour) {
+            NodeNeighbour neighbour = (NodeNeighbour) obj;
+            insert = new ParameterizedSql(INSERT_NEIGHBOUR, stringValue(neighbour.getNodeId()),
+                    stringValue(neighbour.getNodeInterface()), stringValue(neighbour.getNeighbourId()),
+                    stringValue(neighbour.getNeighbourInterface()), stringValue(neighbour.getDiscoveredBy()),
+                    stringValue(neighbour.getAvailability()), stringValue(neighbour.getBearerId()),
+                    stringValue(neighbour.getConnectionAttributes()),
+                    stringValue(neighbour.getConnectionAttributesUri()));
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof NodeNeighbour) {
+            NodeNeighbour neighbour = (NodeNeighbour) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            NodeNeighbour where = (neighbour.getShadow() != null) ? (NodeNeighbour) neighbour.getShadow() : neighbour;
+            update = new ParameterizedSql(UPDATE_NEIGHBOUR, stringValue(neighbour.getDiscoveredBy()),
+                    stringValue(neighbour.getAvailability()), stringValue(neighbour.getBearerId()),
+                    stringValue(neighbour.getConnectionAttributes()),
+                    stringValue(neighbour.getConnectionAttributesUri()), stringValue(where.getNodeId()),
+                    stringValue(where.getNodeInterface()), stringValue(where.getNeighbourId()),
+                    stringValue(where.getNeighbourInterface()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof NodeNeighbour) {
+            NodeNeighbour neighbour = (NodeNeighbour) obj;
+            delete = new ParameterizedSql(DELETE_NEIGHBOUR, stringValue(neighbour.getNodeId()),
+                    stringValue(neighbour.getNodeInterface()), stringValue(neighbour.getNeighbourId()),
+                    stringValue(neighbour.getNeighbourInterface()));
+        }
+        return delete;
+    }
+
     @Override
     public String getDeleteSql(RegistryObject obj) {
         StringBuilder buf = new StringBuilder();
@@ -261,9 +319,10 @@ public class NodeNeighbourFactoryImpl extends AbstractFactory implements NodeNei
     }
 
     public boolean deleteNeighboursForNode(String nodeId) {
-        String sql = format(DELETE_NEIGHBOURS_BY_NODE, nodeId);
+        ParameterizedSql sql = new ParameterizedSql(DELETE_NEIGHBOURS_BY_NODE, stringValue(nodeId));
         try {
-            boolean success = PersistenceManager.getPersistence().updateRegistryObject(sql);
+            boolean success = PersistenceManager.getPersistence().updateRegistryObject(sql, false);
+            RegistryCache.invalidateStatement(sql.sql());
             return success;
         } catch (PersistenceException e) {
             e.printStackTrace();
@@ -346,9 +405,10 @@ public class NodeNeighbourFactoryImpl extends AbstractFactory implements NodeNei
 
     @Override
     public boolean markStaticNeighboursAsAvailable(String localNode) {
-        String sql = format(SET_STATIC_NEIGHBOURS_TO_AVAILABLE, localNode);
+        ParameterizedSql sql = new ParameterizedSql(SET_STATIC_NEIGHBOURS_TO_AVAILABLE, stringValue(localNode));
         try {
-            boolean success = PersistenceManager.getPersistence().updateRegistryObject(sql);
+            boolean success = PersistenceManager.getPersistence().updateRegistryObject(sql, false);
+            RegistryCache.invalidateStatement(sql.sql());
             return success;
         } catch (PersistenceException e) {
             e.printStackTrace();
@@ -359,9 +419,11 @@ public class NodeNeighbourFactoryImpl extends AbstractFactory implements NodeNei
 
     @Override
     public boolean markUnavailable(String localNode, NodeDescriptor nodeDescriptor) {
-        String sql = format(MARK_UNAVAILABLE, localNode, nodeDescriptor.name(), nodeDescriptor.networkInterface());
+        ParameterizedSql sql = new ParameterizedSql(MARK_UNAVAILABLE, stringValue(localNode),
+                stringValue(nodeDescriptor.name()), stringValue(nodeDescriptor.networkInterface()));
         try {
-            boolean success = PersistenceManager.getPersistence().updateRegistryObject(sql);
+            boolean success = PersistenceManager.getPersistence().updateRegistryObject(sql, false);
+            RegistryCache.invalidateStatement(sql.sql());
             return success;
         } catch (PersistenceException e) {
             e.printStackTrace();
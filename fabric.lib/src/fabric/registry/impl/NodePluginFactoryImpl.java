@@ -18,6 +18,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 public class NodePluginFactoryImpl extends AbstractFactory implements NodePluginFactory {
 
@@ -38,6 +39,18 @@ public class NodePluginFactoryImpl extends AbstractFactory implements NodePlugin
     /** Select records using an arbitrary WHERE clause */
     private String PREDICATE_QUERY_NODE_PLUGINS = null;
 
+    /** Insert a record */
+    private static final String INSERT_NODE_PLUGIN = "insert into " + FabricRegistry.NODE_PLUGINS
+            + " values(?,?,?,?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_NODE_PLUGIN = "update " + FabricRegistry.NODE_PLUGINS + " set DESCRIPTION=?,"
+            + "ARGUMENTS=? WHERE NODE_ID=? AND ORDINAL=? AND TYPE=?";
+
+    /** Delete a record */
+    private static final String DELETE_NODE_PLUGIN = "delete from " + FabricRegistry.NODE_PLUGINS + " where NODE_ID=?"
+            + " AND NAME=? AND FAMILY=? AND TYPE=? AND ORDINAL=? AND DESCRIPTION=?";
+
     /*
      * Static initialisation
      */
@@ -65,6 +78,43 @@ public class NodePluginFactoryImpl extends AbstractFactory implements NodePlugin
         PREDICATE_QUERY_NODE_PLUGINS = format("select * from %s where \\%s", FabricRegistry.NODE_PLUGINS);
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof NodePlugin) {
+            NodePlugin plugin = (NodePlugin) obj;
+            insert = new ParameterizedSql(INSERT_NODE_PLUGIN, stringValue(plugin.getNodeId()),
+                    stringValue(plugin.getName()), plugin.getFamilyName(), stringValue(plugin.getPluginType()),
+                    plugin.getOrdinal(), plugin.getDescription(), plugin.getArguments());
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof NodePlugin) {
+            NodePlugin plugin = (NodePlugin) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            NodePlugin where = (plugin.getShadow() != null) ? (NodePlugin) plugin.getShadow() : plugin;
+            update = new ParameterizedSql(UPDATE_NODE_PLUGIN, plugin.getDescription(), plugin.getArguments(),
+                    stringValue(where.getNodeId()), where.getOrdinal(), stringValue(where.getPluginType()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof NodePlugin) {
+            NodePlugin plugin = (NodePlugin) obj;
+            delete = new ParameterizedSql(DELETE_NODE_PLUGIN, stringValue(plugin.getNodeId()),
+                    stringValue(plugin.getName()), stringValue(plugin.getFamilyName()),
+                    stringValue(plugin.getPluginType()), plugin.getOrdinal(), stringValue(plugin.getDescription()));
+        }
+        return delete;
+    }
+
     @Override
     public String getUpdateSql(RegistryObject obj) {
         StringBuilder buf = new StringBuilder();
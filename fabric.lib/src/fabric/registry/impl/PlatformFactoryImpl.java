@@ -17,6 +17,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 /**
  * Implementation of the factory for <code>Platform</code>'s.
@@ -50,6 +51,19 @@ public class PlatformFactoryImpl extends AbstractFactory implements PlatformFact
     /** Select records using an arbitrary WHERE clause */
     private String PREDICATE_QUERY = null;
 
+    /** Insert a record */
+    private static final String INSERT_PLATFORM = "insert into " + FabricRegistry.PLATFORMS
+            + " values(?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_PLATFORM = "update " + FabricRegistry.PLATFORMS + " set TYPE_ID=?,NODE_ID=?,"
+            + "AFFILIATION=?,CREDENTIALS=?,AVAILABILITY=?,READINESS=?,LATITUDE=?,LONGITUDE=?,ALTITUDE=?,BEARING=?,"
+            + "VELOCITY=?,DESCRIPTION=?,ATTRIBUTES=?,ATTRIBUTES_URI=? WHERE PLATFORM_ID=?";
+
+    /** Delete a record */
+    private static final String DELETE_PLATFORM = "delete from " + FabricRegistry.PLATFORMS + " where PLATFORM_ID=?"
+            + " AND TYPE_ID=? AND NODE_ID=?";
+
     /*
      * Static initialisation
      */
@@ -105,6 +119,47 @@ public class PlatformFactoryImpl extends AbstractFactory implements PlatformFact
         return platform;
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof Platform) {
+            Platform platform = (Platform) obj;
+            insert = new ParameterizedSql(INSERT_PLATFORM, platform.getId(), platform.getTypeId(), platform.getNodeId(),
+                    platform.getAffiliation(), platform.getCredentials(), platform.getReadiness(),
+                    platform.getAvailability(), platform.getLatitude(), platform.getLongitude(), platform.getAltitude(),
+                    platform.getBearing(), platform.getVelocity(), platform.getDescription(), platform.getAttributes(),
+                    platform.getAttributesURI());
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof Platform) {
+            Platform platform = (Platform) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            Platform where = (platform.getShadow() != null) ? (Platform) platform.getShadow() : platform;
+            update = new ParameterizedSql(UPDATE_PLATFORM, platform.getTypeId(), platform.getNodeId(),
+                    platform.getAffiliation(), platform.getCredentials(), platform.getAvailability(),
+                    platform.getReadiness(), platform.getLatitude(), platform.getLongitude(), platform.getAltitude(),
+                    platform.getBearing(), platform.getVelocity(), platform.getDescription(), platform.getAttributes(),
+                    platform.getAttributesURI(), where.getId());
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof Platform) {
+            Platform platform = (Platform) obj;
+            delete = new ParameterizedSql(DELETE_PLATFORM, platform.getId(), platform.getTypeId(),
+                    platform.getNodeId());
+        }
+        return delete;
+    }
+
     @Override
     public String getDeleteSql(RegistryObject obj) {
         StringBuilder buf = new StringBuilder();
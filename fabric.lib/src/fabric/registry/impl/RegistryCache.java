@@ -0,0 +1,571 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.registry.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import fabric.core.json.JSON;
+import fabric.core.properties.ConfigProperties;
+import fabric.core.properties.Properties;
+import fabric.registry.FabricRegistry;
+import fabric.registry.QueryScope;
+import fabric.registry.RegistryObject;
+
+/**
+ * A bounded, least-recently-used cache of the results of Registry factory queries.
+ * <p>
+ * Results are keyed by factory class, query scope and SQL (including any bind parameters), and are tagged with the
+ * Registry tables referenced by the query. Entries are discarded when their time-to-live expires, when a local update
+ * is made to one of their tables, or when a Registry update notification (published by the
+ * <code>fabric.registry.trigger.TableUpdate</code> trigger onto the <code>$fab/$reg/$updates</code> feed) is received
+ * for one of their tables.
+ * </p>
+ * <p>
+ * Only local queries are cached; distributed queries are left to the distributed persistence layer's own cache.
+ * </p>
+ * <p>
+ * The cache holds private copies of the Registry objects, and answers new copies on each hit, so callers are free to
+ * modify the objects they receive.
+ * </p>
+ * <p>
+ * The cache is disabled by default; see <code>ConfigProperties.REGISTRY_CACHE_ENABLED</code>.
+ * </p>
+ */
+public class RegistryCache {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** The descriptor of the feed carrying Registry update notifications */
+    public static final String REGISTRY_UPDATES_FEED = "$fab/$reg/$updates";
+
+    /** Pattern matching the Registry tables referenced in an SQL statement */
+    private static final Pattern TABLE_PATTERN = Pattern.compile("FABRIC\\.([A-Z0-9_]+)");
+
+    private final static Logger logger = Logger.getLogger("fabric.registry");
+
+    /*
+     * Class static fields
+     */
+
+    /** Flag indicating if the cache is enabled */
+    private static volatile boolean enabled = false;
+
+    /** The maximum number of cached query results */
+    private static int maxEntries = Integer.parseInt(ConfigProperties.REGISTRY_CACHE_SIZE_DEFAULT);
+
+    /** The time-to-live of cached query results (milliseconds) */
+    private static long ttl = Long.parseLong(ConfigProperties.REGISTRY_CACHE_TTL_DEFAULT);
+
+    /** The cached query results, in access order */
+    private static final LinkedHashMap<Key, Entry> cache = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+
+            return size() > maxEntries;
+        }
+    };
+
+    /** Count of invalidations, used to detect query results made stale while the query was running */
+    private static long invalidations = 0;
+
+    /** Cache hit count */
+    private static long hits = 0;
+
+    /** Cache miss count */
+    private static long misses = 0;
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * The key of a cached query result.
+     */
+    private static final class Key {
+
+        private final String factory;
+
+        private final QueryScope scope;
+
+        private final String sql;
+
+        private final Object[] parameters;
+
+        private final int hashCode;
+
+        Key(AbstractFactory factory, QueryScope scope, String sql, Object[] parameters) {
+
+            this.factory = factory.getClass().getName();
+            this.scope = scope;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.hashCode = 31 * (31 * (31 * this.factory.hashCode() + String.valueOf(scope).hashCode()) + sql
+                    .hashCode()) + Arrays.hashCode(parameters);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+            return hashCode == other.hashCode && scope == other.scope && factory.equals(other.factory)
+                    && sql.equals(other.sql) && Arrays.equals(parameters, other.parameters);
+        }
+    }
+
+    /**
+     * A cached query result.
+     */
+    private static final class Entry {
+
+        final RegistryObject[] results;
+
+        final Set<String> tables;
+
+        final long expires;
+
+        Entry(RegistryObject[] results, Set<String> tables, long expires) {
+
+            this.results = results;
+            this.tables = tables;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * A handle on a pending cache lookup, returned by <code>lookup()</code> and used to store the result of the query
+     * if it was not found in the cache.
+     */
+    public static final class Lookup {
+
+        private final Key key;
+
+        private final Set<String> tables;
+
+        private final long invalidationCount;
+
+        private final RegistryObject[] results;
+
+        private Lookup(Key key, Set<String> tables, long invalidationCount, RegistryObject[] results) {
+
+            this.key = key;
+            this.tables = tables;
+            this.invalidationCount = invalidationCount;
+            this.results = results;
+        }
+
+        /**
+         * Answers the cached results (if any).
+         *
+         * @return a copy of the cached results (and of each object in them), or <code>null</code> if there was a cache
+         *         miss.
+         */
+        public RegistryObject[] results() {
+
+            return (results != null) ? copy(results) : null;
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    private RegistryCache() {
+
+    }
+
+    /**
+     * Configures the cache from the Fabric configuration.
+     *
+     * @param config
+     *            the configuration.
+     */
+    public static void configure(Properties config) {
+
+        synchronized (cache) {
+
+            maxEntries = Integer.parseInt(config.getProperty(ConfigProperties.REGISTRY_CACHE_SIZE,
+                    ConfigProperties.REGISTRY_CACHE_SIZE_DEFAULT));
+            ttl = Long.parseLong(config.getProperty(ConfigProperties.REGISTRY_CACHE_TTL,
+                    ConfigProperties.REGISTRY_CACHE_TTL_DEFAULT));
+            clear();
+        }
+
+        setEnabled(Boolean.parseBoolean(config.getProperty(ConfigProperties.REGISTRY_CACHE_ENABLED,
+                ConfigProperties.REGISTRY_CACHE_ENABLED_DEFAULT)));
+    }
+
+    /**
+     * Enables or disables the cache (disabling the cache also empties it).
+     *
+     * @param enable
+     *            <code>true</code> to enable the cache, <code>false</code> otherwise.
+     */
+    public static void setEnabled(boolean enable) {
+
+        enabled = enable && maxEntries > 0 && ttl > 0;
+
+        if (!enabled) {
+            clear();
+        }
+
+        logger.log(Level.FINE, "Registry cache {0} (size {1}, TTL {2} ms)", new Object[] {
+                (enabled) ? "enabled" : "disabled", maxEntries, ttl});
+    }
+
+    /**
+     * Answers whether the cache is enabled.
+     *
+     * @return <code>true</code> if the cache is enabled, <code>false</code> otherwise.
+     */
+    public static boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Looks up the results of a query in the cache.
+     *
+     * @param factory
+     *            the factory running the query.
+     *
+     * @param scope
+     *            the scope of the query.
+     *
+     * @param sql
+     *            the query SQL.
+     *
+     * @param parameters
+     *            the bind parameters of the query (if any).
+     *
+     * @return the lookup, or <code>null</code> if the query cannot be cached (including all distributed queries).
+     */
+    public static Lookup lookup(AbstractFactory factory, QueryScope scope, String sql, Object[] parameters) {
+
+        if (!enabled || sql == null) {
+            return null;
+        }
+
+        /*
+         * Distributed queries are not cached: their results are cached by the distributed persistence layer, which
+         * applies its own time-to-live and exclusions (registry.distributed.cache.ttl/exclude)
+         */
+        if (scope == QueryScope.DISTRIBUTED) {
+            return null;
+        }
+
+        /* Queries that do not identify the tables they read cannot be invalidated, so are not cached */
+        Set<String> tables = tablesIn(sql);
+
+        if (tables.isEmpty()) {
+            return null;
+        }
+
+        Key key = new Key(factory, scope, sql, parameters);
+        RegistryObject[] results = null;
+        long invalidationCount = 0;
+
+        synchronized (cache) {
+
+            Entry entry = cache.get(key);
+
+            if (entry != null && entry.expires <= System.currentTimeMillis()) {
+                cache.remove(key);
+                entry = null;
+            }
+
+            if (entry != null) {
+                hits++;
+                results = entry.results;
+            } else {
+                misses++;
+            }
+
+            invalidationCount = invalidations;
+        }
+
+        return new Lookup(key, tables, invalidationCount, results);
+    }
+
+    /**
+     * Stores the results of a query following a cache miss.
+     * <p>
+     * The results are discarded if the cache has been invalidated since the lookup was made, since they may already
+     * be stale.
+     * </p>
+     *
+     * @param lookup
+     *            the lookup that missed.
+     *
+     * @param results
+     *            the query results.
+     */
+    public static void store(Lookup lookup, RegistryObject[] results) {
+
+        if (lookup == null || results == null) {
+            return;
+        }
+
+        synchronized (cache) {
+
+            if (enabled && lookup.invalidationCount == invalidations) {
+
+                /* Cache a private copy, since the caller is free to modify the objects it was given */
+                RegistryObject[] copy = copy(results);
+
+                if (copy != null) {
+                    cache.put(lookup.key, new Entry(copy, lookup.tables, System.currentTimeMillis() + ttl));
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards all cached results that reference a Registry table.
+     *
+     * @param table
+     *            the fully qualified table name (e.g. <code>FABRIC.NODES</code>).
+     */
+    public static void invalidateTable(String table) {
+
+        invalidateTables(Collections.singleton(table.toUpperCase()));
+    }
+
+    /**
+     * Discards all cached results that reference any of the tables modified by an SQL update statement.
+     *
+     * @param sql
+     *            the SQL statement.
+     */
+    public static void invalidateStatement(String sql) {
+
+        if (sql != null) {
+            invalidateTables(tablesIn(sql));
+        }
+    }
+
+    /**
+     * Discards the cached results affected by a Registry update notification (a JSON object published by the
+     * <code>fabric.registry.trigger.TableUpdate</code> trigger).
+     *
+     * @param notification
+     *            the notification.
+     */
+    public static void invalidateNotification(String notification) {
+
+        if (!enabled || notification == null) {
+            return;
+        }
+
+        try {
+
+            JSON notificationJSON = new JSON(notification);
+            String table = notificationJSON.getString("table");
+
+            if (table != null) {
+                invalidateTable(tableForTrigger(table));
+            } else {
+                clear();
+            }
+
+        } catch (Exception e) {
+
+            logger.log(Level.WARNING, "Cannot parse Registry update notification, clearing Registry cache: {0}", e
+                    .getMessage());
+            logger.log(Level.FINEST, "Full exception: ", e);
+            clear();
+
+        }
+    }
+
+    /**
+     * Discards all cached results.
+     */
+    public static void clear() {
+
+        synchronized (cache) {
+            invalidations++;
+            cache.clear();
+        }
+    }
+
+    /**
+     * Answers the number of cached query results.
+     *
+     * @return the entry count.
+     */
+    public static int size() {
+
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Answers the number of cache hits.
+     *
+     * @return the hit count.
+     */
+    public static long hits() {
+
+        synchronized (cache) {
+            return hits;
+        }
+    }
+
+    /**
+     * Answers the number of cache misses.
+     *
+     * @return the miss count.
+     */
+    public static long misses() {
+
+        synchronized (cache) {
+            return misses;
+        }
+    }
+
+    /**
+     * Discards all cached results that reference any of a set of tables.
+     *
+     * @param tables
+     *            the fully qualified table names.
+     */
+    private static void invalidateTables(Set<String> tables) {
+
+        if (!enabled || tables.isEmpty()) {
+            return;
+        }
+
+        synchronized (cache) {
+
+            invalidations++;
+
+            for (Iterator<Entry> e = cache.values().iterator(); e.hasNext();) {
+                if (!Collections.disjoint(e.next().tables, tables)) {
+                    e.remove();
+                }
+            }
+        }
+
+        logger.log(Level.FINEST, "Registry cache invalidated for table(s) {0}", tables);
+    }
+
+    /**
+     * Copies a list of Registry objects, so that the copy shares no mutable objects with the original.
+     *
+     * @param objects
+     *            the objects to copy.
+     *
+     * @return the copy, or <code>null</code> if any of the objects cannot be copied.
+     */
+    private static RegistryObject[] copy(RegistryObject[] objects) {
+
+        RegistryObject[] copy = new RegistryObject[objects.length];
+
+        try {
+
+            for (int o = 0; copy != null && o < objects.length; o++) {
+
+                if (objects[o] instanceof AbstractRegistryObject) {
+                    copy[o] = ((AbstractRegistryObject) objects[o]).copy();
+                } else if (objects[o] != null) {
+                    /* Objects of other types cannot be copied, so are not cached */
+                    copy = null;
+                }
+            }
+
+        } catch (CloneNotSupportedException e) {
+
+            logger.log(Level.FINE, "Cannot copy Registry query results: {0}", e.getMessage());
+            logger.log(Level.FINEST, "Full exception: ", e);
+            copy = null;
+
+        }
+
+        return copy;
+    }
+
+    /**
+     * Answers the Registry tables referenced in an SQL statement.
+     *
+     * @param sql
+     *            the SQL statement.
+     *
+     * @return the fully qualified table names.
+     */
+    private static Set<String> tablesIn(String sql) {
+
+        Set<String> tables = new HashSet<String>();
+        Matcher matcher = TABLE_PATTERN.matcher(sql.toUpperCase());
+
+        while (matcher.find()) {
+            tables.add(matcher.group());
+        }
+
+        return tables;
+    }
+
+    /**
+     * Maps the table name used in a Registry update notification to the fully qualified name of the table.
+     * <p>
+     * The triggers use the names of the corresponding Registry objects, which differ from the table names for systems
+     * (stored in the <code>SERVICES</code> table) and services (stored in the <code>DATA_FEEDS</code> table).
+     * </p>
+     *
+     * @param triggerTable
+     *            the table name from the notification.
+     *
+     * @return the fully qualified table name.
+     */
+    private static String tableForTrigger(String triggerTable) {
+
+        switch (triggerTable.toUpperCase()) {
+
+            case "SYSTEMS":
+                return FabricRegistry.SYSTEMS;
+
+            case "SERVICES":
+                return FabricRegistry.DATA_FEEDS;
+
+            default:
+                return "FABRIC." + triggerTable.toUpperCase();
+        }
+    }
+}
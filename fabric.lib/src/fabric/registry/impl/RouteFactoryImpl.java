@@ -22,6 +22,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 /**
  * Implementation of the factory for <code>Route</code>s.
@@ -53,6 +54,17 @@ public class RouteFactoryImpl extends AbstractFactory implements RouteFactory {
     /** Select records using an arbitrary WHERE clause */
     private String PREDICATE_QUERY = null;
 
+    /** Insert a record */
+    private static final String INSERT_ROUTE = "insert into " + FabricRegistry.ROUTES + " values(?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_ROUTE = "update " + FabricRegistry.ROUTES + " set START_NODE_ID=?,END_NODE_ID=?,"
+            + "ORDINAL=?,ROUTE=? WHERE START_NODE_ID=? AND END_NODE_ID=?";
+
+    /** Delete a record */
+    private static final String DELETE_ROUTE = "delete from " + FabricRegistry.ROUTES + " where START_NODE_ID=?"
+            + " AND END_NODE_ID=?";
+
     /*
      * Static initialisation
      */
@@ -129,6 +141,42 @@ public class RouteFactoryImpl extends AbstractFactory implements RouteFactory {
         return route;
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof Route) {
+            Route route = (Route) obj;
+            insert = new ParameterizedSql(INSERT_ROUTE, route.getStartNode(), route.getEndNode(), route.getOrdinal(),
+                    route.getRoute());
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof Route) {
+            Route route = (Route) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            Route where = (route.getShadow() != null) ? (Route) route.getShadow() : route;
+            update = new ParameterizedSql(UPDATE_ROUTE, stringValue(route.getStartNode()),
+                    stringValue(route.getEndNode()), route.getOrdinal(), route.getRoute(),
+                    stringValue(where.getStartNode()), stringValue(where.getEndNode()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof Route) {
+            Route route = (Route) obj;
+            delete = new ParameterizedSql(DELETE_ROUTE, stringValue(route.getStartNode()),
+                    stringValue(route.getEndNode()));
+        }
+        return delete;
+    }
+
     @Override
     public String getDeleteSql(RegistryObject obj) {
 
@@ -18,6 +18,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 /**
  * Implementation of the factory for <code>Service</code>s.
@@ -74,6 +75,19 @@ public class ServiceFactoryImpl extends AbstractFactory implements ServiceFactor
     /** Select all ONE WAY feeds */
     private String SELECT_ALL_ONE_WAY_QUERY = null;
 
+    /** Insert a record */
+    private static final String INSERT_FEED = "insert into " + FabricRegistry.DATA_FEEDS
+            + " values(?,?,?,?,?,?,?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_FEED = "update " + FabricRegistry.DATA_FEEDS + " set PLATFORM_ID=?,SERVICE_ID=?,"
+            + "ID=?,TYPE_ID=?,CREDENTIALS=?,AVAILABILITY=?,DESCRIPTION=?,ATTRIBUTES=?,DIRECTION=?,ATTRIBUTES_URI=?"
+            + " WHERE PLATFORM_ID=? AND SERVICE_ID=? AND ID=?";
+
+    /** Delete a record */
+    private static final String DELETE_FEED = "delete from " + FabricRegistry.DATA_FEEDS + " where PLATFORM_ID=?"
+            + " AND SERVICE_ID=? AND ID=?";
+
     static {
         localQueryInstance = new ServiceFactoryImpl(QueryScope.LOCAL);
         remoteQueryInstance = new ServiceFactoryImpl(QueryScope.DISTRIBUTED);
@@ -388,6 +402,43 @@ public class ServiceFactoryImpl extends AbstractFactory implements ServiceFactor
         }
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof Service) {
+            Service service = (Service) obj;
+            insert = new ParameterizedSql(INSERT_FEED, service.getPlatformId(), service.getSystemId(), service.getId(),
+                    service.getTypeId(), service.getMode(), service.getCredentials(), service.getAvailability(),
+                    service.getDescription(), service.getAttributes(), service.getAttributesURI());
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof Service) {
+            Service service = (Service) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            Service where = (service.getShadow() != null) ? (Service) service.getShadow() : service;
+            update = new ParameterizedSql(UPDATE_FEED, service.getPlatformId(), service.getSystemId(), service.getId(),
+                    service.getTypeId(), service.getCredentials(), service.getAvailability(), service.getDescription(),
+                    service.getAttributes(), service.getMode(), service.getAttributesURI(), where.getPlatformId(),
+                    where.getSystemId(), where.getId());
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof Service) {
+            Service service = (Service) obj;
+            delete = new ParameterizedSql(DELETE_FEED, service.getPlatformId(), service.getSystemId(), service.getId());
+        }
+        return delete;
+    }
+
     /**
      * @see fabric.registry.impl.AbstractFactory#getDeleteSql(fabric.registry.RegistryObject)
      */
@@ -17,6 +17,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 /**
  * Implementation of the factory for <code>System</code>'s.
@@ -50,6 +51,19 @@ public class SystemFactoryImpl extends AbstractFactory implements SystemFactory
     /** Select all records of kind 'SYSTEM' */
     private String SELECT_ALL_SYSTEMS_QUERY = null;
 
+    /** Insert a record */
+    private static final String INSERT_SYSTEM = "insert into " + FabricRegistry.SYSTEMS
+            + " values(?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_SYSTEM = "update " + FabricRegistry.SYSTEMS + " set ID=?,PLATFORM_ID=?,"
+            + "TYPE_ID=?,KIND=?,CREDENTIALS=?,READINESS=?,AVAILABILITY=?,LATITUDE=?,LONGITUDE=?,ALTITUDE=?,BEARING=?,"
+            + "VELOCITY=?,DESCRIPTION=?,ATTRIBUTES=?,ATTRIBUTES_URI=? WHERE ID=? AND PLATFORM_ID=?";
+
+    /** Delete a record */
+    private static final String DELETE_SYSTEM = "delete from " + FabricRegistry.SYSTEMS + " where ID=? AND TYPE_ID=?"
+            + " AND PLATFORM_ID=?";
+
     /*
      * Static initialisation
      */
@@ -268,6 +282,45 @@ public class SystemFactoryImpl extends AbstractFactory implements SystemFactory
         }
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof System) {
+            System system = (System) obj;
+            insert = new ParameterizedSql(INSERT_SYSTEM, system.getPlatformId(), system.getId(), system.getTypeId(),
+                    system.getKind(), system.getCredentials(), system.getReadiness(), system.getAvailability(),
+                    system.getLatitude(), system.getLongitude(), system.getAltitude(), system.getBearing(),
+                    system.getVelocity(), system.getDescription(), system.getAttributes(), system.getAttributesURI());
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof System) {
+            System system = (System) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            System where = (system.getShadow() != null) ? (System) system.getShadow() : system;
+            update = new ParameterizedSql(UPDATE_SYSTEM, system.getId(), system.getPlatformId(), system.getTypeId(),
+                    system.getKind(), system.getCredentials(), system.getReadiness(), system.getAvailability(),
+                    system.getLatitude(), system.getLongitude(), system.getAltitude(), system.getBearing(),
+                    system.getVelocity(), system.getDescription(), system.getAttributes(), system.getAttributesURI(),
+                    where.getId(), where.getPlatformId());
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof System) {
+            System system = (System) obj;
+            delete = new ParameterizedSql(DELETE_SYSTEM, system.getId(), system.getTypeId(), system.getPlatformId());
+        }
+        return delete;
+    }
+
     /**
      * @see fabric.registry.impl.AbstractFactory#getDeleteSql(fabric.registry.RegistryObject)
      */
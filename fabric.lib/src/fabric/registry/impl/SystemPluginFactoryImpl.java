@@ -19,6 +19,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 public class SystemPluginFactoryImpl extends AbstractFactory implements SystemPluginFactory {
 
@@ -39,6 +40,18 @@ public class SystemPluginFactoryImpl extends AbstractFactory implements SystemPl
     /** Select records using an arbitrary WHERE clause */
     private String PREDICATE_QUERY_SYSTEM_PLUGINS = null;
 
+    /** Insert a record */
+    private static final String INSERT_SYSTEM_PLUGIN = "insert into " + FabricRegistry.SYSTEM_PLUGINS
+            + " values(?,?,?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_SYSTEM_PLUGIN = "update " + FabricRegistry.SYSTEM_PLUGINS + " set DESCRIPTION=?,"
+            + "ARGUMENTS=? WHERE NODE_ID=? AND NAME=? AND FAMILY=? AND TYPE=?";
+
+    /** Delete a record */
+    private static final String DELETE_SYSTEM_PLUGIN = "delete from " + FabricRegistry.SYSTEM_PLUGINS
+            + " where NODE_ID=? AND NAME=? AND FAMILY=? AND TYPE=?";
+
     /*
      * Static initialisation
      */
@@ -66,6 +79,44 @@ public class SystemPluginFactoryImpl extends AbstractFactory implements SystemPl
         PREDICATE_QUERY_SYSTEM_PLUGINS = format("select * from %s where \\%s", FabricRegistry.SYSTEM_PLUGINS);
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof SystemPlugin) {
+            SystemPlugin plugin = (SystemPlugin) obj;
+            insert = new ParameterizedSql(INSERT_SYSTEM_PLUGIN, stringValue(plugin.getNodeId()),
+                    stringValue(plugin.getName()), plugin.getFamilyName(), stringValue(plugin.getPluginType()),
+                    plugin.getDescription(), plugin.getArguments());
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof SystemPlugin) {
+            SystemPlugin plugin = (SystemPlugin) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            SystemPlugin where = (plugin.getShadow() != null) ? (SystemPlugin) plugin.getShadow() : plugin;
+            update = new ParameterizedSql(UPDATE_SYSTEM_PLUGIN, plugin.getDescription(), plugin.getArguments(),
+                    stringValue(where.getNodeId()), stringValue(where.getName()), stringValue(where.getFamilyName()),
+                    stringValue(where.getPluginType()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof SystemPlugin) {
+            SystemPlugin plugin = (SystemPlugin) obj;
+            delete = new ParameterizedSql(DELETE_SYSTEM_PLUGIN, stringValue(plugin.getNodeId()),
+                    stringValue(plugin.getName()), stringValue(plugin.getFamilyName()),
+                    stringValue(plugin.getPluginType()));
+        }
+        return delete;
+    }
+
     @Override
     public String getUpdateSql(RegistryObject obj) {
         StringBuilder buf = new StringBuilder();
@@ -17,6 +17,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 /**
  */
@@ -48,6 +49,22 @@ public class SystemWiringFactoryImpl extends AbstractFactory implements SystemWi
     /** Select record by id */
     private String BY_ID_QUERY = null;
 
+    /** Insert a record */
+    private static final String INSERT_WIRING = "insert into " + FabricRegistry.SYSTEM_WIRING
+            + " values(?,?,?,?,?,?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_WIRING = "update " + FabricRegistry.SYSTEM_WIRING + " set COMPOSITE_ID=?,"
+            + "FROM_SERVICE_PLATFORM_ID=?,FROM_SERVICE_ID=?,FROM_INTERFACE_ID=?,TO_SERVICE_PLATFORM_ID=?,"
+            + "TO_SERVICE_ID=?,TO_INTERFACE_ID=?,ATTRIBUTES=?,ATTRIBUTES_URI=? WHERE COMPOSITE_ID=?"
+            + " AND FROM_SERVICE_PLATFORM_ID=? AND FROM_SERVICE_ID=? AND FROM_INTERFACE_ID=?"
+            + " AND TO_SERVICE_PLATFORM_ID=? AND TO_SERVICE_ID=? AND TO_INTERFACE_ID=?";
+
+    /** Delete a record */
+    private static final String DELETE_WIRING = "delete from " + FabricRegistry.SYSTEM_WIRING + " where COMPOSITE_ID=?"
+            + " AND FROM_SERVICE_PLATFORM_ID=? AND FROM_SERVICE_ID=? AND FROM_INTERFACE_ID=?"
+            + " AND TO_SERVICE_PLATFORM_ID=? AND TO_SERVICE_ID=? AND TO_INTERFACE_ID=?";
+
     static {
         localQueryInstance = new SystemWiringFactoryImpl(QueryScope.LOCAL);
         remoteQueryInstance = new SystemWiringFactoryImpl(QueryScope.DISTRIBUTED);
@@ -99,6 +116,53 @@ public class SystemWiringFactoryImpl extends AbstractFactory implements SystemWi
         return wiring;
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof SystemWiring) {
+            SystemWiring systemWiring = (SystemWiring) obj;
+            insert = new ParameterizedSql(INSERT_WIRING, stringValue(systemWiring.getCompositeId()),
+                    stringValue(systemWiring.getFromSystemPlatformId()), stringValue(systemWiring.getFromSystemId()),
+                    stringValue(systemWiring.getFromInterfaceId()), stringValue(systemWiring.getToSystemPlatformId()),
+                    stringValue(systemWiring.getToSystemId()), stringValue(systemWiring.getToInterfaceId()),
+                    systemWiring.getAttributes(), systemWiring.getAttributesURI());
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof SystemWiring) {
+            SystemWiring systemWiring = (SystemWiring) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            SystemWiring where = (systemWiring.getShadow() != null) ? (SystemWiring) systemWiring.getShadow()
+                    : systemWiring;
+            update = new ParameterizedSql(UPDATE_WIRING, stringValue(systemWiring.getCompositeId()),
+                    stringValue(systemWiring.getFromSystemPlatformId()), stringValue(systemWiring.getFromSystemId()),
+                    stringValue(systemWiring.getFromInterfaceId()), stringValue(systemWiring.getToSystemPlatformId()),
+                    stringValue(systemWiring.getToSystemId()), stringValue(systemWiring.getToInterfaceId()),
+                    systemWiring.getAttributes(), systemWiring.getAttributesURI(), stringValue(where.getCompositeId()),
+                    stringValue(where.getFromSystemPlatformId()), stringValue(where.getFromSystemId()),
+                    stringValue(where.getFromInterfaceId()), stringValue(where.getToSystemPlatformId()),
+                    stringValue(where.getToSystemId()), stringValue(where.getToInterfaceId()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof SystemWiring) {
+            SystemWiring systemWiring = (SystemWiring) obj;
+            delete = new ParameterizedSql(DELETE_WIRING, stringValue(systemWiring.getCompositeId()),
+                    stringValue(systemWiring.getFromSystemPlatformId()), stringValue(systemWiring.getFromSystemId()),
+                    stringValue(systemWiring.getFromInterfaceId()), stringValue(systemWiring.getToSystemPlatformId()),
+                    stringValue(systemWiring.getToSystemId()), stringValue(systemWiring.getToInterfaceId()));
+        }
+        return delete;
+    }
+
     @Override
     public String getDeleteSql(RegistryObject obj) {
 
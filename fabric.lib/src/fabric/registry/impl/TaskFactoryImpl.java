@@ -17,6 +17,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 /**
  * Implementation of the factory for <code>Task</code>'s.
@@ -43,6 +44,16 @@ public class TaskFactoryImpl extends AbstractFactory implements TaskFactory {
     /** Select records using an arbitrary WHERE clause */
     private String PREDICATE_QUERY = null;
 
+    /** Insert a record */
+    private static final String INSERT_TASK = "insert into " + FabricRegistry.TASKS + " values(?,?,?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_TASK = "update " + FabricRegistry.TASKS + " set TASK_ID=?,PRIORITY=?,"
+            + "AFFILIATION=?,DESCRIPTION=?,TASK_DETAIL=?,TASK_DETAIL_URI=? WHERE TASK_ID=?";
+
+    /** Delete a record */
+    private static final String DELETE_TASK = "delete from " + FabricRegistry.TASKS + " where TASK_ID=?";
+
     /*
      * Static initialisation
      */
@@ -89,6 +100,41 @@ public class TaskFactoryImpl extends AbstractFactory implements TaskFactory {
         return task;
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof Task) {
+            Task task = (Task) obj;
+            insert = new ParameterizedSql(INSERT_TASK, stringValue(task.getId()), task.getPriority(),
+                    task.getAffiliation(), task.getDescription(), task.getDetail(), task.getDetailUri());
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof Task) {
+            Task task = (Task) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            Task where = (task.getShadow() != null) ? (Task) task.getShadow() : task;
+            update = new ParameterizedSql(UPDATE_TASK, stringValue(task.getId()), task.getPriority(),
+                    task.getAffiliation(), task.getDescription(), task.getDetail(), task.getDetailUri(),
+                    stringValue(where.getId()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof Task) {
+            Task task = (Task) obj;
+            delete = new ParameterizedSql(DELETE_TASK, stringValue(task.getId()));
+        }
+        return delete;
+    }
+
     @Override
     public String getDeleteSql(RegistryObject obj) {
         StringBuilder buf = new StringBuilder();
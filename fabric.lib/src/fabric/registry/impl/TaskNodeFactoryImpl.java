@@ -17,6 +17,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 /**
  * Implementation of the factory for <code>TaskNode</code>s.
@@ -47,6 +48,17 @@ public class TaskNodeFactoryImpl extends AbstractFactory implements TaskNodeFact
     /** Select records using an arbitrary WHERE clause */
     private String PREDICATE_QUERY = "select * from " + FabricRegistry.TASK_NODES + " where ";
 
+    /** Insert a record */
+    private static final String INSERT_TASK_NODE = "insert into " + FabricRegistry.TASK_NODES + " values(?,?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_TASK_NODE = "update " + FabricRegistry.TASK_NODES + " set TASK_ID=?,NODE_ID=?,"
+            + "DESCRIPTION=?,CONFIGURATION=?,CONFIGURATION_URI=? WHERE TASK_ID=? AND NODE_ID=?";
+
+    /** Delete a record */
+    private static final String DELETE_TASK_NODE = "delete from " + FabricRegistry.TASK_NODES + " where TASK_ID=?"
+            + " AND NODE_ID=?";
+
     /*
      * Static initialisation
      */
@@ -90,6 +102,42 @@ public class TaskNodeFactoryImpl extends AbstractFactory implements TaskNodeFact
         return taskNode;
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof TaskNode) {
+            TaskNode taskNode = (TaskNode) obj;
+            insert = new ParameterizedSql(INSERT_TASK_NODE, taskNode.getTaskId(), taskNode.getNodeId(),
+                    taskNode.getDescription(), taskNode.getConfiguration(), taskNode.getConfigurationUri());
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof TaskNode) {
+            TaskNode taskNode = (TaskNode) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            TaskNode where = (taskNode.getShadow() != null) ? (TaskNode) taskNode.getShadow() : taskNode;
+            update = new ParameterizedSql(UPDATE_TASK_NODE, stringValue(taskNode.getTaskId()),
+                    stringValue(taskNode.getNodeId()), taskNode.getDescription(), taskNode.getConfiguration(),
+                    taskNode.getConfigurationUri(), stringValue(where.getTaskId()), stringValue(where.getNodeId()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof TaskNode) {
+            TaskNode taskNode = (TaskNode) obj;
+            delete = new ParameterizedSql(DELETE_TASK_NODE, stringValue(taskNode.getTaskId()),
+                    stringValue(taskNode.getNodeId()));
+        }
+        return delete;
+    }
+
     @Override
     public String getDeleteSql(RegistryObject obj) {
         StringBuilder buf = new StringBuilder();
@@ -18,6 +18,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 public class TaskPluginFactoryImpl extends AbstractFactory implements TaskPluginFactory {
 
@@ -38,6 +39,20 @@ public class TaskPluginFactoryImpl extends AbstractFactory implements TaskPlugin
     /** Select records using an arbitrary WHERE clause */
     private String PREDICATE_QUERY_TASK_PLUGINS = null;
 
+    /** Insert a record */
+    private static final String INSERT_TASK_PLUGIN = "insert into " + FabricRegistry.TASK_PLUGINS
+            + " values(?,?,?,?,?,?,?,?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_TASK_PLUGIN = "update " + FabricRegistry.TASK_PLUGINS + " set DESCRIPTION=?,"
+            + "ARGUMENTS=?,PLATFORM_ID=?,SERVICE_ID=?,DATA_FEED_ID=? WHERE NODE_ID=? AND TASK_ID=? AND NAME=?"
+            + " AND ORDINAL=? AND TYPE=?";
+
+    /** Delete a record */
+    private static final String DELETE_TASK_PLUGIN = "delete from " + FabricRegistry.TASK_PLUGINS + " where NODE_ID=?"
+            + " AND TASK_ID=? AND NAME=? AND FAMILY=? AND TYPE=? AND ORDINAL=? AND PLATFORM_ID=? AND SERVICE_ID=?"
+            + " AND DATA_FEED_ID=? AND DESCRIPTION=?";
+
     /*
      * Static initialisation
      */
@@ -65,6 +80,49 @@ public class TaskPluginFactoryImpl extends AbstractFactory implements TaskPlugin
         PREDICATE_QUERY_TASK_PLUGINS = format("select * from %s where \\%s", FabricRegistry.TASK_PLUGINS);
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof TaskPlugin) {
+            TaskPlugin plugin = (TaskPlugin) obj;
+            insert = new ParameterizedSql(INSERT_TASK_PLUGIN, stringValue(plugin.getNodeId()),
+                    stringValue(plugin.getTaskId()), stringValue(plugin.getName()), plugin.getFamilyName(),
+                    stringValue(plugin.getPluginType()), plugin.getOrdinal(), stringValue(plugin.getPlatformId()),
+                    stringValue(plugin.getSensorId()), stringValue(plugin.getFeedId()), plugin.getDescription(),
+                    plugin.getArguments());
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof TaskPlugin) {
+            TaskPlugin plugin = (TaskPlugin) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            TaskPlugin where = (plugin.getShadow() != null) ? (TaskPlugin) plugin.getShadow() : plugin;
+            update = new ParameterizedSql(UPDATE_TASK_PLUGIN, plugin.getDescription(), plugin.getArguments(),
+                    stringValue(plugin.getPlatformId()), stringValue(plugin.getSensorId()),
+                    stringValue(plugin.getFeedId()), stringValue(where.getNodeId()), stringValue(where.getTaskId()),
+                    stringValue(where.getName()), where.getOrdinal(), stringValue(where.getPluginType()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof TaskPlugin) {
+            TaskPlugin plugin = (TaskPlugin) obj;
+            delete = new ParameterizedSql(DELETE_TASK_PLUGIN, stringValue(plugin.getNodeId()),
+                    stringValue(plugin.getTaskId()), stringValue(plugin.getName()), stringValue(plugin.getFamilyName()),
+                    stringValue(plugin.getPluginType()), plugin.getOrdinal(), stringValue(plugin.getPlatformId()),
+                    stringValue(plugin.getSensorId()), stringValue(plugin.getFeedId()),
+                    stringValue(plugin.getDescription()));
+        }
+        return delete;
+    }
+
     @Override
     public String getUpdateSql(RegistryObject obj) {
         StringBuilder buf = new StringBuilder();
@@ -18,6 +18,7 @@ import fabric.registry.exception.MalformedPredicateException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 import fabric.registry.persistence.PersistenceManager;
 
 /**
@@ -52,7 +53,20 @@ public class TaskServiceFactoryImpl extends AbstractFactory implements TaskServi
     private String SELECT_BY_ID = null;
 
     /** Delete records for a particular task */
-    private static String DELETE_FEEDS_BY_TASK = "delete from " + FabricRegistry.TASK_SYSTEMS + " where TASK_ID='%s'";
+    private static String DELETE_FEEDS_BY_TASK = "delete from " + FabricRegistry.TASK_SYSTEMS + " where TASK_ID=?";
+
+    /** Insert a record */
+    private static final String INSERT_TASK_FEED = "insert into " + FabricRegistry.TASK_SYSTEMS
+            + " values(?,?,?,?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_TASK_FEED = "update " + FabricRegistry.TASK_SYSTEMS + " set TASK_ID=?,"
+            + "PLATFORM_ID=?,SERVICE_ID=?,DATA_FEED_ID=?,DESCRIPTION=?,CONFIGURATION=?,CONFIGURATION_URI=?"
+            + " WHERE TASK_ID=? AND DATA_FEED_ID=? AND SERVICE_ID=? AND PLATFORM_ID=?";
+
+    /** Delete a record */
+    private static final String DELETE_TASK_FEED = "delete from " + FabricRegistry.TASK_SYSTEMS + " where TASK_ID=?"
+            + " AND DATA_FEED_ID=? AND SERVICE_ID=? AND PLATFORM_ID=?";
 
     /*
      * Static initialisation
@@ -128,6 +142,47 @@ public class TaskServiceFactoryImpl extends AbstractFactory implements TaskServi
         return new TaskServiceImpl(taskId, platformId, serviceId, feedId, description, configuration, configurationUri);
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof TaskService) {
+            TaskService taskService = (TaskService) obj;
+            insert = new ParameterizedSql(INSERT_TASK_FEED, taskService.getTaskId(), taskService.getPlatformId(),
+                    taskService.getSystemId(), taskService.getServiceId(), taskService.getDescription(),
+                    taskService.getConfiguration(), taskService.getConfigurationURI());
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof TaskService) {
+            TaskService taskService = (TaskService) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            TaskService where = (taskService.getShadow() != null) ? (TaskService) taskService.getShadow() : taskService;
+            update = new ParameterizedSql(UPDATE_TASK_FEED, stringValue(taskService.getTaskId()),
+                    stringValue(taskService.getPlatformId()), stringValue(taskService.getSystemId()),
+                    stringValue(taskService.getServiceId()), taskService.getDescription(),
+                    taskService.getConfiguration(), taskService.getConfigurationURI(), stringValue(where.getTaskId()),
+                    stringValue(where.getServiceId()), stringValue(where.getSystemId()),
+                    stringValue(where.getPlatformId()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof TaskService) {
+            TaskService taskService = (TaskService) obj;
+            delete = new ParameterizedSql(DELETE_TASK_FEED, stringValue(taskService.getTaskId()),
+                    stringValue(taskService.getServiceId()), stringValue(taskService.getSystemId()),
+                    stringValue(taskService.getPlatformId()));
+        }
+        return delete;
+    }
+
     /**
      * @see fabric.registry.impl.AbstractFactory#getDeleteSql(fabric.registry.RegistryObject)
      */
@@ -280,9 +335,10 @@ public class TaskServiceFactoryImpl extends AbstractFactory implements TaskServi
     @Override
     public boolean deleteTaskServicesForTask(String taskId) {
 
-        String deleteSql = format(DELETE_FEEDS_BY_TASK, taskId);
+        ParameterizedSql deleteSql = new ParameterizedSql(DELETE_FEEDS_BY_TASK, stringValue(taskId));
         try {
-            boolean success = PersistenceManager.getPersistence().updateRegistryObject(deleteSql);
+            boolean success = PersistenceManager.getPersistence().updateRegistryObject(deleteSql, false);
+            RegistryCache.invalidateStatement(deleteSql.sql());
             return success;
         } catch (PersistenceException e) {
             e.printStackTrace();
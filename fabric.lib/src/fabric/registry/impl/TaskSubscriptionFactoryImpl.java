@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2009
+ * (C) Copyright IBM Corp. 2009, 2014
  *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -17,6 +17,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 import fabric.registry.persistence.PersistenceManager;
 
 /**
@@ -25,7 +26,7 @@ import fabric.registry.persistence.PersistenceManager;
 public class TaskSubscriptionFactoryImpl extends AbstractFactory implements TaskSubscriptionFactory {
 
     /** Copyright notice. */
-    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009";
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009, 2014";
 
     /*
      * Class constants
@@ -49,7 +50,22 @@ public class TaskSubscriptionFactoryImpl extends AbstractFactory implements Task
 
     /** Delete records for a particular task ID */
     private static String DELETE_SUBSCRIPTIONS_BY_TASK = "delete from " + FabricRegistry.TASK_SUBSCRIPTIONS
-            + " where TASK_ID='%s'";
+            + " where TASK_ID=?";
+
+    /** Insert a record */
+    private static final String INSERT_SUBSCRIPTION = "insert into " + FabricRegistry.TASK_SUBSCRIPTIONS
+            + " values(?,?,?,?,?,?)";
+
+    /** Update a record */
+    private static final String UPDATE_SUBSCRIPTION = "update " + FabricRegistry.TASK_SUBSCRIPTIONS
+            + " set TASK_ID=?,ACTOR_ID=?,PLATFORM_ID=?,SERVICE_ID=?,DATA_FEED_ID=?,ACTOR_PLATFORM_ID=?"
+            + " WHERE TASK_ID=? AND ACTOR_ID=? AND PLATFORM_ID=? AND SERVICE_ID=? AND DATA_FEED_ID=?"
+            + " AND ACTOR_PLATFORM_ID=?";
+
+    /** Delete a record */
+    private static final String DELETE_SUBSCRIPTION = "delete from " + FabricRegistry.TASK_SUBSCRIPTIONS
+            + " where TASK_ID=? AND ACTOR_ID=? AND PLATFORM_ID=? AND SERVICE_ID=? AND DATA_FEED_ID=?"
+            + " AND ACTOR_PLATFORM_ID=?";
 
     /*
      * Static initialisation
@@ -64,8 +80,7 @@ public class TaskSubscriptionFactoryImpl extends AbstractFactory implements Task
 
         PREDICATE_QUERY = format("select * from %s where \\%s", FabricRegistry.TASK_SUBSCRIPTIONS);
         SELECT_ALL_TASK_ACTORS = format("select * from %s", FabricRegistry.TASK_SUBSCRIPTIONS);
-        SELECT_SUBSCRIPTIONS_BY_TASK = format("select * from %s where TASK_ID='\\%s'",
-                FabricRegistry.TASK_SUBSCRIPTIONS);
+        SELECT_SUBSCRIPTIONS_BY_TASK = format("select * from %s where TASK_ID=?", FabricRegistry.TASK_SUBSCRIPTIONS);
     }
 
     public static TaskSubscriptionFactoryImpl getInstance(QueryScope queryScope) {
@@ -132,8 +147,7 @@ public class TaskSubscriptionFactoryImpl extends AbstractFactory implements Task
     public TaskSubscription[] getTaskSubscriptionsByTask(String taskId) {
         TaskSubscription[] taskClients = null;
         try {
-            String query = format(SELECT_SUBSCRIPTIONS_BY_TASK, taskId);
-            taskClients = runQuery(query);
+            taskClients = runQuery(new ParameterizedSql(SELECT_SUBSCRIPTIONS_BY_TASK, taskId));
         } catch (PersistenceException e) {
             e.printStackTrace();
         }
@@ -141,9 +155,10 @@ public class TaskSubscriptionFactoryImpl extends AbstractFactory implements Task
     }
 
     public boolean deleteClientsForTask(String taskId) {
-        String deleteSql = format(DELETE_SUBSCRIPTIONS_BY_TASK, taskId);
+        ParameterizedSql deleteSql = new ParameterizedSql(DELETE_SUBSCRIPTIONS_BY_TASK, taskId);
         try {
-            boolean success = PersistenceManager.getPersistence().updateRegistryObject(deleteSql);
+            boolean success = PersistenceManager.getPersistence().updateRegistryObject(deleteSql, false);
+            RegistryCache.invalidateStatement(deleteSql.sql());
             return success;
         } catch (PersistenceException e) {
             e.printStackTrace();
@@ -152,8 +167,15 @@ public class TaskSubscriptionFactoryImpl extends AbstractFactory implements Task
     }
 
     private TaskSubscription[] runQuery(String sql) throws PersistenceException {
+        return toTaskSubscriptions(queryRegistryObjects(sql, this));
+    }
+
+    private TaskSubscription[] runQuery(ParameterizedSql query) throws PersistenceException {
+        return toTaskSubscriptions(queryRegistryObjects(query, this));
+    }
+
+    private TaskSubscription[] toTaskSubscriptions(RegistryObject[] objects) {
         TaskSubscription[] taskClients = null;
-        RegistryObject[] objects = queryRegistryObjects(sql, this);
         if (objects != null && objects.length > 0) {
             // necessary
             taskClients = new TaskSubscription[objects.length];
@@ -166,6 +188,56 @@ public class TaskSubscriptionFactoryImpl extends AbstractFactory implements Task
         return taskClients;
     }
 
+    /**
+     * Answers the key column values of a subscription, in table order.
+     *
+     * @param taskClient
+     *            the subscription.
+     *
+     * @return the values.
+     */
+    private Object[] keyValues(TaskSubscription taskClient) {
+        return new Object[] {stringValue(taskClient.getTaskId()), stringValue(taskClient.getActorId()),
+                stringValue(taskClient.getPlatformId()), stringValue(taskClient.getSystemId()),
+                stringValue(taskClient.getFeedId()), stringValue(taskClient.getActorPlatformId())};
+    }
+
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof TaskSubscription) {
+            insert = new ParameterizedSql(INSERT_SUBSCRIPTION, keyValues((TaskSubscription) obj));
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof TaskSubscription) {
+            TaskSubscription taskClient = (TaskSubscription) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            TaskSubscription where = (taskClient.getShadow() != null) ? (TaskSubscription) taskClient.getShadow()
+                    : taskClient;
+            Object[] set = keyValues(taskClient);
+            Object[] key = keyValues(where);
+            Object[] parameters = new Object[set.length + key.length];
+            System.arraycopy(set, 0, parameters, 0, set.length);
+            System.arraycopy(key, 0, parameters, set.length, key.length);
+            update = new ParameterizedSql(UPDATE_SUBSCRIPTION, parameters);
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof TaskSubscription) {
+            delete = new ParameterizedSql(DELETE_SUBSCRIPTION, keyValues((TaskSubscription) obj));
+        }
+        return delete;
+    }
+
     @Override
     public String getDeleteSql(RegistryObject obj) {
         StringBuilder buf = new StringBuilder();
@@ -263,6 +335,22 @@ public class TaskSubscriptionFactoryImpl extends AbstractFactory implements Task
         }
     }
 
+    /**
+     * @see fabric.registry.TaskSubscriptionFactory#save(fabric.registry.TaskSubscription[])
+     */
+    @Override
+    public boolean save(TaskSubscription[] taskSubscriptions) {
+        return super.save(taskSubscriptions, this);
+    }
+
+    /**
+     * @see fabric.registry.TaskSubscriptionFactory#delete(fabric.registry.TaskSubscription[])
+     */
+    @Override
+    public boolean delete(TaskSubscription[] taskSubscriptions) {
+        return super.delete(taskSubscriptions, this);
+    }
+
     /**
      * @see fabric.registry.TaskSubscriptionFactory#getAllTaskSubscriptions()
      */
@@ -20,6 +20,7 @@ import fabric.registry.exception.IncompleteObjectException;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.exception.RegistryQueryException;
 import fabric.registry.persistence.IPersistenceResultRow;
+import fabric.registry.persistence.ParameterizedSql;
 
 /**
  * Implementation of the factory for <code>ActorType</code>s, <code>FeedType</code>s, <code>NodeType</code>s,
@@ -66,6 +67,16 @@ public class TypeFactoryImpl extends AbstractFactory implements TypeFactory {
     private String PREDICATE_QUERY_PLATFORM_TYPES = null;
     private String PREDICATE_QUERY_SYSTEM_TYPES = null;
 
+    /** Insert a record into the table for a type classifier */
+    private static final String INSERT_TYPE = "insert into %s values(?,?,?,?)";
+
+    /** Update a record in the table for a type classifier */
+    private static final String UPDATE_TYPE = "update %s set TYPE_ID=?,DESCRIPTION=?,ATTRIBUTES=?,ATTRIBUTES_URI=?"
+            + " WHERE TYPE_ID=?";
+
+    /** Delete a record from the table for a type classifier */
+    private static final String DELETE_TYPE = "delete from %s where TYPE_ID=?";
+
     /*
      * static initialisation
      */
@@ -183,6 +194,43 @@ public class TypeFactoryImpl extends AbstractFactory implements TypeFactory {
         return classifier;
     }
 
+    @Override
+    public ParameterizedSql getInsertStatement(RegistryObject obj) {
+        ParameterizedSql insert = null;
+        if (obj instanceof Type) {
+            Type type = (Type) obj;
+            insert = new ParameterizedSql(Fabric.format(INSERT_TYPE, getTableNameForUpdate(type.getClassifier())),
+                    stringValue(type.getId()), stringValue(type.getDescription()), stringValue(type.getAttributes()),
+                    stringValue(type.getAttributesUri()));
+        }
+        return insert;
+    }
+
+    @Override
+    public ParameterizedSql getUpdateStatement(RegistryObject obj) {
+        ParameterizedSql update = null;
+        if (obj instanceof Type) {
+            Type type = (Type) obj;
+            /* if it exists, use the shadow values for the WHERE clause */
+            Type where = (type.getShadow() != null) ? (Type) type.getShadow() : type;
+            update = new ParameterizedSql(Fabric.format(UPDATE_TYPE, getTableNameForUpdate(type.getClassifier())),
+                    stringValue(type.getId()), stringValue(type.getDescription()), stringValue(type.getAttributes()),
+                    stringValue(type.getAttributesUri()), stringValue(where.getId()));
+        }
+        return update;
+    }
+
+    @Override
+    public ParameterizedSql getDeleteStatement(RegistryObject obj) {
+        ParameterizedSql delete = null;
+        if (obj instanceof Type) {
+            Type type = (Type) obj;
+            delete = new ParameterizedSql(Fabric.format(DELETE_TYPE, getTableNameForUpdate(type.getClassifier())),
+                    stringValue(type.getId()));
+        }
+        return delete;
+    }
+
     @Override
     public String getDeleteSql(RegistryObject obj) {
 
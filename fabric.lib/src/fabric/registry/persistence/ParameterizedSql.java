@@ -0,0 +1,182 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.registry.persistence;
+
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+/**
+ * An SQL statement with <code>?</code> placeholders, and the values to be bound to them.
+ * <p>
+ * Using a constant statement text with bind parameters (rather than building a new literal statement for every
+ * request) allows the database to reuse the compiled query plan, and avoids quoting problems in the values.
+ * </p>
+ */
+public class ParameterizedSql {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    /** Shared empty parameter list */
+    private static final Object[] NO_PARAMETERS = new Object[0];
+
+    /*
+     * Class fields
+     */
+
+    /** The SQL statement */
+    private final String sql;
+
+    /** The parameter values, in placeholder order */
+    private final Object[] parameters;
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param sql
+     *            the SQL statement, using <code>?</code> as the placeholder for each parameter.
+     *
+     * @param parameters
+     *            the parameter values (<code>null</code> values are bound as SQL <code>NULL</code>).
+     */
+    public ParameterizedSql(String sql, Object... parameters) {
+
+        this.sql = sql;
+        this.parameters = (parameters != null) ? parameters : NO_PARAMETERS;
+    }
+
+    /**
+     * Answers the SQL statement.
+     *
+     * @return the statement text.
+     */
+    public String sql() {
+
+        return sql;
+    }
+
+    /**
+     * Answers the parameter values.
+     *
+     * @return the values.
+     */
+    public Object[] parameters() {
+
+        return parameters;
+    }
+
+    /**
+     * Binds the parameter values to a statement prepared from this instance's SQL.
+     *
+     * @param statement
+     *            the prepared statement.
+     *
+     * @throws SQLException
+     */
+    public void bind(PreparedStatement statement) throws SQLException {
+
+        ParameterMetaData metaData = null;
+
+        for (int p = 0; p < parameters.length; p++) {
+
+            if (parameters[p] != null) {
+
+                statement.setObject(p + 1, parameters[p]);
+
+            } else {
+
+                /* The type of a NULL must match the column, so ask the driver what it is expecting */
+                int sqlType = Types.VARCHAR;
+
+                try {
+                    if (metaData == null) {
+                        metaData = statement.getParameterMetaData();
+                    }
+                    sqlType = metaData.getParameterType(p + 1);
+                } catch (SQLException e) {
+                    /* Not supported by the driver, so fall back to VARCHAR */
+                }
+
+                statement.setNull(p + 1, sqlType);
+            }
+        }
+    }
+
+    /**
+     * Answers the equivalent literal SQL statement, with each placeholder replaced by its quoted value.
+     * <p>
+     * This is used where the statement cannot be executed locally as a prepared statement (for example when it is
+     * forwarded to other nodes in a distributed Registry).
+     * </p>
+     *
+     * @return the literal statement.
+     */
+    public String toLiteralSql() {
+
+        StringBuilder literal = new StringBuilder(sql.length() + parameters.length * 16);
+        boolean inQuotes = false;
+        int p = 0;
+
+        for (int c = 0; c < sql.length(); c++) {
+
+            char next = sql.charAt(c);
+
+            if (next == '\'') {
+                inQuotes = !inQuotes;
+            }
+
+            if (next == '?' && !inQuotes && p < parameters.length) {
+                appendLiteral(literal, parameters[p++]);
+            } else {
+                literal.append(next);
+            }
+        }
+
+        return literal.toString();
+    }
+
+    /**
+     * Appends the SQL literal for a value to a statement.
+     *
+     * @param literal
+     *            the statement being built.
+     *
+     * @param value
+     *            the value.
+     */
+    private static void appendLiteral(StringBuilder literal, Object value) {
+
+        if (value == null) {
+            literal.append("NULL");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            literal.append(value);
+        } else {
+            literal.append('\'').append(value.toString().replace("'", "''")).append('\'');
+        }
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        return sql + " " + Arrays.toString(parameters);
+    }
+}
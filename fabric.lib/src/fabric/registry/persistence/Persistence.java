@@ -76,6 +76,23 @@ public interface Persistence {
     public RegistryObject[] queryRegistryObjects(String queryString, AbstractFactory factory,
             QueryScope queryScope) throws PersistenceException;
 
+    /**
+     * Run a query for Registry objects using the specified parameterized SQL SELECT statement.
+     *
+     * @param query
+     *            - the SELECT statement to execute, and its parameter values.
+     * @param factory
+     *            - the object factory used to convert each row into the appropriate registry object.
+     * @param queryScope
+     *            - indicates whether the query should only reflect local registry only.
+     * @return an array of objects or null if no results were returned from the database.
+     *
+     * @throws PersistenceException
+     *             if an error occurs running the specified SELECT statement.
+     */
+    public RegistryObject[] queryRegistryObjects(ParameterizedSql query, AbstractFactory factory,
+            QueryScope queryScope) throws PersistenceException;
+
     /**
      * Run a query that is only expected to return a simple string value. This method can be used for cases where only a
      * single value is required (e.g. to check a particularly field of a certain object).
@@ -111,4 +128,32 @@ public interface Persistence {
     public boolean updateRegistryObject(String updateString) throws PersistenceException;
 
     public boolean updateRegistryObjects(String[] updateStrings) throws PersistenceException;
+
+    /**
+     * Run a parameterized SQL INSERT, UPDATE or DELETE statement against the local Registry.
+     *
+     * @param update
+     *            - the statement to execute, and its parameter values.
+     * @param ignoreDuplicateWarning
+     *            - <code>true</code> if a duplicate key error is to be ignored, <code>false</code> if it is to be
+     *            reported as an exception.
+     * @return <code>true</code> if the statement was executed, <code>false</code> if there is no Registry connection.
+     *
+     * @throws PersistenceException
+     */
+    public boolean updateRegistryObject(ParameterizedSql update, boolean ignoreDuplicateWarning)
+            throws PersistenceException;
+
+    /**
+     * Run a list of parameterized SQL INSERT, UPDATE or DELETE statements against the local Registry as a batch.
+     * Consecutive statements with the same SQL share a single prepared statement.
+     *
+     * @param updates
+     *            - the statements to execute, and their parameter values.
+     * @return <code>true</code> if the statements were executed, <code>false</code> if there is no Registry
+     *         connection.
+     *
+     * @throws PersistenceException
+     */
+    public boolean updateRegistryObjects(ParameterizedSql[] updates) throws PersistenceException;
 }
\ No newline at end of file
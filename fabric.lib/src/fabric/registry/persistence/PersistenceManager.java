@@ -13,6 +13,7 @@ import java.util.logging.Logger;
 import fabric.core.properties.ConfigProperties;
 import fabric.core.properties.Properties;
 import fabric.registry.exception.PersistenceException;
+import fabric.registry.impl.RegistryCache;
 import fabric.session.RegistryDescriptor;
 
 /**
@@ -31,6 +32,7 @@ public class PersistenceManager {
     private final static Logger logger = Logger.getLogger(PACKAGE_NAME);
 
     private static final String SINGLETON_JDBC_INSTANCE_CLASS = "fabric.registry.persistence.impl.SingletonJDBCPersistence";
+    private static final String POOLED_JDBC_INSTANCE_CLASS = "fabric.registry.persistence.impl.PooledJDBCPersistence";
     private static final String GAIAN_INSTANCE_CLASS = "fabric.registry.persistence.impl.GaianPersistence";
     private static final String DISTRIBUTED_JDBC_INSTANCE_CLASS = "fabric.registry.persistence.distributed.DistributedJDBCPersistence";
     private static Class concreteClass = null;
@@ -63,7 +65,11 @@ public class PersistenceManager {
                                 concreteClass = Class.forName(GAIAN_INSTANCE_CLASS);
                                 break;
                             case RegistryDescriptor.TYPE_SINGLETON:
-                                concreteClass = Class.forName(SINGLETON_JDBC_INSTANCE_CLASS);
+                                /* Use a connection pool if one has been configured */
+                                int poolSize = Integer.parseInt(config.getProperty(ConfigProperties.REGISTRY_POOL_SIZE,
+                                        ConfigProperties.REGISTRY_POOL_SIZE_DEFAULT));
+                                concreteClass = Class.forName((poolSize > 0) ? POOLED_JDBC_INSTANCE_CLASS
+                                        : SINGLETON_JDBC_INSTANCE_CLASS);
                                 break;
                             default:
                                 logger.log(Level.SEVERE, "FAILED TO establish a REGISTRY of TYPE "
@@ -85,6 +91,7 @@ public class PersistenceManager {
                 }
                 instance.init(dbUrl, config);
                 instance.connect();
+                RegistryCache.configure(config);
                 connectedToRegistry = true;
             }
         }
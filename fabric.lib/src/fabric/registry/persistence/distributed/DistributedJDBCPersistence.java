@@ -8,9 +8,10 @@
 package fabric.registry.persistence.distributed;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,6 +22,7 @@ import fabric.bus.messages.IFabricMessage;
 import fabric.bus.messages.IServiceMessage;
 import fabric.bus.messages.impl.MessagePayload;
 import fabric.bus.messages.impl.ServiceMessage;
+import fabric.bus.routing.impl.StaticRouting;
 import fabric.core.io.ICallback;
 import fabric.core.io.InputTopic;
 import fabric.core.io.Message;
@@ -28,11 +30,13 @@ import fabric.core.io.OutputTopic;
 import fabric.core.logging.FLog;
 import fabric.core.properties.ConfigProperties;
 import fabric.core.properties.Properties;
+import fabric.core.util.TimerWheel;
 import fabric.registry.FabricRegistry;
 import fabric.registry.QueryScope;
 import fabric.registry.RegistryObject;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.impl.AbstractFactory;
+import fabric.registry.persistence.ParameterizedSql;
 import fabric.registry.persistence.Persistence;
 import fabric.registry.persistence.impl.SingletonJDBCPersistence;
 import fabric.services.floodmessage.FloodRouting;
@@ -57,6 +61,11 @@ public class DistributedJDBCPersistence implements Persistence, ICallback {
     public static final String QUERY_ACTION = "Query";
     public static final String PARTIAL_RESULT_ACTION = "PartialResult";
     public static final String FINAL_RESULT_ACTION = "FinalResult";
+    public static final String STREAMED_RESULT_ACTION = "StreamedResult";
+    public static final String CANCEL_ACTION = "Cancel";
+
+    /** Query message property indicating that partial results should be streamed to the client as they arrive */
+    public static final String STREAM_RESULTS_PROPERTY = "registry.distributed.stream";
 
     private OutputTopic commandChannelTopic;
     private InputTopic resultChannelTopic;
@@ -70,8 +79,26 @@ public class DistributedJDBCPersistence implements Persistence, ICallback {
 
     private SingletonJDBCPersistence localJDBCPersistence;
 
-    private ConcurrentHashMap<String, DistributedQueryResult> resultByCorrelationId = new ConcurrentHashMap<String, DistributedQueryResult>();
-    private Map<String, DistributedQueryWaitThread> waitThreadsByCorrelationId = new TreeMap<String, DistributedQueryWaitThread>();
+    /**
+     * The results of the queries awaiting their final result, keyed by correlation ID; each is completed when its
+     * final result arrives
+     */
+    private ConcurrentHashMap<String, DistributedQueryResult> pendingResultsByCorrelationId = new ConcurrentHashMap<String, DistributedQueryResult>();
+
+    /** The streams of the streamed queries that are still running, keyed by correlation ID */
+    private ConcurrentHashMap<String, DistributedQueryStream> streamsByCorrelationId = new ConcurrentHashMap<String, DistributedQueryStream>();
+
+    /** Timer ending the streams whose final result has not arrived by the query timeout */
+    private TimerWheel streamTimer = null;
+
+    /**
+     * The results of the queries in flight, keyed by SQL; identical queries issued while one is in flight share its
+     * result rather than flooding the Fabric again
+     */
+    private ConcurrentHashMap<String, DistributedQueryResult> inFlightResultsBySql = new ConcurrentHashMap<String, DistributedQueryResult>();
+
+    /** Short-lived cache of query results */
+    private DistributedQueryCache queryCache = new DistributedQueryCache(0, null);
 
     private boolean fabricConnected = false;
 
@@ -117,9 +144,27 @@ public class DistributedJDBCPersistence implements Persistence, ICallback {
         queryTimeOutDecrement = new Integer(config.getProperty(ConfigProperties.REGISTRY_DISTRIBUTED_TIMEOUT_DECREMENT,
                 DEFAULT_RESPONSE_TIMEOUT_DECREMENT));
         logger.finest("Query Response timeout set to = " + queryTimeOut);
+        queryCache = new DistributedQueryCache(Long.parseLong(config.getProperty(
+                ConfigProperties.REGISTRY_DISTRIBUTED_CACHE_TTL, ConfigProperties.REGISTRY_DISTRIBUTED_CACHE_TTL_DEFAULT)),
+                config.getProperty(ConfigProperties.REGISTRY_DISTRIBUTED_CACHE_EXCLUDE));
+        queryCache.register(nodeName);
+        logger.finest("Query result cache time to live set to = " + queryCache.getTimeToLive());
+        if (streamTimer == null) {
+            streamTimer = new TimerWheel("Distributed-Stream-Timer");
+        }
 
     }
 
+    /**
+     * Answers the cache of query results.
+     *
+     * @return the cache.
+     */
+    public DistributedQueryCache getQueryCache() {
+
+        return queryCache;
+    }
+
     @Override
     public void connect() throws PersistenceException {
 
@@ -131,6 +176,11 @@ public class DistributedJDBCPersistence implements Persistence, ICallback {
     public void disconnect() throws PersistenceException {
 
         localJDBCPersistence.disconnect();
+        queryCache.unregister();
+        if (streamTimer != null) {
+            streamTimer.stop();
+            streamTimer = null;
+        }
         if (commandChannel != null) {
             try {
                 commandChannel.close();
@@ -181,8 +231,7 @@ public class DistributedJDBCPersistence implements Persistence, ICallback {
         if (queryScope == QueryScope.LOCAL) {
             results = localJDBCPersistence.queryRegistryObjects(queryString, factory, queryScope);
         } else {
-            ServiceMessage serviceMessage = constructMessage(queryString);
-            DistributedQueryResult queryResult = distributeQuery(serviceMessage);
+            DistributedQueryResult queryResult = distributedResult(queryString, factory);
 
             if (queryResult != null) {
                 results = queryResult.toRegistryObjects(factory);
@@ -191,6 +240,115 @@ public class DistributedJDBCPersistence implements Persistence, ICallback {
         return results;
     }
 
+    @Override
+    public RegistryObject[] queryRegistryObjects(ParameterizedSql query, AbstractFactory factory,
+            QueryScope queryScope) throws PersistenceException {
+
+        RegistryObject[] results = null;
+        if (queryScope == QueryScope.LOCAL) {
+            results = localJDBCPersistence.queryRegistryObjects(query, factory, queryScope);
+        } else {
+            /* Remote nodes are sent the literal form of the query */
+            results = queryRegistryObjects(query.toLiteralSql(), factory, queryScope);
+        }
+        return results;
+    }
+
+    /**
+     * Runs a query against the distributed Registry, streaming the Registry objects answered by each node to the
+     * caller as they arrive, rather than waiting for every node to answer.
+     *
+     * @param queryString
+     *            the SQL query.
+     *
+     * @param factory
+     *            the factory used to create Registry objects from the results.
+     *
+     * @param limit
+     *            the maximum number of objects to answer (<code>1</code> to answer the first match only), or
+     *            <code>DistributedQueryStream.NO_LIMIT</code>.
+     *
+     * @return the stream of objects; a stream that is not read to the end should be closed.
+     *
+     * @throws PersistenceException
+     */
+    public DistributedQueryStream streamRegistryObjects(String queryString, AbstractFactory factory, int limit)
+        throws PersistenceException {
+
+        ServiceMessage serviceMessage = constructMessage(queryString);
+        serviceMessage.setProperty(STREAM_RESULTS_PROPERTY, Boolean.toString(true));
+        String correlationId = serviceMessage.getCorrelationID();
+        final DistributedQueryStream stream = new DistributedQueryStream(this, correlationId, factory, limit,
+                queryTimeOut);
+        streamsByCorrelationId.put(correlationId, stream);
+        /* End the stream at its timeout even if it is never read or closed, so that it is not held indefinitely */
+        TimerWheel timer = streamTimer;
+        if (timer != null) {
+            stream.setExpiry(timer.schedule(new Runnable() {
+
+                @Override
+                public void run() {
+
+                    stream.timedOut();
+                }
+            }, queryTimeOut, TimeUnit.MILLISECONDS));
+        }
+        try {
+            /* Send the command to the local Fabric Manager */
+            logger.finer("Sending streamed query: " + serviceMessage.toXML());
+            commandChannel.write(serviceMessage.toWireBytes());
+        } catch (Exception e) {
+            streamsByCorrelationId.remove(correlationId);
+            throw new PersistenceException("Failed to send distributed query", e);
+        }
+        return stream;
+    }
+
+    /**
+     * Runs a query against the distributed Registry, streaming the results as they arrive.
+     *
+     * @see #streamRegistryObjects(String, AbstractFactory, int)
+     */
+    public DistributedQueryStream streamRegistryObjects(ParameterizedSql query, AbstractFactory factory, int limit)
+        throws PersistenceException {
+
+        /* Remote nodes are sent the literal form of the query */
+        return streamRegistryObjects(query.toLiteralSql(), factory, limit);
+    }
+
+    /**
+     * Called when a stream ends: if the final result of its query has not arrived then the local Fabric Manager is
+     * told to stop gathering results.
+     *
+     * @param correlationId
+     *            the correlation ID of the query.
+     */
+    void endStream(String correlationId) {
+
+        if (streamsByCorrelationId.remove(correlationId) != null) {
+
+            logger.finer("Cancelling streamed query with correlation ID " + correlationId);
+            ServiceMessage serviceMessage = new ServiceMessage();
+            serviceMessage.setServiceName(SERVICE_NAME);
+            serviceMessage.setServiceFamilyName(PLUGIN_FAMILY);
+            serviceMessage.setRouting(new StaticRouting(new String[] {nodeName}));
+            serviceMessage.setAction(CANCEL_ACTION);
+            serviceMessage.setCorrelationID(correlationId);
+            serviceMessage.setNotification(false);
+            MessagePayload mp = new MessagePayload();
+            mp.setPayloadText("{}");
+            serviceMessage.setPayload(mp);
+
+            try {
+                commandChannel.write(serviceMessage.toWireBytes());
+            } catch (Exception e) {
+                logger.log(Level.FINE, "Failed to cancel query with correlation ID [{0}]: {1}", new Object[] {
+                        correlationId, e.getMessage()});
+                logger.log(Level.FINEST, "Full exception: ", e);
+            }
+        }
+    }
+
     @Override
     public String queryString(String sqlString, QueryScope queryScope) throws PersistenceException {
 
@@ -198,8 +356,7 @@ public class DistributedJDBCPersistence implements Persistence, ICallback {
         if (queryScope == QueryScope.LOCAL) {
             result = localJDBCPersistence.queryString(sqlString, queryScope);
         } else {
-            ServiceMessage serviceMessage = constructMessage(sqlString);
-            DistributedQueryResult queryResult = distributeQuery(serviceMessage);
+            DistributedQueryResult queryResult = distributedResult(sqlString, null);
             result = queryResult.toStringResult();
         }
         return result;
@@ -212,8 +369,7 @@ public class DistributedJDBCPersistence implements Persistence, ICallback {
         if (queryScope == QueryScope.LOCAL) {
             result = localJDBCPersistence.query(queryString, queryScope);
         } else {
-            ServiceMessage serviceMessage = constructMessage(queryString);
-            DistributedQueryResult queryResult = distributeQuery(serviceMessage);
+            DistributedQueryResult queryResult = distributedResult(queryString, null);
             result = queryResult.toObjectArray();
         }
         return result;
@@ -225,6 +381,8 @@ public class DistributedJDBCPersistence implements Persistence, ICallback {
 
         // Updates are local Only
         boolean result = localJDBCPersistence.updateRegistryObject(updateString, ignoreDuplicateWarning);
+        // Local changes invalidate any cached results
+        queryCache.clear();
         return result;
     }
 
@@ -233,6 +391,19 @@ public class DistributedJDBCPersistence implements Persistence, ICallback {
 
         // Updates are local Only
         boolean result = localJDBCPersistence.updateRegistryObject(updateString);
+        // Local changes invalidate any cached results
+        queryCache.clear();
+        return result;
+    }
+
+    @Override
+    public boolean updateRegistryObject(ParameterizedSql update, boolean ignoreDuplicateWarning)
+        throws PersistenceException {
+
+        // Updates are local Only
+        boolean result = localJDBCPersistence.updateRegistryObject(update, ignoreDuplicateWarning);
+        // Local changes invalidate any cached results
+        queryCache.clear();
         return result;
     }
 
@@ -241,6 +412,18 @@ public class DistributedJDBCPersistence implements Persistence, ICallback {
 
         // Updates are local Only
         boolean result = localJDBCPersistence.updateRegistryObjects(updateStrings);
+        // Local changes invalidate any cached results
+        queryCache.clear();
+        return result;
+    }
+
+    @Override
+    public boolean updateRegistryObjects(ParameterizedSql[] updates) throws PersistenceException {
+
+        // Updates are local Only
+        boolean result = localJDBCPersistence.updateRegistryObjects(updates);
+        // Local changes invalidate any cached results
+        queryCache.clear();
         return result;
     }
 
@@ -292,31 +475,127 @@ public class DistributedJDBCPersistence implements Persistence, ICallback {
         return serviceMessage;
     }
 
-    /*
+    /**
+     * Answers the result of a distributed query, from the cache if possible. If an identical query is already in
+     * flight then its result is shared; otherwise the query is flooded across the Fabric.
+     *
+     * @param queryString
+     *            the SQL query.
+     *
+     * @param factory
+     *            the factory through which the query is made, or <code>null</code> for queries answering raw values.
+     *
+     * @return the result, or <code>null</code> if none was received.
      *
+     * @throws PersistenceException
      */
-    private DistributedQueryResult distributeQuery(ServiceMessage serviceMessage) throws PersistenceException {
+    private DistributedQueryResult distributedResult(String queryString, AbstractFactory factory)
+        throws PersistenceException {
+
+        DistributedQueryResult result = queryCache.get(queryString, factory);
+
+        if (result != null) {
+
+            logger.finest("Result answered from cache");
+
+        } else {
+
+            DistributedQueryResult pendingResult = new DistributedQueryResult();
+            DistributedQueryResult inFlightResult = inFlightResultsBySql.putIfAbsent(queryString, pendingResult);
+
+            if (inFlightResult != null) {
+
+                /* Share the result of the identical query already in flight */
+                logger.finest("Coalescing with identical query in flight");
+                queryCache.recordCoalesced();
+                result = awaitResult(inFlightResult);
+
+            } else {
+
+                try {
+                    result = distributeQuery(constructMessage(queryString), pendingResult);
+                    if (result != null) {
+                        queryCache.put(queryString, factory, result);
+                    }
+                } catch (PersistenceException e) {
+                    pendingResult.completion().completeExceptionally(e);
+                    throw e;
+                } finally {
+                    inFlightResultsBySql.remove(queryString, pendingResult);
+                    /* Release any coalesced queries if no result was received */
+                    pendingResult.completion().complete(null);
+                }
+            }
+        }
+
+        if (result != null && result.exceptionOccurred()) {
+            throw new PersistenceException(result.getLocalExceptionMessage());
+        }
+
+        return result;
+    }
+
+    /**
+     * Waits for the result of a query in flight.
+     *
+     * @param inFlightResult
+     *            the pending result of the query.
+     *
+     * @return the result, or <code>null</code> if none was received.
+     *
+     * @throws PersistenceException
+     */
+    private DistributedQueryResult awaitResult(DistributedQueryResult inFlightResult) throws PersistenceException {
 
         DistributedQueryResult result = null;
+        try {
+            result = inFlightResult.completion().get(queryTimeOut, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.finer("No result retrieved for query");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof PersistenceException) {
+                throw (PersistenceException) e.getCause();
+            }
+            throw new PersistenceException("Failed to send distributed query", e.getCause());
+        } catch (InterruptedException e) {
+            throw new PersistenceException("Interrupted waiting for distributed query", e);
+        }
+        return result;
+    }
+
+    /**
+     * Floods a query across the Fabric and waits for its result.
+     *
+     * @param serviceMessage
+     *            the query message.
+     *
+     * @param pendingResult
+     *            the result to be completed when the final result of the query arrives.
+     *
+     * @return the result, or <code>null</code> if none was received.
+     *
+     * @throws PersistenceException
+     */
+    private DistributedQueryResult distributeQuery(ServiceMessage serviceMessage, DistributedQueryResult pendingResult)
+        throws PersistenceException {
+
+        DistributedQueryResult result = null;
+        String correlationId = serviceMessage.getCorrelationID();
+        pendingResultsByCorrelationId.put(correlationId, pendingResult);
         try {
             /* Send the command to the local Fabric Manager */
             logger.finer("Sending query: " + serviceMessage.toXML());
-            DistributedQueryWaitThread thread = new DistributedQueryWaitThread(queryTimeOut, serviceMessage
-                    .getCorrelationID());
-            waitThreadsByCorrelationId.put(serviceMessage.getCorrelationID(), thread);
-            thread.start();
             commandChannel.write(serviceMessage.toWireBytes());
-            thread.join();
-            if (resultByCorrelationId.containsKey(serviceMessage.getCorrelationID())) {
-                result = resultByCorrelationId.remove(serviceMessage.getCorrelationID());
-            } else {
-                logger.finer("No result retrieved for query");
-            }
+            /* Wait for the final result to be delivered to handleMessage() */
+            result = pendingResult.completion().get(queryTimeOut, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.fine("Timeout " + queryTimeOut + " milliseconds exceeded waiting for result with correlation ID "
+                    + correlationId);
+            logger.finer("No result retrieved for query");
         } catch (Exception e) {
             throw new PersistenceException("Failed to send distributed query", e);
-        }
-        if (result != null && result.exceptionOccurred()) {
-            throw new PersistenceException(result.getLocalExceptionMessage());
+        } finally {
+            pendingResultsByCorrelationId.remove(correlationId);
         }
         if (result != null) {
             logger.finest("Results:" + result.toString());
@@ -351,15 +630,36 @@ public class DistributedJDBCPersistence implements Persistence, ICallback {
 
                     case DistributedJDBCPersistence.FINAL_RESULT_ACTION:
 
-                        if (waitThreadsByCorrelationId.containsKey(correlationId)) {
+                        DistributedQueryResult result = pendingResultsByCorrelationId.remove(correlationId);
+
+                        if (result != null) {
 
                             logger.finest("This is a correlationId I am looking for");
-                            DistributedQueryResult result = new DistributedQueryResult();
                             String payloadFormat = "json";
                             result.append(serviceMessage.getPayload().getPayload(), payloadFormat);
                             logger.finest("Got the DistributedQueryResult");
-                            resultByCorrelationId.put(correlationId, result);
-                            waitThreadsByCorrelationId.remove(correlationId).interrupt();
+                            result.complete();
+                        }
+
+                        DistributedQueryStream completedStream = streamsByCorrelationId.remove(correlationId);
+
+                        if (completedStream != null) {
+                            DistributedQueryResult finalResult = new DistributedQueryResult();
+                            finalResult.append(serviceMessage.getPayload().getPayload(), "json");
+                            completedStream.complete(finalResult);
+                        }
+
+                        break;
+
+                    case DistributedJDBCPersistence.STREAMED_RESULT_ACTION:
+
+                        DistributedQueryStream stream = streamsByCorrelationId.get(correlationId);
+
+                        if (stream != null) {
+                            DistributedQueryResult partialResult = new DistributedQueryResult();
+                            partialResult.append(serviceMessage.getPayload().getPayload(), "json");
+                            logger.finest("Got a streamed DistributedQueryResult");
+                            stream.append(partialResult);
                         }
 
                         break;
@@ -407,8 +707,7 @@ public class DistributedJDBCPersistence implements Persistence, ICallback {
         if (localOnly) {
             result = localJDBCPersistence.getDistributedQueryResult(queryString, nodeName);
         } else {
-            ServiceMessage serviceMessage = constructMessage(queryString);
-            result = distributeQuery(serviceMessage);
+            result = distributedResult(queryString, null);
         }
         return result;
     }
@@ -10,11 +10,11 @@ package fabric.registry.persistence.distributed;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,6 +39,7 @@ import fabric.core.io.Message;
 import fabric.core.io.OutputTopic;
 import fabric.core.logging.FLog;
 import fabric.core.properties.ConfigProperties;
+import fabric.core.util.TimerWheel;
 import fabric.registry.FabricRegistry;
 import fabric.registry.QueryScope;
 import fabric.registry.exception.PersistenceException;
@@ -84,14 +85,21 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
      * Correlation IDs for which this fablet is responsible for returning results
      */
     private Set<String> myCorrelationIds = Collections.synchronizedSet(new HashSet<String>());
+    /**
+     * Correlation IDs for which partial results are streamed to the client as they arrive
+     */
+    private Set<String> streamedCorrelationIds = Collections.synchronizedSet(new HashSet<String>());
     /**
      * Where the results for given correlationIds should be sent
      */
     private Map<String, String> returnNodeByCorrelationID = new ConcurrentHashMap<String, String>();
     /**
-     * Given a correlationId, returns the wait thread for that correlationId
+     * Given a correlationId, returns the pending timeout for that correlationId
      */
-    private Map<String, DistributedQueryWaitThread> waitThreadsByCorrelationId = new ConcurrentHashMap<String, DistributedQueryWaitThread>();
+    private Map<String, TimerWheel.Timeout> timeoutsByCorrelationId = new ConcurrentHashMap<String, TimerWheel.Timeout>();
+
+    /** The timer used to time out the queries flooded to neighbours, shared by all correlationIds */
+    private TimerWheel queryTimer = null;
 
     private String nodeName = null;
     private String myRegistryUID = null;
@@ -108,6 +116,58 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
     private Persistence p = PersistenceManager.getPersistence();
     private DistributedJDBCPersistence jdbcp = (DistributedJDBCPersistence) p;
 
+    /*
+     * Inner classes
+     */
+
+    /**
+     * Task timing out the nodes still pending for a query when its timeout expires.
+     */
+    private class QueryTimeoutTask implements Runnable {
+
+        /** The correlation ID of the query. */
+        private final String correlationId;
+
+        /** The timeout (milliseconds). */
+        private final int timeOut;
+
+        /**
+         * Constructs a new instance.
+         *
+         * @param correlationId
+         *            the correlation ID of the query.
+         *
+         * @param timeOut
+         *            the timeout (milliseconds).
+         */
+        public QueryTimeoutTask(String correlationId, int timeOut) {
+
+            this.correlationId = correlationId;
+            this.timeOut = timeOut;
+        }
+
+        /**
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+
+            try {
+                logger.fine("Timeout " + timeOut + " milliseconds exceeded waiting for result with correlation ID "
+                        + correlationId);
+                queryTimedOut(correlationId);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Failed to time out query with correlation ID [{0}]: {1}", new Object[] {
+                        correlationId, e.getMessage()});
+                logger.log(Level.FINEST, "Full exception: ", e);
+            }
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
     @Override
     /**
      * @see fabric.bus.plugins.IPlugin#startPlugin(fabric.bus.plugins.IPluginConfig)
@@ -127,6 +187,7 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
         perfLoggingEnabled = new Boolean(this.config(ConfigProperties.REGISTRY_DISTRIBUTED_PERF_LOGGING));
         floodRemoteQuery = new Boolean(this.config(ConfigProperties.REGISTRY_DISTRIBUTED_FLOOD_REMOTE_QUERY,
                 ConfigProperties.REGISTRY_DISTRIBUTED_FLOOD_REMOTE_QUERY_DEFAULT));
+        queryTimer = new TimerWheel("Distributed-Query-Timer");
     }
 
     /**
@@ -141,6 +202,10 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
         /* ...and wake it up */
         threadSync.notify();
 
+        if (queryTimer != null) {
+            queryTimer.stop();
+        }
+
         if (commandChannel != null) {
             try {
                 commandChannel.close();
@@ -289,10 +354,22 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
                             returnNodeByCorrelationID.put(correlationId, prevNode);
                         }
 
+                        if (myCorrelationIds.contains(correlationId)
+                                && Boolean.parseBoolean(serviceMessage
+                                        .getProperty(DistributedJDBCPersistence.STREAM_RESULTS_PROPERTY))) {
+                            logger.finest("Partial results will be streamed to the client");
+                            streamedCorrelationIds.add(correlationId);
+                        }
+
                         boolean returnImmediately = executeQuery(correlationId, prevNode, distributedQuery);
                         if (returnImmediately) {
                             // return this result immediately
-                            returnResult(correlationId);
+                            completeQuery(correlationId);
+                        } else if (streamedCorrelationIds.contains(correlationId)) {
+                            // Stream our local result without waiting for our neighbours
+                            MessagePayload mp = new MessagePayload();
+                            mp.setPayloadText(resultByCorrelationId.get(correlationId).toJsonString());
+                            sendToClient(correlationId, DistributedJDBCPersistence.STREAMED_RESULT_ACTION, mp);
                         }
 
                         String[] nodes = null;
@@ -304,21 +381,21 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
 
                         if (nodes == null || nodes.length == 0) {
                             // We have no onward route so no point waiting just respond
-                            returnResult(correlationId);
+                            completeQuery(correlationId);
                         } else {
                             int newQueryTimeOut = checkQueryTimeOut(serviceMessage);
 
                             // If our timeout has reached 0 then we don't flood any further and log a message
                             if (newQueryTimeOut < 1) {
                                 logger.fine("Our timeout expired; will not flood query further");
-                                returnResult(correlationId);
+                                completeQuery(correlationId);
                             } else {
                                 // flooding onwards is the last thing we do
                                 int pendingNodes = floodQuery(serviceMessage, nodes, newQueryTimeOut);
                                 if (pendingNodes == 0) {
                                     // If for whatever reason the flood failed, we may end up with no pending nodes so
                                     // return results
-                                    returnResult(correlationId);
+                                    completeQuery(correlationId);
                                 }
                             }
                         }
@@ -343,6 +420,11 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
 
                         logger.finer("Pending results from node [" + prevNode + "] returned");
                         DistributedQueryResult currentResult = resultByCorrelationId.get(correlationId);
+                        if (currentResult == null) {
+                            logger.finest("Result for correlationId " + correlationId + " already returned");
+                            FLog.exit(logger, Level.FINER, this, "handleMessage", null);
+                            return;
+                        }
                         // Acquire lock for result so we can complete append.
                         // Prevents another thread acquiring lock and returning a result while we are in middle of
                         // appending.
@@ -354,6 +436,13 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
                                 "Result from [{0}], correlation ID [{1}]; result for this correlation ID is now:\n{2}",
                                 new Object[] {prevNode, correlationId, currentResult.toString()});
 
+                        if (streamedCorrelationIds.contains(correlationId)) {
+                            // Pass this node's results straight on to the client
+                            MessagePayload mp = new MessagePayload();
+                            mp.setPayloadBytes(payloadBytes);
+                            sendToClient(correlationId, DistributedJDBCPersistence.STREAMED_RESULT_ACTION, mp);
+                        }
+
                         int numberOfNodesPending = updatePendingNodeByCorrelationIds(correlationId, prevNode);
                         if (numberOfNodesPending < 0) {
                             // Thread timeout has already processed this correlationID we missed our window so just
@@ -366,7 +455,7 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
                             // We have ownership for responding as no-one else will receive 0 for numberOfNodesPending
                             // for
                             // this correlationId
-                            returnResult(correlationId);
+                            completeQuery(correlationId);
                         } else {
                             logger.finest("Still awaiting results from " + numberOfNodesPending + " nodes");
                         }
@@ -374,6 +463,13 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
                     case DistributedJDBCPersistence.FINAL_RESULT_ACTION:
                         logger.info("Nothing to do for final results, handled by client");
                         break;
+                    case DistributedJDBCPersistence.CANCEL_ACTION:
+                        // The client has all the results it needs; stop waiting for any still pending
+                        if (myCorrelationIds.contains(correlationId)) {
+                            logger.fine("Query with correlation ID [" + correlationId + "] cancelled by client");
+                            completeQuery(correlationId);
+                        }
+                        break;
                     default:
                         logger.info("Action [" + action + "] not recognised, doing nothing");
                         break;
@@ -516,7 +612,7 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
 
                     try {
                         /* Forward the message */
-                        neighbourChannels.registryBusChannel().write(serviceMessage.toWireBytes());
+                        neighbourChannels.registryBusChannel().write(neighbourChannels.wireBytes(serviceMessage));
                     } catch (Exception e) {
                         // We should disconnect from this neighbourEndPoint
                         // This will force it to be recreated if we need it in future.
@@ -533,42 +629,81 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
             }
         }
 
-        // Last thing we do is start our wait threads so any blocking on
+        // Last thing we do is schedule our timeout so any blocking on
         // flooding our query isn't part of our timeout.
-        // There is small risk our flooded queries have returned before we start our timeout threads,
-        // however when the thread times out it will check there are still pending nodes before taking any action
-        if (!onwardNodes.isEmpty() && remainingNodes != 0) {
-            // Launch our timeout thread
+        // There is small risk our flooded queries have returned before we schedule our timeout,
+        // however when the timeout fires it will check there are still pending nodes before taking any action
+        if (!onwardNodes.isEmpty() && remainingNodes != 0 && queryTimer != null) {
             // Assume same wait time for all pending nodes and have just one
-            // wait thread per correlationID
-            logger.finest("Starting waitingThread for correlationId = " + correlationId);
-            waitThreadsByCorrelationId.put(correlationId, new DistributedQueryWaitThread(timeOut, correlationId, this));
-            waitThreadsByCorrelationId.get(correlationId).start();
+            // timeout per correlationID
+            logger.finest("Scheduling timeout for correlationId = " + correlationId);
+            TimerWheel.Timeout timeout = queryTimer.schedule(new QueryTimeoutTask(correlationId, timeOut), timeOut,
+                    TimeUnit.MILLISECONDS);
+            timeoutsByCorrelationId.put(correlationId, timeout);
+            if (!resultByCorrelationId.containsKey(correlationId)) {
+                // The result has already been returned; the timeout is no longer needed
+                timeoutsByCorrelationId.remove(correlationId);
+                timeout.cancel();
+            }
         }
         return remainingNodes;
     }
 
-    public void queryTimedOut(String correlationId) throws Exception {
+    /**
+     * Called when the timeout for a query expires: marks the nodes still pending for the query as timed out and, if
+     * none remain, returns the result.
+     *
+     * @param correlationId
+     *            the correlation ID of the query.
+     *
+     * @throws Exception
+     */
+    private void queryTimedOut(String correlationId) throws Exception {
+
+        timeoutsByCorrelationId.remove(correlationId);
+
+        ConcurrentSkipListSet<String> pendingNodes = pendingNodesByCorrelationId.get(correlationId);
+        DistributedQueryResult currentResult = resultByCorrelationId.get(correlationId);
+        if (pendingNodes == null || currentResult == null) {
+            logger.finest("correlationId " + correlationId + " no longer pending, nothing to do");
+            return;
+        }
 
         boolean iRemovedLastPendingNode = false;
-        for (Iterator<String> iterator = pendingNodesByCorrelationId.get(correlationId).iterator(); iterator.hasNext();) {
-            String pendingNode = iterator.next();
+        for (String pendingNode : pendingNodes) {
             int response = updatePendingNodeByCorrelationIds(correlationId, pendingNode);
-            DistributedQueryResult currentResult = resultByCorrelationId.get(correlationId);
-            synchronized (currentResult) {
-                currentResult.addExceptionMessage("Query pending against node [" + pendingNode + "] has timed out",
-                        nodeName);
+            if (response >= 0) {
+                synchronized (currentResult) {
+                    currentResult.addExceptionMessage("Query pending against node [" + pendingNode
+                            + "] has timed out", nodeName);
+                }
+                logger.fine("Query pending against node [" + pendingNode + "] has timed out");
             }
             if (response == 0) {
                 iRemovedLastPendingNode = true;
-                logger.fine("Query pending against node [" + pendingNode + "] has timed out");
                 break;
-            } else if (response > 0) {
-                logger.fine("Query pending against node [" + pendingNode + "] has timed out");
             }
         }
         if (iRemovedLastPendingNode) {
+            completeQuery(correlationId);
+        }
+    }
+
+    /**
+     * Completes the result for a query and returns it, unless it has already been completed (by another thread).
+     *
+     * @param correlationId
+     *            the correlation ID of the query.
+     *
+     * @throws Exception
+     */
+    private void completeQuery(String correlationId) throws Exception {
+
+        DistributedQueryResult result = resultByCorrelationId.get(correlationId);
+        if (result != null && result.complete()) {
             returnResult(correlationId);
+        } else {
+            logger.finest("Result for correlationId " + correlationId + " already returned, nothing to do");
         }
     }
 
@@ -578,26 +713,13 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
         if (myCorrelationIds.contains(correlationId)) {
             // Returning to client
             logger.finer("Looking to return final results" + results.toString());
-            ServiceMessage serviceMessage = new ServiceMessage();
-            String[] route = {nodeName};
-            serviceMessage.setRouting(new StaticRouting(route));
-            serviceMessage.setServiceName(DistributedJDBCPersistence.SERVICE_NAME);
-
-            /* Indicate that this is a built-in Fabric plug-in */
-            serviceMessage.setServiceFamilyName(DistributedJDBCPersistence.PLUGIN_FAMILY);
-            serviceMessage.setAction(DistributedJDBCPersistence.FINAL_RESULT_ACTION);
-            serviceMessage.setCorrelationID(correlationId);
 
-            // Add SQL query to service message
+            // Add results to service message
             MessagePayload mp = new MessagePayload();
             synchronized (results) {
                 mp.setPayloadText(results.toJsonString());
             }
-            serviceMessage.setPayload(mp);
-            logger.finest("About to send a final response to " + resultChannelTopic);
-            resultChannel = FabricRegistry.homeNodeEndPoint.openOutputChannel(resultChannelTopic);
-            resultChannel.write(serviceMessage.toWireBytes());
-            FabricRegistry.homeNodeEndPoint.closeChannel(resultChannel, false);
+            sendToClient(correlationId, DistributedJDBCPersistence.FINAL_RESULT_ACTION, mp);
 
         } else {
             // Returning to previous Node
@@ -642,7 +764,7 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
 
                 try {
                     /* Forward the message */
-                    neighbourChannels.registryBusChannel().write(serviceMessage.toWireBytes());
+                    neighbourChannels.registryBusChannel().write(neighbourChannels.wireBytes(serviceMessage));
                 } catch (Exception e) {
                     logger.finer("Problem with neighbour :\n" + e.getMessage());
                     // We should remove this channel from the channel list in case it caused the exception
@@ -654,14 +776,49 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
 
         // Clear out any record of this correlationID
         resultByCorrelationId.remove(correlationId);
+        pendingNodesByCorrelationId.remove(correlationId);
         myCorrelationIds.remove(correlationId);
+        streamedCorrelationIds.remove(correlationId);
         returnNodeByCorrelationID.remove(correlationId);
-        DistributedQueryWaitThread waitThread = waitThreadsByCorrelationId.remove(correlationId);
-        if (waitThread != null) {
-            waitThread.interrupt();
+        TimerWheel.Timeout timeout = timeoutsByCorrelationId.remove(correlationId);
+        if (timeout != null) {
+            timeout.cancel();
         }
     }
 
+    /**
+     * Sends a result to the client that issued a query.
+     *
+     * @param correlationId
+     *            the correlation ID of the query.
+     *
+     * @param action
+     *            the action of the message, indicating if this is a final or partial (streamed) result.
+     *
+     * @param payload
+     *            the result.
+     *
+     * @throws Exception
+     */
+    private void sendToClient(String correlationId, String action, MessagePayload payload) throws Exception {
+
+        ServiceMessage serviceMessage = new ServiceMessage();
+        String[] route = {nodeName};
+        serviceMessage.setRouting(new StaticRouting(route));
+        serviceMessage.setServiceName(DistributedJDBCPersistence.SERVICE_NAME);
+
+        /* Indicate that this is a built-in Fabric plug-in */
+        serviceMessage.setServiceFamilyName(DistributedJDBCPersistence.PLUGIN_FAMILY);
+        serviceMessage.setAction(action);
+        serviceMessage.setCorrelationID(correlationId);
+        serviceMessage.setPayload(payload);
+
+        logger.finest("About to send a " + action + " response to " + resultChannelTopic);
+        SharedChannel clientChannel = FabricRegistry.homeNodeEndPoint.openOutputChannel(resultChannelTopic);
+        clientChannel.write(serviceMessage.toWireBytes());
+        FabricRegistry.homeNodeEndPoint.closeChannel(clientChannel, false);
+    }
+
     private void returnEmptyResult(String correlationId, String prevNode) throws Exception {
 
         DistributedQueryResult results = new DistributedQueryResult(nodeName, null);
@@ -705,7 +862,7 @@ public class DistributedPersistenceFablet extends FabricBus implements IFabletPl
 
             try {
                 /* Forward the message */
-                neighbourChannels.registryBusChannel().write(serviceMessage.toWireBytes());
+                neighbourChannels.registryBusChannel().write(neighbourChannels.wireBytes(serviceMessage));
             } catch (Exception e) {
                 logger.finer("Problem with neighbour :\n" + e.getMessage());
                 // We should remove this channel from the channel list in case it caused the exception
@@ -0,0 +1,358 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.registry.persistence.distributed;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import fabric.registry.impl.AbstractFactory;
+
+/**
+ * A short-lived cache of distributed Registry query results, keyed by SQL.
+ * <p>
+ * Results are cached for a configurable time to live, so that components issuing the same query in quick succession
+ * share one flood of the query across the Fabric. Queries made through excluded factory classes always bypass the
+ * cache. Hit, miss and coalesced query counts are exposed via the
+ * <code>fabric:type=Registry,node=&lt;node&gt;,name=DistributedQueryCache</code> MBean.
+ * </p>
+ */
+public class DistributedQueryCache implements DistributedQueryCacheMBean {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    private final static String PACKAGE_NAME = DistributedQueryCache.class.getPackage().getName();
+
+    private final static Logger logger = Logger.getLogger(PACKAGE_NAME);
+
+    /** The number of cached results above which expired results are discarded when a new result is cached */
+    private static final int PURGE_THRESHOLD = 256;
+
+    /*
+     * Class fields
+     */
+
+    /** The cached results, keyed by SQL */
+    private final Map<String, CachedResult> resultsBySql = new ConcurrentHashMap<String, CachedResult>();
+
+    /** The names (simple and fully qualified) of the factory classes whose queries are not cached */
+    private final Set<String> excludedFactories = new HashSet<String>();
+
+    /** The time to live of cached results (nanoseconds) */
+    private volatile long timeToLive = 0;
+
+    /** The number of queries answered from the cache */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** The number of cacheable queries not found in the cache */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** The number of queries coalesced with an identical query in flight */
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /** The name under which the MBean is registered, or <code>null</code> if it is not registered */
+    private ObjectName objectName = null;
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * A cached result and its expiry time.
+     */
+    private static final class CachedResult {
+
+        /** The result */
+        final DistributedQueryResult result;
+
+        /** The time at which the result expires (as answered by <code>System.nanoTime()</code>) */
+        final long expiry;
+
+        /**
+         * Constructs a new instance.
+         *
+         * @param result
+         *            the result.
+         *
+         * @param expiry
+         *            the time at which the result expires.
+         */
+        CachedResult(DistributedQueryResult result, long expiry) {
+
+            this.result = result;
+            this.expiry = expiry;
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param timeToLive
+     *            the time to live of cached results (milliseconds); <code>0</code> to disable caching.
+     *
+     * @param excludedFactories
+     *            a comma separated list of the names (simple or fully qualified) of the factory classes whose queries
+     *            are not to be cached, or <code>null</code> if none.
+     */
+    public DistributedQueryCache(long timeToLive, String excludedFactories) {
+
+        setTimeToLive(timeToLive);
+
+        if (excludedFactories != null) {
+            String[] names = excludedFactories.split(",");
+            for (int n = 0; n < names.length; n++) {
+                String name = names[n].trim();
+                if (!name.isEmpty()) {
+                    this.excludedFactories.add(name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers <code>true</code> if the results of queries made through the specified factory can be cached.
+     *
+     * @param factory
+     *            the factory, or <code>null</code> for queries answering raw values.
+     *
+     * @return <code>true</code> if the results can be cached, <code>false</code> otherwise.
+     */
+    public boolean isCacheable(AbstractFactory factory) {
+
+        boolean isCacheable = timeToLive > 0;
+
+        if (isCacheable && factory != null && !excludedFactories.isEmpty()) {
+            Class<?> factoryClass = factory.getClass();
+            isCacheable = !excludedFactories.contains(factoryClass.getName())
+                    && !excludedFactories.contains(factoryClass.getSimpleName());
+        }
+
+        return isCacheable;
+    }
+
+    /**
+     * Answers the cached result of a query.
+     *
+     * @param sql
+     *            the query.
+     *
+     * @param factory
+     *            the factory through which the query is made, or <code>null</code> for queries answering raw values.
+     *
+     * @return the result, or <code>null</code> if it is not cached, has expired, or the query is not cacheable.
+     */
+    public DistributedQueryResult get(String sql, AbstractFactory factory) {
+
+        DistributedQueryResult result = null;
+
+        if (isCacheable(factory)) {
+
+            CachedResult cached = resultsBySql.get(sql);
+
+            if (cached != null && cached.expiry - System.nanoTime() > 0) {
+                result = cached.result;
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Caches the result of a query, if the query is cacheable.
+     *
+     * @param sql
+     *            the query.
+     *
+     * @param factory
+     *            the factory through which the query was made, or <code>null</code> for queries answering raw values.
+     *
+     * @param result
+     *            the result.
+     */
+    public void put(String sql, AbstractFactory factory, DistributedQueryResult result) {
+
+        if (isCacheable(factory) && !result.exceptionOccurred()) {
+
+            long now = System.nanoTime();
+
+            if (resultsBySql.size() >= PURGE_THRESHOLD) {
+                purge(now);
+            }
+
+            resultsBySql.put(sql, new CachedResult(result, now + timeToLive));
+        }
+    }
+
+    /**
+     * Discards expired results.
+     *
+     * @param now
+     *            the current time (as answered by <code>System.nanoTime()</code>).
+     */
+    private void purge(long now) {
+
+        for (Iterator<CachedResult> i = resultsBySql.values().iterator(); i.hasNext();) {
+            if (i.next().expiry - now <= 0) {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Records that a query was coalesced with an identical query in flight.
+     */
+    public void recordCoalesced() {
+
+        coalesced.incrementAndGet();
+    }
+
+    /**
+     * @see fabric.registry.persistence.distributed.DistributedQueryCacheMBean#getHits()
+     */
+    @Override
+    public long getHits() {
+
+        return hits.get();
+    }
+
+    /**
+     * @see fabric.registry.persistence.distributed.DistributedQueryCacheMBean#getMisses()
+     */
+    @Override
+    public long getMisses() {
+
+        return misses.get();
+    }
+
+    /**
+     * @see fabric.registry.persistence.distributed.DistributedQueryCacheMBean#getCoalesced()
+     */
+    @Override
+    public long getCoalesced() {
+
+        return coalesced.get();
+    }
+
+    /**
+     * @see fabric.registry.persistence.distributed.DistributedQueryCacheMBean#getSize()
+     */
+    @Override
+    public int getSize() {
+
+        return resultsBySql.size();
+    }
+
+    /**
+     * @see fabric.registry.persistence.distributed.DistributedQueryCacheMBean#getTimeToLive()
+     */
+    @Override
+    public long getTimeToLive() {
+
+        return TimeUnit.NANOSECONDS.toMillis(timeToLive);
+    }
+
+    /**
+     * @see fabric.registry.persistence.distributed.DistributedQueryCacheMBean#setTimeToLive(long)
+     */
+    @Override
+    public void setTimeToLive(long timeToLive) {
+
+        this.timeToLive = TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeToLive));
+
+        if (timeToLive <= 0) {
+            resultsBySql.clear();
+        }
+    }
+
+    /**
+     * @see fabric.registry.persistence.distributed.DistributedQueryCacheMBean#clear()
+     */
+    @Override
+    public void clear() {
+
+        resultsBySql.clear();
+    }
+
+    /**
+     * @see fabric.registry.persistence.distributed.DistributedQueryCacheMBean#resetCounts()
+     */
+    @Override
+    public void resetCounts() {
+
+        hits.set(0);
+        misses.set(0);
+        coalesced.set(0);
+    }
+
+    /**
+     * Registers the cache with the platform MBean server.
+     *
+     * @param nodeName
+     *            the name of the node whose cache this is.
+     */
+    public synchronized void register(String nodeName) {
+
+        try {
+
+            ObjectName name = new ObjectName("fabric:type=Registry,node=" + ObjectName.quote(nodeName)
+                    + ",name=DistributedQueryCache");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+
+            server.registerMBean(this, name);
+            objectName = name;
+
+        } catch (Exception e) {
+            logger.log(Level.FINE, "Cannot register distributed query cache MBean: {0}", e.getMessage());
+            logger.log(Level.FINEST, "Full exception: ", e);
+        }
+    }
+
+    /**
+     * Removes the registration of the cache with the platform MBean server.
+     */
+    public synchronized void unregister() {
+
+        if (objectName != null) {
+
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                logger.log(Level.FINE, "Cannot unregister distributed query cache MBean: {0}", e.getMessage());
+                logger.log(Level.FINEST, "Full exception: ", e);
+            }
+
+            objectName = null;
+        }
+    }
+}
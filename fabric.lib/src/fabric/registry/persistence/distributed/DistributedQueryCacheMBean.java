@@ -0,0 +1,70 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.registry.persistence.distributed;
+
+/**
+ * Management interface for the cache of distributed Registry query results.
+ */
+public interface DistributedQueryCacheMBean {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /**
+     * Answers the number of queries answered from the cache.
+     *
+     * @return the count.
+     */
+    public long getHits();
+
+    /**
+     * Answers the number of cacheable queries that were not found in the cache.
+     *
+     * @return the count.
+     */
+    public long getMisses();
+
+    /**
+     * Answers the number of queries that shared the flood and result of an identical query already in flight.
+     *
+     * @return the count.
+     */
+    public long getCoalesced();
+
+    /**
+     * Answers the number of results currently cached (including any that have expired but not yet been discarded).
+     *
+     * @return the count.
+     */
+    public int getSize();
+
+    /**
+     * Answers how long results are cached.
+     *
+     * @return the time to live (milliseconds); <code>0</code> if caching is disabled.
+     */
+    public long getTimeToLive();
+
+    /**
+     * Sets how long results are cached.
+     *
+     * @param timeToLive
+     *            the time to live (milliseconds); <code>0</code> to disable caching.
+     */
+    public void setTimeToLive(long timeToLive);
+
+    /**
+     * Discards all cached results.
+     */
+    public void clear();
+
+    /**
+     * Resets the hit, miss and coalesced counts.
+     */
+    public void resetCounts();
+}
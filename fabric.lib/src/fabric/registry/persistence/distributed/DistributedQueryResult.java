@@ -12,10 +12,13 @@ import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
@@ -58,6 +61,9 @@ public class DistributedQueryResult {
     private boolean exceptionOccurred = false;
     private String localExceptionMessage = "";
 
+    /** Completed (with this result) once no further partial results are to be appended */
+    private final CompletableFuture<DistributedQueryResult> completion = new CompletableFuture<DistributedQueryResult>();
+
     public DistributedQueryResult() {
         super();
     }
@@ -208,6 +214,26 @@ public class DistributedQueryResult {
 
     public RegistryObject[] toRegistryObjects(AbstractFactory factory) throws PersistenceException {
 
+        return toRegistryObjects(factory, new HashSet<String>());
+    }
+
+    /**
+     * Converts the results of the nodes not already seen to Registry objects, adding those nodes to the set of nodes
+     * seen. Used to deliver results incrementally as partial results arrive.
+     *
+     * @param factory
+     *            the factory used to create the Registry objects.
+     *
+     * @param nodesSeen
+     *            the nodes whose results have already been converted.
+     *
+     * @return the Registry objects.
+     *
+     * @throws PersistenceException
+     */
+    public RegistryObject[] toRegistryObjects(AbstractFactory factory, Set<String> nodesSeen)
+        throws PersistenceException {
+
         if (exceptionOccurred) {
             throw new PersistenceException(localExceptionMessage);
         }
@@ -215,6 +241,10 @@ public class DistributedQueryResult {
         for (Iterator<String> iterator = nodeToResults.keySet().iterator(); iterator.hasNext();) {
             String nodeName = iterator.next();
             List<PersistenceResultRow> results = nodeToResults.get(nodeName);
+            if (nodesSeen.contains(nodeName) || results.isEmpty()) {
+                continue;
+            }
+            nodesSeen.add(nodeName);
             for (int i = 0; i < results.size(); i++) {
                 PersistenceResultRow row = results.get(i);
                 RegistryObject regObject = null;
@@ -254,6 +284,25 @@ public class DistributedQueryResult {
         return exceptionOccurred;
     }
 
+    /**
+     * Marks this result as complete, i.e. no further partial results are to be appended.
+     *
+     * @return <code>true</code> if this call completed the result, <code>false</code> if it was already complete (so
+     *         that exactly one caller takes responsibility for returning the result).
+     */
+    public boolean complete() {
+        return completion.complete(this);
+    }
+
+    /**
+     * Answers a future that is completed (with this result) when the result is complete.
+     *
+     * @return the future.
+     */
+    public CompletableFuture<DistributedQueryResult> completion() {
+        return completion;
+    }
+
     public String getLocalExceptionMessage() {
         return localExceptionMessage;
     }
@@ -0,0 +1,330 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.registry.persistence.distributed;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import fabric.core.util.TimerWheel;
+import fabric.registry.RegistryObject;
+import fabric.registry.exception.PersistenceException;
+import fabric.registry.impl.AbstractFactory;
+
+/**
+ * An iterator over the Registry objects answered by a distributed query, delivering the results of each node as they
+ * arrive rather than once every node has answered.
+ * <p>
+ * The stream ends when the final result of the query arrives, when the query times out, when the limit on the number
+ * of objects has been reached, or when it is closed. A stream that ends before the final result arrives cancels the
+ * query at the local Fabric Manager, so that the results of slow nodes are not waited for.
+ * </p>
+ * <p>
+ * <code>hasNext()</code> blocks until an object is available or the stream ends.
+ * </p>
+ */
+public class DistributedQueryStream implements Iterator<RegistryObject>, Closeable {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    private final static String PACKAGE_NAME = DistributedQueryStream.class.getPackage().getName();
+
+    private final static Logger logger = Logger.getLogger(PACKAGE_NAME);
+
+    /** Value indicating that the number of objects in the stream is not limited */
+    public static final int NO_LIMIT = 0;
+
+    /*
+     * Class fields
+     */
+
+    /** The persistence layer that issued the query */
+    private final DistributedJDBCPersistence persistence;
+
+    /** The correlation ID of the query */
+    private final String correlationId;
+
+    /** The factory used to create Registry objects from the results */
+    private final AbstractFactory factory;
+
+    /** The maximum number of objects in the stream, or <code>NO_LIMIT</code> */
+    private final int limit;
+
+    /** The time at which the stream times out (as answered by <code>System.nanoTime()</code>) */
+    private final long deadline;
+
+    /** The nodes whose results have been added to the stream */
+    private final Set<String> nodesSeen = new HashSet<String>();
+
+    /** The objects that have arrived but have not yet been read */
+    private final ArrayDeque<RegistryObject> objects = new ArrayDeque<RegistryObject>();
+
+    /** The number of objects added to the stream */
+    private int added = 0;
+
+    /** Flag indicating that no further objects will be added to the stream */
+    private boolean ended = false;
+
+    /** Flag indicating that the stream has been closed */
+    private boolean closed = false;
+
+    /** The exception (if any) that ended the stream */
+    private PersistenceException exception = null;
+
+    /** The timeout ending the stream if the final result has not arrived (<code>null</code> if none) */
+    private TimerWheel.Timeout expiry = null;
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param persistence
+     *            the persistence layer that issued the query.
+     *
+     * @param correlationId
+     *            the correlation ID of the query.
+     *
+     * @param factory
+     *            the factory used to create Registry objects from the results.
+     *
+     * @param limit
+     *            the maximum number of objects in the stream, or <code>NO_LIMIT</code>.
+     *
+     * @param timeOut
+     *            the time after which the stream ends if the final result has not arrived (milliseconds).
+     */
+    DistributedQueryStream(DistributedJDBCPersistence persistence, String correlationId, AbstractFactory factory,
+            int limit, long timeOut) {
+
+        this.persistence = persistence;
+        this.correlationId = correlationId;
+        this.factory = factory;
+        this.limit = limit;
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeOut);
+    }
+
+    /**
+     * Answers the correlation ID of the query.
+     *
+     * @return the correlation ID.
+     */
+    public String getCorrelationId() {
+
+        return correlationId;
+    }
+
+    /**
+     * Adds the results of the nodes in a partial result that have not already been added to the stream.
+     *
+     * @param result
+     *            the partial result.
+     */
+    synchronized void append(DistributedQueryResult result) {
+
+        if (ended) {
+            return;
+        }
+
+        try {
+            RegistryObject[] newObjects = result.toRegistryObjects(factory, nodesSeen);
+            for (int o = 0; o < newObjects.length && !ended; o++) {
+                objects.add(newObjects[o]);
+                added++;
+                if (limit != NO_LIMIT && added >= limit) {
+                    logger.finest("Limit of " + limit + " objects reached for correlation ID " + correlationId);
+                    ended = true;
+                }
+            }
+        } catch (PersistenceException e) {
+            exception = e;
+            ended = true;
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * Adds the final result of the query to the stream, and ends the stream.
+     *
+     * @param result
+     *            the final result.
+     */
+    synchronized void complete(DistributedQueryResult result) {
+
+        append(result);
+        ended = true;
+        notifyAll();
+        cancelExpiry();
+    }
+
+    /**
+     * Sets the timeout that ends the stream if the final result has not arrived in time.
+     *
+     * @param expiry
+     *            the timeout.
+     */
+    synchronized void setExpiry(TimerWheel.Timeout expiry) {
+
+        this.expiry = expiry;
+
+        if (ended) {
+            cancelExpiry();
+        }
+    }
+
+    /**
+     * Called when the query times out: ends the stream (leaving the objects not yet read to be read) and cancels the
+     * query if it is still running.
+     */
+    void timedOut() {
+
+        synchronized (this) {
+            if (!ended) {
+                logger.fine("Timeout exceeded waiting for results with correlation ID " + correlationId);
+                ended = true;
+                notifyAll();
+            }
+            expiry = null;
+        }
+
+        persistence.endStream(correlationId);
+    }
+
+    /**
+     * Cancels the timeout of the stream, if any. Must be called while synchronized on this instance.
+     */
+    private void cancelExpiry() {
+
+        if (expiry != null) {
+            expiry.cancel();
+            expiry = null;
+        }
+    }
+
+    /**
+     * Answers the exception, if any, that ended the stream.
+     *
+     * @return the exception, or <code>null</code> if none.
+     */
+    public synchronized PersistenceException getException() {
+
+        return exception;
+    }
+
+    /**
+     * Answers <code>true</code> if there is another object in the stream, waiting for it to arrive if necessary. The
+     * stream is closed when it is found to be exhausted.
+     *
+     * @see java.util.Iterator#hasNext()
+     */
+    @Override
+    public boolean hasNext() {
+
+        boolean hasNext = false;
+
+        synchronized (this) {
+
+            try {
+                while (objects.isEmpty() && !ended) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        logger.fine("Timeout exceeded waiting for results with correlation ID " + correlationId);
+                        ended = true;
+                    } else {
+                        wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                ended = true;
+            }
+
+            hasNext = !objects.isEmpty();
+        }
+
+        if (!hasNext) {
+            close();
+        }
+
+        return hasNext;
+    }
+
+    /**
+     * Answers the next object in the stream, waiting for it to arrive if necessary. The stream is closed once its last
+     * object has been read.
+     *
+     * @see java.util.Iterator#next()
+     */
+    @Override
+    public RegistryObject next() {
+
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        RegistryObject next = null;
+        boolean exhausted = false;
+
+        synchronized (this) {
+            next = objects.poll();
+            exhausted = ended && objects.isEmpty();
+        }
+
+        if (exhausted) {
+            close();
+        }
+
+        return next;
+    }
+
+    /**
+     * Not supported.
+     *
+     * @see java.util.Iterator#remove()
+     */
+    @Override
+    public void remove() {
+
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Ends the stream, discarding any objects not yet read and cancelling the query if it is still running.
+     *
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            ended = true;
+            objects.clear();
+            notifyAll();
+            cancelExpiry();
+        }
+
+        persistence.endStream(correlationId);
+    }
+}
@@ -15,6 +15,7 @@ import fabric.registry.QueryScope;
 import fabric.registry.RegistryObject;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.impl.AbstractFactory;
+import fabric.registry.persistence.ParameterizedSql;
 
 /**
  * The GAIAN/Derby JDBC based implementation of persistence
@@ -104,6 +105,16 @@ public class GaianPersistence extends SingletonJDBCPersistence {
         return super.queryRegistryObjects(queryString, factory, queryScope);
     }
 
+    @Override
+    public RegistryObject[] queryRegistryObjects(ParameterizedSql query, AbstractFactory factory, QueryScope queryScope)
+        throws PersistenceException {
+
+        if (queryScope == QueryScope.DISTRIBUTED) {
+            query = new ParameterizedSql(mapSQLForGaian(query.sql()), query.parameters());
+        }
+        return super.queryRegistryObjects(query, factory, queryScope);
+    }
+
     @Override
     public int queryInt(String queryString, QueryScope queryScope) throws PersistenceException {
 
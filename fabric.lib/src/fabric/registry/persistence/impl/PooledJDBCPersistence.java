@@ -0,0 +1,875 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.registry.persistence.impl;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fabric.core.properties.ConfigProperties;
+import fabric.core.properties.Properties;
+import fabric.registry.QueryScope;
+import fabric.registry.RegistryObject;
+import fabric.registry.exception.PersistenceException;
+import fabric.registry.impl.AbstractFactory;
+import fabric.registry.persistence.ParameterizedSql;
+import fabric.registry.persistence.Persistence;
+
+/**
+ * JDBC based implementation of persistence using a pool of connections to a singleton Registry.
+ * <p>
+ * Each pooled connection keeps a cache of the prepared statements used with it, so parameterized queries and updates
+ * are compiled by the database once per connection rather than once per request. Literal SQL statements are executed
+ * using a statement that is closed as soon as the request completes. Connections that fail with a connection error
+ * are discarded and replaced on demand.
+ * </p>
+ * <p>
+ * A batch of parameterized updates is run as a single transaction on one connection, so it is applied completely or
+ * not at all.
+ * </p>
+ */
+public class PooledJDBCPersistence implements Persistence {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class constants
+     */
+
+    private final static String PACKAGE_NAME = PooledJDBCPersistence.class.getPackage().getName();
+
+    private final static Logger logger = Logger.getLogger(PACKAGE_NAME);
+
+    /*
+     * Class fields
+     */
+
+    /** URL of the Fabric Registry database. */
+    private String fabricDbUrl = null;
+
+    /** The maximum number of connections in the pool. */
+    private int poolSize = 4;
+
+    /** The maximum number of prepared statements cached for each connection. */
+    private int statementCacheSize = 64;
+
+    /** The time to wait for a connection to become available (milliseconds). */
+    private long poolWait = 30000;
+
+    /** JDBC query timeout (seconds, or -1 for no timeout). */
+    private int queryTimeout = -1;
+
+    /** The connections that are not currently in use. */
+    private ArrayBlockingQueue<PooledConnection> idleConnections = null;
+
+    /** The number of connections currently open (idle or in use). */
+    private int openConnections = 0;
+
+    /** Lock object controlling access to the open connection count. */
+    private final Object poolLock = new Object();
+
+    /** Flag indicating if the pool has been closed. */
+    private volatile boolean closed = false;
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * A pooled JDBC connection and its prepared statement cache.
+     */
+    private class PooledConnection {
+
+        /** The JDBC connection. */
+        private final Connection connection;
+
+        /** The prepared statements for this connection, keyed by SQL and held in least recently used order. */
+        private final LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<String, PreparedStatement>(
+                16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+
+                boolean remove = size() > statementCacheSize;
+
+                if (remove) {
+                    SingletonJDBCPersistence.closeStatement(eldest.getValue());
+                }
+
+                return remove;
+            }
+        };
+
+        /**
+         * Constructs a new instance.
+         *
+         * @param connection
+         *            the JDBC connection.
+         */
+        PooledConnection(Connection connection) {
+
+            this.connection = connection;
+        }
+
+        /**
+         * Answers the (cached) prepared statement for the specified SQL.
+         *
+         * @param sql
+         *            the SQL statement.
+         *
+         * @return the prepared statement.
+         *
+         * @throws SQLException
+         */
+        PreparedStatement prepare(String sql) throws SQLException {
+
+            PreparedStatement statement = statements.get(sql);
+
+            if (statement == null) {
+
+                statement = connection.prepareStatement(sql);
+
+                if (queryTimeout != -1) {
+                    statement.setQueryTimeout(queryTimeout);
+                }
+
+                statements.put(sql, statement);
+            }
+
+            return statement;
+        }
+
+        /**
+         * Removes and closes the cached prepared statement for the specified SQL (following an error).
+         *
+         * @param sql
+         *            the SQL statement.
+         */
+        void discard(String sql) {
+
+            SingletonJDBCPersistence.closeStatement(statements.remove(sql));
+        }
+
+        /**
+         * Answers a new (uncached) statement for literal SQL.
+         *
+         * @return the statement.
+         *
+         * @throws SQLException
+         */
+        Statement createStatement() throws SQLException {
+
+            Statement statement = connection.createStatement();
+
+            if (queryTimeout != -1) {
+                statement.setQueryTimeout(queryTimeout);
+            }
+
+            return statement;
+        }
+
+        /**
+         * Closes the cached statements and the connection.
+         */
+        void close() {
+
+            for (PreparedStatement statement : statements.values()) {
+                SingletonJDBCPersistence.closeStatement(statement);
+            }
+
+            statements.clear();
+
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.log(Level.FINER, "Error closing Registry connection: {0}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Converts the result set of a query into the value returned to the caller.
+     */
+    private static abstract class ResultHandler<T> {
+
+        /**
+         * Processes a result set.
+         *
+         * @param rs
+         *            the result set.
+         *
+         * @return the result.
+         *
+         * @throws SQLException
+         * @throws PersistenceException
+         */
+        abstract T handle(ResultSet rs) throws SQLException, PersistenceException;
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Default constructor.
+     */
+    public PooledJDBCPersistence() {
+
+    }
+
+    /**
+     * @see fabric.registry.persistence.Persistence#init(java.lang.String, fabric.core.properties.Properties)
+     */
+    @Override
+    public void init(String url, Properties config) {
+
+        this.fabricDbUrl = url;
+
+        poolSize = Math.max(1, Integer.parseInt(config.getProperty(ConfigProperties.REGISTRY_POOL_SIZE, Integer
+                .toString(poolSize))));
+        statementCacheSize = Integer.parseInt(config.getProperty(ConfigProperties.REGISTRY_POOL_STATEMENT_CACHE,
+                ConfigProperties.REGISTRY_POOL_STATEMENT_CACHE_DEFAULT));
+        poolWait = Long.parseLong(config.getProperty(ConfigProperties.REGISTRY_POOL_WAIT,
+                ConfigProperties.REGISTRY_POOL_WAIT_DEFAULT));
+
+        try {
+            queryTimeout = Integer.parseInt(config.getProperty(ConfigProperties.REGISTRY_LOCAL_TIMEOUT, "-1"));
+        } catch (Exception e) {
+            queryTimeout = -1;
+        }
+    }
+
+    /**
+     * Establishes the first pooled connection to the Registry, retrying until it is available; further connections are
+     * opened on demand.
+     *
+     * @see fabric.registry.persistence.Persistence#connect()
+     */
+    @Override
+    public void connect() throws PersistenceException {
+
+        int retryInterval = 5;
+        PooledConnection first = null;
+
+        idleConnections = new ArrayBlockingQueue<PooledConnection>(poolSize);
+        closed = false;
+
+        logger.log(Level.FINER, "Connecting to the Registry (pool size {0})", poolSize);
+
+        while (first == null) {
+
+            try {
+
+                first = new PooledConnection(openConnection());
+
+            } catch (Exception e) {
+
+                logger.log(Level.WARNING,
+                        "Failed to connect to Fabric Registry (ensure that the Registry is running); retrying in {0} second(s): [{1}]",
+                        new Object[] {retryInterval, e.getMessage()});
+                logger.log(Level.FINEST, "Full exception: ", e);
+
+                /* Wait before retrying */
+                try {
+                    Thread.sleep(retryInterval * 1000);
+                } catch (InterruptedException e1) {
+                    logger.log(Level.WARNING, "Sleep interrupted: ", e1);
+                }
+            }
+        }
+
+        synchronized (poolLock) {
+            openConnections = 1;
+        }
+
+        idleConnections.offer(first);
+        logger.log(Level.FINER, "Registry connection established");
+    }
+
+    /**
+     * @see fabric.registry.persistence.Persistence#disconnect()
+     */
+    @Override
+    public void disconnect() throws PersistenceException {
+
+        closed = true;
+
+        if (idleConnections != null) {
+
+            PooledConnection next = null;
+
+            while ((next = idleConnections.poll()) != null) {
+
+                next.close();
+
+                synchronized (poolLock) {
+                    openConnections--;
+                }
+            }
+        }
+    }
+
+    /**
+     * @see fabric.registry.persistence.Persistence#initNodeConfig(fabric.core.properties.Properties)
+     */
+    @Override
+    public void initNodeConfig(Properties nodeConfig) throws PersistenceException {
+
+        /* No node specific config to establish */
+    }
+
+    /**
+     * @see fabric.registry.persistence.Persistence#queryRegistryObjects(java.lang.String,
+     *      fabric.registry.impl.AbstractFactory, fabric.registry.QueryScope)
+     */
+    @Override
+    public RegistryObject[] queryRegistryObjects(String queryString, AbstractFactory factory, QueryScope queryScope)
+            throws PersistenceException {
+
+        return executeQuery(new ParameterizedSql(queryString), false, registryObjectHandler(factory));
+    }
+
+    /**
+     * @see fabric.registry.persistence.Persistence#queryRegistryObjects(fabric.registry.persistence.ParameterizedSql,
+     *      fabric.registry.impl.AbstractFactory, fabric.registry.QueryScope)
+     */
+    @Override
+    public RegistryObject[] queryRegistryObjects(ParameterizedSql query, AbstractFactory factory, QueryScope queryScope)
+            throws PersistenceException {
+
+        return executeQuery(query, true, registryObjectHandler(factory));
+    }
+
+    /**
+     * @see fabric.registry.persistence.Persistence#queryString(java.lang.String, fabric.registry.QueryScope)
+     */
+    @Override
+    public String queryString(String sqlString, QueryScope queryScope) throws PersistenceException {
+
+        return executeQuery(new ParameterizedSql(sqlString), false, new ResultHandler<String>() {
+
+            @Override
+            String handle(ResultSet rs) throws SQLException {
+
+                /* Only expecting a single row and a single column value */
+                return rs.next() ? rs.getString(1) : null;
+            }
+        });
+    }
+
+    /**
+     * @see fabric.registry.persistence.Persistence#query(java.lang.String, fabric.registry.QueryScope)
+     */
+    @Override
+    public Object[] query(String queryString, QueryScope queryScope) throws PersistenceException {
+
+        return executeQuery(new ParameterizedSql(queryString), false, new ResultHandler<Object[]>() {
+
+            @Override
+            Object[] handle(ResultSet rs) throws SQLException {
+
+                ArrayList<Object> values = new ArrayList<Object>();
+
+                while (rs.next()) {
+                    values.add(SingletonJDBCPersistence.processResultRow(rs));
+                }
+
+                return values.toArray(new Object[values.size()]);
+            }
+        });
+    }
+
+    /**
+     * @see fabric.registry.persistence.Persistence#updateRegistryObject(java.lang.String)
+     */
+    @Override
+    public boolean updateRegistryObject(String updateString) throws PersistenceException {
+
+        return updateRegistryObject(updateString, false);
+    }
+
+    /**
+     * @see fabric.registry.persistence.Persistence#updateRegistryObject(java.lang.String, boolean)
+     */
+    @Override
+    public boolean updateRegistryObject(String updateString, boolean ignoreDuplicateWarning)
+            throws PersistenceException {
+
+        return executeUpdate(new ParameterizedSql(updateString), false, ignoreDuplicateWarning);
+    }
+
+    /**
+     * @see fabric.registry.persistence.Persistence#updateRegistryObject(fabric.registry.persistence.ParameterizedSql,
+     *      boolean)
+     */
+    @Override
+    public boolean updateRegistryObject(ParameterizedSql update, boolean ignoreDuplicateWarning)
+            throws PersistenceException {
+
+        return executeUpdate(update, true, ignoreDuplicateWarning);
+    }
+
+    /**
+     * @see fabric.registry.persistence.Persistence#updateRegistryObjects(java.lang.String[])
+     */
+    @Override
+    public boolean updateRegistryObjects(String[] updateStrings) throws PersistenceException {
+
+        PooledConnection pooled = borrow();
+        boolean discard = false;
+        Statement stmt = null;
+
+        try {
+
+            stmt = pooled.createStatement();
+
+            for (int u = 0; u < updateStrings.length; u++) {
+                stmt.addBatch(updateStrings[u]);
+            }
+
+            stmt.executeBatch();
+
+        } catch (SQLException e) {
+
+            discard = isConnectionException(e);
+            logger.log(Level.WARNING, "Failed to execute batch updates: ", e);
+            String sqlState = e.getSQLState();
+
+            if ("XJ208".equals(sqlState)) {
+
+                SQLException sqlEx = e.getNextException();
+
+                while (sqlEx != null) {
+                    if ("23505".equals(sqlEx.getSQLState())) {
+                        sqlState = sqlEx.getSQLState();
+                        break;
+                    }
+                    sqlEx = sqlEx.getNextException();
+                }
+            }
+
+            if (!"23505".equals(sqlState)) { /* if not a duplicate key exception */
+                throw new PersistenceException("Exception occurred running batched updates.", e.getMessage(), e
+                        .getErrorCode(), sqlState);
+            }
+
+        } finally {
+
+            SingletonJDBCPersistence.closeStatement(stmt);
+            release(pooled, discard);
+
+        }
+
+        return true;
+    }
+
+    /**
+     * Runs a batch of updates as a single transaction, rolling back all of them if any fails.
+     *
+     * @see fabric.registry.persistence.Persistence#updateRegistryObjects(fabric.registry.persistence.ParameterizedSql[])
+     */
+    @Override
+    public boolean updateRegistryObjects(ParameterizedSql[] updates) throws PersistenceException {
+
+        PooledConnection pooled = borrow();
+        boolean discard = false;
+        String sql = null;
+
+        try {
+
+            pooled.connection.setAutoCommit(false);
+
+            for (int u = 0; u < updates.length; u++) {
+
+                /* Statements are batched until the SQL changes */
+                sql = updates[u].sql();
+                PreparedStatement ps = pooled.prepare(sql);
+                updates[u].bind(ps);
+                ps.addBatch();
+
+                if (u == updates.length - 1 || !sql.equals(updates[u + 1].sql())) {
+                    ps.executeBatch();
+                }
+            }
+
+            pooled.connection.commit();
+
+        } catch (SQLException e) {
+
+            discard = isConnectionException(e) || !rollback(pooled);
+
+            if (!discard && sql != null) {
+                pooled.discard(sql);
+            }
+
+            logger.log(Level.WARNING, "Failed to execute batched update statement [{0}], batch rolled back: {1}",
+                    new Object[] {sql, e.getMessage()});
+            logger.log(Level.FINEST, "Full exception: ", e);
+            throw new PersistenceException("Exception occurred running batched updates.", e.getMessage(), e
+                    .getErrorCode(), e.getSQLState());
+
+        } finally {
+
+            try {
+                if (!discard) {
+                    pooled.connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                /* The connection cannot safely be reused */
+                discard = true;
+            }
+
+            release(pooled, discard);
+
+        }
+
+        return true;
+    }
+
+    /**
+     * Rolls back the current transaction on a pooled connection.
+     *
+     * @param pooled
+     *            the connection.
+     *
+     * @return <code>true</code> if the transaction was rolled back, <code>false</code> otherwise.
+     */
+    private boolean rollback(PooledConnection pooled) {
+
+        boolean rolledBack = true;
+
+        try {
+            pooled.connection.rollback();
+        } catch (SQLException e) {
+            rolledBack = false;
+            logger.log(Level.WARNING, "Failed to roll back batched updates: {0}", e.getMessage());
+            logger.log(Level.FINEST, "Full exception: ", e);
+        }
+
+        return rolledBack;
+    }
+
+    /**
+     * Answers a result handler converting each row of a result set into a Registry object.
+     *
+     * @param factory
+     *            the factory used to create the Registry objects.
+     *
+     * @return the handler.
+     */
+    private ResultHandler<RegistryObject[]> registryObjectHandler(final AbstractFactory factory) {
+
+        return new ResultHandler<RegistryObject[]>() {
+
+            @Override
+            RegistryObject[] handle(ResultSet rs) throws SQLException, PersistenceException {
+
+                ArrayList<RegistryObject> objects = new ArrayList<RegistryObject>();
+                PersistenceResultKeys keys = new PersistenceResultKeys(rs.getMetaData());
+
+                while (rs.next()) {
+                    RegistryObject regObject = factory.create(new PersistenceResultRow(rs, keys));
+                    if (regObject != null) {
+                        objects.add(regObject);
+                    }
+                }
+
+                return objects.toArray(new RegistryObject[objects.size()]);
+            }
+        };
+    }
+
+    /**
+     * Runs a query on a pooled connection, retrying once on a new connection if the connection has failed.
+     *
+     * @param query
+     *            the query.
+     *
+     * @param prepared
+     *            <code>true</code> if the query is to be run as a (cached) prepared statement, <code>false</code> if it
+     *            is literal SQL.
+     *
+     * @param handler
+     *            converts the result set into the returned value.
+     *
+     * @return the result.
+     *
+     * @throws PersistenceException
+     */
+    private <T> T executeQuery(ParameterizedSql query, boolean prepared, ResultHandler<T> handler)
+            throws PersistenceException {
+
+        for (int attempt = 1;; attempt++) {
+
+            PooledConnection pooled = borrow();
+            boolean discard = false;
+            Statement stmt = null;
+            ResultSet rs = null;
+
+            try {
+
+                if (prepared) {
+                    PreparedStatement ps = pooled.prepare(query.sql());
+                    query.bind(ps);
+                    rs = ps.executeQuery();
+                } else {
+                    stmt = pooled.createStatement();
+                    rs = stmt.executeQuery(query.sql());
+                }
+
+                return handler.handle(rs);
+
+            } catch (SQLException e) {
+
+                discard = isConnectionException(e);
+
+                if (prepared && !discard) {
+                    pooled.discard(query.sql());
+                }
+
+                if (discard && attempt == 1) {
+
+                    logger.log(Level.FINE, "Registry connection lost, retrying query on a new connection: {0}", e
+                            .getMessage());
+
+                } else {
+
+                    logger.log(Level.WARNING,
+                            "Error executing Registry query [{0}], SQL state [{1}], error code [{2}]: {3}",
+                            new Object[] {query, e.getSQLState(), e.getErrorCode(), e.getMessage()});
+                    logger.log(Level.FINEST, "Full exception: ", e);
+                    throw new PersistenceException("Error occurred executing query.", e.getMessage(), e
+                            .getErrorCode(), e.getSQLState());
+
+                }
+
+            } finally {
+
+                SingletonJDBCPersistence.closeResultSet(rs);
+                SingletonJDBCPersistence.closeStatement(stmt);
+                release(pooled, discard);
+
+            }
+        }
+    }
+
+    /**
+     * Runs an update on a pooled connection, retrying once on a new connection if the connection has failed.
+     *
+     * @param update
+     *            the update.
+     *
+     * @param prepared
+     *            <code>true</code> if the update is to be run as a (cached) prepared statement, <code>false</code> if
+     *            it is literal SQL.
+     *
+     * @param ignoreDuplicateWarning
+     *            <code>true</code> if a duplicate key error is to be ignored.
+     *
+     * @return <code>true</code>.
+     *
+     * @throws PersistenceException
+     */
+    private boolean executeUpdate(ParameterizedSql update, boolean prepared, boolean ignoreDuplicateWarning)
+            throws PersistenceException {
+
+        for (int attempt = 1;; attempt++) {
+
+            PooledConnection pooled = borrow();
+            boolean discard = false;
+            Statement stmt = null;
+
+            try {
+
+                if (prepared) {
+                    PreparedStatement ps = pooled.prepare(update.sql());
+                    update.bind(ps);
+                    ps.executeUpdate();
+                } else {
+                    stmt = pooled.createStatement();
+                    stmt.executeUpdate(update.sql());
+                }
+
+                return true;
+
+            } catch (SQLException e) {
+
+                discard = isConnectionException(e);
+
+                if ("23505".equals(e.getSQLState())) {
+
+                    logger.log(Level.FINEST, "Duplicate key error encountered for statement [{0}]", update);
+
+                    if (!ignoreDuplicateWarning) {
+                        throw new PersistenceException("Error during registry update: ", e.getMessage(), e
+                                .getErrorCode(), e.getSQLState());
+                    }
+
+                    return true;
+
+                }
+
+                if (prepared && !discard) {
+                    pooled.discard(update.sql());
+                }
+
+                if (discard && attempt == 1) {
+
+                    logger.log(Level.FINE, "Registry connection lost, retrying update on a new connection: {0}", e
+                            .getMessage());
+
+                } else {
+
+                    logger.log(Level.WARNING, "Failed to execute update statement [{0}]: {1}", new Object[] {update,
+                            e.getMessage()});
+                    logger.log(Level.FINEST, "Full exception: ", e);
+                    throw new PersistenceException("Error occurred exeuting update.", e.getMessage(), e.getErrorCode(),
+                            e.getSQLState());
+
+                }
+
+            } finally {
+
+                SingletonJDBCPersistence.closeStatement(stmt);
+                release(pooled, discard);
+
+            }
+        }
+    }
+
+    /**
+     * Answers <code>true</code> if an exception indicates that the connection to the Registry has failed.
+     *
+     * @param e
+     *            the exception.
+     *
+     * @return <code>true</code> for a connection exception, <code>false</code> otherwise.
+     */
+    private boolean isConnectionException(SQLException e) {
+
+        /* 08 prefix codes are connection exceptions in Derby */
+        return e.getSQLState() != null && e.getSQLState().startsWith("08");
+    }
+
+    /**
+     * Opens a new JDBC connection to the Registry.
+     *
+     * @return the connection.
+     *
+     * @throws SQLException
+     */
+    private Connection openConnection() throws SQLException {
+
+        try {
+            /* Loading the driver class registers it with the driver manager */
+            Class.forName("org.apache.derby.jdbc.ClientDriver");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("Cannot load the Registry JDBC driver", e);
+        }
+
+        return DriverManager.getConnection(fabricDbUrl);
+    }
+
+    /**
+     * Takes a connection from the pool, opening a new connection if none are idle and the pool is not full, or waiting
+     * for one to be released otherwise.
+     *
+     * @return the connection.
+     *
+     * @throws PersistenceException
+     *             if no connection is available.
+     */
+    private PooledConnection borrow() throws PersistenceException {
+
+        if (closed || idleConnections == null) {
+            throw new PersistenceException("Not connected to the Registry");
+        }
+
+        PooledConnection pooled = idleConnections.poll();
+
+        if (pooled == null) {
+
+            boolean open = false;
+
+            synchronized (poolLock) {
+                if (openConnections < poolSize) {
+                    openConnections++;
+                    open = true;
+                }
+            }
+
+            if (open) {
+
+                try {
+
+                    pooled = new PooledConnection(openConnection());
+
+                } catch (SQLException e) {
+
+                    synchronized (poolLock) {
+                        openConnections--;
+                    }
+
+                    logger.log(Level.WARNING, "Failed to connect to Fabric Registry: {0}", e.getMessage());
+                    logger.log(Level.FINEST, "Full exception: ", e);
+                    throw new PersistenceException("Failed to connect to Fabric Registry", e.getMessage(), e
+                            .getErrorCode(), e.getSQLState());
+
+                }
+
+            } else {
+
+                try {
+                    pooled = idleConnections.poll(poolWait, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                if (pooled == null) {
+                    throw new PersistenceException("Timed out waiting for a Registry connection");
+                }
+            }
+        }
+
+        return pooled;
+    }
+
+    /**
+     * Returns a connection to the pool.
+     *
+     * @param pooled
+     *            the connection.
+     *
+     * @param discard
+     *            <code>true</code> if the connection has failed and is to be closed rather than reused.
+     */
+    private void release(PooledConnection pooled, boolean discard) {
+
+        if (discard || closed || !idleConnections.offer(pooled)) {
+
+            pooled.close();
+
+            synchronized (poolLock) {
+                openConnections--;
+            }
+        }
+    }
+}
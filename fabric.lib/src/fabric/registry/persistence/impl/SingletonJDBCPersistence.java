@@ -9,6 +9,7 @@ package fabric.registry.persistence.impl;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -29,6 +30,7 @@ import fabric.registry.QueryScope;
 import fabric.registry.RegistryObject;
 import fabric.registry.exception.PersistenceException;
 import fabric.registry.impl.AbstractFactory;
+import fabric.registry.persistence.ParameterizedSql;
 import fabric.registry.persistence.Persistence;
 import fabric.registry.persistence.distributed.DistributedQueryResult;
 
@@ -436,6 +438,7 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
                     logger.log(Level.WARNING, "Error closing result set! ", thrownException);
                 }
             }
+            closeStatement(stmt);
         }
 
         if (thrownException != null) {
@@ -466,6 +469,113 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
         return objects.toArray(new RegistryObject[] {});
     }
 
+    /**
+     * @see fabric.registry.persistence.Persistence#queryRegistryObjects(fabric.registry.persistence.ParameterizedSql,
+     *      fabric.registry.impl.AbstractFactory, fabric.registry.QueryScope)
+     */
+    @Override
+    public RegistryObject[] queryRegistryObjects(ParameterizedSql query, AbstractFactory factory, QueryScope queryScope)
+            throws PersistenceException {
+
+        ArrayList<RegistryObject> objects = new ArrayList<RegistryObject>();
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            stmt = registryConnection().prepareStatement(query.sql());
+            query.bind(stmt);
+            rs = stmt.executeQuery();
+            PersistenceResultKeys keys = new PersistenceResultKeys(rs.getMetaData());
+
+            while (rs.next()) {
+                RegistryObject regObject = factory.create(new PersistenceResultRow(rs, keys));
+                if (regObject != null) {
+                    objects.add(regObject);
+                }
+            }
+
+        } catch (SQLException e) {
+
+            handleQueryException(e, query.toString());
+
+        } finally {
+
+            closeResultSet(rs);
+            closeStatement(stmt);
+
+        }
+
+        return objects.toArray(new RegistryObject[] {});
+    }
+
+    /**
+     * Handles an exception raised by a query, reconnecting or throwing an exception as appropriate.
+     *
+     * @param e
+     *            the exception.
+     *
+     * @param sqlString
+     *            the query (for logging).
+     *
+     * @throws PersistenceException
+     */
+    private void handleQueryException(SQLException e, String sqlString) throws PersistenceException {
+
+        logger.log(Level.WARNING, "Error executing Registry query [{0}], SQL state [{1}], error code [{2}]: {3}",
+                new Object[] {sqlString, e.getSQLState(), e.getErrorCode(), e.getMessage()});
+        logger.log(Level.FINEST, "Full exception: ", e);
+
+        if (e.getSQLState() != null && e.getSQLState().startsWith("08")) {
+            /* 08 prefix codes are connection exceptions in Derby */
+            String reconnectEnabled = config.getProperty("registry.reconnect", "false");
+            logger.log(Level.FINER, "Reconnect enabled: " + reconnectEnabled);
+            if (reconnectEnabled.equalsIgnoreCase("true")) {
+                logger.log(Level.WARNING, "Registry connection lost... attempting to reconnect...");
+                synchronized (monitor) {
+                    jdbcConnect();
+                }
+            }
+        } else {
+            throw new PersistenceException("Error occurred executing query.", e.getMessage(), e.getErrorCode(), e
+                    .getSQLState());
+        }
+    }
+
+    /**
+     * Closes a JDBC result set, ignoring any errors.
+     *
+     * @param rs
+     *            the result set (may be <code>null</code>).
+     */
+    static void closeResultSet(ResultSet rs) {
+
+        if (rs != null) {
+            try {
+                rs.close();
+            } catch (SQLException e) {
+                logger.log(Level.FINER, "Error closing result set: {0}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Closes a JDBC statement, ignoring any errors.
+     *
+     * @param stmt
+     *            the statement (may be <code>null</code>).
+     */
+    static void closeStatement(Statement stmt) {
+
+        if (stmt != null) {
+            try {
+                stmt.close();
+            } catch (SQLException e) {
+                logger.log(Level.FINER, "Error closing statement: {0}", e.getMessage());
+            }
+        }
+    }
+
     protected int queryInt(String sqlString, QueryScope queryScope) throws PersistenceException {
 
         int returnValue = 0;
@@ -490,6 +600,7 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
                     logger.log(Level.WARNING, "Error closing result set! ", thrownException);
                 }
             }
+            closeStatement(stmt);
         }
 
         if (thrownException != null) {
@@ -550,6 +661,7 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
                     // log.log(this, ILogger.ERROR, Fabric.message("registry.resultset.failed"));
                 }
             }
+            closeStatement(stmt);
         }
 
         if (thrownException != null) {
@@ -606,6 +718,7 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
                     logger.log(Level.WARNING, "Error closing result set! ", thrownException);
                 }
             }
+            closeStatement(stmt);
         }
 
         if (thrownException != null) {
@@ -645,7 +758,7 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
      * @throws SQLException
      *             if an error occurs manipulating the ResultSet.
      */
-    private Object[] processResultRow(ResultSet rs) throws SQLException {
+    static Object[] processResultRow(ResultSet rs) throws SQLException {
 
         Object[] columnValues = null;
         if (rs != null) {
@@ -708,33 +821,130 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
 
             } catch (SQLException e) {
 
-                if (e.getSQLState().equals("23505") && !ignoreDuplicateWarning) {
+                handleUpdateException(e, sqlString, ignoreDuplicateWarning);
+
+            } finally {
+
+                closeStatement(stmt);
 
-                    logger.log(Level.FINEST, "Duplicate key error encountered for statement [{0}]", sqlString);
-                    throw new PersistenceException("Error during registry update: ", e.getMessage(), e.getErrorCode(),
-                            e.getSQLState());
+            }
 
-                } else {
+            return true;
 
-                    if (e.getSQLState().startsWith("08")) { /* 08 prefix codes are connection exceptions in Derby */
+        } else {
 
-                        logger.log(Level.WARNING, "Registry connection lost; attempting to reconnect");
-                        String reconnectEnabled = config.getProperty("registry.reconnect", "false");
+            return false;
 
-                        if (reconnectEnabled.equalsIgnoreCase("true")) {
-                            synchronized (monitor) {
-                                jdbcConnect();
-                            }
+        }
+    }
+
+    /**
+     * @see fabric.registry.persistence.Persistence#updateRegistryObject(fabric.registry.persistence.ParameterizedSql,
+     *      boolean)
+     */
+    @Override
+    public boolean updateRegistryObject(ParameterizedSql update, boolean ignoreDuplicateWarning)
+            throws PersistenceException {
+
+        if (registryConnection() != null) {
+
+            PreparedStatement stmt = null;
+
+            try {
+
+                stmt = registryConnection().prepareStatement(update.sql());
+                update.bind(stmt);
+                stmt.executeUpdate();
+
+            } catch (SQLException e) {
+
+                handleUpdateException(e, update.toString(), ignoreDuplicateWarning);
+
+            } finally {
+
+                closeStatement(stmt);
+
+            }
+
+            return true;
+
+        } else {
+
+            return false;
+
+        }
+    }
+
+    /**
+     * Runs a batch of updates as a single transaction, rolling back all of them if any fails.
+     * <p>
+     * The Registry connection is shared by all threads, so the transaction is run on a connection of its own that is
+     * closed once the batch completes.
+     * </p>
+     *
+     * @see fabric.registry.persistence.Persistence#updateRegistryObjects(fabric.registry.persistence.ParameterizedSql[])
+     */
+    @Override
+    public boolean updateRegistryObjects(ParameterizedSql[] updates) throws PersistenceException {
+
+        if (registryConnection() != null) {
+
+            Connection connection = null;
+            PreparedStatement stmt = null;
+            int u = 0;
+
+            try {
+
+                connection = DriverManager.getConnection(fabricDbUrl);
+                connection.setAutoCommit(false);
+
+                for (; u < updates.length; u++) {
+
+                    /* Statements are batched until the SQL changes */
+                    if (stmt == null) {
+                        stmt = connection.prepareStatement(updates[u].sql());
+                        if (queryTimeout != -1) {
+                            stmt.setQueryTimeout(queryTimeout);
                         }
+                    }
+
+                    updates[u].bind(stmt);
+                    stmt.addBatch();
 
-                    } else { // anything else, log it and throw exception
+                    if (u == updates.length - 1 || !updates[u].sql().equals(updates[u + 1].sql())) {
+                        stmt.executeBatch();
+                        closeStatement(stmt);
+                        stmt = null;
+                    }
+                }
 
-                        logger.log(Level.WARNING, "Failed to execute update statement [{0}]: {1}", new Object[] {
-                                sqlString, e.getMessage()});
-                        logger.log(Level.FINEST, "Full exception: ", e);
-                        throw new PersistenceException("Error occurred exeuting update.", e.getMessage(), e
-                                .getErrorCode(), e.getSQLState());
+                connection.commit();
 
+            } catch (SQLException e) {
+
+                if (connection != null) {
+                    try {
+                        connection.rollback();
+                    } catch (SQLException e1) {
+                        /* Closing the connection without committing discards the transaction */
+                    }
+                }
+
+                logger.log(Level.WARNING, "Failed to execute batched update statement [{0}], batch rolled back: {1}",
+                        new Object[] {(u < updates.length) ? updates[u].toString() : null, e.getMessage()});
+                logger.log(Level.FINEST, "Full exception: ", e);
+                throw new PersistenceException("Exception occurred running batched updates.", e.getMessage(), e
+                        .getErrorCode(), e.getSQLState());
+
+            } finally {
+
+                closeStatement(stmt);
+
+                if (connection != null) {
+                    try {
+                        connection.close();
+                    } catch (SQLException e) {
+                        /* Since we're cleaning up, ignore and carry on */
                     }
                 }
             }
@@ -748,6 +958,54 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
         }
     }
 
+    /**
+     * Handles an exception raised by an update, reconnecting or throwing an exception as appropriate.
+     *
+     * @param e
+     *            the exception.
+     *
+     * @param sqlString
+     *            the update statement (for logging).
+     *
+     * @param ignoreDuplicateWarning
+     *            <code>true</code> if a duplicate key error is to be ignored.
+     *
+     * @throws PersistenceException
+     */
+    private void handleUpdateException(SQLException e, String sqlString, boolean ignoreDuplicateWarning)
+            throws PersistenceException {
+
+        if (e.getSQLState().equals("23505") && !ignoreDuplicateWarning) {
+
+            logger.log(Level.FINEST, "Duplicate key error encountered for statement [{0}]", sqlString);
+            throw new PersistenceException("Error during registry update: ", e.getMessage(), e.getErrorCode(),
+                    e.getSQLState());
+
+        } else {
+
+            if (e.getSQLState().startsWith("08")) { /* 08 prefix codes are connection exceptions in Derby */
+
+                logger.log(Level.WARNING, "Registry connection lost; attempting to reconnect");
+                String reconnectEnabled = config.getProperty("registry.reconnect", "false");
+
+                if (reconnectEnabled.equalsIgnoreCase("true")) {
+                    synchronized (monitor) {
+                        jdbcConnect();
+                    }
+                }
+
+            } else { // anything else, log it and throw exception
+
+                logger.log(Level.WARNING, "Failed to execute update statement [{0}]: {1}", new Object[] {
+                        sqlString, e.getMessage()});
+                logger.log(Level.FINEST, "Full exception: ", e);
+                throw new PersistenceException("Error occurred exeuting update.", e.getMessage(), e
+                        .getErrorCode(), e.getSQLState());
+
+            }
+        }
+    }
+
     /**
      * Close the connection at the end of the life of this class.
      */
@@ -761,9 +1019,12 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
     public boolean updateRegistryObjects(String[] sqlStrings) throws PersistenceException {
 
         if (registryConnection() != null) {
+
+            Statement stmt = null;
+
             try {
 
-                Statement stmt = createStatement();
+                stmt = createStatement();
 
                 for (int z = 0; z < sqlStrings.length; z++) {
                     stmt.addBatch(sqlStrings[z]);
@@ -784,20 +1045,22 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
             } catch (SQLException e) {
                 logger.log(Level.WARNING, "Failed to execute batch updates: ", e);
                 String sqlState = e.getSQLState();
-                if (sqlState.equals("XJ208")) {
+                if ("XJ208".equals(sqlState)) {
                     SQLException sqlEx = e.getNextException();
                     while (sqlEx != null) {
-                        if (sqlEx.getSQLState().equals("23505")) {
+                        if ("23505".equals(sqlEx.getSQLState())) {
                             sqlState = sqlEx.getSQLState();
                             break;
                         }
                         sqlEx = sqlEx.getNextException();
                     }
-                    if (!sqlState.equals("23505")) { /* if not a duplicate key exception */
-                        throw new PersistenceException("Exception occurred running batched updates.", e.getMessage(), e
-                                .getErrorCode(), sqlState);
-                    }
                 }
+                if (!"23505".equals(sqlState)) { /* if not a duplicate key exception */
+                    throw new PersistenceException("Exception occurred running batched updates.", e.getMessage(), e
+                            .getErrorCode(), sqlState);
+                }
+            } finally {
+                closeStatement(stmt);
             }
             return true;
         } else {
@@ -828,6 +1091,7 @@ public class SingletonJDBCPersistence extends Object implements Persistence {
                     // log.log(this, ILogger.ERROR, Fabric.message("registry.resultset.failed"));
                 }
             }
+            closeStatement(stmt);
         }
 
         if (thrownException != null) {
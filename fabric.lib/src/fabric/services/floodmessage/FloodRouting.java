@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2012
+ * (C) Copyright IBM Corp. 2012, 2014
  *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -7,14 +7,18 @@
 
 package fabric.services.floodmessage;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.util.ArrayList;
 
+import fabric.bus.messages.BinaryWire;
 import fabric.bus.messages.IFabricMessage;
 import fabric.bus.messages.IReplicate;
 import fabric.bus.routing.IRouting;
 import fabric.bus.routing.impl.Routing;
 import fabric.bus.routing.impl.StaticRouting;
 import fabric.core.xml.XML;
+import fabric.core.xml.XMLPath;
 import fabric.registry.FabricRegistry;
 import fabric.registry.NodeNeighbour;
 import fabric.registry.QueryScope;
@@ -28,7 +32,7 @@ import fabric.registry.RouteFactory;
 public class FloodRouting extends Routing {
 
     /** Copyright notice. */
-    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2012";
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2012, 2014";
 
     /** The node that originated the flood message */
     private String startNode;
@@ -74,7 +78,7 @@ public class FloodRouting extends Routing {
      */
     private FloodRouting(FloodRouting source) {
 
-        super();
+        super(source);
         this.startNode = source.startNode();
         this.previousNode = source.previousNode();
         this.ttl = source.getTTL();
@@ -91,11 +95,12 @@ public class FloodRouting extends Routing {
         super.init(element, messageXML);
 
         /* Extract the routing specific properties from the message */
-        this.startNode = messageXML.get(element + "/rt/strt");
-        this.previousNode = messageXML.get(element + "/rt/prev");
-        this.retained = messageXML.getBoolean(element + "/rt/retain");
+        XMLPath elementPath = XMLPath.forPath(element);
+        this.startNode = messageXML.get(elementPath.resolve("/rt/strt"));
+        this.previousNode = messageXML.get(elementPath.resolve("/rt/prev"));
+        this.retained = messageXML.getBoolean(elementPath.resolve("/rt/retain"));
 
-        String ttlString = messageXML.get(element + "/rt/ttl");
+        String ttlString = messageXML.get(elementPath.resolve("/rt/ttl"));
         if (ttlString != null) {
             this.ttl = Long.parseLong(ttlString);
         } else {
@@ -106,6 +111,38 @@ public class FloodRouting extends Routing {
         this.nextNodes = null;
     }
 
+    /**
+     * @see fabric.bus.routing.impl.Routing#initBinary(java.io.DataInput)
+     */
+    @Override
+    public void initBinary(DataInput in) throws Exception {
+
+        super.initBinary(in);
+
+        /* Extract the routing specific properties from the message */
+        this.startNode = BinaryWire.readString(in);
+        this.previousNode = BinaryWire.readString(in);
+        this.retained = in.readBoolean();
+        this.ttl = in.readLong();
+
+        /* At this point, assume this message won't be forwarded on */
+        this.nextNodes = null;
+    }
+
+    /**
+     * @see fabric.bus.routing.impl.Routing#embedBinary(java.io.DataOutput)
+     */
+    @Override
+    public void embedBinary(DataOutput out) throws Exception {
+
+        super.embedBinary(out);
+
+        BinaryWire.writeString(out, this.startNode);
+        BinaryWire.writeString(out, homeNode());
+        out.writeBoolean(retained);
+        out.writeLong(ttl);
+    }
+
     /**
      * Sets the time-to-live value.
      *
@@ -155,13 +192,14 @@ public class FloodRouting extends Routing {
 
         super.embed(element, messageXML);
 
-        messageXML.set(element + "/rt/strt", this.startNode);
-        messageXML.set(element + "/rt/prev", homeNode());
+        XMLPath elementPath = XMLPath.forPath(element);
+        messageXML.set(elementPath.resolve("/rt/strt"), this.startNode);
+        messageXML.set(elementPath.resolve("/rt/prev"), homeNode());
         if (retained) {
             /* Only add this property if it is TRUE; XML.getBoolean defaults to FALSE if the property is not present */
-            messageXML.setBoolean(element + "/rt/retain", retained);
+            messageXML.setBoolean(elementPath.resolve("/rt/retain"), retained);
         }
-        messageXML.set(element + "/rt/ttl", Long.toString(ttl));
+        messageXML.set(elementPath.resolve("/rt/ttl"), Long.toString(ttl));
     }
 
     /**
@@ -7,7 +7,14 @@
 
 package fabric.services.messageforwarding;
 
-import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 import fabric.bus.IBusServices;
@@ -18,11 +25,19 @@ import fabric.bus.plugins.IPluginConfig;
 import fabric.bus.services.IBusServiceConfig;
 import fabric.bus.services.IPersistentService;
 import fabric.bus.services.impl.BusService;
+import fabric.core.metrics.PipelineMetrics;
+import fabric.core.metrics.StageMetrics;
 
 /**
- * Manages the queue of feed messages to be sent to neighbouring nodes.
+ * Manages the queues of feed messages to be sent to neighbouring nodes and delivered to local actors.
+ * <p>
+ * Messages are queued on a lane for their destination (one lane per neighbouring node, plus one for local delivery).
+ * A lane is scheduled on the worker pool as soon as a message is added to it, and each run sends a batch of the
+ * messages waiting on that lane. Messages for the same destination are therefore sent in order, while a slow
+ * neighbour only delays its own lane.
+ * </p>
  */
-public class MessageForwardingService extends BusService implements IPersistentService, Runnable {
+public class MessageForwardingService extends BusService implements IPersistentService {
 
     /** Copyright notice. */
     public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
@@ -31,6 +46,12 @@ public class MessageForwardingService extends BusService implements IPersistentS
      * Class constants
      */
 
+    /** The key of the lane used for messages to be delivered to local actors */
+    private static final String LOCAL_LANE = "";
+
+    /** The prefix for worker thread names */
+    private static final String prefix = "Message-Forwarding-Service-";
+
     /*
      * Class fields
      */
@@ -38,22 +59,176 @@ public class MessageForwardingService extends BusService implements IPersistentS
     /** A local copy of the interface to Fabric management functions. */
     private IBusServices busServices = null;
 
-    /** To hold the sleep interval for the worker thread. */
-    private int sleepInterval = 1000;
+    /** The maximum number of messages sent by a lane before yielding its worker thread. */
+    private int batchSize = 64;
 
-    /** The message queue */
-    private final LinkedList<OutboundMessage> messageQueue = new LinkedList<OutboundMessage>();
+    /** The lanes, keyed by destination node */
+    private final ConcurrentHashMap<String, ForwardingLane> lanes = new ConcurrentHashMap<String, ForwardingLane>();
 
-    /** To hold the reference to the worker thread */
-    private Thread workerThread = null;
+    /** The pool of worker threads servicing the lanes */
+    private ExecutorService workerPool = null;
 
-    /** Flag used to indicate when the worker thread should terminate */
-    private boolean isRunning = false;
+    /** Flag used to indicate when the service should stop accepting messages */
+    private volatile boolean isRunning = false;
 
     /*
      * Inner classes
      */
 
+    /**
+     * Thread factory for worker threads.
+     */
+    private static class ForwardingThreadFactory implements ThreadFactory {
+
+        /** The number of worker threads created */
+        private final AtomicInteger threadCount = new AtomicInteger(0);
+
+        /**
+         * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+         */
+        @Override
+        public Thread newThread(Runnable r) {
+
+            Thread newThread = new Thread(r, prefix + threadCount.incrementAndGet());
+            newThread.setDaemon(true);
+            return newThread;
+        }
+    }
+
+    /**
+     * A queued message and the time at which it was queued.
+     */
+    private static final class QueuedMessage {
+
+        /** The message */
+        final OutboundMessage message;
+
+        /** The time at which the message was queued (from <code>PipelineMetrics.start()</code>) */
+        final long queued;
+
+        /**
+         * Constructs a new instance.
+         *
+         * @param message
+         *            the message.
+         *
+         * @param queued
+         *            the time at which the message was queued.
+         */
+        QueuedMessage(OutboundMessage message, long queued) {
+
+            this.message = message;
+            this.queued = queued;
+        }
+    }
+
+    /**
+     * The queue of messages for a single destination, and the task that sends them.
+     * <p>
+     * At most one instance of the task for a lane is scheduled at any time.
+     * </p>
+     */
+    private class ForwardingLane implements Runnable {
+
+        /** The destination node (or <code>LOCAL_LANE</code>) */
+        private final String destination;
+
+        /** The messages waiting to be sent */
+        private final ConcurrentLinkedQueue<QueuedMessage> queue = new ConcurrentLinkedQueue<QueuedMessage>();
+
+        /** The pipeline metrics for the time that messages spend waiting on this lane */
+        private final StageMetrics queueMetrics;
+
+        /** The pipeline metrics for the time taken to send messages from this lane */
+        private final StageMetrics publishMetrics;
+
+        /** Flag indicating if this lane is scheduled (or running) on the worker pool */
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        /**
+         * Constructs a new instance.
+         *
+         * @param destination
+         *            the destination node.
+         */
+        ForwardingLane(String destination) {
+
+            this.destination = destination;
+
+            /* Metrics for neighbour lanes are kept per neighbour, those for the local lane for the whole node */
+            String neighbour = (destination.equals(LOCAL_LANE)) ? null : destination;
+            queueMetrics = PipelineMetrics.stage(PipelineMetrics.STAGE_FORWARDING_QUEUE,
+                    PipelineMetrics.SCOPE_NEIGHBOUR, neighbour);
+            publishMetrics = PipelineMetrics.stage(PipelineMetrics.STAGE_PUBLISH, PipelineMetrics.SCOPE_NEIGHBOUR,
+                    neighbour);
+        }
+
+        /**
+         * Adds a message to the tail of this lane and makes sure that the lane is scheduled.
+         *
+         * @param message
+         *            the message to add.
+         */
+        void add(OutboundMessage message) {
+
+            queue.add(new QueuedMessage(message, PipelineMetrics.start()));
+            schedule();
+        }
+
+        /**
+         * Schedules this lane on the worker pool, unless it is already scheduled.
+         */
+        private void schedule() {
+
+            if (isRunning && scheduled.compareAndSet(false, true)) {
+
+                try {
+
+                    workerPool.execute(this);
+
+                } catch (RejectedExecutionException e) {
+
+                    scheduled.set(false);
+                    logger.log(Level.FINE, "Cannot schedule forwarding to [{0}]: {1}", new Object[] {destination,
+                            e.getMessage()});
+
+                }
+            }
+        }
+
+        /**
+         * Sends the next batch of messages waiting on this lane.
+         *
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+
+            try {
+
+                QueuedMessage nextMessage = null;
+
+                for (int m = 0; m < batchSize && (nextMessage = queue.poll()) != null; m++) {
+
+                    queueMetrics.recordSince(nextMessage.queued);
+                    long sendStart = PipelineMetrics.start();
+                    send(nextMessage.message);
+                    publishMetrics.recordSince(sendStart);
+
+                }
+
+            } finally {
+
+                scheduled.set(false);
+
+                /* If more messages arrived (or the batch limit was reached) go round again */
+                if (!queue.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+    }
+
     /*
      * Class methods
      */
@@ -68,18 +243,27 @@ public class MessageForwardingService extends BusService implements IPersistentS
     }
 
     /**
-     * Adds a new message to the tail of the queue.
+     * Adds a new message to the tail of the queue for its destination.
      *
      * @param message
      *            the message to add.
      */
     public void add(OutboundMessage message) {
 
-        synchronized (messageQueue) {
+        String destination = (message.action() == Action.FORWARD && message.node() != null) ? message.node() : LOCAL_LANE;
+        ForwardingLane lane = lanes.get(destination);
+
+        if (lane == null) {
 
-            messageQueue.add(message);
+            ForwardingLane newLane = new ForwardingLane(destination);
+            lane = lanes.putIfAbsent(destination, newLane);
 
+            if (lane == null) {
+                lane = newLane;
+            }
         }
+
+        lane.add(message);
     }
 
     /**
@@ -93,12 +277,17 @@ public class MessageForwardingService extends BusService implements IPersistentS
         /* Make a local copy of the accessor for Fabric management services */
         busServices = ((IBusServiceConfig) config).getFabricServices();
 
-        /* Determine the sleep interval for the worker thread */
-        sleepInterval = Integer.parseInt(config().getProperty("fabric.messageForwarding.sleepInterval", "1000"));
+        /* Determine the number of messages sent to a destination before yielding to other destinations */
+        batchSize = Math.max(1, Integer.parseInt(config().getProperty("fabric.messageForwarding.batchSize", "64")));
 
-        /* Start the worker thread */
-        workerThread = new Thread(this, "Message-Forwarding-Service");
-        workerThread.start();
+        /* Start the worker pool (threads are created on demand, so a slow destination cannot block the others) */
+        workerPool = Executors.newCachedThreadPool(new ForwardingThreadFactory());
+        isRunning = true;
+
+        /* Send anything queued before the service started */
+        for (ForwardingLane lane : lanes.values()) {
+            lane.schedule();
+        }
 
     }
 
@@ -120,97 +309,68 @@ public class MessageForwardingService extends BusService implements IPersistentS
     @Override
     public void stopService() {
 
-        /* Tell the worker thread to stop */
+        /* Stop scheduling lanes, and let any running batches complete */
         isRunning = false;
+
+        if (workerPool != null) {
+            workerPool.shutdown();
+        }
+
         logger.log(Level.FINE, "Service [{0}] stopped", getClass().getName());
 
     }
 
     /**
-     * Entry point for the thread responsible for sending queued messages.
+     * Sends a queued message.
+     *
+     * @param nextMessage
+     *            the message.
      */
-    @Override
-    public void run() {
+    private void send(OutboundMessage nextMessage) {
 
-        /* Indicate that the worker thread is running */
-        isRunning = true;
+        switch (nextMessage.action()) {
 
-        while (isRunning) {
+            case FORWARD:
 
-            /* To hold the next message to be processed */
-            OutboundMessage nextMessage = null;
+                try {
 
-            synchronized (messageQueue) {
+                    busServices.sendFeedMessage(nextMessage.node(), nextMessage.descriptor(), nextMessage.message(),
+                            nextMessage.messageQos());
 
-                /* If the message queue is not empty... */
-                if (!messageQueue.isEmpty()) {
+                } catch (Exception e) {
 
-                    /* Get the head of the queue */
-                    nextMessage = messageQueue.remove();
+                    logger.log(Level.WARNING, "Failed to send message to service [{0}] on node [{1}]: {2}",
+                            new Object[] {nextMessage.descriptor(), nextMessage.node(), e.getMessage()});
+                    logger.log(Level.FINEST, "Full exception: ", e);
 
                 }
-            }
-
-            /* If we have a message... */
-            if (nextMessage != null) {
-
-                switch (nextMessage.action()) {
-
-                    case FORWARD:
-
-                        try {
-
-                            busServices.sendFeedMessage(nextMessage.node(), nextMessage.descriptor(), nextMessage
-                                    .message(), nextMessage.messageQos());
-
-                        } catch (Exception e) {
-
-                            logger.log(Level.WARNING, "Failed to send message to service [{0}] on node [{1}]: {2}",
-                                    new Object[] {nextMessage.descriptor(), nextMessage.node(), e.getMessage()});
-                            logger.log(Level.FINEST, "Full exception: ", e);
 
-                        }
+                break;
 
-                        break;
+            case DELIVER:
 
-                    case DELIVER:
-
-                        try {
-
-                            busServices.deliverFeedMessage(nextMessage.descriptor(), nextMessage.message(), nextMessage
-                                    .subscription(), nextMessage.messageQos());
-
-                        } catch (Exception e) {
-
-                            logger.log(Level.WARNING, "Failed to deliver message to feed [{0}] for user [{1}]: {2}",
-                                    new Object[] {nextMessage.descriptor(), nextMessage.subscription().actor(),
-                                    e.getMessage()});
-                            logger.log(Level.FINEST, "Full exception: ", e);
-
-                        }
+                try {
 
-                        break;
+                    busServices.deliverFeedMessage(nextMessage.descriptor(), nextMessage.message(), nextMessage
+                            .subscription(), nextMessage.messageQos());
 
-                    default:
+                } catch (Exception e) {
 
-                        logger.log(Level.WARNING, "Internal error, unsupported message action: {0}", nextMessage
-                                .action().toString());
-                        break;
+                    logger.log(Level.WARNING, "Failed to deliver message to feed [{0}] for user [{1}]: {2}",
+                            new Object[] {nextMessage.descriptor(), nextMessage.subscription().actor(),
+                            e.getMessage()});
+                    logger.log(Level.FINEST, "Full exception: ", e);
 
                 }
 
-            } else {
-
-                /* Nothing to do right now so sleep for a while */
+                break;
 
-                try {
+            default:
 
-                    Thread.sleep(sleepInterval);
+                logger.log(Level.WARNING, "Internal error, unsupported message action: {0}", nextMessage.action()
+                        .toString());
+                break;
 
-                } catch (InterruptedException e) {
-                    /* Ignore */
-                }
-            }
         }
     }
 }
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2009, 2012
+ * (C) Copyright IBM Corp. 2009, 2014
  *
  * LICENSE: Eclipse Public License v1.0
  * http://www.eclipse.org/legal/epl-v10.html
@@ -24,7 +24,7 @@ import fabric.core.logging.FLog;
 public class TableUpdate {
 
     /** Copyright notice. */
-    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009, 2012";
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2009, 2014";
 
     /*
      * Class static fields
@@ -94,6 +94,23 @@ public class TableUpdate {
 
                         break;
 
+                    case "SERVICES":
+
+                        /*
+                         * Determine the platform, system and ID of the feed; the string is encoded as
+                         * "platform_id/service_id/id:type"
+                         */
+                        idParts = id.split(":");
+                        String[] feedParts = idParts[0].split("/");
+
+                        if (action != null && (action.equals("UPDATE") || action.equals("INSERT"))
+                                && feedParts.length > 2) {
+                            /* Lookup and record the details of the feed, so that subscribers can match it */
+                            notificationDetail = serviceDetails(feedParts[0], feedParts[1], feedParts[2]);
+                        }
+
+                        break;
+
                     case "NODE_NEIGHBOURS":
 
                         /*
@@ -215,6 +232,85 @@ public class TableUpdate {
         return services;
     }
 
+    /**
+     * Lookup the details of a service (data feed).
+     *
+     * @param platformID
+     *            the ID of the platform to which the service's system is connected.
+     *
+     * @param systemID
+     *            the ID of the system providing the service.
+     *
+     * @param serviceID
+     *            the ID of the service.
+     *
+     * @return the service (encoded in JSON as a single element service list) and its availability.
+     *
+     * @throws SQLException
+     */
+    private static StringBuilder serviceDetails(String platformID, String systemID, String serviceID)
+        throws SQLException {
+
+        Connection connection = null;
+        Statement statement = null;
+        ResultSet resultSet = null;
+        StringBuilder services = new StringBuilder(",\"services\":[");
+        String availability = "";
+
+        try {
+
+            /* Get the database connection */
+            connection = DriverManager.getConnection("jdbc:default:connection");
+
+            /* Execute the query */
+            String sql = String.format(
+                    "select * from data_feeds where platform_id='%s' and service_id='%s' and id='%s'", platformID,
+                    systemID, serviceID);
+            statement = connection.createStatement();
+            resultSet = statement.executeQuery(sql);
+
+            /* Convert the result to JSON */
+
+            if (resultSet.next()) {
+
+                services.append(String.format("{\"id\":\"%s/%s/%s:%s:%s\"}", //
+                        platformID, //
+                        systemID, //
+                        serviceID, //
+                        resultSet.getString("TYPE_ID"), //
+                        resultSet.getString("DIRECTION")));
+
+                availability = resultSet.getString("AVAILABILITY");
+                availability = (availability != null) ? availability : "";
+            }
+
+            services.append(']');
+            services.append(String.format(",\"availability\":\"%s\"", availability));
+
+        } catch (Exception e) {
+
+            System.out.println("Query for service information failed: " + FLog.stackTrace(e));
+
+        } finally {
+
+            /* Tidy up */
+
+            if (resultSet != null) {
+                resultSet.close();
+            }
+
+            if (statement != null) {
+                statement.close();
+            }
+
+            if (connection != null) {
+                connection.close();
+            }
+        }
+
+        return services;
+    }
+
     /**
      * Lookup the neighbour's availability.
      *
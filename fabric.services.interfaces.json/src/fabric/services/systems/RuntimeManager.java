@@ -9,8 +9,13 @@ package fabric.services.systems;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -70,6 +75,12 @@ public class RuntimeManager extends FabricBus implements ISubscriptionCallback {
     /** To hold the list of subscription requests for active systems. */
     private final HashMap<ServiceDescriptor, List<ServiceDescriptor>> systemSubscriptionRequests = new HashMap<ServiceDescriptor, List<ServiceDescriptor>>();
 
+    /** Index of the subscription requests, used to match them against new feeds as they become available. */
+    private final SubscriptionPatternIndex subscriptionPatterns = new SubscriptionPatternIndex();
+
+    /** The IDs of the feeds last reported as available by Registry update notifications. */
+    private final Set<String> availableServices = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
     /** Flag indicating if Registry queries should be local or distributed. */
     private QueryScope queryScope = QueryScope.DISTRIBUTED;
 
@@ -110,6 +121,13 @@ public class RuntimeManager extends FabricBus implements ISubscriptionCallback {
             String intervalConfig = null;
             int interval = 0;
 
+            /*
+             * Subscription requests are matched against new feeds as Registry update notifications arrive, so
+             * periodically re-matching them is only needed if notifications are not available
+             */
+            boolean pollSubscriptions = Boolean.parseBoolean(fabric.config(
+                    "fabric.runtimeManager.pollSubscriptions", "false"));
+
             try {
                 intervalConfig = fabric.config("fabric.runtimeManager.refreshInterval", "-1");
                 interval = Integer.parseInt(intervalConfig);
@@ -159,7 +177,7 @@ public class RuntimeManager extends FabricBus implements ISubscriptionCallback {
                                         }
                                     }
 
-                                    action = "match";
+                                    action = pollSubscriptions ? "match" : "prune";
                                     break;
 
                                 case "match":
@@ -763,6 +781,10 @@ public class RuntimeManager extends FabricBus implements ISubscriptionCallback {
 
         synchronized (wiringLock) {
 
+            /* To hold the feeds matching the patterns, and the pattern matched by each */
+            ArrayList<ServiceDescriptor> matchingFeeds = new ArrayList<ServiceDescriptor>();
+            ArrayList<ServiceDescriptor> matchedPatterns = new ArrayList<ServiceDescriptor>();
+
             /* For each output feed pattern... */
             for (int sf = 0; sf < outputFeedPatterns.length; sf++) {
 
@@ -771,6 +793,7 @@ public class RuntimeManager extends FabricBus implements ISubscriptionCallback {
                 List<ServiceDescriptor> subscriptionList = fabric.lookupSublist(inputFeed, systemSubscriptionRequests);
                 if (!subscriptionList.contains(outputFeedPatterns[sf])) {
                     subscriptionList.add(outputFeedPatterns[sf]);
+                    subscriptionPatterns.add(outputFeedPatterns[sf], inputFeed);
                 }
 
                 /* Get the list of feeds that match the requested feed pattern (it may contain wildcards) */
@@ -778,12 +801,24 @@ public class RuntimeManager extends FabricBus implements ISubscriptionCallback {
 
                 /* While there are more feeds... */
                 for (int f = 0; f < feedsMatchingPattern.length; f++) {
+                    matchingFeeds.add(feedsMatchingPattern[f]);
+                    matchedPatterns.add(outputFeedPatterns[sf]);
+                }
+            }
+
+            if (!matchingFeeds.isEmpty()) {
+
+                /* Subscribe to all of the feeds at once */
+                ServiceDescriptor[] feeds = matchingFeeds.toArray(new ServiceDescriptor[matchingFeeds.size()]);
+                RuntimeStatus[] subscribeStatuses = subscribe(feeds, inputFeed, matchedPatterns
+                        .toArray(new ServiceDescriptor[matchedPatterns.size()]));
 
-                    /* Subscribe to the feed */
-                    subscribeStatus = subscribe(feedsMatchingPattern[f], inputFeed, outputFeedPatterns[sf]);
+                for (int f = 0; f < feeds.length; f++) {
+
+                    subscribeStatus = subscribeStatuses[f];
 
                     if (subscribeStatus.isOK()) {
-                        subscribedList.add(feedsMatchingPattern[f]);
+                        subscribedList.add(feeds[f]);
                     }
                 }
             }
@@ -792,6 +827,117 @@ public class RuntimeManager extends FabricBus implements ISubscriptionCallback {
         return subscribeStatus;
     }
 
+    /**
+     * Subscribes to a list of output feeds in bulk.
+     *
+     * @param outputFeedServices
+     *            the publishing services.
+     *
+     * @param inputFeedService
+     *            the local service to which feed messages will be delivered.
+     *
+     * @param patterns
+     *            the original subscription pattern for each publishing service.
+     *
+     * @return the status of each subscription.
+     */
+    public RuntimeStatus[] subscribe(ServiceDescriptor[] outputFeedServices, ServiceDescriptor inputFeedService,
+            ServiceDescriptor[] patterns) {
+
+        RuntimeStatus[] statuses = new RuntimeStatus[outputFeedServices.length];
+
+        synchronized (wiringLock) {
+
+            SystemDescriptor systemDescriptor = inputFeedService.toSystemDescriptor();
+            SystemRuntime systemRuntime = activeSystems.get(systemDescriptor);
+
+            /* If there is a running system instance... */
+            if (systemRuntime != null && systemRuntime.isRunning()) {
+
+                try {
+
+                    /* Subscribe */
+                    Boolean[] isNewSubscription = systemRuntime.subscribe(outputFeedServices, inputFeedService);
+
+                    /* To hold the feeds newly subscribed to via each pattern */
+                    LinkedHashMap<ServiceDescriptor, List<Integer>> newSubscriptionsByPattern =
+                            new LinkedHashMap<ServiceDescriptor, List<Integer>>();
+
+                    for (int f = 0; f < outputFeedServices.length; f++) {
+
+                        if (isNewSubscription[f] == null) {
+
+                            String message = format("Error subscribing to output-feed service [%s] (input-feed [%s])",
+                                    outputFeedServices[f], inputFeedService);
+                            statuses[f] = new RuntimeStatus(RuntimeStatus.Status.SUBSCRIBE_FAILED, message);
+
+                        } else if (!isNewSubscription[f]) {
+
+                            String message = format(
+                                    "Already subscribed to output-feed service [%s] (input-feed [%s])",
+                                    outputFeedServices[f], inputFeedService);
+                            logger.log(Level.FINEST, message);
+                            statuses[f] = new RuntimeStatus(RuntimeStatus.Status.ALREADY_SUBSCRIBED, message);
+
+                        } else {
+
+                            List<Integer> newSubscriptions = newSubscriptionsByPattern.get(patterns[f]);
+                            if (newSubscriptions == null) {
+                                newSubscriptions = new ArrayList<Integer>();
+                                newSubscriptionsByPattern.put(patterns[f], newSubscriptions);
+                            }
+                            newSubscriptions.add(f);
+
+                        }
+                    }
+
+                    /* Record each pattern once, rather than once per matching feed */
+                    for (ServiceDescriptor pattern : newSubscriptionsByPattern.keySet()) {
+
+                        RuntimeStatus status = null;
+
+                        try {
+
+                            recordSystemSubscription(systemDescriptor, pattern, inputFeedService);
+                            status = new RuntimeStatus(RuntimeStatus.Status.OK, RuntimeStatus.MESSAGE_OK);
+
+                        } catch (Exception e) {
+
+                            String message = format("Error recording subscription pattern [%s] (input-feed [%s]): %s",
+                                    pattern, inputFeedService, e.getMessage());
+                            logger.log(Level.WARNING, message);
+                            logger.log(Level.FINEST, "Full exception: ", e);
+                            status = new RuntimeStatus(RuntimeStatus.Status.SUBSCRIBE_FAILED, message);
+
+                        }
+
+                        for (Integer f : newSubscriptionsByPattern.get(pattern)) {
+                            statuses[f] = status;
+                        }
+                    }
+
+                } catch (Exception e) {
+
+                    String message = format("Error subscribing to output-feed services (input-feed [%s]): %s",
+                            inputFeedService, e.getMessage());
+                    logger.log(Level.WARNING, message);
+                    logger.log(Level.FINEST, "Full exception: ", e);
+                    Arrays.fill(statuses, new RuntimeStatus(RuntimeStatus.Status.SUBSCRIBE_FAILED, message));
+
+                }
+
+            } else {
+
+                String message = format("System is not running: %s", systemDescriptor);
+                logger.log(Level.WARNING, message);
+                Arrays.fill(statuses, new RuntimeStatus(RuntimeStatus.Status.NOT_RUNNING, message));
+
+            }
+        }
+
+        return statuses;
+    }
+
     /**
      * Find the list of feeds in the Registry matching the specified pattern.
      *
@@ -1022,6 +1168,7 @@ public class RuntimeManager extends FabricBus implements ISubscriptionCallback {
 
                         for (ServiceDescriptor nextDescriptor : outputFeedServices) {
                             subscriptionList.remove(nextDescriptor);
+                            subscriptionPatterns.remove(nextDescriptor, inputFeedService);
                             removeSystemSubscription(systemDescriptor, nextDescriptor, inputFeedService);
                         }
 
@@ -1029,6 +1176,7 @@ public class RuntimeManager extends FabricBus implements ISubscriptionCallback {
 
                         /* Forget all subscriptions */
                         subscriptionList.clear();
+                        subscriptionPatterns.removeAll(inputFeedService);
                         removeAllSystemSubscription(systemDescriptor);
 
                     }
@@ -1134,69 +1282,127 @@ public class RuntimeManager extends FabricBus implements ISubscriptionCallback {
     }
 
     /**
-     * Actions a notification of a new system on the bus, attempting to fulfill any outstanding subscriptions that might
-     * now be satisfied.
+     * Records the availability of a feed reported by a Registry update notification, and answers whether the feed has
+     * been added or has become available (rather than being updated while already available).
      *
-     * @param systemNotification
-     *            a JSON message containing details of the new system.
+     * @param notification
+     *            a JSON message containing details of the feed.
+     *
+     * @param action
+     *            the Registry action (<code>INSERT</code>, <code>UPDATE</code> or <code>DELETE</code>).
+     *
+     * @param availability
+     *            the availability of the feed.
+     *
+     * @return <code>true</code> if the feed is newly available, <code>false</code> otherwise.
+     */
+    private boolean serviceBecameAvailable(JSON notification, String action, String availability) {
+
+        boolean becameAvailable = false;
+        String id = new ServiceDescriptor(notification.getString("id")).toString();
+
+        if (action.equals("INSERT") && !availability.equals("UNAVAILABLE")) {
+
+            availableServices.add(id);
+            becameAvailable = true;
+
+        } else if (action.equals("UPDATE") && availability.equals("AVAILABLE")) {
+
+            becameAvailable = availableServices.add(id);
+
+        } else {
+
+            availableServices.remove(id);
+
+        }
+
+        return becameAvailable;
+    }
+
+    /**
+     * Actions a notification of a new system or feed on the bus, attempting to fulfill any outstanding subscriptions
+     * that might now be satisfied.
+     *
+     * @param notification
+     *            a JSON message containing details of the new system or feed.
      *
      * @throws Exception
      */
-    private void matchSubscriptions(JSON systemNotification) throws Exception {
+    private void matchSubscriptions(JSON notification) throws Exception {
 
         /* Get the list of new services */
 
-        JSONArray servicesJSON = systemNotification.getJSONArray("services");
+        JSONArray servicesJSON = notification.getJSONArray("services");
         List<ServiceDescriptor> newServices = new ArrayList<ServiceDescriptor>();
 
-        for (JSON serviceJSON : servicesJSON) {
+        if (servicesJSON != null) {
 
-            /* Build a descriptor for the next new service */
-            ServiceDescriptor nextService = new ServiceDescriptor(serviceJSON.getString("id"));
-            newServices.add(nextService);
+            for (JSON serviceJSON : servicesJSON) {
 
-        }
+                /* Build a descriptor for the next new service */
+                ServiceDescriptor nextService = new ServiceDescriptor(serviceJSON.getString("id"));
 
-        /* For each input feed that has subscription requests associated with it... */
-        for (ServiceDescriptor nextInputFeed : systemSubscriptionRequests.keySet()) {
+                /* Only output feeds can be subscribed to */
+                if (nextService.mode() == null || nextService.mode().equals("output")) {
+                    newServices.add(nextService);
+                }
+            }
 
-            /* To hold the list of new subscriptions that we make (if any) */
-            List<ServiceDescriptor> newSubscriptions = new ArrayList<ServiceDescriptor>();
+        } else if ("SERVICES".equalsIgnoreCase(notification.getString("table"))) {
 
-            /* Get the current list of subscription requests for the input feed */
-            List<ServiceDescriptor> subscriptionRequests = fabric.lookupSublist(nextInputFeed,
-                    systemSubscriptionRequests);
+            /* No details of the feed, so use its ID ("platform/system/feed:type") */
+            newServices.add(new ServiceDescriptor(notification.getString("id")));
 
-            /* For each subscription request... */
-            for (ServiceDescriptor nextRequest : subscriptionRequests) {
+        }
 
-                /* Get the set of new services that match the request */
-                List<ServiceDescriptor> matchingServices = matchDescriptors(nextRequest, newServices);
+        synchronized (wiringLock) {
 
-                /* For each matching service... */
-                for (ServiceDescriptor matchingService : matchingServices) {
+            /* For each input feed that has subscription requests matching the new services... */
+            for (SubscriptionPatternIndex.Match match : subscriptionPatterns.match(newServices)) {
 
-                    /* Subscribe */
-                    RuntimeStatus subscribeStatus = subscribe(matchingService, nextInputFeed, nextRequest);
+                /* Get the system instance that owns the input feed */
+                SystemRuntime systemRuntime = activeSystems.get(match.inputFeed.toSystemDescriptor());
 
-                    if (subscribeStatus.isOK()) {
-                        newSubscriptions.add(matchingService);
+                /* Only subscribe to the matching services that are not already wired to the system */
+                List<ServiceDescriptor> unwiredServices = new ArrayList<ServiceDescriptor>();
+                List<ServiceDescriptor> unwiredPatterns = new ArrayList<ServiceDescriptor>();
+
+                for (int f = 0; f < match.feeds.size(); f++) {
+                    if (systemRuntime == null || !systemRuntime.wiredInputFeeds().containsKey(match.feeds.get(f))) {
+                        unwiredServices.add(match.feeds.get(f));
+                        unwiredPatterns.add(match.patterns.get(f));
                     }
                 }
-            }
 
-            /* If any new subscriptions were made... */
-            if (newSubscriptions.size() > 0) {
+                if (unwiredServices.isEmpty()) {
+                    continue;
+                }
 
-                /* Get the system instance that owns the input feed */
-                SystemRuntime systemRuntime = activeSystems.get(nextInputFeed.toSystemDescriptor());
+                /* To hold the list of new subscriptions that we make (if any) */
+                List<ServiceDescriptor> newSubscriptions = new ArrayList<ServiceDescriptor>();
 
-                /* Build the response */
-                JSON response = JSONAdapter.buildSubscriptionResponse(newSubscriptions, nextInputFeed, null);
+                /* Subscribe to all of the matching services at once */
+                ServiceDescriptor[] matchingServices = unwiredServices.toArray(new ServiceDescriptor[unwiredServices
+                        .size()]);
+                RuntimeStatus[] subscribeStatuses = subscribe(matchingServices, match.inputFeed, unwiredPatterns
+                        .toArray(new ServiceDescriptor[unwiredPatterns.size()]));
 
-                /* Send to the client */
-                systemRuntime.system().sendToClient(response.toString());
+                for (int s = 0; s < matchingServices.length; s++) {
+                    if (subscribeStatuses[s].isOK()) {
+                        newSubscriptions.add(matchingServices[s]);
+                    }
+                }
 
+                /* If any new subscriptions were made... */
+                if (newSubscriptions.size() > 0) {
+
+                    /* Build the response */
+                    JSON response = JSONAdapter.buildSubscriptionResponse(newSubscriptions, match.inputFeed, null);
+
+                    /* Send to the client */
+                    systemRuntime.system().sendToClient(response.toString());
+
+                }
             }
         }
     }
@@ -1388,40 +1594,6 @@ public class RuntimeManager extends FabricBus implements ISubscriptionCallback {
         }
     }
 
-    /**
-     * Searches a list of service descriptors for those matching the specified pattern and returns the matching subset.
-     *
-     * @param descriptorPattern
-     *            the pattern to match.
-     *
-     * @param descriptorList
-     *            the list of descriptors to check.
-     *
-     * @return the list of matching descriptors.
-     *
-     * @throws RegistryQueryException
-     */
-    private List<ServiceDescriptor> matchDescriptors(ServiceDescriptor descriptorPattern,
-            List<ServiceDescriptor> descriptorList) {
-
-        /* To hold the results */
-        List<ServiceDescriptor> matchingDescriptors = new ArrayList<ServiceDescriptor>();
-
-        /* Convert the pattern to its equivalent regular expression */
-        String descriptorPatternString = descriptorPattern.toString().replace("*", ".*");
-
-        /* For each descriptor... */
-        for (ServiceDescriptor nextDescriptor : descriptorList) {
-
-            /* If we have a match... */
-            if (nextDescriptor.toString().matches(descriptorPatternString)) {
-                matchingDescriptors.add(nextDescriptor);
-            }
-        }
-
-        return matchingDescriptors;
-    }
-
     /**
      * Cleans up any running systems associated with the specified client.
      *
@@ -1526,6 +1698,15 @@ public class RuntimeManager extends FabricBus implements ISubscriptionCallback {
                                         }
                                         break;
 
+                                    case "SERVICES":
+
+                                        /* A feed has been added, or has become available, so try to match it */
+                                        if (actionTopologyUpdates && serviceBecameAvailable(triggerJSON, action,
+                                                availability)) {
+                                            matchSubscriptions(triggerJSON);
+                                        }
+                                        break;
+
                                     case "NODE_NEIGHBOURS":
 
                                         if (actionTopologyUpdates) {
@@ -0,0 +1,304 @@
+/*
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.services.systems;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import fabric.ServiceDescriptor;
+
+/**
+ * An index of the subscription patterns (which may contain wildcards) requested by local systems, used to find the
+ * patterns matched by newly available output feeds.
+ * <p>
+ * Patterns are indexed by platform, so that a new feed is only compared with the patterns for its own platform and
+ * those with a wildcard platform. Each pattern is compiled once, when it is added.
+ * </p>
+ */
+class SubscriptionPatternIndex {
+
+    /** Copyright notice. */
+    public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+    /*
+     * Class fields
+     */
+
+    /** The patterns whose platform contains no wildcard, keyed by platform. */
+    private final HashMap<String, List<Entry>> entriesByPlatform = new HashMap<String, List<Entry>>();
+
+    /** The patterns whose platform contains a wildcard. */
+    private final List<Entry> wildcardPlatformEntries = new ArrayList<Entry>();
+
+    /*
+     * Inner classes
+     */
+
+    /**
+     * A subscription pattern and the input feed to which matching feeds are to be delivered.
+     */
+    private static final class Entry {
+
+        /** The pattern. */
+        final ServiceDescriptor pattern;
+
+        /** The input feed. */
+        final ServiceDescriptor inputFeed;
+
+        /** The compiled pattern. */
+        final Pattern compiled;
+
+        /**
+         * Constructs a new instance.
+         *
+         * @param pattern
+         *            the pattern.
+         *
+         * @param inputFeed
+         *            the input feed.
+         */
+        Entry(ServiceDescriptor pattern, ServiceDescriptor inputFeed) {
+
+            this.pattern = pattern;
+            this.inputFeed = inputFeed;
+
+            /* A wildcard matches any part of a single descriptor segment */
+            String[] literals = pattern.toString().split("\\*", -1);
+            StringBuilder regex = new StringBuilder();
+
+            for (int l = 0; l < literals.length; l++) {
+                if (l > 0) {
+                    regex.append("[^/]*");
+                }
+                if (!literals[l].isEmpty()) {
+                    regex.append(Pattern.quote(literals[l]));
+                }
+            }
+
+            compiled = Pattern.compile(regex.toString());
+        }
+    }
+
+    /**
+     * The feeds matching the patterns of an input feed.
+     */
+    static final class Match {
+
+        /** The input feed. */
+        final ServiceDescriptor inputFeed;
+
+        /** The matching feeds. */
+        final List<ServiceDescriptor> feeds = new ArrayList<ServiceDescriptor>();
+
+        /** The pattern matched by each feed. */
+        final List<ServiceDescriptor> patterns = new ArrayList<ServiceDescriptor>();
+
+        /**
+         * Constructs a new instance.
+         *
+         * @param inputFeed
+         *            the input feed.
+         */
+        Match(ServiceDescriptor inputFeed) {
+
+            this.inputFeed = inputFeed;
+        }
+    }
+
+    /*
+     * Class methods
+     */
+
+    /**
+     * Adds a subscription pattern to the index.
+     *
+     * @param pattern
+     *            the pattern.
+     *
+     * @param inputFeed
+     *            the input feed to which matching feeds are to be delivered.
+     */
+    synchronized void add(ServiceDescriptor pattern, ServiceDescriptor inputFeed) {
+
+        List<Entry> entries = entries(pattern.platform(), true);
+
+        for (Entry entry : entries) {
+            if (entry.pattern.equals(pattern) && entry.inputFeed.equals(inputFeed)) {
+                return;
+            }
+        }
+
+        entries.add(new Entry(pattern, inputFeed));
+    }
+
+    /**
+     * Removes a subscription pattern from the index.
+     *
+     * @param pattern
+     *            the pattern.
+     *
+     * @param inputFeed
+     *            the input feed to which matching feeds are delivered.
+     */
+    synchronized void remove(ServiceDescriptor pattern, ServiceDescriptor inputFeed) {
+
+        List<Entry> entries = entries(pattern.platform(), false);
+
+        if (entries != null) {
+
+            for (Iterator<Entry> i = entries.iterator(); i.hasNext();) {
+                Entry entry = i.next();
+                if (entry.pattern.equals(pattern) && entry.inputFeed.equals(inputFeed)) {
+                    i.remove();
+                }
+            }
+
+            if (entries.isEmpty() && entries != wildcardPlatformEntries) {
+                entriesByPlatform.remove(pattern.platform());
+            }
+        }
+    }
+
+    /**
+     * Removes all of the subscription patterns for an input feed from the index.
+     *
+     * @param inputFeed
+     *            the input feed.
+     */
+    synchronized void removeAll(ServiceDescriptor inputFeed) {
+
+        removeAll(inputFeed, wildcardPlatformEntries);
+
+        for (Iterator<List<Entry>> i = entriesByPlatform.values().iterator(); i.hasNext();) {
+            List<Entry> entries = i.next();
+            removeAll(inputFeed, entries);
+            if (entries.isEmpty()) {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Finds the subscription patterns matched by a list of feeds.
+     *
+     * @param feeds
+     *            the feeds.
+     *
+     * @return the matching feeds (and the patterns that they match) for each input feed.
+     */
+    synchronized Collection<Match> match(List<ServiceDescriptor> feeds) {
+
+        LinkedHashMap<ServiceDescriptor, Match> matches = new LinkedHashMap<ServiceDescriptor, Match>();
+
+        for (ServiceDescriptor feed : feeds) {
+
+            String feedString = feed.toString();
+            List<Entry> platformEntries = entries(feed.platform(), false);
+
+            match(feed, feedString, platformEntries, matches);
+            match(feed, feedString, wildcardPlatformEntries, matches);
+        }
+
+        return matches.values();
+    }
+
+    /**
+     * Answers the list of entries holding the patterns for a platform.
+     *
+     * @param platform
+     *            the platform (which may contain wildcards).
+     *
+     * @param create
+     *            <code>true</code> if the list is to be created if it does not exist, <code>false</code> otherwise.
+     *
+     * @return the list, or <code>null</code> if it does not exist and has not been created.
+     */
+    private List<Entry> entries(String platform, boolean create) {
+
+        List<Entry> entries = null;
+
+        if (platform.contains("*")) {
+
+            entries = wildcardPlatformEntries;
+
+        } else {
+
+            entries = entriesByPlatform.get(platform);
+
+            if (entries == null && create) {
+                entries = new ArrayList<Entry>();
+                entriesByPlatform.put(platform, entries);
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * Removes all of the entries for an input feed from a list.
+     *
+     * @param inputFeed
+     *            the input feed.
+     *
+     * @param entries
+     *            the list.
+     */
+    private void removeAll(ServiceDescriptor inputFeed, List<Entry> entries) {
+
+        for (Iterator<Entry> i = entries.iterator(); i.hasNext();) {
+            if (i.next().inputFeed.equals(inputFeed)) {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Records the entries in a list whose patterns are matched by a feed.
+     *
+     * @param feed
+     *            the feed.
+     *
+     * @param feedString
+     *            the string form of the feed descriptor.
+     *
+     * @param entries
+     *            the entries to check (may be <code>null</code>).
+     *
+     * @param matches
+     *            the matches found so far, keyed by input feed.
+     */
+    private void match(ServiceDescriptor feed, String feedString, List<Entry> entries,
+            LinkedHashMap<ServiceDescriptor, Match> matches) {
+
+        for (int e = 0; entries != null && e < entries.size(); e++) {
+
+            Entry entry = entries.get(e);
+
+            if (entry.compiled.matcher(feedString).matches()) {
+
+                Match match = matches.get(entry.inputFeed);
+
+                if (match == null) {
+                    match = new Match(entry.inputFeed);
+                    matches.put(entry.inputFeed, match);
+                }
+
+                /* Only subscribe once to a feed matched by more than one of the input feed's patterns */
+                if (!match.feeds.contains(feed)) {
+                    match.feeds.add(feed);
+                    match.patterns.add(entry.pattern);
+                }
+            }
+        }
+    }
+}
@@ -545,6 +545,43 @@ public class SystemRuntime extends Fabric implements ISubscriptionCallback, ICli
         return isNewSubscription;
     }
 
+    /**
+     * Subscribes to a list of output feed services in bulk.
+     *
+     * @param outputFeedServices
+     *            the publishing services.
+     *
+     * @param inputFeedService
+     *            the local service to which feed messages will be delivered.
+     *
+     * @return for each publishing service, <code>Boolean.TRUE</code> if this is a new subscription,
+     *         <code>Boolean.FALSE</code> if it was already subscribed to, or <code>null</code> if the subscription
+     *         failed.
+     *
+     * @throws Exception
+     */
+    public Boolean[] subscribe(ServiceDescriptor[] outputFeedServices, ServiceDescriptor inputFeedService)
+            throws Exception {
+
+        Boolean[] isNewSubscription = null;
+
+        /* If this is a valid input feed... */
+        if (systemServices.inputFeedIDs().contains(inputFeedService.service())) {
+
+            /* Subscribe */
+            isNewSubscription = systemServices.wireInputFeeds(outputFeedServices, inputFeedService.service());
+
+        } else {
+
+            String error = format("Invalid input-feed service: %s", inputFeedService);
+            logger.log(Level.SEVERE, error);
+            throw new IllegalArgumentException(error);
+
+        }
+
+        return isNewSubscription;
+    }
+
     /**
      * Unsubscribes from one or more output feed services.
      *
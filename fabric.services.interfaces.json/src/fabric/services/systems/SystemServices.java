@@ -565,6 +565,117 @@ public class SystemServices extends FabricBus {
         return isNewSubscription;
     }
 
+    /**
+     * Subscribes to a list of output feeds in bulk.
+     * <p>
+     * Feeds that are already subscribed to are re-subscribed individually; the remaining feeds are subscribed to
+     * using a single bulk subscription.
+     * </p>
+     *
+     * @param subscribeToDescriptors
+     *            the feeds from which subscriptions are being made.
+     *
+     * @param deliverToFeedID
+     *            the local feed to which the subscriptions will be wired.
+     *
+     * @return for each feed, <code>Boolean.TRUE</code> if this is a new subscription, <code>Boolean.FALSE</code> if
+     *         the feed was already subscribed to, or <code>null</code> if the subscription failed.
+     *
+     * @throws Exception
+     */
+    public Boolean[] wireInputFeeds(ServiceDescriptor[] subscribeToDescriptors, String deliverToFeedID)
+            throws Exception {
+
+        Boolean[] isNewSubscription = new Boolean[subscribeToDescriptors.length];
+
+        /* Build the local (to) feed descriptor */
+        ServiceDescriptor deliverToDescriptor = new ServiceDescriptor(systemRuntime.systemDescriptor().platform(),
+                systemRuntime.systemDescriptor().system(), deliverToFeedID);
+
+        /* To hold the feeds not already subscribed to, and their positions in the list */
+        HashMap<ServiceDescriptor, Integer> newFeedIndexes = new HashMap<ServiceDescriptor, Integer>();
+        ArrayList<TaskServiceDescriptor> newFeeds = new ArrayList<TaskServiceDescriptor>();
+        ArrayList<Integer> newFeedPositions = new ArrayList<Integer>();
+
+        for (int f = 0; f < subscribeToDescriptors.length; f++) {
+
+            /* Build the remote (from) task feed descriptor */
+            TaskServiceDescriptor subscribeToTaskDescriptor = new TaskServiceDescriptor("$def",
+                    subscribeToDescriptors[f]);
+            ServiceDescriptor subscribeToDescriptorFromTaskDescriptor = subscribeToTaskDescriptor.toServiceDescriptor();
+
+            ISubscription inputSubscription = wiredInputFeeds.get(subscribeToDescriptorFromTaskDescriptor);
+
+            /* If we are already subscribed to this feed... */
+            if (inputSubscription != null) {
+
+                logger.log(Level.FINER,
+                        "Resending subscription to remote feed [{0}] (wired to local feed [{1}]) for service [{2}]",
+                        new Object[] {subscribeToTaskDescriptor, deliverToDescriptor, systemRuntime.systemDescriptor()});
+
+                try {
+
+                    inputSubscription.resubscribe();
+                    isNewSubscription[f] = Boolean.FALSE;
+
+                } catch (Exception e) {
+
+                    logger.log(Level.WARNING, "Cannot resubscribe to service [{0}] for service [{1}]: {2}",
+                            new Object[] {subscribeToTaskDescriptor, systemRuntime.systemDescriptor(), e.getMessage()});
+                    logger.log(Level.FINEST, "Full exception: ", e);
+
+                }
+
+            }
+            /* Else if the feed is repeated in the list... */
+            else if (newFeedIndexes.containsKey(subscribeToDescriptorFromTaskDescriptor)) {
+
+                isNewSubscription[f] = Boolean.FALSE;
+
+            } else {
+
+                newFeedIndexes.put(subscribeToDescriptorFromTaskDescriptor, f);
+                newFeeds.add(subscribeToTaskDescriptor);
+                newFeedPositions.add(f);
+
+            }
+        }
+
+        if (!newFeeds.isEmpty()) {
+
+            /* Subscribe to the remote feeds */
+            ISubscription[] inputSubscriptions = systemRuntime.fabricClient().subscribe(
+                    newFeeds.toArray(new TaskServiceDescriptor[newFeeds.size()]), systemRuntime);
+
+            for (int s = 0; s < inputSubscriptions.length; s++) {
+
+                int f = newFeedPositions.get(s);
+
+                if (inputSubscriptions[s] != null) {
+
+                    ServiceDescriptor subscribeToDescriptorFromTaskDescriptor = newFeeds.get(s).toServiceDescriptor();
+
+                    /* Record the subscription */
+                    wiredInputFeeds.put(subscribeToDescriptorFromTaskDescriptor, inputSubscriptions[s]);
+                    addWiringToRegistry(subscribeToDescriptors[f], deliverToDescriptor);
+
+                    /* Record the mapping given by the wiring */
+                    wiredInputFeedMappings.put(subscribeToDescriptorFromTaskDescriptor, deliverToDescriptor);
+                    isNewSubscription[f] = Boolean.TRUE;
+
+                } else {
+
+                    logger.log(Level.WARNING,
+                            "Cannot subscribe to service [{0}] (wired to local feed [{1}]) for service [{2}]",
+                            new Object[] {newFeeds.get(s), deliverToDescriptor, systemRuntime.systemDescriptor()});
+
+                }
+            }
+        }
+
+        return isNewSubscription;
+    }
+
     /**
      * This method subscribes to the feeds used by this service instance to:
      * <p>
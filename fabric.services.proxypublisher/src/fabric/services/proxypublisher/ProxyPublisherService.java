@@ -17,11 +17,13 @@ import fabric.bus.messages.IMessagePayload;
 import fabric.bus.messages.INotificationMessage;
 import fabric.bus.messages.IServiceMessage;
 import fabric.bus.messages.impl.MessageProperties;
+import fabric.bus.routing.TopologyGraph;
 import fabric.bus.plugins.IPluginConfig;
 import fabric.bus.services.IBusServiceConfig;
 import fabric.bus.services.impl.BusService;
 import fabric.core.io.InputTopic;
 import fabric.core.io.OutputTopic;
+import fabric.registry.impl.RegistryCache;
 
 /**
  * Service to publish Fabric messages locally on behalf of a remote requester.
@@ -79,6 +81,20 @@ public class ProxyPublisherService extends BusService {
         /* Get the payload to publish */
         IMessagePayload payloadToPublish = serviceMessage.getPayload();
 
+        /*
+         * If this is a Registry update notification, discard any cached Registry query results that it affects and
+         * apply any topology change to the routing graph
+         */
+        if (RegistryCache.REGISTRY_UPDATES_FEED.equals(serviceMessage
+                .getProperty(IServiceMessage.PROPERTY_DELIVER_TO_SERVICE))) {
+            byte[] payloadBytes = payloadToPublish.getPayload();
+            if (payloadBytes != null) {
+                String notification = new String(payloadBytes);
+                RegistryCache.invalidateNotification(notification);
+                TopologyGraph.getInstance().registryUpdate(notification);
+            }
+        }
+
         /* Build the feed message */
         IFeedMessage feedMessage = busServices.busIO().wrapRawMessage(new byte[1], false);
 
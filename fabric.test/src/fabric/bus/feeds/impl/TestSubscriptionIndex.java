@@ -0,0 +1,153 @@
+/*
+ * Licensed Materials - Property of IBM
+ *
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.bus.feeds.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fabric.TaskServiceDescriptor;
+import fabric.bus.plugins.impl.FeedPluginDispatcher;
+
+/**
+ * Tests for adding subscriptions to, and removing them from, a <code>SubscriptionIndex</code>.
+ * <p>
+ * The index is package-private, so these tests are in the same package.
+ * </p>
+ */
+public class TestSubscriptionIndex {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	private static final String feed = "platform1/system1/feed1";
+
+	private static final String otherFeed = "platform1/system1/feed2";
+
+	private static SubscriptionRecord subscription(String actor, String task, String feedName) {
+
+		String[] parts = feedName.split("/");
+		TaskServiceDescriptor service = new TaskServiceDescriptor(task, parts[0], parts[1], parts[2]);
+		return new SubscriptionRecord(actor, "actorPlatform", service, null, null, null, null, null);
+	}
+
+	@Test
+	public void testEmptyIndex() {
+
+		Assert.assertNull(SubscriptionIndex.EMPTY.feed(feed));
+		Assert.assertNull(SubscriptionIndex.EMPTY.task(feed, "task1"));
+		Assert.assertTrue(SubscriptionIndex.EMPTY.feeds().isEmpty());
+	}
+
+	@Test
+	public void testAddIndexesByFeedTaskAndActor() {
+
+		FeedPluginDispatcher inbound = new FeedPluginDispatcher();
+		FeedPluginDispatcher outbound = new FeedPluginDispatcher();
+
+		SubscriptionRecord a1 = subscription("actorA", "task1", feed);
+		SubscriptionRecord b1 = subscription("actorB", "task1", feed);
+		SubscriptionRecord a2 = subscription("actorA", "task2", feed);
+		SubscriptionRecord a1Again = subscription("actorA", "task1", feed);
+
+		SubscriptionIndex index = SubscriptionIndex.EMPTY.with(feed, a1, inbound, outbound);
+		index = index.with(feed, b1, null, null);
+		index = index.with(feed, a2, null, null);
+		index = index.with(feed, a1Again, null, null);
+
+		Assert.assertEquals(1, index.feeds().size());
+		Assert.assertEquals(2, index.feed(feed).tasks().size());
+		Assert.assertTrue(index.feed(feed).tasks().contains("task1"));
+		Assert.assertTrue(index.feed(feed).tasks().contains("task2"));
+
+		/* Subscriptions are held in the order in which they were made */
+		SubscriptionIndex.TaskEntry task1 = index.task(feed, "task1");
+		Assert.assertArrayEquals(new Object[] {a1, b1, a1Again}, task1.subscriptions());
+		Assert.assertArrayEquals(new Object[] {a1, a1Again}, task1.subscriptions("actorA"));
+		Assert.assertArrayEquals(new Object[] {b1}, task1.subscriptions("actorB"));
+		Assert.assertEquals(0, task1.subscriptions("actorC").length);
+
+		/* The dispatchers of the first subscription to a feed/task are retained */
+		Assert.assertSame(inbound, task1.inboundDispatcher());
+		Assert.assertSame(outbound, task1.outboundDispatcher());
+		Assert.assertNull(index.task(feed, "task2").inboundDispatcher());
+	}
+
+	@Test
+	public void testIndexesAreImmutable() {
+
+		SubscriptionRecord a1 = subscription("actorA", "task1", feed);
+		SubscriptionRecord b1 = subscription("actorB", "task1", feed);
+		SubscriptionRecord other = subscription("actorA", "task1", otherFeed);
+
+		SubscriptionIndex first = SubscriptionIndex.EMPTY.with(feed, a1, null, null);
+		SubscriptionIndex second = first.with(feed, b1, null, null);
+		SubscriptionIndex third = second.with(otherFeed, other, null, null);
+
+		Assert.assertTrue(SubscriptionIndex.EMPTY.feeds().isEmpty());
+		Assert.assertArrayEquals(new Object[] {a1}, first.task(feed, "task1").subscriptions());
+		Assert.assertArrayEquals(new Object[] {a1, b1}, second.task(feed, "task1").subscriptions());
+		Assert.assertNull(second.feed(otherFeed));
+
+		/* Entries not on the path to a change are shared */
+		Assert.assertSame(second.feed(feed), third.feed(feed));
+
+		SubscriptionIndex removed = third.without(feed, a1);
+		Assert.assertArrayEquals(new Object[] {a1, b1}, third.task(feed, "task1").subscriptions());
+		Assert.assertArrayEquals(new Object[] {b1}, removed.task(feed, "task1").subscriptions());
+		Assert.assertSame(third.feed(otherFeed), removed.feed(otherFeed));
+	}
+
+	@Test
+	public void testRemove() {
+
+		FeedPluginDispatcher inbound = new FeedPluginDispatcher();
+
+		SubscriptionRecord a1 = subscription("actorA", "task1", feed);
+		SubscriptionRecord b1 = subscription("actorB", "task1", feed);
+		SubscriptionRecord notAdded = subscription("actorA", "task1", feed);
+
+		SubscriptionIndex index = SubscriptionIndex.EMPTY.with(feed, a1, inbound, null).with(feed, b1, null, null);
+
+		/* Removing a subscription that is not in the index answers the same index */
+		Assert.assertSame(index, index.without(feed, notAdded));
+		Assert.assertSame(index, index.without(otherFeed, a1));
+
+		index = index.without(feed, a1);
+		Assert.assertArrayEquals(new Object[] {b1}, index.task(feed, "task1").subscriptions());
+		Assert.assertEquals(0, index.task(feed, "task1").subscriptions("actorA").length);
+
+		/* The feed/task entry and its dispatchers remain once the last subscription is removed */
+		index = index.without(feed, b1);
+		SubscriptionIndex.TaskEntry task1 = index.task(feed, "task1");
+		Assert.assertNotNull(task1);
+		Assert.assertEquals(0, task1.subscriptions().length);
+		Assert.assertSame(inbound, task1.inboundDispatcher());
+	}
+
+	@Test
+	public void testRemoveTask() {
+
+		SubscriptionRecord a1 = subscription("actorA", "task1", feed);
+		SubscriptionRecord a2 = subscription("actorA", "task2", feed);
+
+		SubscriptionIndex index = SubscriptionIndex.EMPTY.with(feed, a1, null, null).with(feed, a2, null, null);
+
+		Assert.assertSame(index, index.withoutTask(feed, "task3"));
+
+		index = index.withoutTask(feed, "task1");
+		Assert.assertNull(index.task(feed, "task1"));
+		Assert.assertNotNull(index.task(feed, "task2"));
+
+		/* Removing the last task of a feed removes the feed */
+		index = index.withoutTask(feed, "task2");
+		Assert.assertNull(index.feed(feed));
+		Assert.assertTrue(index.feeds().isEmpty());
+	}
+}
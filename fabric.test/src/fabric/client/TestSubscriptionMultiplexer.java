@@ -0,0 +1,166 @@
+/*
+ * Licensed Materials - Property of IBM
+ *
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package fabric.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import fabric.core.io.mqtt.OverflowPolicy;
+
+/**
+ * Tests for the overflow handling of the dispatch pool of a <code>SubscriptionMultiplexer</code>.
+ * <p>
+ * The pool is created by a package-private method, so these tests are in the same package.
+ * </p>
+ */
+public class TestSubscriptionMultiplexer {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private final List<String> delivered = Collections.synchronizedList(new ArrayList<String>());
+
+	private ThreadPoolExecutor pool = null;
+
+	@After
+	public void teardown() throws InterruptedException {
+
+		release.countDown();
+		pool.shutdown();
+		Assert.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * A delivery recording the thread on which it ran.
+	 */
+	private Runnable delivery(final String id) {
+
+		return new Runnable() {
+
+			@Override
+			public void run() {
+
+				delivered.add(id + "@" + Thread.currentThread().getName());
+			}
+		};
+	}
+
+	/**
+	 * Creates a single-threaded, unordered pool holding two waiting messages, and occupies its thread.
+	 */
+	private void saturate(OverflowPolicy policy) throws InterruptedException {
+
+		pool = SubscriptionMultiplexer.dispatchPool(1, false, 2, policy);
+		final CountDownLatch started = new CountDownLatch(1);
+
+		pool.execute(new Runnable() {
+
+			@Override
+			public void run() {
+
+				started.countDown();
+
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+		pool.execute(delivery("1"));
+		pool.execute(delivery("2"));
+	}
+
+	/**
+	 * Releases the pool's thread and answers the IDs of the deliveries made on it, in order.
+	 */
+	private List<String> drain() throws InterruptedException {
+
+		release.countDown();
+		pool.shutdown();
+		Assert.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+
+		List<String> ids = new ArrayList<String>();
+
+		for (String record : delivered) {
+			ids.add(record.substring(0, record.indexOf('@')));
+		}
+
+		return ids;
+	}
+
+	@Test
+	public void testDropNewest() throws InterruptedException {
+
+		saturate(OverflowPolicy.DROP_NEWEST);
+
+		try {
+			pool.execute(delivery("3"));
+			Assert.fail("Delivery accepted by a full pool");
+		} catch (RejectedExecutionException e) {
+			/* Expected */
+		}
+
+		Assert.assertEquals(2, pool.getQueue().size());
+		Assert.assertEquals(Arrays.asList("1", "2"), drain());
+	}
+
+	@Test
+	public void testDropOldest() throws InterruptedException {
+
+		saturate(OverflowPolicy.DROP_OLDEST);
+
+		pool.execute(delivery("3"));
+		pool.execute(delivery("4"));
+
+		Assert.assertEquals(2, pool.getQueue().size());
+		Assert.assertEquals(Arrays.asList("3", "4"), drain());
+	}
+
+	@Test
+	public void testSpillRunsOnCaller() throws InterruptedException {
+
+		saturate(OverflowPolicy.SPILL);
+
+		pool.execute(delivery("3"));
+
+		/* Nothing is lost: the arriving message is delivered on the calling thread */
+		Assert.assertEquals(1, delivered.size());
+		Assert.assertEquals("3@" + Thread.currentThread().getName(), delivered.get(0));
+		Assert.assertEquals(Arrays.asList("3", "1", "2"), drain());
+	}
+
+	@Test
+	public void testOrderedPoolQueuesDeliveryRuns() throws InterruptedException {
+
+		pool = SubscriptionMultiplexer.dispatchPool(1, true, 1, OverflowPolicy.DROP_NEWEST);
+
+		/* Delivery runs (at most one per subscription) are never discarded */
+		pool.execute(delivery("1"));
+		pool.execute(delivery("2"));
+		pool.execute(delivery("3"));
+
+		Assert.assertEquals(Arrays.asList("1", "2", "3"), drain());
+	}
+}
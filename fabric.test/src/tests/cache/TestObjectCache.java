@@ -0,0 +1,191 @@
+/*
+ * Licensed Materials - Property of IBM
+ *
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package tests.cache;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fabric.core.cache.ICacheLoader;
+import fabric.core.cache.IWeigher;
+import fabric.core.cache.ObjectCacheConfig;
+import fabric.core.cache.impl.ObjectCache;
+
+/**
+ * Tests for the eviction and expiry of <code>ObjectCache</code> entries.
+ */
+public class TestObjectCache {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() {
+
+		ObjectCache cache = new ObjectCache(3);
+
+		cache.put("a", "A");
+		cache.put("b", "B");
+		cache.put("c", "C");
+
+		/* Use "a" so that "b" is the least recently used */
+		Assert.assertEquals("A", cache.get("a"));
+		cache.put("d", "D");
+
+		Assert.assertEquals(3, cache.size());
+		Assert.assertNull(cache.get("b"));
+		Assert.assertEquals("A", cache.get("a"));
+		Assert.assertEquals("C", cache.get("c"));
+		Assert.assertEquals("D", cache.get("d"));
+		Assert.assertEquals(1, cache.statistics().getEvictions());
+	}
+
+	@Test
+	public void testWeightBoundsCache() {
+
+		ObjectCacheConfig config = new ObjectCacheConfig(0);
+		config.setMaxWeight(10);
+		config.setWeigher(new IWeigher() {
+
+			@Override
+			public int weigh(Object key, Object value) {
+
+				return ((String) value).length();
+			}
+		});
+		ObjectCache cache = new ObjectCache(config);
+
+		cache.put("a", "aaaa");
+		cache.put("b", "bbbb");
+		Assert.assertEquals(8, cache.statistics().getWeight());
+
+		/* Adding six more units evicts both of the older entries */
+		cache.put("c", "cccccc");
+		cache.put("d", "dd");
+
+		Assert.assertNull(cache.get("a"));
+		Assert.assertNull(cache.get("b"));
+		Assert.assertEquals("cccccc", cache.get("c"));
+		Assert.assertEquals("dd", cache.get("d"));
+		Assert.assertEquals(8, cache.statistics().getWeight());
+
+		/* Replacing and removing entries releases their weight */
+		cache.put("c", "c");
+		Assert.assertEquals(3, cache.statistics().getWeight());
+		Assert.assertTrue(cache.remove("d"));
+		Assert.assertEquals(1, cache.statistics().getWeight());
+	}
+
+	@Test
+	public void testExpiredEntryIsNotAnswered() throws InterruptedException {
+
+		ObjectCacheConfig config = new ObjectCacheConfig();
+		config.setExpiryTick(10000);
+		ObjectCache cache = new ObjectCache(config);
+
+		try {
+
+			cache.put("short", "S", 20L);
+			cache.put("long", "L", 60000L);
+			cache.put("forever", "F");
+
+			Thread.sleep(50);
+
+			/* The sweep has not run yet, so the entry is found to have expired when it is looked up */
+			Assert.assertNull(cache.get("short"));
+			Assert.assertEquals("L", cache.get("long"));
+			Assert.assertEquals("F", cache.get("forever"));
+			Assert.assertEquals(1, cache.statistics().getExpirations());
+
+		} finally {
+
+			cache.dispose();
+		}
+	}
+
+	@Test
+	public void testExpiredEntryIsSwept() throws InterruptedException {
+
+		ObjectCacheConfig config = new ObjectCacheConfig();
+		config.setExpiryTick(10);
+		config.setDefaultTTL(30L);
+		ObjectCache cache = new ObjectCache(config);
+
+		try {
+
+			cache.put("a", "A");
+			cache.put("b", "B", 60000L);
+			Assert.assertEquals(2, cache.size());
+
+			/* Expired entries are removed in the background without being looked up */
+			long deadline = System.currentTimeMillis() + 5000;
+			while (cache.size() > 1 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+
+			Assert.assertEquals(1, cache.size());
+			Assert.assertEquals(1, cache.statistics().getExpirations());
+			Assert.assertEquals("B", cache.get("b"));
+
+		} finally {
+
+			cache.dispose();
+		}
+	}
+
+	@Test
+	public void testLoaderPopulatesMisses() throws Exception {
+
+		ObjectCache cache = new ObjectCache(10);
+		final int[] loadCount = new int[1];
+
+		ICacheLoader loader = new ICacheLoader() {
+
+			@Override
+			public Object load(Object key) throws Exception {
+
+				loadCount[0]++;
+				if (key.equals("bad")) {
+					throw new IOException("Cannot load " + key);
+				}
+				return "loaded-" + key;
+			}
+		};
+
+		Assert.assertEquals("loaded-a", cache.get("a", loader));
+		Assert.assertEquals("loaded-a", cache.get("a", loader));
+		Assert.assertEquals(1, loadCount[0]);
+
+		try {
+			cache.get("bad", loader);
+			Assert.fail("Load failure not reported");
+		} catch (IOException e) {
+			/* Expected */
+		}
+
+		Assert.assertNull(cache.get("bad"));
+		Assert.assertEquals(1, cache.statistics().getLoads());
+		Assert.assertEquals(1, cache.statistics().getLoadFailures());
+	}
+
+	@Test
+	public void testNullValueRemovesEntry() {
+
+		ObjectCache cache = new ObjectCache(10);
+
+		cache.put("a", "A");
+		cache.put("a", null);
+
+		Assert.assertNull(cache.get("a"));
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(0, cache.statistics().getWeight());
+	}
+}
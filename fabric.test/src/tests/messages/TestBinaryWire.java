@@ -0,0 +1,224 @@
+/*
+ * Licensed Materials - Property of IBM
+ *
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package tests.messages;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import fabric.Fabric;
+import fabric.LocalConfig;
+import fabric.bus.messages.BinaryWire;
+import fabric.bus.messages.FabricMessageFactory;
+import fabric.bus.messages.IEmbeddedBinary;
+import fabric.bus.messages.IFabricMessage;
+import fabric.bus.messages.WireFormat;
+import fabric.bus.messages.impl.FeedMessage;
+import fabric.bus.messages.impl.MessagePayload;
+import fabric.bus.messages.impl.MessageProperties;
+import fabric.bus.messages.impl.TaskSubscriptions;
+import fabric.bus.routing.impl.StaticRouting;
+
+/**
+ * Tests for the binary wire format of Fabric messages.
+ */
+public class TestBinaryWire {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	private static final String testPropertiesFileName = "./config/test.properties";
+
+	private static final String feedTopic = "$fabric/node1/$feeds/platform1/system1/feed1";
+
+	@BeforeClass
+	public static void setup() {
+
+		/* Fabric messages read their defaults from the Fabric configuration */
+		Fabric.setConfig(new LocalConfig(testPropertiesFileName));
+	}
+
+	@Test
+	public void testStringsAndBytesRoundTrip() throws IOException {
+
+		byte[] bytes = new byte[] {0, 1, (byte) 0x80, (byte) 0xFF};
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(buffer);
+		BinaryWire.writeHeader(out);
+		BinaryWire.writeString(out, "caf\u00e9 \u20ac");
+		BinaryWire.writeString(out, null);
+		BinaryWire.writeString(out, "");
+		BinaryWire.writeBytes(out, bytes);
+		BinaryWire.writeBytes(out, null);
+		out.flush();
+
+		byte[] wireBytes = buffer.toByteArray();
+		Assert.assertTrue(BinaryWire.isBinary(wireBytes));
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(wireBytes));
+		BinaryWire.readHeader(in);
+		Assert.assertEquals("caf\u00e9 \u20ac", BinaryWire.readString(in));
+		Assert.assertNull(BinaryWire.readString(in));
+		Assert.assertEquals("", BinaryWire.readString(in));
+		Assert.assertArrayEquals(bytes, BinaryWire.readBytes(in));
+		Assert.assertNull(BinaryWire.readBytes(in));
+		Assert.assertEquals(0, in.available());
+	}
+
+	@Test
+	public void testXMLIsNotBinary() {
+
+		Assert.assertFalse(BinaryWire.isBinary("<fab/>".getBytes()));
+		Assert.assertFalse(BinaryWire.isBinary(new byte[] {BinaryWire.MAGIC_0}));
+		Assert.assertFalse(BinaryWire.isBinary(null));
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnsupportedVersionIsRejected() throws IOException {
+
+		byte[] wireBytes = new byte[] {BinaryWire.MAGIC_0, BinaryWire.MAGIC_1, BinaryWire.VERSION + 1};
+		BinaryWire.readHeader(new DataInputStream(new ByteArrayInputStream(wireBytes)));
+	}
+
+	@Test(expected = IOException.class)
+	public void testLengthBeyondInputIsRejected() throws IOException {
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(buffer);
+		out.writeInt(Integer.MAX_VALUE);
+		out.write(new byte[16]);
+		out.flush();
+
+		BinaryWire.readBytes(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+	}
+
+	@Test(expected = IOException.class)
+	public void testNegativeLengthIsRejected() throws IOException {
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(buffer);
+		out.writeInt(-2);
+		out.flush();
+
+		BinaryWire.readBytes(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+	}
+
+	@Test
+	public void testCountsRoundTrip() throws IOException {
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(buffer);
+		out.writeInt(0);
+		out.writeInt(2);
+		out.write(new byte[] {1, 2});
+		out.flush();
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()));
+		Assert.assertEquals(0, BinaryWire.readCount(in));
+		Assert.assertEquals(2, BinaryWire.readCount(in));
+	}
+
+	@Test(expected = IOException.class)
+	public void testNegativeCountIsRejected() throws IOException {
+
+		BinaryWire.readCount(new DataInputStream(new ByteArrayInputStream(count(-1))));
+	}
+
+	@Test(expected = IOException.class)
+	public void testCountBeyondInputIsRejected() throws IOException {
+
+		BinaryWire.readCount(new DataInputStream(new ByteArrayInputStream(count(Integer.MAX_VALUE))));
+	}
+
+	@Test
+	public void testEmbeddedObjectsRejectBadCounts() throws Exception {
+
+		/* Each of these would otherwise size a collection (or loop) from the count */
+		byte[][] badCounts = new byte[][] {count(-5), count(Integer.MAX_VALUE)};
+
+		for (byte[] badCount : badCounts) {
+
+			assertRejected(new MessageProperties(), badCount);
+			assertRejected(new TaskSubscriptions(), badCount);
+
+			/* Static routing reads its route nodes after its (here empty) properties */
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(buffer);
+			out.writeInt(0);
+			out.write(badCount);
+			out.flush();
+			assertRejected(new StaticRouting(), buffer.toByteArray());
+		}
+	}
+
+	/**
+	 * Answers the encoding of an element count followed by a few bytes of element data.
+	 */
+	private static byte[] count(int count) throws IOException {
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(buffer);
+		out.writeInt(count);
+		out.write(new byte[8]);
+		out.flush();
+		return buffer.toByteArray();
+	}
+
+	private static void assertRejected(IEmbeddedBinary embedded, byte[] bytes) throws Exception {
+
+		try {
+			embedded.initBinary(new DataInputStream(new ByteArrayInputStream(bytes)));
+			Assert.fail("Bad count accepted by " + embedded.getClass().getSimpleName());
+		} catch (IOException e) {
+			/* Expected */
+		}
+	}
+
+	@Test
+	public void testFeedMessageRoundTrip() throws Exception {
+
+		byte[] payloadBytes = new byte[] {(byte) 0xCA, (byte) 0xFE, 0, 42};
+
+		FeedMessage message = new FeedMessage();
+		message.setCorrelationID("correlation-1");
+		message.setProperty("key", "value");
+		message.setOrdinal(7);
+		MessagePayload payload = new MessagePayload();
+		payload.setPayloadBytes(payloadBytes);
+		message.setPayload(payload);
+
+		byte[] wireBytes = message.toWireBytes(WireFormat.BINARY);
+		Assert.assertTrue(BinaryWire.isBinary(wireBytes));
+
+		IFabricMessage parsed = FabricMessageFactory.create(feedTopic, wireBytes);
+		Assert.assertTrue(parsed instanceof FeedMessage);
+
+		FeedMessage feedMessage = (FeedMessage) parsed;
+		Assert.assertEquals(message.getUID(), feedMessage.getUID());
+		Assert.assertEquals("correlation-1", feedMessage.getCorrelationID());
+		Assert.assertEquals("value", feedMessage.getProperty("key"));
+		Assert.assertEquals(7, feedMessage.getOrdinal());
+		Assert.assertEquals("platform1/system1/feed1", feedMessage.metaGetFeedDescriptor().toString());
+		Assert.assertArrayEquals(payloadBytes, feedMessage.getPayload().getPayloadBytes());
+
+		/* The same message encoded as XML decodes to the same content */
+		IFabricMessage fromXML = FabricMessageFactory.create(feedTopic, message.toWireBytes(WireFormat.XML));
+		Assert.assertFalse(BinaryWire.isBinary(message.toWireBytes(WireFormat.XML)));
+		Assert.assertEquals(message.getUID(), fromXML.getUID());
+		Assert.assertArrayEquals(payloadBytes, fromXML.getPayload().getPayloadBytes());
+	}
+}
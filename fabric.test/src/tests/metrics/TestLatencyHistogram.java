@@ -0,0 +1,126 @@
+/*
+ * Licensed Materials - Property of IBM
+ *
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package tests.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fabric.core.metrics.LatencyHistogram;
+
+/**
+ * Tests for the buckets and percentiles of <code>LatencyHistogram</code>.
+ */
+public class TestLatencyHistogram {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	@Test
+	public void testEmptyHistogram() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		Assert.assertEquals(0, histogram.count());
+		Assert.assertEquals(0, histogram.max());
+		Assert.assertEquals(0.0, histogram.mean(), 0.0);
+		Assert.assertEquals(0, histogram.percentile(50));
+	}
+
+	@Test
+	public void testSmallValuesAreExact() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		for (int v = 0; v < 64; v++) {
+			histogram.record(v);
+		}
+
+		Assert.assertEquals(64, histogram.count());
+		Assert.assertEquals(63, histogram.max());
+		Assert.assertEquals(31.5, histogram.mean(), 0.0);
+		Assert.assertEquals(0, histogram.percentile(0));
+		Assert.assertEquals(31, histogram.percentile(50));
+		Assert.assertEquals(47, histogram.percentile(75));
+		Assert.assertEquals(63, histogram.percentile(100));
+	}
+
+	@Test
+	public void testLargeValuesHaveBoundedError() {
+
+		for (long v = 64; v * 4 < (1L << 36); v = v * 3 / 2 + 7) {
+
+			LatencyHistogram histogram = new LatencyHistogram();
+			histogram.record(v);
+			histogram.record(v * 4);
+
+			/* The median is reported as the top of its bucket, which is within 1/32 of the value */
+			long median = histogram.percentile(50);
+			Assert.assertTrue("Median of " + v + " reported as " + median, median >= v);
+			Assert.assertTrue("Median of " + v + " reported as " + median, median <= v + v / 32);
+
+			/* The top percentile never exceeds the largest value recorded */
+			Assert.assertEquals(v * 4, histogram.percentile(100));
+		}
+	}
+
+	@Test
+	public void testAdjacentBucketsAreDistinguished() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		/* 1000 and 1040 differ by more than 1/32, so fall in different buckets */
+		for (int i = 0; i < 90; i++) {
+			histogram.record(1000);
+		}
+		for (int i = 0; i < 10; i++) {
+			histogram.record(1040);
+		}
+
+		Assert.assertTrue(histogram.percentile(90) < 1040);
+		Assert.assertEquals(1040, histogram.percentile(91));
+	}
+
+	@Test
+	public void testOutOfRangeValues() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		long huge = 1L << 40;
+
+		histogram.record(-5);
+		histogram.record(huge);
+
+		Assert.assertEquals(2, histogram.count());
+		Assert.assertEquals(huge, histogram.max());
+		Assert.assertEquals(huge / 2.0, histogram.mean(), 0.0);
+		Assert.assertEquals(0, histogram.percentile(50));
+
+		/* Values beyond the trackable range share the highest bucket */
+		long top = histogram.percentile(100);
+		Assert.assertTrue(top >= (1L << 36) - 1);
+		Assert.assertTrue(top <= huge);
+	}
+
+	@Test
+	public void testReset() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		histogram.record(100);
+		histogram.record(200);
+		histogram.reset();
+
+		Assert.assertEquals(0, histogram.count());
+		Assert.assertEquals(0, histogram.max());
+		Assert.assertEquals(0, histogram.percentile(99));
+
+		histogram.record(7);
+		Assert.assertEquals(7, histogram.percentile(50));
+	}
+}
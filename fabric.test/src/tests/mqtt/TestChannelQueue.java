@@ -0,0 +1,280 @@
+/*
+ * Licensed Materials - Property of IBM
+ *
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package tests.mqtt;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.util.logging.Logger;
+
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import fabric.core.io.Message;
+import fabric.core.io.mqtt.ChannelQueue;
+import fabric.core.io.mqtt.OverflowPolicy;
+import fabric.core.metrics.PipelineMetrics;
+import fabric.core.metrics.StageMetrics;
+
+/**
+ * Tests for the overflow policies of <code>ChannelQueue</code>.
+ */
+public class TestChannelQueue {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	private static final Logger logger = Logger.getLogger("tests.mqtt");
+
+	private File spillDirectory = null;
+
+	@Before
+	public void setup() throws IOException {
+
+		spillDirectory = File.createTempFile("channel-queue-", ".test");
+		Assert.assertTrue(spillDirectory.delete());
+		Assert.assertTrue(spillDirectory.mkdir());
+	}
+
+	@After
+	public void teardown() {
+
+		File[] files = spillDirectory.listFiles();
+		for (int f = 0; files != null && f < files.length; f++) {
+			files[f].delete();
+		}
+		spillDirectory.delete();
+	}
+
+	private static Message message(int id) {
+
+		Message message = new Message();
+		message.topic = "topic/" + id;
+		message.data = new byte[] {(byte) id, (byte) (id >> 8)};
+		return message;
+	}
+
+	private static void assertMessage(int id, Message message) {
+
+		Assert.assertNotNull(message);
+		Assert.assertEquals("topic/" + id, message.topic.toString());
+		Assert.assertArrayEquals(new byte[] {(byte) id, (byte) (id >> 8)}, message.data);
+	}
+
+	private ChannelQueue queue(OverflowPolicy policy) {
+
+		return new ChannelQueue("test/topic", 3, policy, spillDirectory.getPath(), logger);
+	}
+
+	@Test
+	public void testDeliveredInArrivalOrder() {
+
+		ChannelQueue queue = queue(OverflowPolicy.DROP_NEWEST);
+
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertNull(queue.poll());
+
+		for (int m = 0; m < 3; m++) {
+			Assert.assertTrue(queue.offer(message(m)));
+		}
+
+		Assert.assertFalse(queue.isEmpty());
+
+		for (int m = 0; m < 3; m++) {
+			assertMessage(m, queue.poll());
+		}
+
+		Assert.assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testDropNewest() {
+
+		ChannelQueue queue = queue(OverflowPolicy.DROP_NEWEST);
+
+		for (int m = 0; m < 3; m++) {
+			Assert.assertTrue(queue.offer(message(m)));
+		}
+
+		/* The queue is full, so new arrivals are discarded */
+		Assert.assertFalse(queue.offer(message(3)));
+		Assert.assertFalse(queue.offer(message(4)));
+
+		for (int m = 0; m < 3; m++) {
+			assertMessage(m, queue.poll());
+		}
+
+		Assert.assertNull(queue.poll());
+
+		/* Once space is available new arrivals are accepted again */
+		Assert.assertTrue(queue.offer(message(5)));
+		assertMessage(5, queue.poll());
+	}
+
+	@Test
+	public void testDropOldest() {
+
+		ChannelQueue queue = queue(OverflowPolicy.DROP_OLDEST);
+
+		for (int m = 0; m < 5; m++) {
+			Assert.assertTrue(queue.offer(message(m)));
+		}
+
+		/* The two oldest messages made way for the last two arrivals */
+		for (int m = 2; m < 5; m++) {
+			assertMessage(m, queue.poll());
+		}
+
+		Assert.assertNull(queue.poll());
+	}
+
+	@Test
+	public void testSpillPreservesOrderAndRemovesFile() {
+
+		ChannelQueue queue = queue(OverflowPolicy.SPILL);
+
+		for (int m = 0; m < 10; m++) {
+			Assert.assertTrue(queue.offer(message(m)));
+		}
+
+		Assert.assertEquals(1, spillDirectory.listFiles().length);
+
+		/* Arrivals while messages are spilled go to the spill file, behind those already there */
+		assertMessage(0, queue.poll());
+		Assert.assertTrue(queue.offer(message(10)));
+
+		for (int m = 1; m <= 10; m++) {
+			assertMessage(m, queue.poll());
+		}
+
+		Assert.assertNull(queue.poll());
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertEquals(0, spillDirectory.listFiles().length);
+	}
+
+	@Test
+	public void testSpillKeepsNullTopicAndData() {
+
+		ChannelQueue queue = queue(OverflowPolicy.SPILL);
+
+		for (int m = 0; m < 4; m++) {
+			Assert.assertTrue(queue.offer(new Message()));
+		}
+
+		for (int m = 0; m < 4; m++) {
+			Message message = queue.poll();
+			Assert.assertNotNull(message);
+			Assert.assertNull(message.topic);
+			Assert.assertNull(message.data);
+		}
+
+		Assert.assertNull(queue.poll());
+	}
+
+	@Test
+	public void testCloseDiscardsMessages() {
+
+		ChannelQueue queue = queue(OverflowPolicy.SPILL);
+
+		for (int m = 0; m < 6; m++) {
+			queue.offer(message(m));
+		}
+
+		queue.close();
+
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertNull(queue.poll());
+		Assert.assertFalse(queue.offer(message(6)));
+		Assert.assertEquals(0, spillDirectory.listFiles().length);
+	}
+
+	@Test
+	public void testStaleSpillFilesRemoved() throws IOException {
+
+		File stale = new File(spillDirectory, "fabric-channel-1.spill");
+		File locked = new File(spillDirectory, "fabric-channel-2.spill");
+		File other = new File(spillDirectory, "other-1.spill");
+		Assert.assertTrue(stale.createNewFile());
+		Assert.assertTrue(other.createNewFile());
+
+		/* A spill file that is locked is still in use by its queue */
+		RandomAccessFile inUse = new RandomAccessFile(locked, "rw");
+
+		try {
+
+			inUse.getChannel().lock();
+			queue(OverflowPolicy.SPILL);
+
+			Assert.assertFalse(stale.exists());
+			Assert.assertTrue(locked.exists());
+			Assert.assertTrue(other.exists());
+
+		} finally {
+
+			inUse.close();
+		}
+
+		/* The directory is only cleared when it is first used */
+		Assert.assertTrue(stale.createNewFile());
+		queue(OverflowPolicy.SPILL);
+		Assert.assertTrue(stale.exists());
+	}
+
+	/**
+	 * Answers <code>true</code> if there are metrics (and a registered MBean) for the queues on a topic.
+	 */
+	private static boolean hasMetrics(String topic) throws Exception {
+
+		boolean found = false;
+
+		for (StageMetrics stage : PipelineMetrics.allStages()) {
+			found |= PipelineMetrics.STAGE_CHANNEL_QUEUE.equals(stage.getStage()) && topic.equals(stage.getScope());
+		}
+
+		ObjectName pattern = new ObjectName("fabric:type=Pipeline,stage=" + PipelineMetrics.STAGE_CHANNEL_QUEUE
+				+ ",topic=" + topic + ",*");
+		boolean registered = !ManagementFactory.getPlatformMBeanServer().queryNames(pattern, null).isEmpty();
+		Assert.assertEquals(found, registered);
+
+		return found;
+	}
+
+	@Test
+	public void testCloseRemovesMetrics() throws Exception {
+
+		boolean wasEnabled = PipelineMetrics.isEnabled();
+		PipelineMetrics.setEnabled(true);
+
+		try {
+
+			String topic = "metrics/topic";
+			ChannelQueue first = new ChannelQueue(topic, 3, OverflowPolicy.DROP_NEWEST, null, logger);
+			ChannelQueue second = new ChannelQueue(topic, 3, OverflowPolicy.DROP_NEWEST, null, logger);
+			Assert.assertTrue(hasMetrics(topic));
+
+			/* The metrics are shared by the queues for a topic, and kept until the last is closed */
+			first.close();
+			first.close();
+			Assert.assertTrue(hasMetrics(topic));
+
+			second.close();
+			Assert.assertFalse(hasMetrics(topic));
+
+		} finally {
+
+			PipelineMetrics.setEnabled(wasEnabled);
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed Materials - Property of IBM
+ *
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package tests.mqtt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fabric.core.io.mqtt.TopicTrie;
+
+/**
+ * Tests for the matching of MQTT topic filters by <code>TopicTrie</code>.
+ */
+public class TestTopicTrie {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	/**
+	 * Answers the sorted values of the filters matching a topic.
+	 */
+	private static List<String> match(TopicTrie<String> trie, String topic) {
+
+		List<String> matches = new ArrayList<String>(trie.match(topic));
+		Collections.sort(matches);
+		return matches;
+	}
+
+	@Test
+	public void testExactMatch() {
+
+		TopicTrie<String> trie = new TopicTrie<String>();
+		trie.put("a/b/c", "abc");
+
+		Assert.assertEquals(Collections.singletonList("abc"), match(trie, "a/b/c"));
+		Assert.assertTrue(match(trie, "a/b").isEmpty());
+		Assert.assertTrue(match(trie, "a/b/c/d").isEmpty());
+		Assert.assertTrue(match(trie, "a/b/x").isEmpty());
+	}
+
+	@Test
+	public void testSingleLevelWildcard() {
+
+		TopicTrie<String> trie = new TopicTrie<String>();
+		trie.put("a/+/c", "a+c");
+		trie.put("+/+", "++");
+
+		Assert.assertEquals(Collections.singletonList("a+c"), match(trie, "a/b/c"));
+		Assert.assertEquals(Collections.singletonList("a+c"), match(trie, "a/x/c"));
+		Assert.assertEquals(Collections.singletonList("++"), match(trie, "x/y"));
+
+		/* A single-level wildcard matches exactly one level, which may be empty */
+		Assert.assertEquals(Collections.singletonList("a+c"), match(trie, "a//c"));
+		Assert.assertTrue(match(trie, "a/b/b/c").isEmpty());
+		Assert.assertTrue(match(trie, "x").isEmpty());
+	}
+
+	@Test
+	public void testMultiLevelWildcard() {
+
+		TopicTrie<String> trie = new TopicTrie<String>();
+		trie.put("a/#", "a#");
+		trie.put("#", "#");
+
+		/* A multi-level wildcard matches its parent level and any number of child levels */
+		Assert.assertEquals(list("#", "a#"), match(trie, "a"));
+		Assert.assertEquals(list("#", "a#"), match(trie, "a/b"));
+		Assert.assertEquals(list("#", "a#"), match(trie, "a/b/c/d"));
+		Assert.assertEquals(Collections.singletonList("#"), match(trie, "b/c"));
+	}
+
+	@Test
+	public void testAllMatchingFiltersAreAnswered() {
+
+		TopicTrie<String> trie = new TopicTrie<String>();
+		trie.put("a/b/c", "abc");
+		trie.put("a/+/c", "a+c");
+		trie.put("a/b/+", "ab+");
+		trie.put("a/#", "a#");
+		trie.put("+/b/#", "+b#");
+		trie.put("x/#", "x#");
+
+		Assert.assertEquals(list("+b#", "a#", "a+c", "ab+", "abc"), match(trie, "a/b/c"));
+	}
+
+	@Test
+	public void testPutReplacesAndRemoveChecksValue() {
+
+		TopicTrie<String> trie = new TopicTrie<String>();
+
+		Assert.assertNull(trie.put("a/+", "first"));
+		Assert.assertEquals("first", trie.put("a/+", "second"));
+		Assert.assertEquals(1, trie.size());
+		Assert.assertEquals("second", trie.get("a/+"));
+
+		/* Removal only succeeds for the current value (or any value, if none is given) */
+		Assert.assertFalse(trie.remove("a/+", "first"));
+		Assert.assertEquals(Collections.singletonList("second"), match(trie, "a/b"));
+		Assert.assertTrue(trie.remove("a/+", "second"));
+		Assert.assertTrue(match(trie, "a/b").isEmpty());
+		Assert.assertEquals(0, trie.size());
+
+		trie.put("a/b", "ab");
+		Assert.assertTrue(trie.remove("a/b", null));
+		Assert.assertFalse(trie.remove("a/b", null));
+		Assert.assertNull(trie.get("a/b"));
+	}
+
+	@Test
+	public void testRemovingChildKeepsParentFilter() {
+
+		TopicTrie<String> trie = new TopicTrie<String>();
+		trie.put("a", "a");
+		trie.put("a/b/c", "abc");
+
+		Assert.assertTrue(trie.remove("a/b/c", "abc"));
+		Assert.assertEquals(Collections.singletonList("a"), match(trie, "a"));
+		Assert.assertTrue(match(trie, "a/b/c").isEmpty());
+		Assert.assertEquals(1, trie.size());
+	}
+
+	private static List<String> list(String... values) {
+
+		List<String> list = new ArrayList<String>();
+		Collections.addAll(list, values);
+		return list;
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed Materials - Property of IBM
+ *
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package tests.registry;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import fabric.Fabric;
+import fabric.LocalConfig;
+import fabric.core.properties.Properties;
+import fabric.registry.exception.PersistenceException;
+import fabric.registry.persistence.ParameterizedSql;
+import fabric.registry.persistence.Persistence;
+import fabric.registry.persistence.impl.PooledJDBCPersistence;
+import fabric.registry.persistence.impl.SingletonJDBCPersistence;
+
+/**
+ * Tests that a batch of parameterized Registry updates is applied as a single transaction, using an in-memory Derby
+ * database in place of the Registry.
+ */
+public class TestBatchedUpdates {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	private static final String url = "jdbc:derby:memory:batchedUpdates;create=true";
+
+	private static final String delete = "DELETE FROM SUBSCRIPTIONS WHERE ID=?";
+
+	private static final String insert = "INSERT INTO SUBSCRIPTIONS (ID, TOPIC) VALUES (?, ?)";
+
+	private Connection connection = null;
+
+	@BeforeClass
+	public static void setupClass() throws Exception {
+
+		Fabric.setConfig(new LocalConfig("./config/test.properties"));
+		Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
+	}
+
+	@Before
+	public void setup() throws SQLException {
+
+		connection = DriverManager.getConnection(url);
+		Statement statement = connection.createStatement();
+		statement.execute("CREATE TABLE SUBSCRIPTIONS (ID VARCHAR(32) NOT NULL PRIMARY KEY, "
+				+ "TOPIC VARCHAR(64) NOT NULL)");
+		statement.execute("INSERT INTO SUBSCRIPTIONS VALUES ('s1', 'topic/1'), ('s2', 'topic/2')");
+		statement.close();
+	}
+
+	@After
+	public void teardown() throws SQLException {
+
+		Statement statement = connection.createStatement();
+		statement.execute("DROP TABLE SUBSCRIPTIONS");
+		statement.close();
+		connection.close();
+	}
+
+	/**
+	 * Answers the topic of a subscription, or <code>null</code> if there is no such subscription.
+	 */
+	private String topic(String id) throws SQLException {
+
+		Statement statement = connection.createStatement();
+		ResultSet rs = statement.executeQuery("SELECT TOPIC FROM SUBSCRIPTIONS WHERE ID='" + id + "'");
+		String topic = rs.next() ? rs.getString(1) : null;
+		statement.close();
+		return topic;
+	}
+
+	/**
+	 * Saves two subscriptions by deleting and re-inserting them, the second insert failing.
+	 */
+	private void assertFailedBatchRolledBack(Persistence persistence) throws SQLException {
+
+		ParameterizedSql[] updates = new ParameterizedSql[] {new ParameterizedSql(delete, "s1"),
+				new ParameterizedSql(insert, "s1", "topic/1a"), new ParameterizedSql(delete, "s2"),
+				new ParameterizedSql(insert, "s2", null)};
+
+		try {
+			persistence.updateRegistryObjects(updates);
+			Assert.fail("Batch with a failing statement succeeded");
+		} catch (PersistenceException e) {
+			/* Expected */
+		}
+
+		/* Neither the deletes nor the first insert were applied */
+		Assert.assertEquals("topic/1", topic("s1"));
+		Assert.assertEquals("topic/2", topic("s2"));
+	}
+
+	/**
+	 * Saves two subscriptions and checks that later updates on the same connection are not left uncommitted.
+	 */
+	private void assertBatchCommitted(Persistence persistence) throws Exception {
+
+		ParameterizedSql[] updates = new ParameterizedSql[] {new ParameterizedSql(delete, "s1"),
+				new ParameterizedSql(insert, "s1", "topic/1b"), new ParameterizedSql(delete, "s2"),
+				new ParameterizedSql(insert, "s2", "topic/2b")};
+
+		Assert.assertTrue(persistence.updateRegistryObjects(updates));
+
+		Assert.assertEquals("topic/1b", topic("s1"));
+		Assert.assertEquals("topic/2b", topic("s2"));
+
+		Assert.assertTrue(persistence.updateRegistryObject(new ParameterizedSql(insert, "s3", "topic/3"), false));
+		Assert.assertEquals("topic/3", topic("s3"));
+	}
+
+	/**
+	 * Runs batches of literal SQL updates, checking that only a duplicate key failure is ignored.
+	 */
+	private void assertLiteralBatchFailures(Persistence persistence) throws Exception {
+
+		Assert.assertTrue(persistence.updateRegistryObjects(new String[] {
+				"INSERT INTO SUBSCRIPTIONS VALUES ('s1', 'topic/1c')"}));
+
+		try {
+			persistence.updateRegistryObjects(new String[] {"INSERT INTO SUBSCRIPTIONS VALUES ('s4', NULL)"});
+			Assert.fail("Batch with a failing statement succeeded");
+		} catch (PersistenceException e) {
+			/* Expected */
+		}
+
+		Assert.assertNull(topic("s4"));
+	}
+
+	@Test
+	public void testPooledBatchIsTransactional() throws Exception {
+
+		PooledJDBCPersistence persistence = new PooledJDBCPersistence();
+		persistence.init(url, new Properties("./config/test.properties"));
+		persistence.connect();
+
+		try {
+
+			assertFailedBatchRolledBack(persistence);
+			assertBatchCommitted(persistence);
+			assertLiteralBatchFailures(persistence);
+
+		} finally {
+
+			persistence.disconnect();
+		}
+	}
+
+	@Test
+	public void testSingletonBatchIsTransactional() throws Exception {
+
+		SingletonJDBCPersistence persistence = new SingletonJDBCPersistence();
+		persistence.init(url, new Properties("./config/test.properties"));
+		persistence.connect();
+
+		try {
+
+			assertFailedBatchRolledBack(persistence);
+			assertBatchCommitted(persistence);
+			assertLiteralBatchFailures(persistence);
+
+		} finally {
+
+			persistence.disconnect();
+		}
+	}
+}
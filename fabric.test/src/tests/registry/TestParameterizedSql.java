@@ -0,0 +1,140 @@
+/*
+ * Licensed Materials - Property of IBM
+ *
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package tests.registry;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fabric.registry.persistence.ParameterizedSql;
+
+/**
+ * Tests for the binding and literal rendering of <code>ParameterizedSql</code> statements.
+ */
+public class TestParameterizedSql {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	/**
+	 * Answers a prepared statement that records the calls made to it as strings.
+	 *
+	 * @param calls
+	 *            the list to which calls are recorded.
+	 *
+	 * @param nullType
+	 *            the SQL type reported by the statement's parameter metadata, or <code>null</code> if the metadata is
+	 *            not supported.
+	 */
+	private static PreparedStatement recorder(final List<String> calls, final Integer nullType) {
+
+		final ParameterMetaData metaData = (ParameterMetaData) Proxy.newProxyInstance(
+				ParameterMetaData.class.getClassLoader(), new Class<?>[] {ParameterMetaData.class},
+				new InvocationHandler() {
+
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+						if (method.getName().equals("getParameterType")) {
+							return nullType;
+						}
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+
+		return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+				new Class<?>[] {PreparedStatement.class}, new InvocationHandler() {
+
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+						if (method.getName().equals("getParameterMetaData")) {
+							if (nullType == null) {
+								throw new SQLException("Not supported");
+							}
+							return metaData;
+						}
+						calls.add(method.getName() + "(" + args[0] + "," + args[1] + ")");
+						return null;
+					}
+				});
+	}
+
+	@Test
+	public void testBindSetsParametersInOrder() throws SQLException {
+
+		ParameterizedSql sql = new ParameterizedSql("UPDATE T SET A=?, B=? WHERE C=?", "one", 2, Boolean.TRUE);
+		List<String> calls = new ArrayList<String>();
+		sql.bind(recorder(calls, Types.INTEGER));
+
+		Assert.assertEquals(3, calls.size());
+		Assert.assertEquals("setObject(1,one)", calls.get(0));
+		Assert.assertEquals("setObject(2,2)", calls.get(1));
+		Assert.assertEquals("setObject(3,true)", calls.get(2));
+	}
+
+	@Test
+	public void testBindNullUsesParameterType() throws SQLException {
+
+		ParameterizedSql sql = new ParameterizedSql("UPDATE T SET A=? WHERE B=?", null, "b");
+		List<String> calls = new ArrayList<String>();
+		sql.bind(recorder(calls, Types.INTEGER));
+
+		Assert.assertEquals("setNull(1," + Types.INTEGER + ")", calls.get(0));
+		Assert.assertEquals("setObject(2,b)", calls.get(1));
+	}
+
+	@Test
+	public void testBindNullFallsBackToVarchar() throws SQLException {
+
+		ParameterizedSql sql = new ParameterizedSql("UPDATE T SET A=?", (Object) null);
+		List<String> calls = new ArrayList<String>();
+		sql.bind(recorder(calls, null));
+
+		Assert.assertEquals("setNull(1," + Types.VARCHAR + ")", calls.get(0));
+	}
+
+	@Test
+	public void testNoParameters() throws SQLException {
+
+		ParameterizedSql sql = new ParameterizedSql("DELETE FROM T", (Object[]) null);
+		List<String> calls = new ArrayList<String>();
+		sql.bind(recorder(calls, Types.VARCHAR));
+
+		Assert.assertEquals(0, sql.parameters().length);
+		Assert.assertTrue(calls.isEmpty());
+		Assert.assertEquals("DELETE FROM T", sql.toLiteralSql());
+	}
+
+	@Test
+	public void testLiteralSqlQuotesValues() {
+
+		ParameterizedSql sql = new ParameterizedSql("INSERT INTO T VALUES(?, ?, ?, ?)", "O'Brien", 42, false, null);
+
+		Assert.assertEquals("INSERT INTO T VALUES('O''Brien', 42, false, NULL)", sql.toLiteralSql());
+	}
+
+	@Test
+	public void testLiteralSqlIgnoresPlaceholdersInQuotes() {
+
+		ParameterizedSql sql = new ParameterizedSql("SELECT * FROM T WHERE A='?' AND B=?", "b");
+
+		Assert.assertEquals("SELECT * FROM T WHERE A='?' AND B='b'", sql.toLiteralSql());
+	}
+}
@@ -0,0 +1,261 @@
+/*
+ * Licensed Materials - Property of IBM
+ *
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package tests.registry;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import fabric.core.properties.Properties;
+import fabric.registry.FabricRegistry;
+import fabric.registry.QueryScope;
+import fabric.registry.RegistryObject;
+import fabric.registry.Type;
+import fabric.registry.exception.PersistenceException;
+import fabric.registry.impl.AbstractFactory;
+import fabric.registry.impl.RegistryCache;
+import fabric.registry.impl.TypeImpl;
+import fabric.registry.persistence.IPersistenceResultRow;
+
+/**
+ * Tests for the caching and invalidation of Registry query results by <code>RegistryCache</code>.
+ */
+public class TestRegistryCache {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	private static final String typesQuery = "SELECT * FROM " + FabricRegistry.ACTOR_TYPES + " WHERE TYPE_ID=?";
+
+	private static final String nodesQuery = "SELECT * FROM " + FabricRegistry.NODES;
+
+	/**
+	 * A factory used only to key the cached results.
+	 */
+	private static class TestFactory extends AbstractFactory {
+
+		@Override
+		public String getInsertSql(RegistryObject obj) {
+
+			return null;
+		}
+
+		@Override
+		public String getUpdateSql(RegistryObject obj) {
+
+			return null;
+		}
+
+		@Override
+		public String getDeleteSql(RegistryObject obj) {
+
+			return null;
+		}
+
+		@Override
+		public RegistryObject create(IPersistenceResultRow row) throws PersistenceException {
+
+			return null;
+		}
+	}
+
+	/**
+	 * A Registry object that can be created outside of its factory.
+	 */
+	private static class TestType extends TypeImpl {
+
+		TestType(String id) {
+
+			super(id, "description", null, null);
+		}
+	}
+
+	private final AbstractFactory factory = new TestFactory();
+
+	/**
+	 * Configures and enables the cache.
+	 */
+	private static void configure(int size, long ttl) throws IOException {
+
+		File file = File.createTempFile("registry-cache-", ".properties");
+
+		try {
+
+			FileWriter writer = new FileWriter(file);
+			writer.write("registry.cache.enabled=true\n");
+			writer.write("registry.cache.size=" + size + "\n");
+			writer.write("registry.cache.ttl=" + ttl + "\n");
+			writer.close();
+
+			RegistryCache.configure(new Properties(file.getPath()));
+
+		} finally {
+
+			file.delete();
+		}
+	}
+
+	/**
+	 * Looks up a query, storing the supplied results on a miss, and answers the results found in the cache (if any).
+	 */
+	private RegistryObject[] query(String sql, String id, RegistryObject[] results) {
+
+		RegistryCache.Lookup lookup = RegistryCache.lookup(factory, QueryScope.LOCAL, sql, new Object[] {id});
+		Assert.assertNotNull(lookup);
+		RegistryObject[] cached = lookup.results();
+
+		if (cached == null) {
+			RegistryCache.store(lookup, results);
+		}
+
+		return cached;
+	}
+
+	private static RegistryObject[] types(String... ids) {
+
+		RegistryObject[] types = new RegistryObject[ids.length];
+		for (int t = 0; t < ids.length; t++) {
+			types[t] = new TestType(ids[t]);
+		}
+		return types;
+	}
+
+	@After
+	public void teardown() {
+
+		RegistryCache.setEnabled(false);
+	}
+
+	@Test
+	public void testDisabledCacheDoesNotLookup() {
+
+		RegistryCache.setEnabled(false);
+
+		Assert.assertFalse(RegistryCache.isEnabled());
+		Assert.assertNull(RegistryCache.lookup(factory, QueryScope.LOCAL, typesQuery, new Object[] {"a"}));
+	}
+
+	@Test
+	public void testHitAnswersCopyOfResults() throws IOException {
+
+		configure(10, 60000);
+
+		Assert.assertNull(query(typesQuery, "a", types("a")));
+		Assert.assertEquals(1, RegistryCache.size());
+
+		RegistryObject[] cached = query(typesQuery, "a", null);
+		Assert.assertNotNull(cached);
+		Assert.assertEquals(1, cached.length);
+		Assert.assertEquals("a", ((Type) cached[0]).getId());
+
+		/* Modifying the answered objects does not affect the cached copy */
+		((Type) cached[0]).setId("changed");
+		Assert.assertEquals("a", ((Type) query(typesQuery, "a", null)[0]).getId());
+
+		/* Different bind parameters are a different query */
+		Assert.assertNull(query(typesQuery, "b", types("b")));
+		Assert.assertEquals(2, RegistryCache.size());
+	}
+
+	@Test
+	public void testUncacheableQueries() throws IOException {
+
+		configure(10, 60000);
+
+		Assert.assertNull(RegistryCache.lookup(factory, QueryScope.DISTRIBUTED, typesQuery, new Object[] {"a"}));
+		Assert.assertNull(RegistryCache.lookup(factory, QueryScope.LOCAL, "VALUES 1", null));
+		Assert.assertNull(RegistryCache.lookup(factory, QueryScope.LOCAL, null, null));
+	}
+
+	@Test
+	public void testInvalidationIsByTable() throws IOException {
+
+		configure(10, 60000);
+
+		query(typesQuery, "a", types("a"));
+		query(nodesQuery, null, types("n"));
+		Assert.assertEquals(2, RegistryCache.size());
+
+		RegistryCache.invalidateStatement("UPDATE " + FabricRegistry.NODES + " SET NODE_ID='x'");
+		Assert.assertEquals(1, RegistryCache.size());
+		Assert.assertNotNull(query(typesQuery, "a", null));
+		Assert.assertNull(query(nodesQuery, null, null));
+
+		RegistryCache.invalidateTable(FabricRegistry.ACTOR_TYPES.toLowerCase());
+		Assert.assertEquals(0, RegistryCache.size());
+	}
+
+	@Test
+	public void testNotificationInvalidatesTable() throws IOException {
+
+		configure(10, 60000);
+
+		query(typesQuery, "a", types("a"));
+		query(nodesQuery, null, types("n"));
+
+		RegistryCache.invalidateNotification("{\"table\":\"nodes\"}");
+		Assert.assertNull(query(nodesQuery, null, null));
+		Assert.assertNotNull(query(typesQuery, "a", null));
+
+		/* A notification that cannot be understood clears the cache */
+		RegistryCache.invalidateNotification("not JSON");
+		Assert.assertEquals(0, RegistryCache.size());
+	}
+
+	@Test
+	public void testResultsStaleBeforeStoreAreDiscarded() throws IOException {
+
+		configure(10, 60000);
+
+		RegistryCache.Lookup lookup = RegistryCache.lookup(factory, QueryScope.LOCAL, typesQuery, new Object[] {"a"});
+		Assert.assertNull(lookup.results());
+
+		/* An update while the query was running means that its results may be stale */
+		RegistryCache.invalidateTable(FabricRegistry.ACTOR_TYPES);
+		RegistryCache.store(lookup, types("a"));
+
+		Assert.assertEquals(0, RegistryCache.size());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() throws IOException {
+
+		configure(2, 60000);
+
+		query(typesQuery, "a", types("a"));
+		query(typesQuery, "b", types("b"));
+
+		/* Use "a" so that "b" is the least recently used */
+		Assert.assertNotNull(query(typesQuery, "a", null));
+		query(typesQuery, "c", types("c"));
+
+		Assert.assertEquals(2, RegistryCache.size());
+		Assert.assertNotNull(query(typesQuery, "a", null));
+		Assert.assertNotNull(query(typesQuery, "c", null));
+		Assert.assertNull(query(typesQuery, "b", null));
+	}
+
+	@Test
+	public void testEntriesExpire() throws Exception {
+
+		configure(10, 50);
+
+		query(typesQuery, "a", types("a"));
+		Assert.assertNotNull(query(typesQuery, "a", null));
+
+		Thread.sleep(100);
+
+		Assert.assertNull(query(typesQuery, "a", null));
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed Materials - Property of IBM
+ *
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package tests.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import fabric.core.util.TimerWheel;
+
+/**
+ * Tests for the scheduling, cascading and cancellation of <code>TimerWheel</code> timeouts.
+ */
+public class TestTimerWheel {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	private TimerWheel timer = null;
+
+	@Before
+	public void setup() {
+
+		timer = new TimerWheel("Test-Timer-Wheel");
+	}
+
+	@After
+	public void teardown() {
+
+		timer.stop();
+	}
+
+	/**
+	 * A task recording the time at which it ran (relative to the start of the test) and its position in the firing
+	 * order.
+	 */
+	private static class Recorder implements Runnable {
+
+		private final long start;
+
+		private final List<Recorder> fired;
+
+		private final CountDownLatch latch;
+
+		volatile long elapsed = -1;
+
+		Recorder(long start, List<Recorder> fired, CountDownLatch latch) {
+
+			this.start = start;
+			this.fired = fired;
+			this.latch = latch;
+		}
+
+		@Override
+		public void run() {
+
+			elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			fired.add(this);
+			latch.countDown();
+		}
+	}
+
+	@Test
+	public void testTimeoutsCascadeAndFireInOrder() throws InterruptedException {
+
+		/* Delays landing in the first (1 ms), second (64 ms) and third (4096 ms) wheels */
+		long[] delays = new long[] {4200, 5, 300, 70, 1};
+		List<Recorder> fired = Collections.synchronizedList(new ArrayList<Recorder>());
+		CountDownLatch latch = new CountDownLatch(delays.length);
+		Recorder[] recorders = new Recorder[delays.length];
+		TimerWheel.Timeout[] timeouts = new TimerWheel.Timeout[delays.length];
+		long start = System.nanoTime();
+
+		for (int d = 0; d < delays.length; d++) {
+			recorders[d] = new Recorder(start, fired, latch);
+			timeouts[d] = timer.schedule(recorders[d], delays[d], TimeUnit.MILLISECONDS);
+		}
+
+		Assert.assertEquals(delays.length, timer.pending());
+		Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+		for (int d = 0; d < delays.length; d++) {
+
+			/* Never early, and not unreasonably late */
+			Assert.assertTrue("Timeout " + delays[d] + " fired at " + recorders[d].elapsed,
+					recorders[d].elapsed >= delays[d]);
+			Assert.assertTrue("Timeout " + delays[d] + " fired at " + recorders[d].elapsed,
+					recorders[d].elapsed < delays[d] + 1000);
+			Assert.assertTrue(timeouts[d].isExpired());
+			Assert.assertFalse(timeouts[d].cancel());
+		}
+
+		Assert.assertSame(recorders[4], fired.get(0));
+		Assert.assertSame(recorders[1], fired.get(1));
+		Assert.assertSame(recorders[3], fired.get(2));
+		Assert.assertSame(recorders[2], fired.get(3));
+		Assert.assertSame(recorders[0], fired.get(4));
+		Assert.assertEquals(0, timer.pending());
+	}
+
+	@Test
+	public void testCancelledTimeoutDoesNotFire() throws InterruptedException {
+
+		List<Recorder> fired = Collections.synchronizedList(new ArrayList<Recorder>());
+		CountDownLatch latch = new CountDownLatch(1);
+		long start = System.nanoTime();
+
+		TimerWheel.Timeout cancelled = timer.schedule(new Recorder(start, fired, new CountDownLatch(1)), 50,
+				TimeUnit.MILLISECONDS);
+		Recorder later = new Recorder(start, fired, latch);
+		timer.schedule(later, 150, TimeUnit.MILLISECONDS);
+
+		Assert.assertTrue(cancelled.cancel());
+		Assert.assertTrue(cancelled.isCancelled());
+		Assert.assertFalse(cancelled.cancel());
+		Assert.assertEquals(1, timer.pending());
+
+		Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals(1, fired.size());
+		Assert.assertSame(later, fired.get(0));
+		Assert.assertFalse(cancelled.isExpired());
+	}
+
+	@Test
+	public void testEarlierTimeoutWakesTimer() throws InterruptedException {
+
+		List<Recorder> fired = Collections.synchronizedList(new ArrayList<Recorder>());
+		CountDownLatch latch = new CountDownLatch(1);
+		long start = System.nanoTime();
+
+		/* The timer thread is asleep waiting for the distant timeout when the near one is scheduled */
+		TimerWheel.Timeout distant = timer.schedule(new Recorder(start, fired, new CountDownLatch(1)), 60,
+				TimeUnit.SECONDS);
+		Thread.sleep(20);
+		Recorder near = new Recorder(start, fired, latch);
+		timer.schedule(near, 10, TimeUnit.MILLISECONDS);
+
+		Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+		Assert.assertSame(near, fired.get(0));
+		Assert.assertTrue(distant.cancel());
+	}
+
+	@Test
+	public void testFailingTaskDoesNotStopTimer() throws InterruptedException {
+
+		CountDownLatch latch = new CountDownLatch(1);
+
+		timer.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+
+				throw new IllegalStateException("Test exception");
+			}
+		}, 1, TimeUnit.MILLISECONDS);
+
+		timer.schedule(new Recorder(System.nanoTime(), new ArrayList<Recorder>(), latch), 20, TimeUnit.MILLISECONDS);
+
+		Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullTaskIsRejected() {
+
+		timer.schedule(null, 1, TimeUnit.MILLISECONDS);
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Licensed Materials - Property of IBM
+ *
+ * (C) Copyright IBM Corp. 2014
+ *
+ * LICENSE: Eclipse Public License v1.0
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package tests.xml;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import fabric.core.xml.XML;
+import fabric.core.xml.XMLByteTokenizer;
+import fabric.core.xml.XMLTokenizerFactory;
+
+/**
+ * Tests for the tokenizing of UTF-8 encoded XML by <code>XMLByteTokenizer</code>, and for the documents built from it.
+ */
+public class TestXMLByteTokenizer {
+
+	/** Copyright notice. */
+	public static final String copyrightNotice = "(C) Copyright IBM Corp. 2014";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String document = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<!-- header comment -->\n"
+			+ "<fab type=\"feed\" note='a &amp; b'>\n"
+			+ "\t<msg id = \"1\">caf\u00e9 &lt;\u20ac&gt;</msg>\n"
+			+ "\t<empty flag=\"on\"/>\n"
+			+ "\t<!-- body comment -->\n"
+			+ "\t<list><item>one</item><item>two</item></list>\n"
+			+ "</fab>\n";
+
+	private boolean wasByteTokenizer = false;
+
+	private boolean wasSAXTokenizer = false;
+
+	@Before
+	public void setup() {
+
+		wasByteTokenizer = XMLTokenizerFactory.isByteTokenizer();
+		wasSAXTokenizer = XMLTokenizerFactory.isSAXTokenizer();
+		XMLTokenizerFactory.setSAXTokenizer(false);
+	}
+
+	@After
+	public void teardown() {
+
+		XMLTokenizerFactory.setByteTokenizer(wasByteTokenizer);
+		XMLTokenizerFactory.setSAXTokenizer(wasSAXTokenizer);
+	}
+
+	/**
+	 * Reads the next token, skipping text that is only white space.
+	 */
+	private static int next(XMLByteTokenizer tokenizer) throws Exception {
+
+		int token = tokenizer.next();
+
+		while (token == XMLByteTokenizer.TEXT && tokenizer.getText().trim().isEmpty()) {
+			token = tokenizer.next();
+		}
+
+		return token;
+	}
+
+	private static void assertStart(XMLByteTokenizer tokenizer, String name) throws Exception {
+
+		Assert.assertEquals(XMLByteTokenizer.START_ELEMENT, next(tokenizer));
+		Assert.assertEquals(name, tokenizer.getName());
+	}
+
+	private static void assertEnd(XMLByteTokenizer tokenizer, String name) throws Exception {
+
+		Assert.assertEquals(XMLByteTokenizer.END_ELEMENT, next(tokenizer));
+		Assert.assertEquals(name, tokenizer.getName());
+	}
+
+	private static void assertText(XMLByteTokenizer tokenizer, int type, String text) throws Exception {
+
+		Assert.assertEquals(type, next(tokenizer));
+		Assert.assertEquals(text, tokenizer.getText());
+	}
+
+	@Test
+	public void testTokenStream() throws Exception {
+
+		XMLByteTokenizer tokenizer = new XMLByteTokenizer(document.getBytes(UTF_8));
+
+		assertText(tokenizer, XMLByteTokenizer.PROCESSING_INSTRUCTION, "xml version=\"1.0\" encoding=\"UTF-8\"");
+		assertText(tokenizer, XMLByteTokenizer.COMMENT, " header comment ");
+
+		assertStart(tokenizer, "fab");
+		Assert.assertEquals(2, tokenizer.getAttributeCount());
+		Assert.assertEquals("type", tokenizer.getAttributeName(0));
+		Assert.assertEquals("feed", tokenizer.getAttributeValue(0));
+		Assert.assertEquals("note", tokenizer.getAttributeName(1));
+		Assert.assertEquals("a & b", tokenizer.getAttributeValue(1));
+
+		assertStart(tokenizer, "msg");
+		Assert.assertEquals(1, tokenizer.getAttributeCount());
+		Assert.assertEquals("1", tokenizer.getAttributeValue(0));
+		assertText(tokenizer, XMLByteTokenizer.TEXT, "caf\u00e9 <\u20ac>");
+		assertEnd(tokenizer, "msg");
+
+		/* An empty element is reported as a start immediately followed by an end */
+		assertStart(tokenizer, "empty");
+		Assert.assertEquals("on", tokenizer.getAttributeValue(0));
+		assertEnd(tokenizer, "empty");
+
+		assertText(tokenizer, XMLByteTokenizer.COMMENT, " body comment ");
+
+		assertStart(tokenizer, "list");
+		assertStart(tokenizer, "item");
+		assertText(tokenizer, XMLByteTokenizer.TEXT, "one");
+		assertEnd(tokenizer, "item");
+		assertStart(tokenizer, "item");
+		assertText(tokenizer, XMLByteTokenizer.TEXT, "two");
+		assertEnd(tokenizer, "item");
+		assertEnd(tokenizer, "list");
+
+		assertEnd(tokenizer, "fab");
+		Assert.assertEquals(XMLByteTokenizer.END_DOCUMENT, next(tokenizer));
+		Assert.assertEquals(XMLByteTokenizer.END_DOCUMENT, next(tokenizer));
+	}
+
+	@Test
+	public void testOffsetsLocateUndecodedValues() throws Exception {
+
+		byte[] prefix = "garbage".getBytes(UTF_8);
+		byte[] xml = "<a v=\"x&amp;y\">t&lt;u</a>".getBytes(UTF_8);
+		byte[] buffer = Arrays.copyOf(prefix, prefix.length + xml.length + 5);
+		System.arraycopy(xml, 0, buffer, prefix.length, xml.length);
+
+		XMLByteTokenizer tokenizer = new XMLByteTokenizer(buffer, prefix.length, xml.length);
+		Assert.assertSame(buffer, tokenizer.getBytes());
+
+		assertStart(tokenizer, "a");
+		int valueStart = tokenizer.getAttributeValueStart(0);
+		int valueEnd = tokenizer.getAttributeValueEnd(0);
+		Assert.assertEquals("x&amp;y", new String(buffer, valueStart, valueEnd - valueStart, UTF_8));
+		Assert.assertEquals("x&y", tokenizer.getAttributeValue(0));
+
+		Assert.assertEquals(XMLByteTokenizer.TEXT, next(tokenizer));
+		Assert.assertEquals("t<u", XMLByteTokenizer.decode(buffer, tokenizer.getTextStart(), tokenizer.getTextEnd()));
+
+		assertEnd(tokenizer, "a");
+
+		/* The bytes following the document are not read */
+		Assert.assertEquals(XMLByteTokenizer.END_DOCUMENT, next(tokenizer));
+	}
+
+	@Test
+	public void testTruncatedDocumentEnds() throws Exception {
+
+		XMLByteTokenizer tokenizer = new XMLByteTokenizer("<a><b x=\"1".getBytes(UTF_8));
+
+		assertStart(tokenizer, "a");
+		Assert.assertEquals(XMLByteTokenizer.END_DOCUMENT, next(tokenizer));
+	}
+
+	@Test(expected = Exception.class)
+	public void testUnexpectedCharacterIsRejected() throws Exception {
+
+		XMLByteTokenizer tokenizer = new XMLByteTokenizer("<a><=b/></a>".getBytes(UTF_8));
+
+		assertStart(tokenizer, "a");
+		tokenizer.next();
+	}
+
+	@Test
+	public void testDocumentMatchesSimpleTokenizer() throws Exception {
+
+		XMLTokenizerFactory.setByteTokenizer(false);
+		XML fromString = new XML();
+		fromString.parseString(document);
+
+		XMLTokenizerFactory.setByteTokenizer(true);
+		Assert.assertTrue(XMLTokenizerFactory.isByteTokenizer());
+		XML fromBytes = new XML();
+		fromBytes.parseBytes(document.getBytes(UTF_8));
+
+		Assert.assertEquals(fromString.toXML(), fromBytes.toXML());
+		Assert.assertArrayEquals(fromString.getPaths(), fromBytes.getPaths());
+
+		Assert.assertEquals("a & b", fromBytes.get("/fab@note"));
+		Assert.assertEquals("caf\u00e9 <\u20ac>", fromBytes.get("/fab/msg"));
+		Assert.assertEquals("on", fromBytes.get("/fab/empty@flag"));
+		Assert.assertEquals("two", fromBytes.get("/fab/list/item[1]"));
+	}
+}